@@ -65,6 +65,10 @@ class Properties:
         "pegasus.schema.ivr",
         "pegasus.catalog.replica",
         "pegasus.catalog.replica.file",
+        "pegasus.catalog.replica.file.journal",
+        "pegasus.catalog.replica.file.journal.compact.threshold",
+        "pegasus.catalog.replica.directory.threads",
+        "pegasus.catalog.replica.directory.index",
         "pegasus.catalog.replica.chunk.size",
         "pegasus.catalog.replica.cache.asrc",
         "pegasus.catalog.replica.dax.asrc",
@@ -74,15 +78,21 @@ class Properties:
         "pegasus.catalog.site.repo.interval",
         "pegasus.catalog.transformation",
         "pegasus.catalog.transformation.file",
+        "pegasus.catalog.transformation.directory.threads",
+        "pegasus.catalog.transformation.directory.index",
         "pegasus.selector.replica",
         "pegasus.selector.site",
         "pegasus.selector.site.path",
         "pegasus.selector.site.timeout",
         "pegasus.selector.site.keep.tmp",
+        "pegasus.selector.site.stream",
+        "pegasus.estimator.cache",
+        "pegasus.estimator.threads",
         "pegasus.data.configuration",
         "pegasus.transfer.bypass.input.staging",
         "pegasus.transfer.arguments",
         "pegasus.transfer.threads",
+        "pegasus.transfer.refiner.threads",
         "pegasus.transfer.lite.arguments",
         "pegasus.transfer.worker.package",
         "pegasus.transfer.worker.package.autodownload",
@@ -128,8 +138,12 @@ class Properties:
         "pegasus.aws.batch.compute_environment",
         "pegasus.aws.batch.job_queue",
         "pegasus.aws.batch.s3_bucket",
+        "pegasus.aws.batch.submit.threads",
+        "pegasus.aws.batch.monitor.threads",
         "pegasus.code.generator",
+        "pegasus.code.generator.threads",
         "pegasus.condor.concurrency.limits",
+        "pegasus.condor.submit.inline",
         "pegasus.register",
         "pegasus.register.deep",
         "pegasus.data.reuse.scope",
@@ -137,6 +151,11 @@ class Properties:
         "pegasus.selector.transformation",
         "pegasus.parser.dax.preserver.linebreaks",
         "pegasus.parser.dax.data.dependencies",
+        "pegasus.workflow.reduce.edges",
+        "pegasus.graph.implementation",
+        "pegasus.planner.daemon",
+        "pegasus.planner.daemon.threads",
+        "pegasus.planner.profiles.threads",
         "pegasus.integrity.checking",
         "env.PEGASUS_HOME",
         "env.GLOBUS_LOCATION",
@@ -0,0 +1,15 @@
+#!/usr/bin/env python3
+
+import os
+import sys
+
+# PEGASUS_PYTHONPATH is set by the pegasus-python-wrapper script
+peg_path = os.environ.get("PEGASUS_PYTHONPATH")
+if peg_path:
+    for p in reversed(peg_path.split(":")):
+        if p not in sys.path:
+            sys.path.insert(0, p)
+
+from Pegasus.plan_client import main
+
+main()
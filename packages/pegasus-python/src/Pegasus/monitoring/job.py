@@ -377,13 +377,15 @@ class Job:
                 # PM-1016 Missing JOB_TERMINATED event.
                 self._main_job_done = int(timestamp)
 
-    def parse_sub_file(self, stamp, submit_file):
+    def parse_sub_file(self, stamp, submit_file, submit_lines=None):
         """
         This function parses a job's submit file and returns job
         planning information. In addition, we try to populate the job
         type from information in the submit file.
         # paramtr: stamp(IN): timestamp associated with the log line
         # paramtr: submit_file(IN): submit file name
+        # paramtr: submit_lines(IN): lines of a submit description inlined
+        #                            in the dag file, used instead of the submit file
         # globals: good_rsl(IN): which RSL keys constitute time requirements
         # returns: (largest job time requirement in minutes, destination site)
         # returns: (None, None) if sub file not found
@@ -392,19 +394,20 @@ class Job:
         my_result = None
         my_site = None
 
-        # Update stat record for submit file
-        try:
-            my_stats = os.stat(submit_file)
-        except OSError:
-            # Could not stat file
-            logger.error(f"stat {submit_file}")
-            return my_result, my_site
-
-        # Check submit file timestamp
-        if stamp < my_stats[8]:  # mtime
-            logger.info(
-                f"{submit_file}: sub file modified: job timestamp={stamp:d}, file mtime={my_stats[8]:d}, diff={my_stats[8] - stamp:d}"
-            )
+        if submit_lines is None:
+            # Update stat record for submit file
+            try:
+                my_stats = os.stat(submit_file)
+            except OSError:
+                # Could not stat file
+                logger.error(f"stat {submit_file}")
+                return my_result, my_site
+
+            # Check submit file timestamp
+            if stamp < my_stats[8]:  # mtime
+                logger.info(
+                    f"{submit_file}: sub file modified: job timestamp={stamp:d}, file mtime={my_stats[8]:d}, diff={my_stats[8] - stamp:d}"
+                )
 
         # Check if we need to parse the environment line
         if self._exec_job_id.startswith("pegasus-plan") or self._exec_job_id.startswith(
@@ -412,11 +415,15 @@ class Job:
         ):
             parse_environment = True
 
-        try:
-            SUB = open(submit_file)
-        except OSError:
-            logger.error(f"unable to parse {submit_file}")
-            return my_result, my_site
+        if submit_lines is not None:
+            # Submit description is inlined in the dag file
+            SUB = StringIO("".join(submit_lines))
+        else:
+            try:
+                SUB = open(submit_file)
+            except OSError:
+                logger.error(f"unable to parse {submit_file}")
+                return my_result, my_site
 
         # Parse submit file
         for my_line in SUB:
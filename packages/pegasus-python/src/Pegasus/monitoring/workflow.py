@@ -47,6 +47,9 @@ except Exception:
 # Used while reading the DAG file
 re_parse_dag_submit_files = re.compile(r"JOB\s+(\S+)\s(\S+)(\s+DONE)?", re.IGNORECASE)
 re_parse_pmc_submit_files = re.compile(r"TASK\s+(\S*)\s(\S+)", re.IGNORECASE)
+re_parse_dag_submit_description = re.compile(
+    r"SUBMIT-DESCRIPTION\s+(\S+)\s*\{\s*$", re.IGNORECASE
+)
 re_parse_dag_script = re.compile(
     r"SCRIPT (?:PRE|POST)\s+(\S+)\s(\S+)\s(.*)", re.IGNORECASE
 )
@@ -201,9 +204,24 @@ class Workflow:
             logger.warning(f"unable to read {dag_file}!")
         else:
             logger.info(f"Parsing DAG file {dag_file}")
+            my_description = None
             for dag_line in DAG:
+                if my_description is not None:
+                    # Inside an inline submit description
+                    if dag_line.strip() == "}":
+                        my_description = None
+                    else:
+                        my_description.append(dag_line)
+                    continue
                 lc_dag_line = dag_line.lower().lstrip()
-                if lc_dag_line.startswith("job"):
+                if lc_dag_line.startswith("submit-description"):
+                    # Found inline submit description, collect its lines
+                    my_match = re_parse_dag_submit_description.search(dag_line)
+                    if my_match:
+                        my_description = []
+                        my_sub = os.path.join(self._run_dir, my_match.group(1))
+                        self._submit_descriptions[my_sub] = my_description
+                elif lc_dag_line.startswith("job"):
                     # Found Job line, parse it
                     my_match = re_parse_dag_submit_files.search(dag_line)
                     if my_match:
@@ -947,6 +965,7 @@ class Workflow:
         self._JSDB = None  # Handle for jobstate.log file
         self._job_counters = {}  # Job counters for figuring out which output file to parse
         self._job_info = {}  # jobid --> [sub_file, pre_exec, pre_args, post_exec, post_args, is_subdag, subdag_dag, subdag_dir, prescript_log]
+        self._submit_descriptions = {}  # sub_file --> lines of the submit description inlined in the dag file
         self._valid_braindb = (
             True  # Flag for creating a new brain db if we don't find one
         )
@@ -2904,7 +2923,9 @@ class Workflow:
 
         # Parse sub file
         my_diff, my_site = my_job.parse_sub_file(
-            self._current_timestamp, self._job_info[jobid][0]
+            self._current_timestamp,
+            self._job_info[jobid][0],
+            self._submit_descriptions.get(self._job_info[jobid][0]),
         )
 
         # Change input, output, and error files to be relative to the submit directory
@@ -0,0 +1,109 @@
+"""
+Implementation of ``pegasus-plan-client``: hands over the planning of a sub
+workflow to a running ``pegasus-plan-daemon``.
+
+The client is invoked with the same arguments as ``pegasus-plan``. It reads the
+port and token of the daemon from the daemon's state file, sends the arguments
+and the current directory to the daemon, and streams the planner output to
+stdout. If no daemon is reachable, the client runs ``pegasus-plan`` instead.
+"""
+
+import json
+import logging
+import os
+import shutil
+import socket
+import sys
+
+log = logging.getLogger("pegasus-plan-client")
+
+STATE_FILE_ENV_KEY = "PEGASUS_PLANNER_DAEMON_FILE"
+
+DEFAULT_STATE_FILE = os.path.join("~", ".pegasus", "planner-daemon")
+
+EXITCODE_PREFIX = "pegasus-plan-daemon exitcode: "
+
+
+def get_state_file():
+    """Return the path to the state file written by the daemon."""
+    return os.path.expanduser(
+        os.environ.get(STATE_FILE_ENV_KEY, DEFAULT_STATE_FILE)
+    )
+
+
+def read_state(path):
+    """
+    Read the port and token of the daemon from the state file.
+
+    :param path: the path to the state file
+    :return: a dict with the port and token, or None if there is no daemon
+    """
+    try:
+        with open(path) as f:
+            state = dict(
+                line.strip().split("=", 1) for line in f if "=" in line
+            )
+        return {"port": int(state["port"]), "token": state["token"]}
+    except (OSError, KeyError, ValueError):
+        return None
+
+
+def connect(state, timeout=10):
+    """
+    Connect to the daemon.
+
+    :return: the connected socket, or None if the daemon is not reachable
+    """
+    try:
+        sock = socket.create_connection(("127.0.0.1", state["port"]), timeout)
+        # planning a sub workflow can take a while
+        sock.settimeout(None)
+        return sock
+    except OSError as e:
+        log.debug("Unable to connect to the planner daemon: %s", e)
+        return None
+
+
+def plan(sock, token, cwd, args, out=sys.stdout):
+    """
+    Have the daemon plan with the arguments, streaming the planner output.
+
+    :return: the exitcode of the planner
+    """
+    request = {"token": token, "cwd": cwd, "args": list(args)}
+    with sock, sock.makefile("rw", encoding="utf-8", newline="\n") as f:
+        f.write(json.dumps(request) + "\n")
+        f.flush()
+        for line in f:
+            if line.startswith(EXITCODE_PREFIX):
+                return int(line[len(EXITCODE_PREFIX) :])
+            out.write(line)
+            out.flush()
+
+    out.write("ERROR: Connection to the planner daemon closed\n")
+    return 1
+
+
+def fallback(args):
+    """Run pegasus-plan with the arguments, replacing this process."""
+    bin_dir = os.path.join(os.environ.get("PEGASUS_HOME", ""), "bin")
+    planner = os.path.join(bin_dir, "pegasus-plan")
+    if not os.access(planner, os.X_OK):
+        planner = shutil.which("pegasus-plan")
+    if planner is None:
+        sys.stderr.write("ERROR: Unable to find pegasus-plan\n")
+        sys.exit(1)
+    os.execv(planner, [planner] + list(args))
+
+
+def main(args=None):
+    logging.basicConfig(level=logging.INFO)
+    args = sys.argv[1:] if args is None else args
+
+    state = read_state(get_state_file())
+    sock = connect(state) if state else None
+    if sock is None:
+        log.info("No planner daemon running. Running pegasus-plan instead")
+        fallback(args)
+
+    sys.exit(plan(sock, state["token"], os.getcwd(), args))
@@ -0,0 +1,65 @@
+"""Test pegasus-plan-client."""
+
+import io
+import json
+import socket
+import threading
+
+from Pegasus import plan_client
+
+
+def test_read_state(tmp_path):
+    state = tmp_path / "planner-daemon"
+    state.write_text("port=4242\ntoken=abc\n")
+    assert plan_client.read_state(str(state)) == {"port": 4242, "token": "abc"}
+
+
+def test_read_state_missing(tmp_path):
+    assert plan_client.read_state(str(tmp_path / "planner-daemon")) is None
+    state = tmp_path / "planner-daemon"
+    state.write_text("port=4242\n")
+    assert plan_client.read_state(str(state)) is None
+
+
+def test_plan():
+    server = socket.socket()
+    server.bind(("127.0.0.1", 0))
+    server.listen(1)
+    requests = []
+
+    def daemon():
+        conn, _ = server.accept()
+        with conn, conn.makefile("rw") as f:
+            requests.append(json.loads(f.readline()))
+            f.write("planning\n")
+            f.write(plan_client.EXITCODE_PREFIX + "3\n")
+
+    t = threading.Thread(target=daemon)
+    t.start()
+    sock = plan_client.connect({"port": server.getsockname()[1]})
+    out = io.StringIO()
+    assert plan_client.plan(sock, "abc", "/tmp", ["--dir", "submit"], out) == 3
+    t.join()
+    server.close()
+
+    assert out.getvalue() == "planning\n"
+    assert requests == [{"token": "abc", "cwd": "/tmp", "args": ["--dir", "submit"]}]
+
+
+def test_plan_connection_closed():
+    server = socket.socket()
+    server.bind(("127.0.0.1", 0))
+    server.listen(1)
+
+    def daemon():
+        conn, _ = server.accept()
+        conn.recv(1024)
+        conn.close()
+
+    t = threading.Thread(target=daemon)
+    t.start()
+    sock = plan_client.connect({"port": server.getsockname()[1]})
+    out = io.StringIO()
+    assert plan_client.plan(sock, "abc", "/tmp", [], out) == 1
+    t.join()
+    server.close()
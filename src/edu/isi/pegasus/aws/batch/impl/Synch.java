@@ -62,6 +62,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -129,6 +130,15 @@ public class Synch {
     /** maximum sleep time in seconds */
     public static final long MAX_SLEEP_TIME = 32 * 1000;
 
+    /** minimum time in milliseconds between two polls of the job status */
+    public static final long MIN_POLL_INTERVAL = 1 * 1000;
+
+    /** The default number of threads submitting jobs to AWS Batch */
+    public static final int DEFAULT_SUBMIT_THREADS = 4;
+
+    /** The default number of threads querying AWS Batch for job status and logs */
+    public static final int DEFAULT_MONITOR_THREADS = 4;
+
     private Map<String, AWSJob> mJobMap;
 
     private String mPrefix;
@@ -139,8 +149,18 @@ public class Synch {
 
     private Region mAWSRegion;
 
+    /** Executor for the monitoring thread */
     private ExecutorService mExecutorService;
 
+    /** Executor for the job submissions */
+    private ExecutorService mSubmitExecutorService;
+
+    /** Executor for the DescribeJobs queries and log retrievals done while monitoring */
+    private ExecutorService mMonitorExecutorService;
+
+    /** Retrieves the logs of completed jobs */
+    private CloudWatchLog mCloudWatchLog;
+
     private String mJobDefinitionARN;
 
     private String mComputeEnvironmentARN;
@@ -190,6 +210,27 @@ public class Synch {
     public void initialize(
             Properties properties, Level level, EnumMap<BATCH_ENTITY_TYPE, String> jsonFileMap)
             throws IOException {
+        this.initialize(properties, level, jsonFileMap, null, null);
+    }
+
+    /**
+     * Initialize the log, with the clients to use for talking to AWS Batch and CloudWatch. Allows
+     * for running against a stand-in for AWS Batch.
+     *
+     * @param properties properties with pegasus prefix stripped.
+     * @param level
+     * @param jsonFileMap
+     * @param batchClient the batch client to use, null to connect to AWS Batch in the region
+     * @param cwl the cloud watch log retriever to use, null to connect to CloudWatch in the region
+     * @throws IOException
+     */
+    void initialize(
+            Properties properties,
+            Level level,
+            EnumMap<BATCH_ENTITY_TYPE, String> jsonFileMap,
+            BatchClient batchClient,
+            CloudWatchLog cwl)
+            throws IOException {
         // "405596411149";
         mLogger = org.apache.logging.log4j.LogManager.getLogger(Synch.class.getName());
         Configurator.setLevel(Synch.class.getName(), level);
@@ -208,8 +249,36 @@ public class Synch {
 
         mJobMap = new HashMap();
         mRunMetrics = new LinkedHashMap<String, Integer>();
-        mExecutorService = Executors.newFixedThreadPool(2);
-        mBatchClient = BatchClient.builder().region(mAWSRegion).build();
+        int submitThreads =
+                getProperty(
+                        properties,
+                        Synch.AWS_BATCH_PROPERTY_PREFIX,
+                        "submit.threads",
+                        DEFAULT_SUBMIT_THREADS);
+        int monitorThreads =
+                getProperty(
+                        properties,
+                        Synch.AWS_BATCH_PROPERTY_PREFIX,
+                        "monitor.threads",
+                        DEFAULT_MONITOR_THREADS);
+        mLogger.debug(
+                "Using "
+                        + submitThreads
+                        + " threads for submitting jobs and "
+                        + monitorThreads
+                        + " threads for monitoring jobs");
+        mExecutorService = Executors.newSingleThreadExecutor();
+        mSubmitExecutorService = Executors.newFixedThreadPool(submitThreads);
+        mMonitorExecutorService = Executors.newFixedThreadPool(monitorThreads);
+        mBatchClient =
+                (batchClient == null)
+                        ? BatchClient.builder().region(mAWSRegion).build()
+                        : batchClient;
+        if (cwl == null) {
+            cwl = new CloudWatchLog();
+            cwl.initialize(mAWSRegion, level, CLOUD_WATCH_BATCH_LOG_GROUP);
+        }
+        mCloudWatchLog = cwl;
         mDoneWithJobSubmits = false;
         mExitCode = 0;
     }
@@ -384,16 +453,16 @@ public class Synch {
     /** Deletes the setup done for batch */
     private boolean deleteSetup() {
         EnumMap<BATCH_ENTITY_TYPE, String> entities = new EnumMap<>(BATCH_ENTITY_TYPE.class);
-        if (mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_queue)) {
+        if (Boolean.TRUE.equals(mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_queue))) {
             entities.put(BATCH_ENTITY_TYPE.job_queue, mJobQueueARN);
         }
-        if (mDeleteOnExit.get(BATCH_ENTITY_TYPE.compute_environment)) {
+        if (Boolean.TRUE.equals(mDeleteOnExit.get(BATCH_ENTITY_TYPE.compute_environment))) {
             entities.put(BATCH_ENTITY_TYPE.compute_environment, mComputeEnvironmentARN);
         }
-        if (mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_definition)) {
+        if (Boolean.TRUE.equals(mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_definition))) {
             entities.put(BATCH_ENTITY_TYPE.job_definition, mJobDefinitionARN);
         }
-        if (mDeleteOnExit.get(BATCH_ENTITY_TYPE.s3_bucket)) {
+        if (Boolean.TRUE.equals(mDeleteOnExit.get(BATCH_ENTITY_TYPE.s3_bucket))) {
             entities.put(BATCH_ENTITY_TYPE.s3_bucket, mS3Bucket);
         }
         mLogger.info("Will attempt to delete " + entities);
@@ -545,15 +614,20 @@ public class Synch {
         SubmitJobRequest jobRequest = job.createAWSBatchSubmitRequest();
         mLogger.debug("Submitting job " + jobRequest);
 
+        // add the job before submitting, as the monitoring thread looks it up by name
+        // once the submission completes
+        addJob(job);
         try {
-            Future<SubmitJobResponse> submitJobFuture =
-                    mExecutorService.submit(() -> mBatchClient.submitJob(jobRequest));
+            CompletableFuture<SubmitJobResponse> submitJobFuture =
+                    CompletableFuture.supplyAsync(
+                            () -> mBatchClient.submitJob(jobRequest), mSubmitExecutorService);
             addSubmitJobResponse(submitJobFuture);
+            // wake up the monitoring thread once the submission is done
+            submitJobFuture.whenComplete((response, e) -> this.notifyMonitor());
         } catch (Exception e) {
             mLogger.error("Unable to submit job " + job, e);
             mExitCode = Synch.NON_TASK_FAILURE_EXITCODE;
         }
-        addJob(job);
     }
 
     private void addSubmitJobResponse(Future<SubmitJobResponse> response) {
@@ -562,6 +636,39 @@ public class Synch {
         }
     }
 
+    /** Wakes up the monitoring thread if it is waiting for the next poll. */
+    private void notifyMonitor() {
+        synchronized (this.mSubmitResponses) {
+            this.mSubmitResponses.notifyAll();
+        }
+    }
+
+    /**
+     * Waits till the next poll is due, or till the monitoring thread has something else to do
+     * i.e. a job submission completed or the signal to exit was received.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @throws InterruptedException
+     */
+    private void awaitMonitorEvent(long timeout) throws InterruptedException {
+        if (timeout <= 0) {
+            return;
+        }
+        boolean exit = this.receivedSignalToExitAfterJobsComplete();
+        synchronized (this.mSubmitResponses) {
+            if (exit && this.mSubmitResponses.isEmpty()) {
+                return;
+            }
+            for (Iterator<Future<SubmitJobResponse>> it = mSubmitResponses.iterator();
+                    it.hasNext(); ) {
+                if (it.next().isDone()) {
+                    return;
+                }
+            }
+            this.mSubmitResponses.wait(timeout);
+        }
+    }
+
     private void addJob(AWSJob job) {
         synchronized (this.mJobMap) {
             mJobMap.put(job.getID(), job);
@@ -582,7 +689,8 @@ public class Synch {
         for (AWSJob job : jobs) {
             SubmitJobRequest sampleJobRequest = job.createAWSBatchSubmitRequest();
             Future<SubmitJobResponse> submitJobFuture =
-                    mExecutorService.submit(() -> mBatchClient.submitJob(sampleJobRequest));
+                    mSubmitExecutorService.submit(
+                            () -> mBatchClient.submitJob(sampleJobRequest));
             submitResponses.add(submitJobFuture);
             job.setState(AWSJob.JOBSTATE.unsubmitted);
             mJobMap.put(job.getID(), job);
@@ -622,7 +730,8 @@ public class Synch {
     }
 
     public void monitor(String basename) {
-        long sleepTime = 5 * 1000;
+        long pollInterval = Synch.MIN_POLL_INTERVAL;
+        long nextPoll = System.currentTimeMillis() + pollInterval;
         Set<String> awsJobIDs = new HashSet();
 
         // first go through the internal job map to see if there
@@ -641,9 +750,7 @@ public class Synch {
         int succeeded = 0;
         int failed = 0;
         Set<String> doneJobs = new HashSet();
-        BatchClient batchClient = BatchClient.builder().region(mAWSRegion).build();
-        CloudWatchLog cwl = new CloudWatchLog();
-        cwl.initialize(mAWSRegion, mLogger.getLevel(), CLOUD_WATCH_BATCH_LOG_GROUP);
+        List<Future<Tuple<File, File>>> logRetrievals = new LinkedList();
         while (true) {
             // go through unprocessed jobs that have been submitted
             // in another thread
@@ -682,90 +789,82 @@ public class Synch {
             // now query AWS Batch for the jobs
             try {
                 mLogger.debug(numDone + " jobs done of total of " + total);
+                long timeout = MAX_SLEEP_TIME;
                 if (numDone < total) {
                     // still total is not done
-                    mLogger.debug(
-                            "Sleeping before querying for status of remaining jobs. Remaining "
-                                    + awsJobIDs.size());
-                    Thread.sleep(sleepTime);
-                    int count = 1;
-                    Collection<String> chunkedAWSJobIDs = new HashSet();
-                    for (Iterator<String> it = awsJobIDs.iterator(); it.hasNext(); count++) {
-                        chunkedAWSJobIDs.add(it.next());
-                        if (count == Synch.AWS_BATCH_MAX_JOBS_SUPPORTED_IN_API || !it.hasNext()) {
-                            // now we query current state for jobs
-                            DescribeJobsRequest jobsRequest =
-                                    DescribeJobsRequest.builder().jobs(chunkedAWSJobIDs).build();
+                    long now = System.currentTimeMillis();
+                    if (now >= nextPoll) {
+                        mLogger.debug(
+                                "Querying for status of remaining jobs. Remaining "
+                                        + awsJobIDs.size());
+                        boolean changed = false;
+                        for (JobDetail jobDetail : this.describeJobs(awsJobIDs)) {
+                            AWSJob.JOBSTATE jobState =
+                                    AWSJob.JOBSTATE.valueOf(jobDetail.status().toLowerCase());
+                            AWSJob j = this.getJob(jobDetail.jobName());
+                            String jobId = jobDetail.jobId();
                             mLogger.debug(
-                                    "Describe jobs request is of size "
-                                            + jobsRequest.jobs().size());
-                            DescribeJobsResponse jobsResponse =
-                                    batchClient.describeJobs(jobsRequest);
-                            for (JobDetail jobDetail : jobsResponse.jobs()) {
-                                AWSJob.JOBSTATE jobState =
-                                        AWSJob.JOBSTATE.valueOf(jobDetail.status().toLowerCase());
-                                AWSJob j = this.getJob(jobDetail.jobName());
-                                String jobId = jobDetail.jobId();
+                                    "Current Status of Job "
+                                            + jobDetail.jobId()
+                                            + "->"
+                                            + jobDetail.status()
+                                            + " with reason "
+                                            + jobDetail.statusReason());
+                            if (j.getJobState() != jobState) {
+                                changed = true;
                                 j.setState(jobState);
-                                mLogger.debug(
-                                        "Current Status of Job "
-                                                + jobDetail.jobId()
-                                                + "->"
-                                                + jobDetail.status()
-                                                + " with reason "
-                                                + jobDetail.statusReason());
                                 mJobstateWriter.log(
                                         jobDetail.jobName(), jobDetail.jobId(), jobState);
+                            }
 
-                                mLogger.debug("Detailed Job detail " + jobDetail);
-                                switch (jobState) {
-                                    case succeeded:
-                                        if (!doneJobs.contains(jobId)) {
-                                            mLogger.info("Job Succeeded " + jobId);
-                                            doneJobs.add(jobId);
-                                            numDone++;
-                                            succeeded++;
-                                            mLogger.debug(
-                                                    "Querying for succeeded job details "
-                                                            + jobDetail.jobId());
-                                            Tuple<File, File> log = cwl.retrieve(j);
-                                            mLogger.debug(
-                                                    "Logs retrieved for "
-                                                            + jobDetail.jobId()
-                                                            + " to "
-                                                            + log);
-                                        }
-                                        break;
-
-                                    case failed:
-                                        if (!doneJobs.contains(jobId)) {
-                                            mLogger.info("Job Failed " + jobId);
-                                            doneJobs.add(jobId);
-                                            numDone++;
-                                            failed++;
-                                            mLogger.debug(
-                                                    "Querying for failed job details " + jobId);
-                                            Tuple<File, File> log = cwl.retrieve(j);
-                                            mLogger.debug(
-                                                    "Logs retrieved for " + jobId + " to " + log);
-                                        }
-                                        break;
-
-                                    default:
-                                        break;
-                                }
+                            mLogger.debug("Detailed Job detail " + jobDetail);
+                            switch (jobState) {
+                                case succeeded:
+                                    if (!doneJobs.contains(jobId)) {
+                                        mLogger.info("Job Succeeded " + jobId);
+                                        doneJobs.add(jobId);
+                                        numDone++;
+                                        succeeded++;
+                                        mLogger.debug(
+                                                "Querying for succeeded job details "
+                                                        + jobDetail.jobId());
+                                        logRetrievals.add(this.retrieveLog(j));
+                                    }
+                                    break;
+
+                                case failed:
+                                    if (!doneJobs.contains(jobId)) {
+                                        mLogger.info("Job Failed " + jobId);
+                                        doneJobs.add(jobId);
+                                        numDone++;
+                                        failed++;
+                                        mLogger.debug("Querying for failed job details " + jobId);
+                                        logRetrievals.add(this.retrieveLog(j));
+                                    }
+                                    break;
+
+                                default:
+                                    break;
                             }
-                            // reset the chunk
-                            count = 1;
-                            chunkedAWSJobIDs = new HashSet();
+                        } // end of traversal of aws job ids
+
+                        // do some cleanup so that we query for lesser number of jobs
+                        // in the next iteration
+                        for (String doneJobId : doneJobs) {
+                            awsJobIDs.remove(doneJobId);
                         }
-                    } // end of traversal of aws job ids
 
-                    // do some cleanup so that we query for lesser number of jobs
-                    // in the next iteration
-                    for (String doneJobId : doneJobs) {
-                        awsJobIDs.remove(doneJobId);
+                        // poll more often while jobs are changing state, and back off
+                        // while they are not
+                        pollInterval =
+                                changed
+                                        ? Synch.MIN_POLL_INTERVAL
+                                        : Math.min(2 * pollInterval, Synch.MAX_SLEEP_TIME);
+                        now = System.currentTimeMillis();
+                        nextPoll = now + pollInterval;
+                        mLogger.debug("Next poll for status of jobs in " + pollInterval + " ms");
                     }
+                    timeout = nextPoll - now;
                 } else {
                     if (receivedSignalToExitAfterJobsComplete()) {
                         synchronized (this.mSubmitResponses) {
@@ -778,6 +877,7 @@ public class Synch {
                         }
                     }
                 }
+                this.awaitMonitorEvent(timeout);
 
             } catch (Exception ex) {
                 complainAndShutdown(ex);
@@ -785,14 +885,19 @@ public class Synch {
             }
         }
 
-        mLogger.info("Shutting down");
-        try {
-            batchClient.close();
-        } catch (Exception ex) {
-            mLogger.error((String) null, ex);
-            mExitCode = Synch.NON_TASK_FAILURE_EXITCODE;
+        // wait for the logs of the completed jobs to be retrieved
+        for (Future<Tuple<File, File>> retrieval : logRetrievals) {
+            try {
+                Tuple<File, File> log = retrieval.get();
+                mLogger.debug("Logs retrieved to " + log);
+            } catch (Exception ex) {
+                mLogger.error("Unable to retrieve logs for job ", ex);
+                mExitCode = Synch.NON_TASK_FAILURE_EXITCODE;
+            }
         }
 
+        mLogger.info("Shutting down");
+
         if (failed > 0) {
             mExitCode = Synch.TASK_FAILURE_EXITCODE;
         }
@@ -809,13 +914,62 @@ public class Synch {
         }
     }
 
+    /**
+     * Queries AWS Batch for the current state of jobs. The job ids are split into chunks of the
+     * maximum size supported by the DescribeJobs API, and the chunks are queried in parallel.
+     *
+     * @param awsJobIDs the AWS job ids to query for
+     * @return the job details in the order of the chunks
+     * @throws InterruptedException
+     * @throws ExecutionException if a query fails
+     */
+    private List<JobDetail> describeJobs(Collection<String> awsJobIDs)
+            throws InterruptedException, ExecutionException {
+        List<Future<DescribeJobsResponse>> responses = new LinkedList();
+        Collection<String> chunkedAWSJobIDs = new LinkedList();
+        for (Iterator<String> it = awsJobIDs.iterator(); it.hasNext(); ) {
+            chunkedAWSJobIDs.add(it.next());
+            if (chunkedAWSJobIDs.size() == Synch.AWS_BATCH_MAX_JOBS_SUPPORTED_IN_API
+                    || !it.hasNext()) {
+                // now we query current state for jobs
+                DescribeJobsRequest jobsRequest =
+                        DescribeJobsRequest.builder().jobs(chunkedAWSJobIDs).build();
+                mLogger.debug("Describe jobs request is of size " + jobsRequest.jobs().size());
+                responses.add(
+                        mMonitorExecutorService.submit(
+                                () -> mBatchClient.describeJobs(jobsRequest)));
+                // reset the chunk
+                chunkedAWSJobIDs = new LinkedList();
+            }
+        }
+
+        List<JobDetail> result = new LinkedList();
+        for (Future<DescribeJobsResponse> response : responses) {
+            result.addAll(response.get().jobs());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the cloud watch log of a completed job in the background.
+     *
+     * @param j the job
+     * @return future for the retrieved stdout and stderr files
+     */
+    private Future<Tuple<File, File>> retrieveLog(AWSJob j) {
+        return mMonitorExecutorService.submit(() -> mCloudWatchLog.retrieve(j));
+    }
+
     public synchronized Map<String, Integer> getRunMetrics() {
         return this.mRunMetrics;
     }
 
-    public synchronized void signalToExitAfterJobsComplete() {
-        mLogger.info("****Received signal to exit after completion of jobs****");
-        mDoneWithJobSubmits = true;
+    public void signalToExitAfterJobsComplete() {
+        synchronized (this) {
+            mLogger.info("****Received signal to exit after completion of jobs****");
+            mDoneWithJobSubmits = true;
+        }
+        this.notifyMonitor();
     }
 
     /**
@@ -871,19 +1025,34 @@ public class Synch {
             mLogger.error((String) null, ex);
         }
         mLogger.info("Shutting down threads ...");
+        this.shutdown(mSubmitExecutorService);
+        this.shutdown(mMonitorExecutorService);
         if (this.mExecutorService != null) {
-            mExecutorService.shutdown(); // Disable new tasks from being submitted
+            // this is called from the monitoring thread itself, so we
+            // cannot wait for it to terminate
+            mExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Shuts down an executor service, waiting a while for existing tasks to terminate.
+     *
+     * @param executorService the executor service
+     */
+    private void shutdown(ExecutorService executorService) {
+        if (executorService != null) {
+            executorService.shutdown(); // Disable new tasks from being submitted
             try {
                 // Wait a while for existing tasks to terminate
-                if (!mExecutorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                    mExecutorService.shutdownNow(); // Cancel currently executing tasks
+                if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                    executorService.shutdownNow(); // Cancel currently executing tasks
                     // Wait a while for tasks to respond to being cancelled
-                    if (!mExecutorService.awaitTermination(60, TimeUnit.SECONDS))
+                    if (!executorService.awaitTermination(60, TimeUnit.SECONDS))
                         mLogger.error("Executor Service did not terminate");
                 }
             } catch (InterruptedException ie) {
                 // (Re-)Cancel if current thread also interrupted
-                mExecutorService.shutdownNow();
+                executorService.shutdownNow();
                 // Preserve interrupt status
                 Thread.currentThread().interrupt();
             }
@@ -1507,6 +1676,36 @@ public class Synch {
         return value;
     }
 
+    /**
+     * Returns the value of an optional positive integer property.
+     *
+     * @param properties the properties
+     * @param prefix the prefix for the property
+     * @param name the name of the property
+     * @param defaultValue the value to use if the property is not specified
+     * @return the value
+     * @throws PegasusAWSBatchException if the value is not a positive integer
+     */
+    private int getProperty(Properties properties, String prefix, String name, int defaultValue) {
+        String property = prefix + "." + name;
+        String value = properties.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        int result = 0;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (result < 1) {
+            throw new PegasusAWSBatchException(
+                    "Please specify a positive integer for the property " + property);
+        }
+        return result;
+    }
+
     /**
      * Merges all the tasks stdout and setderr logs to the stdout and stderr file passed Results in
      * a single stdout and stdderr file for all the tasks
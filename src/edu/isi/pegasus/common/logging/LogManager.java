@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Supplier;
 
 /**
  * The logging class that to log messages at different levels. Currently the following levels are
@@ -339,6 +340,13 @@ public abstract class LogManager {
      */
     public abstract PrintStream getWriter(STREAM_TYPE type);
 
+    /**
+     * Waits till all the messages logged so far are written out to the writers, for
+     * implementations that write the messages in the background. Callers should flush before
+     * closing a writer set on the logger. The default implementation does nothing.
+     */
+    public void flush() {}
+
     /**
      * Log the message represented by the internal log buffer. The log buffer is populated via the
      * add methods.
@@ -346,6 +354,11 @@ public abstract class LogManager {
      * @param level the level on which the message has to be logged.
      */
     public void log(int level) {
+        if (!isLoggable(level)) {
+            // the buffer is still reset, as if the message was logged
+            mLogFormatter.createLogMessageAndReset();
+            return;
+        }
         this.log(mLogFormatter.createLogMessage(), level);
     }
 
@@ -390,8 +403,95 @@ public abstract class LogManager {
      * @see #setLevel(int)
      */
     public void log(String message, int level) {
-        mLogFormatter.add(message);
-        this.logAlreadyFormattedMessage(mLogFormatter.createLogMessageAndReset(), level);
+        if (!isLoggable(level)) {
+            return;
+        }
+        String formatted;
+        // the formatter buffers the message, and is shared by the threads logging
+        synchronized (mLogFormatter) {
+            mLogFormatter.add(message);
+            formatted = mLogFormatter.createLogMessageAndReset();
+        }
+        this.logAlreadyFormattedMessage(formatted, level);
+    }
+
+    /**
+     * Returns whether a message at a particular level would be logged. Callers can use it to guard
+     * building of expensive messages. The default implementation returns true always, and
+     * implementations that track the levels override it.
+     *
+     * @param level the level on which the message would be logged.
+     * @return boolean
+     */
+    public boolean isLoggable(int level) {
+        return true;
+    }
+
+    /**
+     * Logs the message returned by the supplier, if a message at that level would be logged. The
+     * supplier is not invoked otherwise, so the message is never built for disabled levels.
+     *
+     * @param message supplier of the message to be logged.
+     * @param level the level on which the message has to be logged.
+     * @see #isLoggable(int)
+     */
+    public void log(Supplier<String> message, int level) {
+        if (isLoggable(level)) {
+            this.log(message.get(), level);
+        }
+    }
+
+    /**
+     * Logs a parameterized message, if a message at that level would be logged. The first {}
+     * placeholder in the format is replaced by the argument.
+     *
+     * @param format the message with a {} placeholder.
+     * @param arg the argument for the placeholder.
+     * @param level the level on which the message has to be logged.
+     * @see #isLoggable(int)
+     */
+    public void log(String format, Object arg, int level) {
+        if (isLoggable(level)) {
+            this.log(format(format, arg), level);
+        }
+    }
+
+    /**
+     * Logs a parameterized message, if a message at that level would be logged. The {}
+     * placeholders in the format are replaced by the arguments in order.
+     *
+     * @param format the message with {} placeholders.
+     * @param arg1 the argument for the first placeholder.
+     * @param arg2 the argument for the second placeholder.
+     * @param level the level on which the message has to be logged.
+     * @see #isLoggable(int)
+     */
+    public void log(String format, Object arg1, Object arg2, int level) {
+        if (isLoggable(level)) {
+            this.log(format(format, arg1, arg2), level);
+        }
+    }
+
+    /**
+     * Replaces the {} placeholders in a format with the arguments in order. Placeholders without a
+     * matching argument are left as is, and extra arguments are ignored.
+     *
+     * @param format the message with {} placeholders.
+     * @param args the arguments.
+     * @return the formatted message
+     */
+    protected static String format(String format, Object... args) {
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int index = format.indexOf("{}", start);
+            if (index == -1) {
+                break;
+            }
+            sb.append(format, start, index).append(arg);
+            start = index + 2;
+        }
+        return sb.append(format, start, format.length()).toString();
     }
 
     /**
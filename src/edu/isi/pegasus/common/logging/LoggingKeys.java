@@ -48,6 +48,7 @@ public class LoggingKeys {
     public static final String EVENT_PEGASUS_AUTHENTICATION = "event.pegasus.authenticate";
     public static final String EVENT_PEGASUS_PLAN = "event.pegasus.plan";
     public static final String EVENT_PEGASUS_REDUCE = "event.pegasus.reduce";
+    public static final String EVENT_PEGASUS_REDUCE_EDGES = "event.pegasus.reduce.edges";
     public static final String EVENT_PEGASUS_SITESELECTION = "event.pegasus.siteselection";
     public static final String EVENT_PEGASUS_ADD_TRANSFER_NODES =
             "event.pegasus.generate.transfer-nodes";
@@ -62,6 +63,8 @@ public class LoggingKeys {
     public static final String EVENT_PEGASUS_CODE_GENERATION = "event.pegasus.code.generation";
     public static final String EVENT_PEGASUS_LOAD_TRANSIENT_CACHE = "event.pegasus.load.cache";
     public static final String EVENT_PEGASUS_LOAD_DIRECTORY_CACHE = "event.pegasus.load.directory";
+    public static final String EVENT_PEGASUS_LOAD_REPLICA_CATALOG =
+            "event.pegasus.load.replica-catalog";
     public static final String EVENT_PEGASUS_PARSE_SITE_CATALOG =
             "event.pegasus.parse.site-catalog";
     public static final String EVENT_PEGASUS_PARSE_DAX = "event.pegasus.parse.dax";
@@ -72,6 +75,7 @@ public class LoggingKeys {
             "event.pegasus.add.data-dependencies";
     public static final String EVENT_PEGASUS_CYCLIC_DEPENDENCY_CHECK =
             "event.pegasus.check.cyclic-dependencies";
+    public static final String EVENT_PEGASUS_FINGERPRINT = "event.pegasus.fingerprint";
 
     public static final String EVENT_WORKFLOW_JOB_STATUS = "event.workflow.job.status";
 
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging.logger;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes log lines to their streams from a background thread. The lines queued up while a batch is
+ * being written are written out together, with one write and one flush per stream, instead of a
+ * flush after every line.
+ *
+ * <p>The queue is bounded, so that a thread logging faster than the lines can be written waits for
+ * the writer to catch up. Lines are written in the order they were queued, across all the streams.
+ * A single writer is shared by all the loggers in the JVM, as each line carries the stream it is
+ * to be written to. A shutdown hook writes out the queued lines when the JVM exits.
+ */
+class AsyncWriter implements Runnable {
+
+    /** The default number of lines that can be queued. */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** The maximum number of lines written in one batch. */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /** The writer shared by all the loggers. */
+    private static AsyncWriter sInstance;
+
+    /**
+     * Returns the writer shared by all the loggers in the JVM, starting it on first use.
+     *
+     * @return the writer
+     */
+    public static synchronized AsyncWriter getInstance() {
+        if (sInstance == null) {
+            sInstance = new AsyncWriter(DEFAULT_CAPACITY);
+        }
+        return sInstance;
+    }
+
+    /** A line to be written to a stream. */
+    private static class Line {
+
+        private final PrintStream mStream;
+
+        private final String mText;
+
+        public Line(PrintStream stream, String text) {
+            mStream = stream;
+            mText = text;
+        }
+    }
+
+    /** The lines waiting to be written. */
+    private final BlockingQueue<Line> mQueue;
+
+    /** The number of lines queued so far. Guarded by the queue. */
+    private long mQueued;
+
+    /** The number of lines written so far. Guarded by this object. */
+    private long mWritten;
+
+    /** The thread writing the lines. */
+    private final Thread mThread;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param capacity the number of lines that can be queued.
+     */
+    private AsyncWriter(int capacity) {
+        mQueue = new ArrayBlockingQueue<Line>(capacity);
+        mThread = new Thread(this, "pegasus-log-writer");
+        mThread.setDaemon(true);
+        mThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    /**
+     * Queues a line to be written to a stream.
+     *
+     * @param stream the stream to write to.
+     * @param text the line, without the line separator.
+     */
+    public void write(PrintStream stream, String text) {
+        Line line = new Line(stream, text);
+        synchronized (mQueue) {
+            try {
+                mQueue.put(line);
+                mQueued++;
+            } catch (InterruptedException e) {
+                // write it ourselves rather than lose it
+                Thread.currentThread().interrupt();
+                stream.println(text);
+            }
+        }
+    }
+
+    /** Waits till all the lines queued so far are written out. */
+    public void flush() {
+        long target;
+        synchronized (mQueue) {
+            target = mQueued;
+        }
+        synchronized (this) {
+            boolean interrupted = false;
+            while (mWritten < target && mThread.isAlive()) {
+                try {
+                    this.wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Writes out the queued lines in batches. */
+    public void run() {
+        List<Line> batch = new ArrayList<Line>();
+        StringBuilder sb = new StringBuilder();
+        String separator = System.lineSeparator();
+        while (true) {
+            try {
+                batch.add(mQueue.take());
+            } catch (InterruptedException e) {
+                // the writer only stops with the JVM
+                continue;
+            }
+            mQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            // write consecutive lines to the same stream in one go
+            PrintStream stream = null;
+            for (Line line : batch) {
+                if (line.mStream != stream) {
+                    write(stream, sb);
+                    stream = line.mStream;
+                }
+                sb.append(line.mText).append(separator);
+            }
+            write(stream, sb);
+
+            synchronized (this) {
+                mWritten += batch.size();
+                this.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes out and clears the buffer, and flushes the stream.
+     *
+     * @param stream the stream, null if nothing is buffered.
+     * @param sb the buffer.
+     */
+    private void write(PrintStream stream, StringBuilder sb) {
+        if (stream != null) {
+            stream.print(sb);
+            stream.flush();
+        }
+        sb.setLength(0);
+    }
+}
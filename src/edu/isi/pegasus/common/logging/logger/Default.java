@@ -90,6 +90,12 @@ public class Default extends LogManager {
     /** The type value to indicate a DEBUG message. */
     private static final int TRACE_MESSAGE_TYPE = 0x80;
 
+    /**
+     * The property that enables writing of the messages from a background thread, with the key
+     * relative to pegasus.log.manager.
+     */
+    public static final String ASYNC_PROPERTY_KEY = "async";
+
     /** Ensures only one object is created always. Implements the Singleton. */
     private static Default logger;
 
@@ -113,6 +119,9 @@ public class Default extends LogManager {
     /** tracks whether to log timestamp or not */
     private boolean mPrefixTimestamp;
 
+    /** The writer writing the messages in the background. Null if messages are written directly. */
+    private AsyncWriter mAsyncWriter;
+
     /** The constructor. */
     public Default() {
         mDebugLevel = 0;
@@ -133,6 +142,10 @@ public class Default extends LogManager {
      */
     public void initialize(LogFormatter formatter, Properties properties) {
         mLogFormatter = formatter;
+        if (properties != null
+                && Boolean.parseBoolean(properties.getProperty(ASYNC_PROPERTY_KEY))) {
+            mAsyncWriter = AsyncWriter.getInstance();
+        }
     }
 
     /**
@@ -175,6 +188,17 @@ public class Default extends LogManager {
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message at a particular level would be logged, as determined by the mask.
+     *
+     * @param level the level on which the message would be logged.
+     * @return boolean
+     */
+    @Override
+    public boolean isLoggable(int level) {
+        return level >= 0 && level < Integer.SIZE && ((1 << level) & mMask) != 0x0;
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer identified by
      * the filename passed.
@@ -325,6 +349,9 @@ public class Default extends LogManager {
      * @see #log(String,int)
      */
     public void log(String message, Exception e, int level) {
+        if (!isLoggable(level)) {
+            return;
+        }
         StringBuffer msg = new StringBuffer();
         msg.append(message).append(" ").append(e.getClass()).append(": ").append(e.getMessage());
         log(msg.toString(), level);
@@ -359,11 +386,11 @@ public class Default extends LogManager {
             // we need to log the message
             // get hold of the writer to be used to logging the message.
             PrintStream writer = getPrintStream(level);
-            if (mPrefixTimestamp) {
-                writer.print(Default.mFormatter.now());
-            }
             String prefix = getPrefix(type);
             message = prefix + " " + message;
+            if (mPrefixTimestamp) {
+                message = Default.mFormatter.now() + message;
+            }
             /*
                           *uncomment if we want commpetion message for INFO
                           *on same line
@@ -383,8 +410,35 @@ public class Default extends LogManager {
                              writer.println(message);
                          }
                          */
+            write(writer, message, level);
+        }
+    }
+
+    /**
+     * Writes a message to a stream, either directly or through the background writer. Messages at
+     * the CONSOLE level or more severe are written out before returning, so that they appear
+     * before anything that the caller writes to the streams directly.
+     *
+     * @param writer the stream to write to.
+     * @param message the formatted message.
+     * @param level the level on which the message is logged.
+     */
+    private void write(PrintStream writer, String message, int level) {
+        if (mAsyncWriter == null) {
             writer.println(message);
             writer.flush();
+        } else {
+            mAsyncWriter.write(writer, message);
+            if (level <= CONSOLE_MESSAGE_LEVEL) {
+                mAsyncWriter.flush();
+            }
+        }
+    }
+
+    /** Waits till all the messages logged so far are written out to the streams. */
+    public void flush() {
+        if (mAsyncWriter != null) {
+            mAsyncWriter.flush();
         }
     }
 
@@ -427,9 +481,8 @@ public class Default extends LogManager {
             }
             */
             String prefix = getPrefix(type);
-            message = prefix + " " + message;
-            writer.print(Default.mFormatter.now());
-            writer.println(message);
+            message = Default.mFormatter.now() + prefix + " " + message;
+            write(writer, message, level);
             // writer.println(message + " (completed)");
         }
     }
@@ -227,6 +227,19 @@ public class Log4j extends LogManager {
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message at a particular level would be logged, as determined by the level
+     * set on the underlying log4j logger.
+     *
+     * @param level the level on which the message would be logged.
+     * @return boolean
+     */
+    @Override
+    public boolean isLoggable(int level) {
+        Level l = LogManager.intTolog4jLevel().get(level);
+        return l != null && mLogger.isEnabled(l);
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer.
      *
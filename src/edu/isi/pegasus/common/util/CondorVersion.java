@@ -45,6 +45,9 @@ public class CondorVersion {
     /** Predefined Constant for condor version 8.9.4 */
     public static final long v_8_9_4 = CondorVersion.numericValue("8.9.4");
 
+    /** Predefined Constant for condor version 10.0.0 */
+    public static final long v_10_0_0 = CondorVersion.numericValue("10.0.0");
+
     /** The maximum number of components version can have. MAJOR, MINOR, PATCH */
     private static final int MAX_NUMBER_OF_VERSION_COMPONENTS = 3;
 
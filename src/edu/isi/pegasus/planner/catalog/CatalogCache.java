@@ -0,0 +1,121 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * A process wide cache of the contents of file based catalogs, for when the planner is run
+ * repeatedly in a long lived JVM. The parsed contents of a catalog file are held against the last
+ * modified time and length of the file, and the file is parsed again only when either changes.
+ * Since the planner modifies what it loads from the catalogs, callers are always handed a copy of
+ * the cached contents.
+ *
+ * <p>The cache is disabled by default, in which case the catalog files are parsed every time.
+ */
+public class CatalogCache {
+
+    /**
+     * Parses a catalog file.
+     *
+     * @param <T> the type of the parsed contents
+     * @param <E> the exception thrown while parsing
+     */
+    public interface Loader<T, E extends Exception> {
+
+        /**
+         * Parses the catalog file.
+         *
+         * @return the parsed contents
+         * @throws E in case of error while parsing
+         */
+        public T load() throws E;
+    }
+
+    /** Whether the cache is enabled or not. */
+    private static volatile boolean sEnabled = false;
+
+    /** The cached entries indexed by the absolute path of the file and the caller's key. */
+    private static final Map<String, Entry> sEntries = new ConcurrentHashMap<String, Entry>();
+
+    /** Enables the cache. */
+    public static void enable() {
+        sEnabled = true;
+    }
+
+    /** Disables the cache, and drops everything that is cached. */
+    public static void disable() {
+        sEnabled = false;
+        sEntries.clear();
+    }
+
+    /**
+     * Returns whether the cache is enabled or not.
+     *
+     * @return boolean
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Returns a copy of the parsed contents of a catalog file. The file is parsed with the loader
+     * if the cache is disabled, if nothing is cached for the file and key, or if the file has
+     * changed since it was cached.
+     *
+     * @param file the catalog file
+     * @param key distinguishes the contents parsed from the same file with different settings
+     * @param loader the loader that parses the file
+     * @param copier creates a copy of the parsed contents
+     * @return the parsed contents, that the caller can modify
+     * @throws E in case of error while parsing
+     */
+    public static <T, E extends Exception> T lookup(
+            File file, String key, Loader<T, E> loader, UnaryOperator<T> copier) throws E {
+        if (!sEnabled) {
+            return loader.load();
+        }
+
+        Entry entry =
+                sEntries.computeIfAbsent(
+                        file.getAbsolutePath() + "#" + key, (String k) -> new Entry());
+        synchronized (entry) {
+            // the file is stamped before parsing, so that a change made to
+            // the file while it is being parsed is picked up next time
+            long modified = file.lastModified();
+            long length = file.length();
+            if (entry.mContents == null
+                    || entry.mModified != modified
+                    || entry.mLength != length) {
+                entry.mContents = loader.load();
+                entry.mModified = modified;
+                entry.mLength = length;
+            }
+            return copier.apply((T) entry.mContents);
+        }
+    }
+
+    /** The parsed contents of a catalog file, along with the stamp of the file. */
+    private static class Entry {
+
+        private Object mContents;
+
+        private long mModified;
+
+        private long mLength;
+    }
+}
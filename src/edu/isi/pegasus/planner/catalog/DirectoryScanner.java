@@ -0,0 +1,509 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans a directory hierarchy for the files in it, for the catalogs that are backed by a directory.
+ * The type of every entry is determined from a single read of its attributes, and the
+ * subdirectories are scanned in parallel if more than one thread is specified. The files are
+ * returned in the order a sequential depth first traversal of the hierarchy would encounter them.
+ *
+ * <p>The listings of the directories can be persisted in an index file, that is loaded by a later
+ * scan of the same hierarchy. The listing of a directory whose modification time is unchanged is
+ * taken from the index, so that only the subdirectories in it have to be read again. Listings of
+ * directories modified just before they were read are not persisted, as a file created right after
+ * may not have changed the modification time of the directory.
+ */
+public class DirectoryScanner {
+
+    /** A file found while scanning. */
+    public static class Entry {
+
+        /** The name of the file. */
+        private final String mName;
+
+        /** The path of the file relative to the directory scanned. */
+        private final String mRelativePath;
+
+        /** The absolute path of the file. */
+        private final String mPath;
+
+        /** Whether the file is executable or not. */
+        private final boolean mExecutable;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param name the name of the file
+         * @param relativePath the path relative to the directory scanned
+         * @param path the absolute path
+         * @param executable whether the file is executable
+         */
+        public Entry(String name, String relativePath, String path, boolean executable) {
+            mName = name;
+            mRelativePath = relativePath;
+            mPath = path;
+            mExecutable = executable;
+        }
+
+        /**
+         * Returns the name of the file.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the path of the file relative to the directory scanned, with the components
+         * separated by the platform separator.
+         *
+         * @return the relative path
+         */
+        public String getRelativePath() {
+            return mRelativePath;
+        }
+
+        /**
+         * Returns the absolute path of the file.
+         *
+         * @return the absolute path
+         */
+        public String getPath() {
+            return mPath;
+        }
+
+        /**
+         * Returns whether the file is executable or not. Always false, unless the scanner checks
+         * for it.
+         *
+         * @return boolean
+         */
+        public boolean isExecutable() {
+            return mExecutable;
+        }
+    }
+
+    /** The key for the directory listings in the index file */
+    private static final String DIRECTORIES_KEY = "directories";
+
+    /** The key for the modification time of a directory in the index file */
+    private static final String MTIME_KEY = "mtime";
+
+    /** The key for the names in a directory in the index file */
+    private static final String ENTRIES_KEY = "entries";
+
+    /** The suffix appended to the names of the subdirectories in a listing. */
+    private static final char DIRECTORY_SUFFIX = '/';
+
+    /**
+     * The time in milliseconds for which a directory has to be unmodified before it is read, for
+     * its listing to be persisted. Covers file systems that record the times in seconds.
+     */
+    private static final long MTIME_GRANULARITY = 2000;
+
+    /** The number of threads to scan with. */
+    private final int mThreads;
+
+    /** Whether to check if the files are executable. */
+    private boolean mCheckExecutable;
+
+    /** The listings loaded from an index, indexed by the absolute path of the directory. */
+    private final Map<String, Listing> mIndex;
+
+    /** The listings of the directories read, indexed by the absolute path of the directory. */
+    private final Map<String, Listing> mScanned;
+
+    /** The absolute paths of the directories that were scanned. */
+    private final List<String> mRoots;
+
+    /** The directories that could not be read. */
+    private final List<File> mUnreadable;
+
+    /** The number of directories whose listing was taken from the index. */
+    private final AtomicInteger mReused;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param threads the number of threads to scan with.
+     */
+    public DirectoryScanner(int threads) {
+        mThreads = threads;
+        mCheckExecutable = false;
+        mIndex = new HashMap<String, Listing>();
+        mScanned = new ConcurrentHashMap<String, Listing>();
+        mRoots = new ArrayList<String>();
+        mUnreadable = Collections.synchronizedList(new ArrayList<File>());
+        mReused = new AtomicInteger(0);
+    }
+
+    /**
+     * Sets whether to check if the files are executable, that requires an additional check for
+     * every file.
+     *
+     * @param check boolean
+     */
+    public void setCheckExecutable(boolean check) {
+        mCheckExecutable = check;
+    }
+
+    /**
+     * Loads the listings from an index file written out by an earlier scan. Nothing is loaded if
+     * the file does not exist.
+     *
+     * @param index the index file
+     * @return the number of listings loaded
+     * @throws IOException in case of error while reading the index
+     */
+    public int loadIndex(File index) throws IOException {
+        if (!index.exists()) {
+            return 0;
+        }
+        Map<String, Object> contents =
+                new ObjectMapper().readValue(index, new TypeReference<Map<String, Object>>() {});
+        Object directories = contents.get(DIRECTORIES_KEY);
+        if (!(directories instanceof Map)) {
+            throw new IOException("Invalid directory index " + index);
+        }
+
+        int loaded = 0;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) directories).entrySet()) {
+            Object value = entry.getValue();
+            if (!(value instanceof Map)) {
+                throw new IOException("Invalid listing in directory index " + index + " " + entry);
+            }
+            Object mtime = ((Map<?, ?>) value).get(MTIME_KEY);
+            Object names = ((Map<?, ?>) value).get(ENTRIES_KEY);
+            if (!(mtime instanceof Number) || !(names instanceof List)) {
+                throw new IOException("Invalid listing in directory index " + index + " " + entry);
+            }
+            List<String> listing = new ArrayList<String>();
+            for (Object name : (List<?>) names) {
+                listing.add(String.valueOf(name));
+            }
+            mIndex.put(
+                    String.valueOf(entry.getKey()),
+                    new Listing(((Number) mtime).longValue(), listing));
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes out the listings of the directories to an index file, for later scans to load. The
+     * listings loaded from the index for directories outside the ones scanned are retained.
+     *
+     * @param index the index file
+     * @throws IOException in case of error while writing out the index
+     */
+    public void writeIndex(File index) throws IOException {
+        Map<String, Object> directories = new TreeMap<String, Object>();
+        for (Map.Entry<String, Listing> entry : mIndex.entrySet()) {
+            if (!isScanned(entry.getKey())) {
+                directories.put(entry.getKey(), entry.getValue().toMap());
+            }
+        }
+        for (Map.Entry<String, Listing> entry : mScanned.entrySet()) {
+            directories.put(entry.getKey(), entry.getValue().toMap());
+        }
+        Map<String, Object> contents = new LinkedHashMap<String, Object>();
+        contents.put(DIRECTORIES_KEY, directories);
+
+        // write to a temporary file first, so that concurrent scans never read a partial index
+        File dir = index.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(index.getName() + ".", ".tmp", dir);
+        try {
+            new ObjectMapper().writeValue(temp, contents);
+            Files.move(
+                    temp.toPath(),
+                    index.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Scans a directory hierarchy.
+     *
+     * @param directory the directory to scan
+     * @return the files in the hierarchy
+     */
+    public List<Entry> scan(File directory) {
+        String path = directory.getAbsolutePath();
+        mRoots.add(path);
+        long mtime;
+        try {
+            mtime =
+                    Files.readAttributes(Paths.get(path), BasicFileAttributes.class)
+                            .lastModifiedTime()
+                            .toMillis();
+        } catch (IOException e) {
+            mUnreadable.add(directory);
+            return new ArrayList<Entry>();
+        }
+
+        ScanTask task = new ScanTask(path, null, mtime);
+        if (mThreads <= 1) {
+            task.compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(mThreads);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        List<Entry> result = new ArrayList<Entry>();
+        task.collect(result);
+        return result;
+    }
+
+    /**
+     * Returns the directories that could not be read while scanning.
+     *
+     * @return the directories
+     */
+    public List<File> getUnreadableDirectories() {
+        return new ArrayList<File>(mUnreadable);
+    }
+
+    /**
+     * Returns the number of directories whose listing was taken from the index.
+     *
+     * @return the number of directories
+     */
+    public int getReusedDirectories() {
+        return mReused.get();
+    }
+
+    /**
+     * Returns whether a directory lies in one of the hierarchies scanned.
+     *
+     * @param path the absolute path of the directory
+     * @return boolean
+     */
+    private boolean isScanned(String path) {
+        for (String root : mRoots) {
+            if (path.equals(root) || path.startsWith(child(root, ""))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the path to a file in a directory.
+     *
+     * @param directory the path to the directory
+     * @param name the name of the file
+     * @return the path
+     */
+    private static String child(String directory, String name) {
+        return directory.endsWith(File.separator)
+                ? directory + name
+                : directory + File.separator + name;
+    }
+
+    /** The listing of a directory, with the names of subdirectories suffixed by a slash. */
+    private static class Listing {
+
+        /** The modification time of the directory when it was read. */
+        private final long mMTime;
+
+        /** The names in the directory. */
+        private final List<String> mNames;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param mtime the modification time of the directory
+         * @param names the names in the directory
+         */
+        Listing(long mtime, List<String> names) {
+            mMTime = mtime;
+            mNames = names;
+        }
+
+        /**
+         * Returns the listing for writing out to the index.
+         *
+         * @return the map
+         */
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<String, Object>();
+            m.put(MTIME_KEY, mMTime);
+            m.put(ENTRIES_KEY, mNames);
+            return m;
+        }
+    }
+
+    /** Scans a directory, and forks off a task for each of its subdirectories. */
+    private class ScanTask extends RecursiveAction {
+
+        /** The absolute path of the directory. */
+        private final String mPath;
+
+        /** The path of the directory relative to the directory scanned, null for the root. */
+        private final String mRelativePath;
+
+        /** The modification time of the directory. */
+        private final long mMTime;
+
+        /** The files in the directory and the tasks for the subdirectories, in listing order. */
+        private final List<Object> mItems;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param path the absolute path of the directory
+         * @param relativePath the path relative to the directory scanned
+         * @param mtime the modification time of the directory
+         */
+        ScanTask(String path, String relativePath, long mtime) {
+            mPath = path;
+            mRelativePath = relativePath;
+            mMTime = mtime;
+            mItems = new ArrayList<Object>();
+        }
+
+        @Override
+        protected void compute() {
+            Listing cached = mIndex.get(mPath);
+            List<ScanTask> subdirectories = new ArrayList<ScanTask>();
+            if (cached != null && cached.mMTime == mMTime) {
+                mReused.incrementAndGet();
+                mScanned.put(mPath, cached);
+                for (String name : cached.mNames) {
+                    int last = name.length() - 1;
+                    if (last > 0 && name.charAt(last) == DIRECTORY_SUFFIX) {
+                        name = name.substring(0, last);
+                        // a subdirectory may have been modified even if its parent was not
+                        add(name, attributes(child(mPath, name)), subdirectories);
+                    } else {
+                        add(name, null, subdirectories);
+                    }
+                }
+            } else {
+                long start = System.currentTimeMillis();
+                List<String> names = new ArrayList<String>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(mPath))) {
+                    for (Path p : stream) {
+                        String name = p.getFileName().toString();
+                        BasicFileAttributes attrs = attributes(child(mPath, name));
+                        add(name, attrs, subdirectories);
+                        names.add(
+                                (attrs != null && attrs.isDirectory())
+                                        ? name + DIRECTORY_SUFFIX
+                                        : name);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    mUnreadable.add(new File(mPath));
+                    mItems.clear();
+                    return;
+                }
+                if (mMTime + MTIME_GRANULARITY <= start) {
+                    mScanned.put(mPath, new Listing(mMTime, names));
+                }
+            }
+
+            if (inForkJoinPool()) {
+                invokeAll(subdirectories);
+            } else {
+                for (ScanTask task : subdirectories) {
+                    task.compute();
+                }
+            }
+        }
+
+        /**
+         * Adds an entry in the directory, as a file or as a task for a subdirectory.
+         *
+         * @param name the name of the entry
+         * @param attrs the attributes of the entry, null if they are not required or cannot be
+         *     read. An entry whose attributes cannot be read is treated as a file.
+         * @param subdirectories the tasks for the subdirectories to add to
+         */
+        private void add(String name, BasicFileAttributes attrs, List<ScanTask> subdirectories) {
+            String path = child(mPath, name);
+            String relativePath =
+                    (mRelativePath == null) ? name : mRelativePath + File.separator + name;
+            if (attrs != null && attrs.isDirectory()) {
+                ScanTask task =
+                        new ScanTask(path, relativePath, attrs.lastModifiedTime().toMillis());
+                subdirectories.add(task);
+                mItems.add(task);
+            } else {
+                boolean executable = mCheckExecutable && Files.isExecutable(Paths.get(path));
+                mItems.add(new Entry(name, relativePath, path, executable));
+            }
+        }
+
+        /**
+         * Reads the attributes of a file, following symbolic links.
+         *
+         * @param path the path to the file
+         * @return the attributes, or null if they cannot be read
+         */
+        private BasicFileAttributes attributes(String path) {
+            try {
+                return Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Collects the files found in listing order.
+         *
+         * @param result the list to add the files to
+         */
+        void collect(List<Entry> result) {
+            for (Object item : mItems) {
+                if (item instanceof ScanTask) {
+                    ((ScanTask) item).collect(result);
+                } else {
+                    result.add((Entry) item);
+                }
+            }
+        }
+    }
+}
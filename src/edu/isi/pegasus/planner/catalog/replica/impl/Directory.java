@@ -16,6 +16,7 @@ package edu.isi.pegasus.planner.catalog.replica.impl;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.logging.LogManagerFactory;
 import edu.isi.pegasus.common.util.Boolean;
+import edu.isi.pegasus.planner.catalog.DirectoryScanner;
 import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogException;
@@ -56,6 +57,20 @@ import java.util.regex.Pattern;
  *     pegasus.catalog.replica.directory.flat.lfn
  * </pre>
  *
+ * The subdirectories are traversed in parallel if the number of threads to use is specified by
+ * the property
+ *
+ * <pre>
+ *     pegasus.catalog.replica.directory.threads
+ * </pre>
+ *
+ * The listings of the directories are persisted to, and reused from an index file, if the path to
+ * it is specified by the property
+ *
+ * <pre>
+ *     pegasus.catalog.replica.directory.index
+ * </pre>
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -88,6 +103,12 @@ public class Directory implements ReplicaCatalog {
      */
     public static final String FLAT_LFN_PROPERTY_KEY = "directory.flat.lfn";
 
+    /** The name of the key that specifies the number of threads to traverse the directory with. */
+    public static final String THREADS_PROPERTY_KEY = "directory.threads";
+
+    /** The name of the key that specifies the path to the index of the directory listings. */
+    public static final String INDEX_PROPERTY_KEY = "directory.index";
+
     /** Records the name of the on-disk representation. */
     protected String mDirectory = null;
 
@@ -106,6 +127,12 @@ public class Directory implements ReplicaCatalog {
     /** The URL prefix to use */
     protected String mURLPrefix;
 
+    /** The number of threads to traverse the directory with. */
+    protected int mThreads;
+
+    /** The index of the directory listings, null if none is to be maintained. */
+    protected File mIndex;
+
     /**
      * Default empty constructor creates an object that is not yet connected to any database. You
      * must use support methods to connect before this instance becomes usable.
@@ -120,6 +147,8 @@ public class Directory implements ReplicaCatalog {
         mConstructFlatLFN = false;
         mSiteHandle = Directory.DEFAULT_SITE_HANDLE;
         mURLPrefix = Directory.DEFAULT_URL_PREFIX;
+        mThreads = 1;
+        mIndex = null;
     }
 
     /**
@@ -151,6 +180,25 @@ public class Directory implements ReplicaCatalog {
             this.mURLPrefix = value;
         }
 
+        value = props.getProperty(Directory.THREADS_PROPERTY_KEY);
+        if (value != null) {
+            try {
+                this.mThreads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ReplicaCatalogException(
+                        "Invalid value for property "
+                                + Directory.THREADS_PROPERTY_KEY
+                                + " "
+                                + value,
+                        e);
+            }
+        }
+
+        value = props.getProperty(Directory.INDEX_PROPERTY_KEY);
+        if (value != null) {
+            this.mIndex = new File(value);
+        }
+
         if (props.containsKey(Directory.DIRECTORY_PROPERTY_KEY)) {
             return connect(props.getProperty("directory"));
         }
@@ -175,7 +223,7 @@ public class Directory implements ReplicaCatalog {
         try {
             File f = new File(directory);
             if (f.exists() && f.isDirectory()) {
-                traverse(f, null);
+                traverse(f);
             } else {
                 return false;
             }
@@ -192,37 +240,36 @@ public class Directory implements ReplicaCatalog {
      * Traverses a directory and populates the mappings in memory
      *
      * @param directory the directory to traverse.
-     * @param prefix the LFN prefix to be applied
      */
-    private void traverse(File directory, String prefix) {
-        // sanity check, if we can read it
-        if (!directory.canRead()) {
-            // warn and return
-            System.err.println("Ignoring. Unable to read directory " + directory);
-            return;
+    private void traverse(File directory) {
+        DirectoryScanner scanner = new DirectoryScanner(mThreads);
+        if (mIndex != null) {
+            try {
+                scanner.loadIndex(mIndex);
+            } catch (IOException e) {
+                System.err.println("Ignoring. Unable to load directory index " + mIndex + " " + e);
+            }
         }
 
-        for (File f : directory.listFiles()) {
-            StringBuffer lfn = new StringBuffer();
-            String name = f.getName();
-            if (mConstructFlatLFN || prefix == null || prefix.isEmpty()) {
-                lfn.append(name);
-            } else {
-                lfn.append(prefix).append(File.separator).append(name);
-            }
+        for (DirectoryScanner.Entry entry : scanner.scan(directory)) {
+            String lfn = mConstructFlatLFN ? entry.getName() : entry.getRelativePath();
+            // we have a mapping to populate
+            String pfn = this.mURLPrefix + entry.getPath();
+            insert(lfn, new ReplicaCatalogEntry(pfn, mSiteHandle));
+        }
 
-            if (f.isDirectory()) {
-                // the lfn is the prefix now
-                traverse(f, lfn.toString());
-            } else {
-                // we have a mapping to populate
-                String pfn = this.mURLPrefix + f.getAbsolutePath();
-                // System.out.println( lfn + " => " + pfn );
-                insert(lfn.toString(), new ReplicaCatalogEntry(pfn, mSiteHandle));
-            }
+        for (File f : scanner.getUnreadableDirectories()) {
+            // warn
+            System.err.println("Ignoring. Unable to read directory " + f);
         }
 
-        return;
+        if (mIndex != null) {
+            try {
+                scanner.writeIndex(mIndex);
+            } catch (IOException e) {
+                System.err.println("Unable to write out directory index " + mIndex + " " + e);
+            }
+        }
     }
 
     /**
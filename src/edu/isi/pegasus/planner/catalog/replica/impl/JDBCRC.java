@@ -173,6 +173,12 @@ public class JDBCRC implements ReplicaCatalog {
                 + " rc_lfn.lfn_id=rc_pfn.lfn_id WHERE rc_lfn.lfn=? AND rc_pfn.lfn_id IS NULL)"
     };
 
+    /**
+     * The maximum number of values bound in a single IN clause. Kept well below the 999 host
+     * parameters SQLite allows by default.
+     */
+    private static final int MAX_IN_CLAUSE_SIZE = 500;
+
     /** Remembers if obtaining generated keys will work or not. */
     private boolean m_autoinc = false;
 
@@ -536,31 +542,16 @@ public class JDBCRC implements ReplicaCatalog {
 
         // sanity check
         if (lfn == null) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
 
-        // start to ask
-        String query = "SELECT lfn_id FROM rc_lfn WHERE lfn='" + lfn + "'";
-        try {
-            Statement st = mConnection.createStatement();
-            ResultSet rs = st.executeQuery(query);
-            if (rs.next()) {
-                String id = rs.getString("lfn_id");
-                st.close();
-                rs.close();
-                query = "SELECT pfn, site FROM rc_pfn WHERE lfn_id=" + id;
-                st = mConnection.createStatement();
-                rs = st.executeQuery(query);
-                while (rs.next()) {
-                    result.add(
-                            new ReplicaCatalogEntry(
-                                    rs.getString("pfn"), attributes(id, rs.getString("site"))));
-                }
-                st.close();
-                rs.close();
+        // skip the LFN without any PFN the left join reports
+        Set lfns = new HashSet();
+        lfns.add(lfn);
+        for (Iterator i = ((List) lookupInChunks(lfns, null, true).get(lfn)).iterator();
+                i.hasNext(); ) {
+            ReplicaCatalogEntry rce = (ReplicaCatalogEntry) i.next();
+            if (rce.getPFN() != null) {
+                result.add(rce);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database about " + query + ": " + e.getMessage());
         }
         return result;
     }
@@ -609,35 +600,7 @@ public class JDBCRC implements ReplicaCatalog {
      * @see org.griphyn.common.catalog.ReplicaCatalogEntry
      */
     public Map lookup(Set lfns) {
-        Map result = new HashMap();
-        String query = mCStatements[1];
-
-        // sanity check
-        if (lfns == null || lfns.size() == 0) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
-
-        try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(1);
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                List value = new ArrayList();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(
-                            new ReplicaCatalogEntry(
-                                    rs.getString("pfn"),
-                                    attributes(rs.getString("lfn_id"), rs.getString("site"))));
-                }
-                rs.close();
-                result.put(lfn, value);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database with " + query + ": " + e.getMessage());
-        }
-        return result;
+        return lookupInChunks(lfns, null, true);
     }
 
     /**
@@ -649,32 +612,7 @@ public class JDBCRC implements ReplicaCatalog {
      * @return a map indexed by the LFN. Each value is a set of PFN strings.
      */
     public Map lookupNoAttributes(Set lfns) {
-        Map result = new HashMap();
-        String query = mCStatements[1];
-
-        // sanity check
-        if (lfns == null || lfns.size() == 0) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
-
-        try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(1);
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                Set value = new TreeSet();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(rs.getString("pfn"));
-                }
-                rs.close();
-                result.put(lfn, value);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database with " + query + ": " + e.getMessage());
-        }
-        return result;
+        return lookupInChunks(lfns, null, false);
     }
 
     /**
@@ -690,38 +628,7 @@ public class JDBCRC implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup(Set lfns, String handle) {
-        Map result = new HashMap();
-        int which = (handle == null ? 1 : 2);
-        String query = mCStatements[which];
-
-        // sanity check
-        if (lfns == null || lfns.size() == 0) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
-
-        try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(which);
-            if (handle != null) ps.setString(2, quote(handle));
-
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                List value = new ArrayList();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(
-                            new ReplicaCatalogEntry(
-                                    rs.getString("pfn"),
-                                    attributes(rs.getString("lfn_id"), rs.getString("site"))));
-                }
-                rs.close();
-                result.put(lfn, value);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database with " + query + ": " + e.getMessage());
-        }
-        return result;
+        return lookupInChunks(lfns, handle, true);
     }
 
     /**
@@ -735,29 +642,87 @@ public class JDBCRC implements ReplicaCatalog {
      * @return a map indexed by the LFN. Each value is a set of physical filenames.
      */
     public Map lookupNoAttributes(Set lfns, String handle) {
+        return lookupInChunks(lfns, handle, false);
+    }
+
+    /**
+     * Retrieves the entries for a set of LFNs, optionally restricted to a resource handle. Instead
+     * of querying each LFN in turn, the LFNs are looked up in chunks of {@link
+     * #MAX_IN_CLAUSE_SIZE} with an IN clause, and the attributes of all the LFNs in a chunk are
+     * slurped with a second query. This brings the number of round trips to the database for a
+     * large workflow down from a few per LFN to two per chunk.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs, or null.
+     * @param withAttributes whether to retrieve replica catalog entries with all attributes, or
+     *     just the physical filenames.
+     * @return a map indexed by the LFN. Each value is a list of replica catalog entries, or a set
+     *     of physical filenames.
+     */
+    private Map lookupInChunks(Set lfns, String handle, boolean withAttributes) {
         Map result = new HashMap();
-        int which = (handle == null ? 1 : 2);
-        String query = mCStatements[which];
+        String query = "[no query]";
 
         // sanity check
         if (lfns == null || lfns.size() == 0) return result;
         if (mConnection == null) throw new RuntimeException(c_error);
 
         try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(which);
-            if (handle != null) ps.setString(2, quote(handle));
+            for (List<String> chunk : chunks((Set<String>) lfns)) {
+                query =
+                        "SELECT l.lfn_id,l.lfn,p.pfn,p.site FROM rc_lfn l LEFT JOIN rc_pfn p ON"
+                                + " l.lfn_id=p.lfn_id WHERE l.lfn IN ("
+                                + placeholders(chunk.size())
+                                + ")"
+                                + (handle == null ? "" : " AND p.site=?");
+                PreparedStatement ps = mConnection.prepareStatement(query);
 
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                Set value = new TreeSet();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
+                // the LFNs are looked up quoted, map them back to the requested ones
+                Map<String, String> quoted = new HashMap<String, String>();
+                int index = 1;
+                for (String lfn : chunk) {
+                    String q = quote(lfn);
+                    quoted.put(q, lfn);
+                    ps.setString(index++, q);
+                    result.put(lfn, withAttributes ? new ArrayList() : new TreeSet());
+                }
+                if (handle != null) ps.setString(index, quote(handle));
+
+                List<String[]> rows = new ArrayList<String[]>();
+                Set<String> ids = new HashSet<String>();
+                ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
-                    value.add(rs.getString("pfn"));
+                    String lfn = quoted.get(rs.getString("lfn"));
+                    if (lfn != null) {
+                        String id = rs.getString("lfn_id");
+                        rows.add(new String[] {lfn, id, rs.getString("pfn"), rs.getString("site")});
+                        ids.add(id);
+                    }
                 }
                 rs.close();
-                result.put(lfn, value);
+                ps.close();
+
+                if (!withAttributes) {
+                    for (String[] row : rows) {
+                        if (row[2] != null) {
+                            ((Set) result.get(row[0])).add(row[2]);
+                        }
+                    }
+                    continue;
+                }
+
+                query = "SELECT m.lfn_id,m.key,m.value FROM rc_meta m WHERE m.lfn_id IN (...)";
+                Map<String, Map<String, String>> attributes = attributes(ids);
+                for (String[] row : rows) {
+                    Map attrs = new TreeMap();
+                    if (row[3] != null && !row[3].equals("NULL")) {
+                        attrs.put(ReplicaCatalogEntry.RESOURCE_HANDLE, row[3]);
+                    }
+                    if (attributes.containsKey(row[1])) {
+                        attrs.putAll(attributes.get(row[1]));
+                    }
+                    ((List) result.get(row[0])).add(new ReplicaCatalogEntry(row[2], attrs));
+                }
             }
         } catch (SQLException e) {
             throw new RuntimeException(
@@ -766,6 +731,105 @@ public class JDBCRC implements ReplicaCatalog {
         return result;
     }
 
+    /**
+     * Slurps the attributes of a collection of mappings in chunks.
+     *
+     * @param ids is the collection of reference ids to slurp from as strings.
+     * @return a map indexed by the reference id. Each value is a map with the attributes. Ids
+     *     without attributes are not in the map.
+     */
+    private Map<String, Map<String, String>> attributes(Collection<String> ids)
+            throws SQLException {
+        Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+        for (List<String> chunk : chunks(ids)) {
+            PreparedStatement ps =
+                    mConnection.prepareStatement(
+                            "SELECT m.lfn_id,m.key,m.value FROM rc_meta m WHERE m.lfn_id IN ("
+                                    + placeholders(chunk.size())
+                                    + ")");
+            int index = 1;
+            for (String id : chunk) {
+                ps.setString(index++, id);
+            }
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String id = rs.getString(1);
+                Map<String, String> attrs = result.get(id);
+                if (attrs == null) {
+                    attrs = new TreeMap<String, String>();
+                    result.put(id, attrs);
+                }
+                attrs.put(rs.getString(2), rs.getString(3));
+            }
+            rs.close();
+            ps.close();
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the reference ids of a collection of LFNs in chunks.
+     *
+     * @param lfns is the collection of logical filenames, as stored in the database.
+     * @return a map from LFN to reference id. LFNs not in the database are not in the map.
+     */
+    private Map<String, String> lfnIDs(Collection<String> lfns) throws SQLException {
+        Map<String, String> result = new HashMap<String, String>();
+        for (List<String> chunk : chunks(lfns)) {
+            PreparedStatement ps =
+                    mConnection.prepareStatement(
+                            "SELECT lfn_id,lfn FROM rc_lfn WHERE lfn IN ("
+                                    + placeholders(chunk.size())
+                                    + ")");
+            int index = 1;
+            for (String lfn : chunk) {
+                ps.setString(index++, lfn);
+            }
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                result.put(rs.getString(2), rs.getString(1));
+            }
+            rs.close();
+            ps.close();
+        }
+        return result;
+    }
+
+    /**
+     * Splits a collection into chunks that fit into an IN clause.
+     *
+     * @param values the collection to split.
+     * @return the list of chunks, each at most {@link #MAX_IN_CLAUSE_SIZE} values long.
+     */
+    private static <T> List<List<T>> chunks(Collection<T> values) {
+        List<List<T>> result = new ArrayList<List<T>>();
+        List<T> chunk = null;
+        for (T value : values) {
+            if (chunk == null || chunk.size() == MAX_IN_CLAUSE_SIZE) {
+                chunk = new ArrayList<T>(Math.min(values.size(), MAX_IN_CLAUSE_SIZE));
+                result.add(chunk);
+            }
+            chunk.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parameter placeholders for an IN clause.
+     *
+     * @param n the number of parameters.
+     * @return comma separated list of n question marks.
+     */
+    private static String placeholders(int n) {
+        StringBuilder result = new StringBuilder(2 * n);
+        for (int i = 0; i < n; i++) {
+            result.append(i == 0 ? "?" : ",?");
+        }
+        return result.toString();
+    }
+
     /**
      * Retrieves multiple entries for a given logical filename, up to the complete catalog.
      * Retrieving full catalogs should be harmful, but may be helpful in online display or portal.
@@ -1170,7 +1234,7 @@ public class JDBCRC implements ReplicaCatalog {
         // sanity checks
         if (x == null || x.size() == 0) return result;
         if (mConnection == null) throw new RuntimeException(c_error);
-        StringBuilder query = new StringBuilder();
+        String query = "[no query]";
         boolean autoCommitWasOn = false;
         int state = 0;
         List<String> lfns = new ArrayList<String>((Set<String>) x.keySet());
@@ -1178,65 +1242,44 @@ public class JDBCRC implements ReplicaCatalog {
         try {
             if ((autoCommitWasOn = mConnection.getAutoCommit())) mConnection.setAutoCommit(false);
             state = 1;
-            Statement st = mConnection.createStatement();
-            Map<String, String> lfnToID = new HashMap<String, String>();
 
             // check whether the lfns already exist
+            query = "SELECT lfn_id,lfn FROM rc_lfn WHERE lfn IN (...)";
+            Map<String, String> lfnToID = lfnIDs(lfns);
+
+            // insert new lfns. the generated keys of a batch are not reported consistently
+            // across drivers, so the ids are looked up afterwards
+            List<String> lfnsToInsert = new ArrayList<String>();
             for (String lfn : lfns) {
-                query.append(
-                        query.length() == 0
-                                ? "SELECT lfn_id, lfn FROM rc_lfn WHERE lfn='" + lfn + "'"
-                                : " OR lfn='" + lfn + "'");
-            }
-            if (query.length() != 0) {
-                ResultSet rs = st.executeQuery(query.toString());
-                while (rs.next()) {
-                    lfnToID.put(rs.getString(2), rs.getString(1));
+                if (!lfnToID.containsKey(lfn)) {
+                    lfnsToInsert.add(lfn);
                 }
-                rs.close();
-
-                // insert new lfns
-                List<String> lfnsInDB = new ArrayList<String>((Set<String>) lfnToID.keySet());
-                List<String> lfnsToInsert = new ArrayList<String>();
-                PreparedStatement ps =
-                        mConnection.prepareStatement(
-                                "INSERT INTO rc_lfn(lfn) VALUES(?)",
-                                Statement.RETURN_GENERATED_KEYS);
-                int countInserts = 0;
-                for (String lfn : lfns) {
-                    if (!lfnsInDB.contains(lfn)) {
-                        ps.setString(1, lfn);
-                        ps.addBatch();
-                        lfnsToInsert.add(lfn);
-                        countInserts++;
-                    }
+            }
+            if (!lfnsToInsert.isEmpty()) {
+                query = mCStatements[12];
+                PreparedStatement ps = mConnection.prepareStatement(query);
+                for (String lfn : lfnsToInsert) {
+                    ps.setString(1, lfn);
+                    ps.addBatch();
                 }
                 ps.executeBatch();
-                int index = 0;
-                rs = ps.getGeneratedKeys();
-                while (rs.next()) {
-                    if (mUsingSQLiteBackend) {
-                        for (String lfn : lfnsToInsert) {
-                            lfnToID.put(
-                                    lfn,
-                                    Integer.toString(
-                                            (Integer.parseInt(rs.getString(1))
-                                                    - (countInserts-- - 1))));
-                        }
-                    } else {
-                        lfnToID.put(lfnsToInsert.get(index), rs.getString(1));
-                        index++;
-                    }
-                }
-                rs.close();
+                ps.close();
+
+                query = "SELECT lfn_id,lfn FROM rc_lfn WHERE lfn IN (...)";
+                lfnToID.putAll(lfnIDs(lfnsToInsert));
             }
             state = 2;
 
-            // check whether the pfns and metadata already exist
-            query.setLength(0);
-            List<String> metadataToDelete = new ArrayList<String>();
-            List<String> pfnsToInsert = new ArrayList<String>();
-            List<String> metadataToInsert = new ArrayList<String>();
+            // existing pfns and metadata are replaced
+            PreparedStatement deletePFN =
+                    mConnection.prepareStatement(
+                            "DELETE FROM rc_pfn WHERE lfn_id=? AND pfn=? AND site=?");
+            PreparedStatement insertPFN =
+                    mConnection.prepareStatement(
+                            "INSERT INTO rc_pfn(lfn_id, pfn, site) VALUES(?, ?, ?)");
+            PreparedStatement deleteMetadata =
+                    mConnection.prepareStatement("DELETE FROM rc_meta WHERE lfn_id=? AND `key`=?");
+            PreparedStatement insertMetadata = mConnection.prepareStatement(mCStatements[4]);
             Map<String, Map<String, String>> metadataMap =
                     new HashMap<String, Map<String, String>>();
 
@@ -1244,30 +1287,21 @@ public class JDBCRC implements ReplicaCatalog {
                 List<ReplicaCatalogEntry> value = (List<ReplicaCatalogEntry>) x.get(lfn);
 
                 if (value != null) {
+                    long id = Long.parseLong(lfnToID.get(lfn));
                     for (ReplicaCatalogEntry tuple : value) {
                         // pfn
                         String rh =
                                 tuple.getResourceHandle() == null
-                                        ? "='NULL'"
-                                        : "='" + quote(tuple.getResourceHandle()) + "'";
-                        query.append(query.length() == 0 ? "DELETE FROM rc_pfn WHERE " : " OR ");
-                        query.append(
-                                "(lfn_id="
-                                        + lfnToID.get(lfn)
-                                        + " AND pfn='"
-                                        + quote(tuple.getPFN())
-                                        + "' AND site"
-                                        + rh
-                                        + ")");
-                        rh = tuple.getResourceHandle() == null ? "NULL" : tuple.getResourceHandle();
-                        pfnsToInsert.add(
-                                "INSERT INTO rc_pfn(lfn_id, pfn, site) VALUES('"
-                                        + lfnToID.get(lfn)
-                                        + "', '"
-                                        + quote(tuple.getPFN())
-                                        + "', '"
-                                        + rh
-                                        + "')");
+                                        ? "NULL"
+                                        : tuple.getResourceHandle();
+                        deletePFN.setLong(1, id);
+                        deletePFN.setString(2, tuple.getPFN());
+                        deletePFN.setString(3, rh);
+                        deletePFN.addBatch();
+                        insertPFN.setLong(1, id);
+                        insertPFN.setString(2, tuple.getPFN());
+                        insertPFN.setString(3, rh);
+                        insertPFN.addBatch();
 
                         // metadata
                         if (!metadataMap.containsKey(lfn)) {
@@ -1278,12 +1312,9 @@ public class JDBCRC implements ReplicaCatalog {
                             if (name.equals(ReplicaCatalogEntry.RESOURCE_HANDLE)) {
                                 continue;
                             }
-                            metadataToDelete.add(
-                                    "DELETE FROM rc_meta WHERE (lfn_id="
-                                            + lfnToID.get(lfn)
-                                            + " AND `key`='"
-                                            + name
-                                            + "')");
+                            deleteMetadata.setLong(1, id);
+                            deleteMetadata.setString(2, name);
+                            deleteMetadata.addBatch();
 
                             String val =
                                     tuple.getAttribute(name) == null
@@ -1296,14 +1327,10 @@ public class JDBCRC implements ReplicaCatalog {
                             if (metadataM.containsKey(name) && metadataM.get(name).equals(val)) {
                                 continue;
                             }
-                            metadataToInsert.add(
-                                    "INSERT INTO rc_meta(lfn_id,`key`,value) VALUES('"
-                                            + lfnToID.get(lfn)
-                                            + "','"
-                                            + name
-                                            + "','"
-                                            + val
-                                            + "')");
+                            insertMetadata.setLong(1, id);
+                            insertMetadata.setString(2, name);
+                            insertMetadata.setString(3, val);
+                            insertMetadata.addBatch();
                             metadataM.put(name, val);
                         }
                         result++;
@@ -1311,29 +1338,26 @@ public class JDBCRC implements ReplicaCatalog {
                 }
             }
             // delete existing pfns
-            if (query.length() != 0) {
-                st.executeUpdate(query.toString());
-            }
+            query = "[PFN DELETE BATCH]";
+            deletePFN.executeBatch();
             state = 3;
             // delete existing metadata
-            query = new StringBuilder("[METADATA DELETE BATCH]");
-            for (String md : metadataToDelete) {
-                st.addBatch(md);
-            }
-            st.executeBatch();
+            query = "[METADATA DELETE BATCH]";
+            deleteMetadata.executeBatch();
             state = 4;
             // insert pfns
-            query = new StringBuilder("[PFN INSERT BATCH]");
-            for (String pfn : pfnsToInsert) {
-                st.addBatch(pfn);
-            }
+            query = "[PFN INSERT BATCH]";
+            insertPFN.executeBatch();
             // insert metadata
-            query.append(" [METADATA INSERT BATCH]");
-            for (String md : metadataToInsert) {
-                st.addBatch(md);
-            }
-            st.executeBatch();
+            query = "[METADATA INSERT BATCH]";
+            insertMetadata.executeBatch();
+
+            deletePFN.close();
+            insertPFN.close();
+            deleteMetadata.close();
+            insertMetadata.close();
             state = 5;
+            mConnection.commit();
 
         } catch (SQLException e) {
             try {
@@ -1346,7 +1370,7 @@ public class JDBCRC implements ReplicaCatalog {
             e.printStackTrace();
             throw new RuntimeException(
                     "Unable to tell database "
-                            + query.toString()
+                            + query
                             + " (state="
                             + state
                             + "): "
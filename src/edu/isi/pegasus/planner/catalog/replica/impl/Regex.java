@@ -97,6 +97,9 @@ public class Regex implements ReplicaCatalog {
 
     protected Map<String, Pattern> m_lfn_pattern = null;
 
+    /** The index over the regex LFNs, narrowing down the patterns to match against an LFN. */
+    private RegexIndex mRegexIndex;
+
     /** A boolean indicating whether the catalog is read only or not. */
     boolean m_readonly;
 
@@ -550,11 +553,12 @@ public class Regex implements ReplicaCatalog {
         Matcher m = null;
         String pool = null;
         ReplicaCatalogEntry rce = null;
-        for (String l : m_lfn_regex.keySet()) {
-            p = m_lfn_pattern.get(l);
+        RegexIndex index = this.regexIndex();
+        for (int i : index.candidates(lfn)) {
+            p = index.getPattern(i);
             m = p.matcher(lfn);
             if (m.matches()) {
-                Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(l);
+                Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(index.getRegex(i));
                 for (ReplicaCatalogEntry entry : entries) {
                     pool = entry.getResourceHandle();
                     if (pool == null && handle == null
@@ -597,11 +601,12 @@ public class Regex implements ReplicaCatalog {
         ReplicaCatalogEntry rce = null;
         Pattern p = null;
         Matcher m = null;
-        for (String l : m_lfn_regex.keySet()) {
-            p = m_lfn_pattern.get(l);
+        RegexIndex index = this.regexIndex();
+        for (int i : index.candidates(lfn)) {
+            p = index.getPattern(i);
             m = p.matcher(lfn);
             if (m.matches()) {
-                Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(l);
+                Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(index.getRegex(i));
                 Collection<ReplicaCatalogEntry> entriesResult =
                         new ArrayList<ReplicaCatalogEntry>();
                 for (ReplicaCatalogEntry entry : entries) {
@@ -624,6 +629,24 @@ public class Regex implements ReplicaCatalog {
         return c;
     }
 
+    /**
+     * Returns the index over the regex LFNs, bringing it up to date with the regex LFNs inserted
+     * since it was last used.
+     *
+     * @return the index
+     */
+    private RegexIndex regexIndex() {
+        if (mRegexIndex == null
+                || !mRegexIndex.isFor(m_lfn_pattern)
+                || mRegexIndex.size() > m_lfn_regex.size()) {
+            mRegexIndex = new RegexIndex(m_lfn_pattern);
+        }
+        if (mRegexIndex.size() < m_lfn_regex.size()) {
+            mRegexIndex.update(m_lfn_regex);
+        }
+        return mRegexIndex;
+    }
+
     private ReplicaCatalogEntry cloneRCE(ReplicaCatalogEntry e) {
 
         return (ReplicaCatalogEntry) e.clone();
@@ -719,6 +742,7 @@ public class Regex implements ReplicaCatalog {
         Map<String, Collection<ReplicaCatalogEntry>> result =
                 new HashMap<String, Collection<ReplicaCatalogEntry>>();
         ReplicaCatalogEntry rce = null;
+        RegexIndex index = this.regexIndex();
         for (Iterator<String> i = lfns.iterator(); i.hasNext(); ) {
             lfn = i.next(); // f.a - String file name
             List<ReplicaCatalogEntry> value = new ArrayList<ReplicaCatalogEntry>();
@@ -734,12 +758,13 @@ public class Regex implements ReplicaCatalog {
                 }
             }
             // Lookup regex LFN's
-            for (String l : m_lfn_regex.keySet()) {
-                p = m_lfn_pattern.get(l); // Get one pattern
+            for (int position : index.candidates(lfn)) {
+                p = index.getPattern(position); // Get one pattern
                 m = p.matcher(lfn); // See if f.a matches pattern
                 if (m.matches()) // Pattern matches?
                 {
-                    Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(l);
+                    Collection<ReplicaCatalogEntry> entries =
+                            m_lfn_regex.get(index.getRegex(position));
                     // Get all RCE entries for the matched pattern.
                     for (ReplicaCatalogEntry entry : entries) {
                         pool = entry.getResourceHandle();
@@ -1175,6 +1200,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn.clear();
         m_lfn_regex.clear();
         m_lfn_pattern.clear();
+        mRegexIndex = null;
         return result;
     }
 
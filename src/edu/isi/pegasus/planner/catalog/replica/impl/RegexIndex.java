@@ -0,0 +1,396 @@
+/*
+ * Copyright 2007-2014 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * An index over the regular expression LFNs in the Regex replica catalog, that narrows down the
+ * patterns that need to be matched against an LFN.
+ *
+ * <p>As the catalog matches the whole LFN against a pattern, a pattern that starts with a literal
+ * prefix can only match LFNs starting with that prefix, and likewise for a literal suffix. Each
+ * pattern is placed in a bucket keyed by the longer of its literal prefix and suffix. Patterns
+ * without either, or with constructs the literal extraction does not understand, are always
+ * candidates. The candidates for an LFN are returned in catalog order, so that the first match
+ * semantics of the catalog are retained.
+ *
+ * <p>The index only supports appending patterns, which mirrors the catalog where regex LFNs are
+ * only ever added, or cleared all at once.
+ */
+class RegexIndex {
+
+    /** The escape sequences that match something other than a literal character. */
+    private static final String NON_LITERAL_ESCAPES = "dDsSwWbBhHvVRXAGZztnrfae";
+
+    /** The pattern map this index was built for. */
+    private final Map<String, Pattern> mPatternMap;
+
+    /** The regex LFNs indexed by their position in the catalog. */
+    private final List<String> mRegexes;
+
+    /** The compiled patterns indexed by their position in the catalog. */
+    private final List<Pattern> mPatterns;
+
+    /** The positions of the patterns that are always candidates. */
+    private int[] mUnindexed;
+
+    /** The number of patterns that are always candidates. */
+    private int mUnindexedCount;
+
+    /** Maps a literal prefix to the positions of the patterns starting with it. */
+    private final Map<String, int[]> mPrefixes;
+
+    /** Maps a literal suffix to the positions of the patterns ending with it. */
+    private final Map<String, int[]> mSuffixes;
+
+    /** The distinct lengths of the prefixes in ascending order. */
+    private int[] mPrefixLengths;
+
+    /** The distinct lengths of the suffixes in ascending order. */
+    private int[] mSuffixLengths;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param patterns the map of regex LFNs to compiled patterns the index is built for.
+     */
+    RegexIndex(Map<String, Pattern> patterns) {
+        mPatternMap = patterns;
+        mRegexes = new ArrayList<String>();
+        mPatterns = new ArrayList<Pattern>();
+        mUnindexed = new int[8];
+        mUnindexedCount = 0;
+        mPrefixes = new HashMap<String, int[]>();
+        mSuffixes = new HashMap<String, int[]>();
+        mPrefixLengths = new int[0];
+        mSuffixLengths = new int[0];
+    }
+
+    /**
+     * Returns whether the index was built for a pattern map.
+     *
+     * @param patterns the map of regex LFNs to compiled patterns.
+     * @return boolean
+     */
+    boolean isFor(Map<String, Pattern> patterns) {
+        return mPatternMap == patterns;
+    }
+
+    /**
+     * Indexes the regex LFNs that have been added to the catalog since the last update. Relies on
+     * the catalog maps preserving insertion order.
+     *
+     * @param regexes the regex LFNs in the catalog.
+     */
+    void update(Map<String, ?> regexes) {
+        int i = 0;
+        for (Iterator<String> it = regexes.keySet().iterator(); it.hasNext(); i++) {
+            String regex = it.next();
+            if (i >= mRegexes.size()) {
+                this.add(regex, mPatternMap.get(regex));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of patterns in the index.
+     *
+     * @return the number of patterns
+     */
+    int size() {
+        return mRegexes.size();
+    }
+
+    /**
+     * Returns the regex LFN at a position.
+     *
+     * @param position the position of the pattern in the catalog
+     * @return the regex LFN
+     */
+    String getRegex(int position) {
+        return mRegexes.get(position);
+    }
+
+    /**
+     * Returns the compiled pattern at a position.
+     *
+     * @param position the position of the pattern in the catalog
+     * @return the pattern
+     */
+    Pattern getPattern(int position) {
+        return mPatterns.get(position);
+    }
+
+    /**
+     * Returns the positions of the patterns that can match an LFN, in ascending order.
+     *
+     * @param lfn the LFN
+     * @return the positions of the candidate patterns
+     */
+    int[] candidates(String lfn) {
+        int[] result = new int[mUnindexedCount + 8];
+        System.arraycopy(mUnindexed, 0, result, 0, mUnindexedCount);
+        int count = mUnindexedCount;
+        int sources = (mUnindexedCount > 0) ? 1 : 0;
+        int length = lfn.length();
+
+        for (int len : mPrefixLengths) {
+            if (len > length) {
+                break;
+            }
+            int[] bucket = mPrefixes.get(lfn.substring(0, len));
+            if (bucket != null) {
+                result = append(result, count, bucket);
+                count += bucket[0];
+                sources++;
+            }
+        }
+        for (int len : mSuffixLengths) {
+            if (len > length) {
+                break;
+            }
+            int[] bucket = mSuffixes.get(lfn.substring(length - len));
+            if (bucket != null) {
+                result = append(result, count, bucket);
+                count += bucket[0];
+                sources++;
+            }
+        }
+
+        if (sources > 1) {
+            // each bucket is sorted, but not across buckets
+            Arrays.sort(result, 0, count);
+        }
+        return (count == result.length) ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Adds a pattern at the next position.
+     *
+     * @param regex the regex LFN
+     * @param pattern the compiled pattern
+     */
+    private void add(String regex, Pattern pattern) {
+        int position = mRegexes.size();
+        mRegexes.add(regex);
+        mPatterns.add(pattern);
+
+        String[] literals = literals(regex);
+        if (literals == null || (literals[0].isEmpty() && literals[1].isEmpty())) {
+            if (mUnindexedCount == mUnindexed.length) {
+                mUnindexed = Arrays.copyOf(mUnindexed, mUnindexedCount * 2);
+            }
+            mUnindexed[mUnindexedCount++] = position;
+        } else if (literals[0].length() >= literals[1].length()) {
+            mPrefixLengths = put(mPrefixes, mPrefixLengths, literals[0], position);
+        } else {
+            mSuffixLengths = put(mSuffixes, mSuffixLengths, literals[1], position);
+        }
+    }
+
+    /**
+     * Adds a position to a bucket. The first element of a bucket array holds the number of
+     * positions in it.
+     *
+     * @param buckets the buckets
+     * @param lengths the distinct lengths of the bucket keys
+     * @param key the key of the bucket
+     * @param position the position to add
+     * @return the updated distinct lengths
+     */
+    private static int[] put(Map<String, int[]> buckets, int[] lengths, String key, int position) {
+        int[] bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new int[2];
+        } else if (bucket[0] + 1 == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucket.length * 2);
+        }
+        bucket[++bucket[0]] = position;
+        buckets.put(key, bucket);
+
+        if (Arrays.binarySearch(lengths, key.length()) < 0) {
+            TreeSet<Integer> s = new TreeSet<Integer>();
+            for (int len : lengths) {
+                s.add(len);
+            }
+            s.add(key.length());
+            lengths = new int[s.size()];
+            int i = 0;
+            for (int len : s) {
+                lengths[i++] = len;
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * Appends the positions in a bucket to the result array, growing it if required.
+     *
+     * @param result the result array
+     * @param count the number of positions in the result
+     * @param bucket the bucket to append
+     * @return the result array
+     */
+    private static int[] append(int[] result, int count, int[] bucket) {
+        int n = bucket[0];
+        if (count + n > result.length) {
+            result = Arrays.copyOf(result, Math.max(result.length * 2, count + n));
+        }
+        System.arraycopy(bucket, 1, result, count, n);
+        return result;
+    }
+
+    /**
+     * Determines the literal prefix and suffix of a regular expression, that every string matched
+     * in whole by the expression starts and ends with. The extraction is conservative, and
+     * returns null for expressions containing alternations, special groups, quoting or escapes it
+     * does not understand.
+     *
+     * @param regex the regular expression
+     * @return array of prefix and suffix, or null if they cannot be determined.
+     */
+    static String[] literals(String regex) {
+        // the literal character for each atom, or -1 for any other atom
+        int[] atoms = new int[regex.length()];
+        int count = 0;
+        int n = regex.length();
+        int i = 0;
+        while (i < n) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= n) {
+                        return null;
+                    }
+                    char d = regex.charAt(i + 1);
+                    if (Character.isLetterOrDigit(d)) {
+                        if (NON_LITERAL_ESCAPES.indexOf(d) < 0) {
+                            // quoting, back references, hex, unicode, properties
+                            return null;
+                        }
+                        atoms[count++] = -1;
+                    } else {
+                        atoms[count++] = d;
+                    }
+                    i += 2;
+                    break;
+
+                case '[':
+                    int end = endOfCharacterClass(regex, i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    atoms[count++] = -1;
+                    i = end + 1;
+                    break;
+
+                case '*':
+                case '+':
+                case '?':
+                    // the quantified atom is no longer a literal
+                    if (count == 0) {
+                        return null;
+                    }
+                    atoms[count - 1] = -1;
+                    i++;
+                    break;
+
+                case '{':
+                    int close = regex.indexOf('}', i);
+                    if (count == 0 || close < 0) {
+                        return null;
+                    }
+                    atoms[count - 1] = -1;
+                    i = close + 1;
+                    break;
+
+                case '|':
+                    return null;
+
+                case '(':
+                    if (i + 1 < n && regex.charAt(i + 1) == '?') {
+                        // flags, lookarounds and named groups
+                        return null;
+                    }
+                    atoms[count++] = -1;
+                    i++;
+                    break;
+
+                case ')':
+                case '.':
+                case '^':
+                case '$':
+                    atoms[count++] = -1;
+                    i++;
+                    break;
+
+                default:
+                    atoms[count++] = c;
+                    i++;
+            }
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        for (int j = 0; j < count && atoms[j] >= 0; j++) {
+            prefix.append((char) atoms[j]);
+        }
+        StringBuilder suffix = new StringBuilder();
+        for (int j = count - 1; j >= 0 && atoms[j] >= 0; j--) {
+            suffix.append((char) atoms[j]);
+        }
+        return new String[] {prefix.toString(), suffix.reverse().toString()};
+    }
+
+    /**
+     * Returns the index of the bracket closing a character class.
+     *
+     * @param regex the regular expression
+     * @param start the index of the opening bracket
+     * @return the index of the closing bracket, or -1 if not found
+     */
+    private static int endOfCharacterClass(String regex, int start) {
+        int n = regex.length();
+        int i = start + 1;
+        if (i < n && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < n && regex.charAt(i) == ']') {
+            // a leading bracket is a literal
+            i++;
+        }
+        int depth = 1;
+        for (; i < n; i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
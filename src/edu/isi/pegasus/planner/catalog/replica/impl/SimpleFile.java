@@ -25,6 +25,7 @@ import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
@@ -77,6 +78,10 @@ import java.util.regex.Pattern;
  * <p>The class is strict when producing (storing) results. The LFN and PFN are only quoted and
  * escaped, if necessary. The attribute values are always quoted and escaped.
  *
+ * <p>If the catalog is journaled, the changes are appended to a journal alongside the file on
+ * close, under a file lock, instead of the whole file being written out. This allows concurrent
+ * instances to update the catalog. See {@link SimpleFileJournal}.
+ *
  * @author Jens-S. Vöckler
  * @version $Revision$
  */
@@ -103,6 +108,40 @@ public class SimpleFile implements ReplicaCatalog {
     /** whether to do any variable expansion or not */
     private boolean mDoVariableExpansion;
 
+    /** The name of the key that turns on journaling of the changes to the catalog. */
+    public static final String JOURNAL_KEY = "file.journal";
+
+    /**
+     * The name of the key that specifies the number of records in the journal, beyond which the
+     * journal is compacted into the catalog file.
+     */
+    public static final String JOURNAL_COMPACTION_THRESHOLD_KEY = "file.journal.compact.threshold";
+
+    /** The default number of records in the journal, beyond which it is compacted. */
+    public static final int DEFAULT_JOURNAL_COMPACTION_THRESHOLD = 100000;
+
+    /** Whether the changes to the catalog are journaled. */
+    private boolean mJournaled;
+
+    /** The number of records in the journal, beyond which it is compacted. */
+    private int mCompactionThreshold;
+
+    /** The journal of the changes to the catalog, if journaled. */
+    private SimpleFileJournal mJournal;
+
+    /** The journal records for the changes made since connecting, appended on close. */
+    private List<String> mJournalRecords;
+
+    /**
+     * Whether the on-disk representation has been read into memory. A journaled catalog is only
+     * read on the first operation that needs the existing entries, so that connections that only
+     * insert entries, such as the ones from registration jobs, do not read the whole catalog.
+     */
+    private boolean mLoaded;
+
+    /** The escape instance used to quote the journal records. */
+    private static final Escape JOURNAL_ESCAPE = new Escape("\"\\", '\\');
+
     /**
      * Default empty constructor creates an object that is not yet connected to any database. You
      * must use support methods to connect before this instance becomes usable.
@@ -115,6 +154,8 @@ public class SimpleFile implements ReplicaCatalog {
         m_filename = null;
         m_readonly = false;
         mVariableExpander = new VariableExpander();
+        mJournaled = false;
+        mCompactionThreshold = DEFAULT_JOURNAL_COMPACTION_THRESHOLD;
     }
 
     /**
@@ -224,6 +265,18 @@ public class SimpleFile implements ReplicaCatalog {
      * @return true if a valid element was generated
      */
     public boolean parse(String line, int lineno) {
+        return parse(line, lineno, false);
+    }
+
+    /**
+     * Parses a line in the format of the file replica catalog, and inserts or removes the entry.
+     *
+     * @param line is the line to parse
+     * @param lineno is the line number of this line
+     * @param remove whether to remove the entry instead of inserting it
+     * @return true if a valid element was generated
+     */
+    private boolean parse(String line, int lineno, boolean remove) {
         char ch = ' ';
         String lfn = null;
         String pfn = null;
@@ -310,12 +363,33 @@ public class SimpleFile implements ReplicaCatalog {
             // valid entry
             if (state == 16) {
                 ReplicaCatalogEntry rce = new ReplicaCatalogEntry(pfn, attr);
-                insert(lfn, rce);
+                if (remove) {
+                    removeEntry(lfn, rce);
+                } else {
+                    insert(lfn, rce);
+                }
             }
             return true;
         }
     }
 
+    /**
+     * Removes the entries for an LFN that match an entry replayed from the journal. The LFN is
+     * removed once it has no entries left, as it would be on reading the catalog file.
+     *
+     * @param lfn is the logical filename
+     * @param rce is the entry to remove
+     */
+    private void removeEntry(String lfn, ReplicaCatalogEntry rce) {
+        Collection c = (Collection) m_lfn.get(lfn);
+        if (c != null) {
+            c.removeIf(rce::equals);
+            if (c.isEmpty()) {
+                m_lfn.remove(lfn);
+            }
+        }
+    }
+
     /**
      * Reads the on-disk map file into memory.
      *
@@ -327,30 +401,19 @@ public class SimpleFile implements ReplicaCatalog {
         if (filename == null) return false;
         m_filename = filename;
         m_lfn = new LinkedHashMap();
+        mJournal = null;
+        mJournalRecords = null;
 
         try {
             File f = new File(filename);
-            if (f.exists()) {
-                LineNumberReader lnr = new LineNumberReader(new FileReader(f));
-                String line;
-                while ((line = lnr.readLine()) != null) {
-                    if (line.length() == 0 || line.charAt(0) == '#') {
-                        continue;
-                    }
-                    // PM-831 expand the line before parsing
-                    try {
-                        line = this.mDoVariableExpansion ? mVariableExpander.expand(line) : line;
-                    } catch (RuntimeException e) {
-                        // rethrow again
-                        throw new RuntimeException(
-                                "Error while expanding contents of file based rc at line number "
-                                        + lnr.getLineNumber(),
-                                e);
-                    }
-                    parse(line, lnr.getLineNumber());
-                }
-
-                lnr.close();
+            if (mJournaled) {
+                // read lazily, on the first operation that needs the existing entries
+                mJournal = new SimpleFileJournal(f);
+                mJournalRecords = new ArrayList<String>();
+                mLoaded = false;
+            } else {
+                load(f);
+                mLoaded = true;
             }
         } catch (IOException ioe) {
             m_lfn = null;
@@ -361,6 +424,102 @@ public class SimpleFile implements ReplicaCatalog {
         return true;
     }
 
+    /**
+     * Reads the on-disk representation of a journaled catalog into memory, if not already read.
+     * The entries inserted since connecting are applied on top.
+     */
+    private void ensureLoaded() {
+        if (mLoaded || m_lfn == null) {
+            return;
+        }
+        Map<String, Collection<ReplicaCatalogEntry>> inserted = m_lfn;
+        List<String> records = mJournalRecords;
+        m_lfn = new LinkedHashMap();
+        // the entries read are not to be journaled again
+        mJournalRecords = null;
+        try (Closeable lock = mJournal.lock()) {
+            load(new File(m_filename));
+        } catch (IOException ioe) {
+            throw new RuntimeException("Unable to read file based rc " + m_filename, ioe);
+        }
+        for (Map.Entry<String, Collection<ReplicaCatalogEntry>> entry : inserted.entrySet()) {
+            for (ReplicaCatalogEntry rce : entry.getValue()) {
+                insert(entry.getKey(), rce);
+            }
+        }
+        mJournalRecords = records;
+        mLoaded = true;
+    }
+
+    /**
+     * Reads the on-disk file into memory, and replays the journal if the catalog is journaled.
+     *
+     * @param f the file to read
+     * @throws IOException in case of error while reading
+     */
+    private void load(File f) throws IOException {
+        if (f.exists()) {
+            LineNumberReader lnr = new LineNumberReader(new FileReader(f));
+            String line;
+            while ((line = lnr.readLine()) != null) {
+                if (line.length() == 0 || line.charAt(0) == '#') {
+                    continue;
+                }
+                // PM-831 expand the line before parsing
+                try {
+                    // lines without any variables are not expanded
+                    line =
+                            this.mDoVariableExpansion && line.indexOf('$') != -1
+                                    ? mVariableExpander.expand(line)
+                                    : line;
+                } catch (RuntimeException e) {
+                    // rethrow again
+                    throw new RuntimeException(
+                            "Error while expanding contents of file based rc at line number "
+                                    + lnr.getLineNumber(),
+                            e);
+                }
+                parse(line, lnr.getLineNumber());
+            }
+
+            lnr.close();
+        }
+
+        if (mJournal != null) {
+            // the records are written out expanded
+            int lineno = 0;
+            for (String record : mJournal.read()) {
+                lineno++;
+                switch (record.charAt(0)) {
+                    case SimpleFileJournal.INSERT:
+                        parse(record.substring(2), lineno);
+                        break;
+
+                    case SimpleFileJournal.REMOVE:
+                        m_lfn.remove(unquote(JOURNAL_ESCAPE, record.substring(2)));
+                        break;
+
+                    case SimpleFileJournal.DELETE:
+                        parse(record.substring(2), lineno, true);
+                        break;
+
+                    case SimpleFileJournal.CLEAR:
+                        m_lfn.clear();
+                        break;
+
+                    default:
+                        throw new IOException(
+                                "Invalid record at line "
+                                        + lineno
+                                        + " of journal "
+                                        + mJournal.getJournalFile()
+                                        + ": "
+                                        + record);
+                }
+            }
+        }
+    }
+
     /**
      * Establishes a connection to the database from the properties. You will need to specify a
      * "file" property to point to the location of the on-disk instance. If the property "quote" is
@@ -382,6 +541,12 @@ public class SimpleFile implements ReplicaCatalog {
         mDoVariableExpansion =
                 Boolean.parse(props.getProperty(ReplicaCatalog.VARIABLE_EXPANSION_KEY), true);
 
+        mJournaled = Boolean.parse(props.getProperty(SimpleFile.JOURNAL_KEY), false);
+        String threshold = props.getProperty(SimpleFile.JOURNAL_COMPACTION_THRESHOLD_KEY);
+        if (threshold != null) {
+            mCompactionThreshold = Integer.parseInt(threshold);
+        }
+
         if (props.containsKey("file")) return connect(props.getProperty("file"));
 
         return false;
@@ -422,6 +587,44 @@ public class SimpleFile implements ReplicaCatalog {
         return result;
     }
 
+    /**
+     * Reverses the quoting of a string done by {@link #quote(Escape, String)}.
+     *
+     * @param e is the Escape instance used to unescape strings.
+     * @param s is the string that may be quoted
+     * @return the unquoted string
+     */
+    private String unquote(Escape e, String s) {
+        return (s.length() >= 2 && s.charAt(0) == '"' && s.charAt(s.length() - 1) == '"')
+                ? e.unescape(s.substring(1, s.length() - 1))
+                : s;
+    }
+
+    /**
+     * Formats an entry as a line of the on-disk representation, without the line separator.
+     *
+     * @param e is the Escape instance used to escape strings.
+     * @param lfn is the logical filename
+     * @param rce is the replica catalog entry
+     * @return the formatted entry
+     */
+    private String format(Escape e, String lfn, ReplicaCatalogEntry rce) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(quote(e, lfn));
+        sb.append(' ');
+        sb.append(quote(e, rce.getPFN()));
+        for (Iterator k = rce.getAttributeIterator(); k.hasNext(); ) {
+            String key = (String) k.next();
+            String value = (String) rce.getAttribute(key);
+            sb.append(' ');
+            sb.append(key);
+            sb.append("=\"");
+            sb.append(e.escape(value));
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
     /**
      * This operation will dump the in-memory representation back onto disk. The store operation is
      * strict in what it produces. The LFN and PFN records are only quoted, if they require quotes,
@@ -429,9 +632,6 @@ public class SimpleFile implements ReplicaCatalog {
      * quote-escaped.
      */
     public void close() {
-        String newline = System.getProperty("line.separator", "\r\n");
-        Escape e = new Escape("\"\\", '\\');
-
         // sanity check
         if (m_lfn == null) return;
 
@@ -444,44 +644,11 @@ public class SimpleFile implements ReplicaCatalog {
         }
 
         try {
-
-            // open
-            Writer out = new BufferedWriter(new FileWriter(m_filename));
-
-            // write header
-            out.write(
-                    "# file-based replica catalog: "
-                            + Currently.iso8601(false, true, true, new Date()));
-            out.write(newline);
-
-            // write data
-            for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
-                String lfn = (String) i.next();
-                Collection c = (Collection) m_lfn.get(lfn);
-                if (c != null) {
-                    for (Iterator j = c.iterator(); j.hasNext(); ) {
-                        ReplicaCatalogEntry rce = (ReplicaCatalogEntry) j.next();
-                        out.write(quote(e, lfn));
-                        out.write(' ');
-                        out.write(quote(e, rce.getPFN()));
-                        for (Iterator k = rce.getAttributeIterator(); k.hasNext(); ) {
-                            String key = (String) k.next();
-                            String value = (String) rce.getAttribute(key);
-                            out.write(' ');
-                            out.write(key);
-                            out.write("=\"");
-                            out.write(e.escape(value));
-                            out.write('"');
-                        }
-
-                        // finalize record/line
-                        out.write(newline);
-                    }
-                }
+            if (mJournal != null) {
+                closeJournal();
+            } else {
+                writeOut(new File(m_filename));
             }
-
-            // close
-            out.close();
         } catch (IOException ioe) {
             // FIXME: blurt message somewhere sane
             System.err.println(ioe.getMessage());
@@ -489,6 +656,120 @@ public class SimpleFile implements ReplicaCatalog {
             m_lfn.clear();
             m_lfn = null;
             m_filename = null;
+            mJournal = null;
+            mJournalRecords = null;
+        }
+    }
+
+    /**
+     * Writes out the in-memory representation to a file.
+     *
+     * @param f the file to write to
+     * @throws IOException in case of error while writing
+     */
+    private void writeOut(File f) throws IOException {
+        String newline = System.getProperty("line.separator", "\r\n");
+        Escape e = new Escape("\"\\", '\\');
+
+        // open
+        Writer out = new BufferedWriter(new FileWriter(f));
+
+        // write header
+        out.write("# file-based replica catalog: " + Currently.iso8601(false, true, true, new Date()));
+        out.write(newline);
+
+        // write data
+        for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
+            String lfn = (String) i.next();
+            Collection c = (Collection) m_lfn.get(lfn);
+            if (c != null) {
+                for (Iterator j = c.iterator(); j.hasNext(); ) {
+                    ReplicaCatalogEntry rce = (ReplicaCatalogEntry) j.next();
+                    out.write(format(e, lfn, rce));
+
+                    // finalize record/line
+                    out.write(newline);
+                }
+            }
+        }
+
+        // close
+        out.close();
+    }
+
+    /**
+     * Appends the changes made since connecting to the journal, instead of writing out the whole
+     * catalog. The journal is compacted into the catalog file, if it has grown beyond the
+     * threshold. As other connections may have appended to the journal since, the catalog is read
+     * again before compaction.
+     *
+     * @throws IOException in case of error while writing
+     */
+    private void closeJournal() throws IOException {
+        try (Closeable lock = mJournal.lock()) {
+            mJournal.append(mJournalRecords);
+            mJournalRecords = null;
+            // the journal is counted, as other connections may have appended to it
+            if (mJournal.count() <= mCompactionThreshold) {
+                return;
+            }
+
+            File f = new File(m_filename);
+            m_lfn.clear();
+            load(f);
+            File snapshot = new File(f.getPath() + "." + System.nanoTime() + ".tmp");
+            try {
+                writeOut(snapshot);
+                mJournal.compact(snapshot);
+            } finally {
+                snapshot.delete();
+            }
+        }
+    }
+
+    /**
+     * Records an inserted entry in the journal, if the catalog is journaled.
+     *
+     * @param lfn is the logical filename
+     * @param rce is the inserted entry
+     */
+    private void journalInsert(String lfn, ReplicaCatalogEntry rce) {
+        if (mJournalRecords != null) {
+            mJournalRecords.add(
+                    SimpleFileJournal.INSERT + " " + format(JOURNAL_ESCAPE, lfn, rce));
+        }
+    }
+
+    /**
+     * Records the removal of all the entries for an LFN in the journal, if the catalog is
+     * journaled.
+     *
+     * @param lfn is the logical filename
+     */
+    private void journalRemove(String lfn) {
+        if (mJournalRecords != null) {
+            mJournalRecords.add(SimpleFileJournal.REMOVE + " " + quote(JOURNAL_ESCAPE, lfn));
+        }
+    }
+
+    /**
+     * Records the entries removed for an LFN in the journal, if the catalog is journaled. Only the
+     * removed entries are recorded, so that the entries inserted for the LFN by other connections
+     * since are retained on replay.
+     *
+     * @param lfn is the logical filename
+     * @param c the entries for the LFN before the removal
+     * @param l the entries for the LFN that were retained
+     */
+    private void journalDelete(String lfn, Collection c, Collection l) {
+        if (mJournalRecords != null) {
+            for (Iterator i = c.iterator(); i.hasNext(); ) {
+                ReplicaCatalogEntry rce = (ReplicaCatalogEntry) i.next();
+                if (!l.contains(rce)) {
+                    mJournalRecords.add(
+                            SimpleFileJournal.DELETE + " " + format(JOURNAL_ESCAPE, lfn, rce));
+                }
+            }
         }
     }
 
@@ -511,6 +792,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the (first) matching physical filename, or <code>null</code> if no match was found.
      */
     public String lookup(String lfn, String handle) {
+        ensureLoaded();
         Collection c = (Collection) m_lfn.get(lfn);
         if (c == null) return null;
 
@@ -532,6 +814,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Collection lookup(String lfn) {
+        ensureLoaded();
         Collection c = (Collection) m_lfn.get(lfn);
         if (c == null) return new ArrayList();
         else return new ArrayList(c);
@@ -545,6 +828,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return a set of PFN strings
      */
     public Set lookupNoAttributes(String lfn) {
+        ensureLoaded();
         Set result = new TreeSet();
         Collection c = (Collection) m_lfn.get(lfn);
 
@@ -569,6 +853,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @see edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry
      */
     public Map lookup(Set lfns) {
+        ensureLoaded();
         Map result = new HashMap();
         if (lfns == null || lfns.size() == 0) return result;
 
@@ -592,6 +877,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return a map indexed by the LFN. Each value is a set of PFN strings.
      */
     public Map lookupNoAttributes(Set lfns) {
+        ensureLoaded();
         Map result = new HashMap();
         if (lfns == null || lfns.size() == 0) return result;
 
@@ -624,6 +910,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup(Set lfns, String handle) {
+        ensureLoaded();
         Map result = new HashMap();
         if (lfns == null || lfns.size() == 0) return result;
 
@@ -661,6 +948,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return a map indexed by the LFN. Each value is a set of physical filenames.
      */
     public Map lookupNoAttributes(Set lfns, String handle) {
+        ensureLoaded();
         Map result = new HashMap();
         if (lfns == null || lfns.size() == 0) return result;
 
@@ -699,6 +987,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup(Map constraints) {
+        ensureLoaded();
         if (constraints == null || constraints.size() == 0) {
             // return everything
             return Collections.unmodifiableMap(m_lfn);
@@ -726,6 +1015,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return A set of all logical filenames known to the catalog.
      */
     public Set list() {
+        ensureLoaded();
         return new TreeSet(m_lfn.keySet());
     }
 
@@ -738,6 +1028,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return A set of logical filenames that match. The set may be empty
      */
     public Set list(String constraint) {
+        ensureLoaded();
         Set result = new TreeSet();
         Pattern p = Pattern.compile(constraint);
 
@@ -789,6 +1080,7 @@ public class SimpleFile implements ReplicaCatalog {
         }
 
         c.add(tuple);
+        journalInsert(lfn, tuple);
 
         return 1;
     }
@@ -854,6 +1146,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int delete(String lfn, String pfn) {
+        ensureLoaded();
         int result = 0;
         if (lfn == null || pfn == null) return result;
 
@@ -870,6 +1163,7 @@ public class SimpleFile implements ReplicaCatalog {
         if (l.size() != c.size()) {
             result = c.size() - l.size();
             m_lfn.put(lfn, l);
+            journalDelete(lfn, c, l);
         }
 
         // done
@@ -941,6 +1235,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries, either 0 or 1.
      */
     public int delete(String lfn, ReplicaCatalogEntry tuple) {
+        ensureLoaded();
         int result = 0;
         if (lfn == null || tuple == null) return result;
 
@@ -957,6 +1252,7 @@ public class SimpleFile implements ReplicaCatalog {
         if (l.size() != c.size()) {
             result = c.size() - l.size();
             m_lfn.put(lfn, l);
+            journalDelete(lfn, c, l);
         }
 
         // done
@@ -987,6 +1283,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int delete(String lfn, String name, Object value) {
+        ensureLoaded();
         int result = 0;
         if (lfn == null || name == null) return result;
 
@@ -1003,6 +1300,7 @@ public class SimpleFile implements ReplicaCatalog {
         if (l.size() != c.size()) {
             result = c.size() - l.size();
             m_lfn.put(lfn, l);
+            journalDelete(lfn, c, l);
         }
 
         // done
@@ -1032,9 +1330,11 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int remove(String lfn) {
+        ensureLoaded();
         Collection c = (Collection) m_lfn.remove(lfn);
         if (c == null) return 0;
-        else return c.size();
+        journalRemove(lfn);
+        return c.size();
     }
 
     /**
@@ -1068,6 +1368,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int removeByAttribute(String name, Object value) {
+        ensureLoaded();
         int result = 0;
 
         for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
@@ -1082,6 +1383,7 @@ public class SimpleFile implements ReplicaCatalog {
                 if (l.size() != c.size()) {
                     result += (c.size() - l.size());
                     m_lfn.put(lfn, l);
+                    journalDelete(lfn, c, l);
                 }
             }
         }
@@ -1109,8 +1411,12 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int clear() {
+        ensureLoaded();
         int result = m_lfn.size();
         m_lfn.clear();
+        if (mJournalRecords != null) {
+            mJournalRecords.add(String.valueOf(SimpleFileJournal.CLEAR));
+        }
         return result;
     }
 
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The journal of the changes made to a file based replica catalog. Instead of rewriting the whole
+ * catalog file on close, the changes made by a connection are appended to a journal file alongside
+ * the catalog, that is replayed on top of the catalog file while connecting. Once the journal grows
+ * beyond a threshold, it is compacted into the catalog file, that then serves as the snapshot.
+ *
+ * <p>The journal contains a record per line. A record starting with {@link #INSERT} is followed by
+ * an entry in the format of the catalog file. A record starting with {@link #REMOVE} is followed by
+ * an LFN, all whose entries are removed. A record starting with {@link #DELETE} is followed by an
+ * entry in the format of the catalog file, that is removed. A {@link #CLEAR} record removes all the
+ * entries.
+ *
+ * <p>The catalog and journal files are accessed under an exclusive lock on a lock file alongside
+ * the catalog, so that multiple registration jobs can update the catalog concurrently.
+ */
+public class SimpleFileJournal {
+
+    /** The suffix of the journal file. */
+    public static final String JOURNAL_FILE_SUFFIX = ".journal";
+
+    /** The suffix of the lock file. */
+    public static final String LOCK_FILE_SUFFIX = ".lock";
+
+    /** The prefix of a record that inserts an entry. */
+    public static final char INSERT = '+';
+
+    /** The prefix of a record that removes all entries for an LFN. */
+    public static final char REMOVE = '-';
+
+    /** The prefix of a record that removes a single entry for an LFN. */
+    public static final char DELETE = '~';
+
+    /** The record that removes all entries. */
+    public static final char CLEAR = '*';
+
+    /**
+     * The locks for the catalogs journaled by this process, indexed by the path to the catalog.
+     * File locks are held on behalf of the whole process, and hence cannot serialize the access
+     * from multiple threads.
+     */
+    private static final Map<String, ReentrantLock> LOCKS =
+            new ConcurrentHashMap<String, ReentrantLock>();
+
+    /** The catalog file, that is the snapshot the journal applies to. */
+    private final File mCatalog;
+
+    /** The journal file. */
+    private final File mJournal;
+
+    /** The lock file. */
+    private final File mLockFile;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param catalog the catalog file.
+     */
+    public SimpleFileJournal(File catalog) {
+        mCatalog = catalog;
+        mJournal = new File(catalog.getPath() + JOURNAL_FILE_SUFFIX);
+        mLockFile = new File(catalog.getPath() + LOCK_FILE_SUFFIX);
+    }
+
+    /**
+     * Acquires an exclusive lock on the catalog, that is released on closing the returned handle.
+     *
+     * @return the handle to release the lock with
+     * @throws IOException if the lock could not be acquired
+     */
+    public Closeable lock() throws IOException {
+        final ReentrantLock lock =
+                LOCKS.computeIfAbsent(mCatalog.getAbsolutePath(), k -> new ReentrantLock());
+        lock.lock();
+        final RandomAccessFile channel;
+        final FileLock fileLock;
+        try {
+            channel = new RandomAccessFile(mLockFile, "rw");
+            try {
+                fileLock = channel.getChannel().lock();
+            } catch (IOException ioe) {
+                channel.close();
+                throw ioe;
+            }
+        } catch (IOException ioe) {
+            lock.unlock();
+            throw ioe;
+        }
+
+        return new Closeable() {
+            public void close() throws IOException {
+                try {
+                    fileLock.release();
+                    channel.close();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the records in the journal. Should be called with the lock held.
+     *
+     * @return the records
+     * @throws IOException in case of error while reading the journal
+     */
+    public List<String> read() throws IOException {
+        List<String> records = new ArrayList<String>();
+        if (mJournal.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(mJournal))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > 0) {
+                        records.add(line);
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends records to the journal. Should be called with the lock held.
+     *
+     * @param records the records to append
+     * @throws IOException in case of error while writing to the journal
+     */
+    public void append(List<String> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        String newline = System.getProperty("line.separator", "\r\n");
+        try (Writer out = new BufferedWriter(new FileWriter(mJournal, true))) {
+            for (String record : records) {
+                out.write(record);
+                out.write(newline);
+            }
+        }
+    }
+
+    /**
+     * Counts the records in the journal, including the ones appended by other instances, without
+     * parsing them. Should be called with the lock held.
+     *
+     * @return the number of records
+     * @throws IOException in case of error while reading the journal
+     */
+    public int count() throws IOException {
+        int records = 0;
+        if (mJournal.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(mJournal))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > 0) {
+                        records++;
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Replaces the catalog file with a new snapshot, and truncates the journal. Should be called
+     * with the lock held, with the snapshot containing the catalog with the journal applied.
+     *
+     * @param snapshot the new snapshot, that is renamed to the catalog file.
+     * @throws IOException in case of error while replacing the catalog file
+     */
+    public void compact(File snapshot) throws IOException {
+        Files.move(
+                snapshot.toPath(),
+                mCatalog.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        // the replay of the journal is idempotent, should we fail before truncating it
+        new FileWriter(mJournal).close();
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal file
+     */
+    public File getJournalFile() {
+        return mJournal;
+    }
+}
@@ -21,7 +21,9 @@ package edu.isi.pegasus.planner.catalog.site.impl;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.logging.LoggingKeys;
 import edu.isi.pegasus.common.util.FileUtils;
+import edu.isi.pegasus.planner.catalog.CatalogCache;
 import edu.isi.pegasus.planner.catalog.SiteCatalog;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
 import edu.isi.pegasus.planner.catalog.site.SiteCatalogException;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
@@ -155,17 +157,28 @@ public class YAML implements SiteCatalog {
             throw new SiteCatalogException("Need to connect to site catalog before loading");
         }
 
-        mParser = new SiteCatalogYAMLParser(this.mBag, sites);
+        // the env profiles in the properties are used for variable expansion
+        String key =
+                sites
+                        + "#"
+                        + this.mBag.getPegasusProperties().getProfiles(Profiles.NAMESPACES.env);
+        mSiteStore =
+                CatalogCache.lookup(
+                        new File(mFilename),
+                        key,
+                        () -> {
+                            mParser = new SiteCatalogYAMLParser(this.mBag, sites);
 
-        mLogger.logEventStart(
-                LoggingKeys.EVENT_PEGASUS_PARSE_SITE_CATALOG,
-                "site-catalog.id",
-                mFilename,
-                LogManager.DEBUG_MESSAGE_LEVEL);
-        mParser.startParser(mFilename);
-        mLogger.logEventCompletion(LogManager.DEBUG_MESSAGE_LEVEL);
-
-        mSiteStore = mParser.getSiteStore();
+                            mLogger.logEventStart(
+                                    LoggingKeys.EVENT_PEGASUS_PARSE_SITE_CATALOG,
+                                    "site-catalog.id",
+                                    mFilename,
+                                    LogManager.DEBUG_MESSAGE_LEVEL);
+                            mParser.startParser(mFilename);
+                            mLogger.logEventCompletion(LogManager.DEBUG_MESSAGE_LEVEL);
+                            return mParser.getSiteStore();
+                        },
+                        (SiteStore store) -> (SiteStore) store.clone());
         return mSiteStore.list().size();
     }
 
@@ -244,7 +244,7 @@ public class TransformationCatalogEntry implements CatalogEntry {
                         mResourceID,
                         mPFN,
                         type,
-                        mProfiles,
+                        (mProfiles == null) ? null : (Profiles) mProfiles.clone(),
                         this.getSysInfo());
         entry.setForBypassStaging(this.bypassStaging());
         entry.addNotifications(this.getNotifications());
@@ -428,6 +428,23 @@ public class TransformationStore {
         return mTCStore.isEmpty();
     }
 
+    /**
+     * Returns the clone of the object. The entries and containers in the store are cloned too.
+     *
+     * @return the clone
+     */
+    public Object clone() {
+        TransformationStore obj = new TransformationStore();
+        obj.setVersion(this.getVersion());
+        for (Container c : this.getAllContainers()) {
+            obj.addContainer((Container) c.clone());
+        }
+        for (TransformationCatalogEntry entry : this.getAllEntries()) {
+            obj.addEntry((TransformationCatalogEntry) entry.clone());
+        }
+        return obj;
+    }
+
     /**
      * Does a sanity check on the transformation catalog entry object w.r.t the container associated
      * with it. This ensures that at runtime, there is no error, where container and executables are
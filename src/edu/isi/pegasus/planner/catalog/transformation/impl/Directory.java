@@ -16,6 +16,7 @@ package edu.isi.pegasus.planner.catalog.transformation.impl;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.util.Boolean;
 import edu.isi.pegasus.common.util.Separator;
+import edu.isi.pegasus.planner.catalog.DirectoryScanner;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.classes.SysInfo;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
@@ -30,6 +31,7 @@ import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.classes.Profile;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -71,6 +73,20 @@ import java.util.Set;
  *     pegasus.catalog.transformation.directory.flat.lfn
  * </pre>
  *
+ * The subdirectories are traversed in parallel if the number of threads to use is specified by
+ * the property
+ *
+ * <pre>
+ *     pegasus.catalog.transformation.directory.threads
+ * </pre>
+ *
+ * The listings of the directories are persisted to, and reused from an index file, if the path to
+ * it is specified by the property
+ *
+ * <pre>
+ *     pegasus.catalog.transformation.directory.index
+ * </pre>
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -100,6 +116,12 @@ public class Directory extends Abstract implements TransformationCatalog {
      */
     public static final String FLAT_LFN_PROPERTY_KEY = "directory.flat.lfn";
 
+    /** The name of the key that specifies the number of threads to traverse the directory with. */
+    public static final String THREADS_PROPERTY_KEY = "directory.threads";
+
+    /** The name of the key that specifies the path to the index of the directory listings. */
+    public static final String INDEX_PROPERTY_KEY = "directory.index";
+
     /** The transformation store containing the transformations after parsing the file. */
     private TransformationStore mTCStore;
 
@@ -122,6 +144,12 @@ public class Directory extends Abstract implements TransformationCatalog {
     /** The site handle to use. */
     protected String mSiteHandle;
 
+    /** The number of threads to traverse the directory with. */
+    private int mThreads;
+
+    /** The index of the directory listings, null if none is to be maintained. */
+    private File mIndex;
+
     /** the system information to be assigned to created transformation catalog entries */
     private SysInfo mSysInfo;
 
@@ -144,6 +172,8 @@ public class Directory extends Abstract implements TransformationCatalog {
         mTCStore = new TransformationStore();
         mSiteHandle = Directory.DEFAULT_SITE_HANDLE;
         mURLPrefix = Directory.DEFAULT_URL_PREFIX;
+        mThreads = 1;
+        mIndex = null;
         mLogger.log(
                 "Transformation Catalog Type used " + this.getDescription(),
                 LogManager.CONFIG_MESSAGE_LEVEL);
@@ -171,6 +201,25 @@ public class Directory extends Abstract implements TransformationCatalog {
         if (value != null) {
             this.mURLPrefix = value;
         }
+
+        value = props.getProperty(Directory.THREADS_PROPERTY_KEY);
+        if (value != null) {
+            try {
+                this.mThreads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException(
+                        "Invalid value for property "
+                                + Directory.THREADS_PROPERTY_KEY
+                                + " "
+                                + value,
+                        e);
+            }
+        }
+
+        value = props.getProperty(Directory.INDEX_PROPERTY_KEY);
+        if (value != null) {
+            this.mIndex = new File(value);
+        }
         mLogger.log(
                 "Loading transformations from directory backend with properties " + props,
                 LogManager.CONFIG_MESSAGE_LEVEL);
@@ -196,7 +245,7 @@ public class Directory extends Abstract implements TransformationCatalog {
                 LogManager.CONFIG_MESSAGE_LEVEL);
         try {
             if (mDirectory.exists() && mDirectory.isDirectory()) {
-                traverse(mDirectory, null);
+                traverse(mDirectory);
             } else {
                 mLogger.log(
                         "Unable to load transformations from directory "
@@ -216,55 +265,60 @@ public class Directory extends Abstract implements TransformationCatalog {
      * Traverses a directory and populates the mappings in memory
      *
      * @param directory the directory to traverse.
-     * @param prefix the LFN prefix to be applied
      */
-    private void traverse(File directory, String prefix) throws Exception {
-        // sanity check, if we can read it
-        if (!directory.canRead()) {
-            // warn and return
-            mLogger.log(
-                    "Ignoring. Unable to read directory " + directory,
-                    LogManager.WARNING_MESSAGE_LEVEL);
-            return;
+    private void traverse(File directory) throws Exception {
+        DirectoryScanner scanner = new DirectoryScanner(mThreads);
+        scanner.setCheckExecutable(true);
+        if (mIndex != null) {
+            try {
+                scanner.loadIndex(mIndex);
+            } catch (IOException e) {
+                mLogger.log(
+                        "Ignoring. Unable to load directory index " + mIndex,
+                        e,
+                        LogManager.WARNING_MESSAGE_LEVEL);
+            }
         }
 
-        for (File f : directory.listFiles()) {
-            StringBuffer lfn = new StringBuffer();
-            String name = f.getName();
-            if (mConstructFlatLFN || prefix == null || prefix.isEmpty()) {
-                lfn.append(name);
-            } else {
-                lfn.append(prefix).append(File.separator).append(name);
+        for (DirectoryScanner.Entry file : scanner.scan(directory)) {
+            String lfn = mConstructFlatLFN ? file.getName() : file.getRelativePath();
+            // we have a mapping to populate
+            String pfn = this.mURLPrefix + file.getPath();
+            if (!file.isExecutable()) {
+                mLogger.log(
+                        "Skipping file to create as a transformation since the execute bit is"
+                                + " not set "
+                                + pfn,
+                        LogManager.WARNING_MESSAGE_LEVEL);
             }
 
-            if (f.isDirectory()) {
-                // the lfn is the prefix now
-                traverse(f, lfn.toString());
-            } else {
-                // we have a mapping to populate
-                String pfn = this.mURLPrefix + f.getAbsolutePath();
-                if (!f.canExecute()) {
-                    mLogger.log(
-                            "Skipping file to create as a transformation since the execute bit is"
-                                    + " not set "
-                                    + pfn,
-                            LogManager.WARNING_MESSAGE_LEVEL);
-                }
+            TransformationCatalogEntry entry = new TransformationCatalogEntry(null, lfn, null);
+            entry.setResourceId(this.mSiteHandle);
+            entry.setPhysicalTransformation(pfn);
+            entry.setSysInfo(mSysInfo);
+            entry.setType(TCType.STAGEABLE);
+            mLogger.log(
+                    "Created transformation catalog entry " + entry,
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            insert(entry);
+        }
+
+        for (File f : scanner.getUnreadableDirectories()) {
+            // warn
+            mLogger.log(
+                    "Ignoring. Unable to read directory " + f, LogManager.WARNING_MESSAGE_LEVEL);
+        }
 
-                TransformationCatalogEntry entry =
-                        new TransformationCatalogEntry(null, lfn.toString(), null);
-                entry.setResourceId(this.mSiteHandle);
-                entry.setPhysicalTransformation(pfn);
-                entry.setSysInfo(mSysInfo);
-                entry.setType(TCType.STAGEABLE);
+        if (mIndex != null) {
+            try {
+                scanner.writeIndex(mIndex);
+            } catch (IOException e) {
                 mLogger.log(
-                        "Created transformation catalog entry " + entry,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-                insert(entry);
+                        "Unable to write out directory index " + mIndex,
+                        e,
+                        LogManager.WARNING_MESSAGE_LEVEL);
             }
         }
-
-        return;
     }
 
     /**
@@ -21,7 +21,9 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.util.Currently;
 import edu.isi.pegasus.common.util.Separator;
+import edu.isi.pegasus.planner.catalog.CatalogCache;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
 import edu.isi.pegasus.planner.catalog.classes.SysInfo;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
 import edu.isi.pegasus.planner.catalog.transformation.classes.Container;
@@ -167,9 +169,20 @@ public class YAML extends Abstract implements TransformationCatalog {
             java.io.File f = new java.io.File(mTCFile);
 
             if (f.exists() && f.length() > 0) {
-                File schemaDir = this.mProps.getSchemaDir();
-                yamlParser = new TransformationCatalogYAMLParser(mBag, schemaDir);
-                mTCStore = yamlParser.parse(mTCFile, modifyFileURL);
+                // the env profiles in the properties are used for variable expansion
+                String key =
+                        modifyFileURL + "#" + this.mProps.getProfiles(Profiles.NAMESPACES.env);
+                mTCStore =
+                        CatalogCache.lookup(
+                                f,
+                                key,
+                                () -> {
+                                    File schemaDir = this.mProps.getSchemaDir();
+                                    yamlParser =
+                                            new TransformationCatalogYAMLParser(mBag, schemaDir);
+                                    return yamlParser.parse(mTCFile, modifyFileURL);
+                                },
+                                (TransformationStore store) -> (TransformationStore) store.clone());
             } else {
                 // empty TCStore
                 mTCStore = new TransformationStore();
@@ -23,6 +23,7 @@ import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStor
 import edu.isi.pegasus.planner.dax.Invoke;
 import edu.isi.pegasus.planner.namespace.Metadata;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphFactory;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
 
@@ -103,13 +104,23 @@ public class ADag extends Data implements Graph {
 
     /** Initialises the class member variables. */
     public ADag() {
+        this(new MapGraph());
+    }
+
+    /**
+     * Initialises the class member variables, with the graph implementation to be used for storing
+     * the jobs.
+     *
+     * @param graph the empty graph to use
+     */
+    public ADag(Graph graph) {
         mDAGInfo = new DagInfo();
         mSubmitDirectory = ".";
         mWorkflowUUID = generateWorkflowUUID();
         mRootWorkflowUUID = null;
         mWorkflowRefinementStarted = false;
         mNotifications = new Notifications();
-        mGraphImplementor = new MapGraph();
+        mGraphImplementor = graph;
         mProfiles = new Profiles();
         resetStores();
     }
@@ -193,7 +204,7 @@ public class ADag extends Data implements Graph {
      * @return the clone of the object.
      */
     public Object clone() {
-        ADag newAdag = new ADag();
+        ADag newAdag = new ADag(GraphFactory.newInstance(this.mGraphImplementor));
 
         newAdag.setBaseSubmitDirectory(this.mSubmitDirectory);
         newAdag.setRequestID(this.mRequestID);
@@ -1709,6 +1709,30 @@ public class Job extends Data implements GraphNodeContent {
         return (type >= Job.UNASSIGNED_JOB && type <= Job.DAG_JOB);
     }
 
+    /**
+     * Interns all the profile namespaces of the job, so that jobs with the same profiles share a
+     * single copy of them until the profiles of a job are modified.
+     *
+     * @see Namespace#intern()
+     */
+    public void internProfiles() {
+        Namespace[] namespaces = {
+            condorVariables,
+            dagmanVariables,
+            globusRSL,
+            envVariables,
+            vdsNS,
+            hints,
+            mMetadataAttributes,
+            mSelectorProfiles
+        };
+        for (Namespace namespace : namespaces) {
+            if (namespace != null) {
+                namespace.intern();
+            }
+        }
+    }
+
     /**
      * Updates all the profile namespaces with the information associated in the Site Catalog
      * catalog for this job. I
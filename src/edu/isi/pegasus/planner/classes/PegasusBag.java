@@ -17,6 +17,7 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.Mapper;
+import edu.isi.pegasus.planner.common.LocalFileSystem;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.mapper.StagingMapper;
 import edu.isi.pegasus.planner.mapper.SubmitMapper;
@@ -39,7 +40,7 @@ public class PegasusBag implements Bag, Cloneable {
         "pegasus-properties", "planner-options", "replica-catalog", "site-catalog",
         "transformation-catalog", "transformation-mapper", "pegasus-logger", "site-store",
         "planner-cache", "worker-package-map", "uses-pmc", "planner-metrics",
-        "submit-mapper", "staging-mapper", "planner-directory"
+        "submit-mapper", "staging-mapper", "planner-directory", "local-file-system"
     };
 
     /** The constant to be passed to the accessor functions to get or set the PegasusProperties. */
@@ -126,6 +127,12 @@ public class PegasusBag implements Bag, Cloneable {
     /** The directory from which the planner is invoked */
     public static final Integer PLANNER_DIRECTORY = 14;
 
+    /**
+     * The constant to be passed to the accessor functions to get or set the handle to the local
+     * filesystem operations used while generating the executable workflow.
+     */
+    public static final Integer LOCAL_FILE_SYSTEM = 15;
+
     /** The handle to the <code>PegasusProperties</code>. */
     private PegasusProperties mProps;
 
@@ -183,11 +190,15 @@ public class PegasusBag implements Bag, Cloneable {
     /** the directory from which the planner is invoked */
     private File mPlannerDirectory;
 
+    /** The handle to the local filesystem operations */
+    private LocalFileSystem mLocalFileSystem;
+
     /** The default constructor. */
     public PegasusBag() {
         // by default uses PMC is set to false
         mUsesPMC = false;
         mPlannerDirectory = new File(System.getProperty("user.dir"));
+        mLocalFileSystem = new LocalFileSystem();
     }
 
     /**
@@ -287,6 +298,12 @@ public class PegasusBag implements Bag, Cloneable {
                 else valid = false;
                 break;
 
+            case 15: // Local File System
+                if (value != null && value instanceof LocalFileSystem)
+                    mLocalFileSystem = (LocalFileSystem) value;
+                else valid = false;
+                break;
+
             default:
                 throw new RuntimeException(
                         " Wrong Pegasus Bag key. Please use one of the predefined Integer key"
@@ -378,6 +395,9 @@ public class PegasusBag implements Bag, Cloneable {
             case 14: // Staging Mapper
                 return this.mPlannerDirectory;
 
+            case 15: // Local File System
+                return this.mLocalFileSystem;
+
             default:
                 throw new RuntimeException(
                         " Wrong Pegasus Bag key. Please use one of the predefined Integer key"
@@ -522,6 +542,15 @@ public class PegasusBag implements Bag, Cloneable {
         return (File) get(PegasusBag.PLANNER_DIRECTORY);
     }
 
+    /**
+     * A convenience method to get the handle to the local filesystem operations
+     *
+     * @return the handle to the local filesystem
+     */
+    public LocalFileSystem getLocalFileSystem() {
+        return (LocalFileSystem) get(PegasusBag.LOCAL_FILE_SYSTEM);
+    }
+
     /**
      * Returns a new copy of the Object. It is only a shallow clone.
      *
@@ -137,6 +137,11 @@ public class PlannerMetrics extends Data {
     @SerializedName("app_metrics")
     private Properties mApplicationMetrics;
 
+    /** The profile of the planner phases. */
+    @Expose
+    @SerializedName("planner_profile")
+    private PlannerProfile mPlannerProfile;
+
     /** The error message to be logged */
     @Expose
     @SerializedName("error")
@@ -249,6 +254,24 @@ public class PlannerMetrics extends Data {
         return this.mApplicationMetrics;
     }
 
+    /**
+     * Sets the profile of the planner phases.
+     *
+     * @param profile the profile
+     */
+    public void setPlannerProfile(PlannerProfile profile) {
+        this.mPlannerProfile = profile;
+    }
+
+    /**
+     * Returns the profile of the planner phases.
+     *
+     * @return the profile, can be null
+     */
+    public PlannerProfile getPlannerProfile() {
+        return this.mPlannerProfile;
+    }
+
     /**
      * Returns the username.
      *
@@ -654,6 +677,9 @@ public class PlannerMetrics extends Data {
         if (this.mApplicationMetrics != null) {
             append(sb, "app.metrics", this.mApplicationMetrics.toString());
         }
+        if (this.mPlannerProfile != null) {
+            append(sb, "planner.profile", this.mPlannerProfile.toJson());
+        }
         sb.append("}").append("\n");
 
         return sb.toString();
@@ -201,6 +201,9 @@ public class PlannerOptions extends Data implements Cloneable {
     /** the directory where the transformations are to be picked from */
     private String mTransformationsDir;
 
+    /** The directory from where the planner was launched, against which relative paths resolve. */
+    private String mLaunchDir;
+
     /** Default Constructor. */
     public PlannerOptions() {
         //        mSubmitFileDir    = ".";
@@ -229,6 +232,7 @@ public class PlannerOptions extends Data implements Cloneable {
         mDeferredRun = false;
         mDate = new Date();
         mSanitizePath = true;
+        mLaunchDir = System.getProperty("user.dir");
         mJobPrefix = null;
         mNumOfRescueTries = DEFAULT_NUMBER_OF_RESCUE_TRIES;
         mProperties = new Properties();
@@ -707,6 +711,25 @@ public class PlannerOptions extends Data implements Cloneable {
         mSanitizePath = value;
     }
 
+    /**
+     * Sets the directory from where the planner was launched. Relative paths passed as options are
+     * resolved against this directory. Defaults to the current working directory of the JVM.
+     *
+     * @param dir the launch directory
+     */
+    public void setLaunchDirectory(String dir) {
+        mLaunchDir = dir;
+    }
+
+    /**
+     * Returns the directory from where the planner was launched.
+     *
+     * @return the launch directory
+     */
+    public String getLaunchDirectory() {
+        return mLaunchDir;
+    }
+
     /**
      * Returns whether to sanitize paths or not. Internal method only.
      *
@@ -1577,6 +1600,7 @@ public class PlannerOptions extends Data implements Cloneable {
         pOpt.mConfFile = this.mConfFile;
         pOpt.mIsFinalOutputToJson = this.logFinalOutputAsJSON();
         pOpt.mTransformationsDir = this.getTransformationsDirectory();
+        pOpt.mLaunchDir = this.mLaunchDir;
 
         // a shallow clone for forward options
         pOpt.mForwardOptions = this.mForwardOptions;
@@ -1610,8 +1634,8 @@ public class PlannerOptions extends Data implements Cloneable {
 
     /**
      * A small utility method that sanitizes the url, converting it from relative to absolute. In
-     * case the path is relative, it uses the System property user.dir to get the current working
-     * directory, from where the planner is being run.
+     * case the path is relative, it is resolved against the directory from where the planner was
+     * launched.
      *
      * @param path the absolute or the relative path.
      * @return the absolute path.
@@ -1634,8 +1658,8 @@ public class PlannerOptions extends Data implements Cloneable {
                         // absolute path given already
                         path
                         :
-                        // get the current working dir
-                        System.getProperty("user.dir")
+                        // get the launch directory
+                        mLaunchDir
                                 + separator
                                 + ((path.indexOf('.') == 0)
                                         ? // path starts with a . ?
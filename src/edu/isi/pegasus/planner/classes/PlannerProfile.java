@@ -0,0 +1,435 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.classes;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profiles the phases of the planner. For each phase the wall time, the CPU time and the bytes
+ * allocated by the planning thread are recorded, along with the number of nodes and edges in the
+ * workflow when the phase completes, and how many were added by the phase. In addition, named
+ * counters can be incremented by the planner components, such as the number of replica catalog
+ * lookups.
+ *
+ * <p>The CPU time and allocated bytes are only available if the JVM supports measuring them for a
+ * thread, and are reported as -1 otherwise.
+ */
+public class PlannerProfile {
+
+    /** The suffix to use while constructing the name of the profile file */
+    public static final String PROFILE_FILE_SUFFIX = ".profile.json";
+
+    /** The counter for the lookups of the locations of files in the replica catalog */
+    public static final String RC_LOOKUPS_COUNTER = "rc_lookups";
+
+    /** The counter for the jobs deleted as part of data reuse */
+    public static final String DELETED_JOBS_COUNTER = "deleted_jobs";
+
+    /** The counter for the chmod and ln processes not forked, as the local filesystem was used */
+    public static final String FORKS_AVOIDED_COUNTER = "forks_avoided";
+
+    /** The counter for the directories created on the local filesystem */
+    public static final String DIRECTORIES_CREATED_COUNTER = "directories_created";
+
+    /** The counter for the job estimates retrieved from the cache of estimates */
+    public static final String ESTIMATES_REUSED_COUNTER = "estimates_reused";
+
+    /** The profile of a single planner phase. */
+    public static class Phase {
+
+        /** The name of the phase */
+        @SerializedName("name")
+        @Expose
+        private String mName;
+
+        /** The wall time in seconds */
+        @SerializedName("wall_time")
+        @Expose
+        private double mWallTime;
+
+        /** The CPU time of the planning thread in seconds */
+        @SerializedName("cpu_time")
+        @Expose
+        private double mCPUTime;
+
+        /** The bytes allocated by the planning thread */
+        @SerializedName("allocated_bytes")
+        @Expose
+        private long mAllocatedBytes;
+
+        /** The number of nodes in the workflow at the end of the phase */
+        @SerializedName("nodes")
+        @Expose
+        private int mNodes;
+
+        /** The number of edges in the workflow at the end of the phase */
+        @SerializedName("edges")
+        @Expose
+        private int mEdges;
+
+        /** The number of nodes added by the phase. Negative if nodes were removed. */
+        @SerializedName("nodes_added")
+        @Expose
+        private int mNodesAdded;
+
+        /** The number of edges added by the phase. Negative if edges were removed. */
+        @SerializedName("edges_added")
+        @Expose
+        private int mEdgesAdded;
+
+        /** The values at the start of the phase. */
+        private long mStartWallTime;
+
+        private long mStartCPUTime;
+
+        private long mStartAllocatedBytes;
+
+        private int mStartNodes;
+
+        private int mStartEdges;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param name the name of the phase
+         */
+        public Phase(String name) {
+            mName = name;
+        }
+
+        /**
+         * Returns the name of the phase.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the wall time of the phase in seconds.
+         *
+         * @return the wall time
+         */
+        public double getWallTime() {
+            return mWallTime;
+        }
+
+        /**
+         * Returns the CPU time of the phase in seconds.
+         *
+         * @return the CPU time, -1 if not measured
+         */
+        public double getCPUTime() {
+            return mCPUTime;
+        }
+
+        /**
+         * Returns the bytes allocated during the phase.
+         *
+         * @return the allocated bytes, -1 if not measured
+         */
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+
+        /**
+         * Returns the number of nodes in the workflow at the end of the phase.
+         *
+         * @return the number of nodes
+         */
+        public int getNodes() {
+            return mNodes;
+        }
+
+        /**
+         * Returns the number of edges in the workflow at the end of the phase.
+         *
+         * @return the number of edges
+         */
+        public int getEdges() {
+            return mEdges;
+        }
+
+        /**
+         * Returns the number of nodes added by the phase.
+         *
+         * @return the nodes added
+         */
+        public int getNodesAdded() {
+            return mNodesAdded;
+        }
+
+        /**
+         * Returns the number of edges added by the phase.
+         *
+         * @return the edges added
+         */
+        public int getEdgesAdded() {
+            return mEdgesAdded;
+        }
+    }
+
+    /** The phases in the order they completed */
+    @SerializedName("phases")
+    @Expose
+    private List<Phase> mPhases;
+
+    /** The counters incremented during planning */
+    @SerializedName("counters")
+    @Expose
+    private Map<String, Long> mCounters;
+
+    /** The phases that have been started, but not completed. */
+    private Deque<Phase> mStarted;
+
+    /** The handle to the thread mx bean */
+    private ThreadMXBean mThreadMXBean;
+
+    /** Whether cpu time can be measured */
+    private boolean mMeasureCPUTime;
+
+    /** Whether allocated bytes can be measured */
+    private boolean mMeasureAllocatedBytes;
+
+    /** The default constructor. */
+    public PlannerProfile() {
+        mPhases = new ArrayList<Phase>();
+        mCounters = new LinkedHashMap<String, Long>();
+        mStarted = new ArrayDeque<Phase>();
+        mThreadMXBean = ManagementFactory.getThreadMXBean();
+        mMeasureCPUTime =
+                mThreadMXBean.isCurrentThreadCpuTimeSupported()
+                        && mThreadMXBean.isThreadCpuTimeEnabled();
+        mMeasureAllocatedBytes = false;
+        if (mThreadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean =
+                    (com.sun.management.ThreadMXBean) mThreadMXBean;
+            mMeasureAllocatedBytes =
+                    bean.isThreadAllocatedMemorySupported()
+                            && bean.isThreadAllocatedMemoryEnabled();
+        }
+    }
+
+    /**
+     * Starts a phase. Phases can be nested, in which case the enclosing phase includes the
+     * figures of the phases it encloses.
+     *
+     * @param name the name of the phase
+     * @param dag the workflow at the start of the phase, can be null
+     */
+    public void start(String name, ADag dag) {
+        Phase phase = new Phase(name);
+        phase.mStartNodes = nodes(dag);
+        phase.mStartEdges = edges(dag);
+        phase.mStartAllocatedBytes = allocatedBytes();
+        phase.mStartCPUTime = cpuTime();
+        phase.mStartWallTime = System.nanoTime();
+        mStarted.push(phase);
+    }
+
+    /**
+     * Completes the phase that was started last.
+     *
+     * @param dag the workflow at the end of the phase, can be null
+     * @return the completed phase
+     */
+    public Phase complete(ADag dag) {
+        long wallTime = System.nanoTime();
+        long cpuTime = cpuTime();
+        long allocatedBytes = allocatedBytes();
+        if (mStarted.isEmpty()) {
+            throw new IllegalStateException("No planner phase has been started");
+        }
+        Phase phase = mStarted.pop();
+        phase.mWallTime = seconds(wallTime - phase.mStartWallTime);
+        phase.mCPUTime = mMeasureCPUTime ? seconds(cpuTime - phase.mStartCPUTime) : -1;
+        phase.mAllocatedBytes =
+                mMeasureAllocatedBytes ? allocatedBytes - phase.mStartAllocatedBytes : -1;
+        phase.mNodes = nodes(dag);
+        phase.mEdges = edges(dag);
+        phase.mNodesAdded = phase.mNodes - phase.mStartNodes;
+        phase.mEdgesAdded = phase.mEdges - phase.mStartEdges;
+        mPhases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Increments a counter.
+     *
+     * @param counter the name of the counter
+     * @param value the value to increment by
+     */
+    public void increment(String counter, long value) {
+        Long current = mCounters.get(counter);
+        mCounters.put(counter, current == null ? value : current + value);
+    }
+
+    /**
+     * Returns the value of a counter.
+     *
+     * @param counter the name of the counter
+     * @return the value, 0 if the counter was never incremented
+     */
+    public long getCounter(String counter) {
+        Long value = mCounters.get(counter);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Returns the completed phases in the order they completed.
+     *
+     * @return the phases
+     */
+    public List<Phase> getPhases() {
+        return mPhases;
+    }
+
+    /**
+     * Returns the completed phase with the given name.
+     *
+     * @param name the name of the phase
+     * @return the phase, null if no such phase completed
+     */
+    public Phase getPhase(String name) {
+        for (Phase phase : mPhases) {
+            if (phase.getName().equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes out the profile as JSON to a file.
+     *
+     * @param f the file to write to
+     * @throws IOException in case of error while writing out file.
+     */
+    public void writeOut(File f) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(f)))) {
+            writer.println(this.toPrettyJson());
+        }
+    }
+
+    /**
+     * Converts the profile to JSON
+     *
+     * @return the profile in JSON
+     */
+    public String toJson() {
+        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+        return gson.toJson(this);
+    }
+
+    /**
+     * Converts the profile to pretty printed JSON
+     *
+     * @return the profile in JSON
+     */
+    public String toPrettyJson() {
+        Gson gson =
+                new GsonBuilder()
+                        .excludeFieldsWithoutExposeAnnotation()
+                        .setPrettyPrinting()
+                        .create();
+        return gson.toJson(this);
+    }
+
+    /**
+     * Returns a textual description of the object.
+     *
+     * @return the profile in JSON
+     */
+    public String toString() {
+        return this.toJson();
+    }
+
+    /**
+     * Returns the CPU time of the current thread.
+     *
+     * @return the CPU time in nanoseconds, 0 if not measured
+     */
+    private long cpuTime() {
+        return mMeasureCPUTime ? mThreadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     *
+     * @return the allocated bytes, 0 if not measured
+     */
+    private long allocatedBytes() {
+        return mMeasureAllocatedBytes
+                ? ((com.sun.management.ThreadMXBean) mThreadMXBean)
+                        .getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+
+    /**
+     * Returns the number of nodes in a workflow.
+     *
+     * @param dag the workflow, can be null
+     * @return the number of nodes
+     */
+    private static int nodes(ADag dag) {
+        return dag == null ? 0 : dag.size();
+    }
+
+    /**
+     * Returns the number of edges in a workflow.
+     *
+     * @param dag the workflow, can be null
+     * @return the number of edges
+     */
+    private static int edges(ADag dag) {
+        int edges = 0;
+        if (dag != null) {
+            for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+                edges += it.next().getChildren().size();
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Converts nanoseconds to seconds.
+     *
+     * @param nanos the nanoseconds
+     * @return the seconds
+     */
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
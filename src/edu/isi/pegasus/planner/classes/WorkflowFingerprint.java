@@ -0,0 +1,365 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.classes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.isi.pegasus.planner.namespace.Namespace;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The fingerprint of a planned workflow, that allows a later planner run to determine what changed
+ * since. It consists of a digest of the environment the workflow was planned in, i.e the
+ * properties, the planner options and the catalogs, and a digest for each job of the abstract
+ * workflow, covering the transformation, arguments, files, profiles and parents of the job.
+ *
+ * <p>The fingerprint is written out in the submit directory as a text file, with the environment
+ * digest on the first line, followed by a line for each job with the job id and its digest.
+ */
+public class WorkflowFingerprint {
+
+    /** The suffix to use while constructing the name of the fingerprint file */
+    public static final String FINGERPRINT_FILE_SUFFIX = ".fingerprint";
+
+    /** The key for the environment digest in the fingerprint file */
+    private static final String ENVIRONMENT_KEY = "environment";
+
+    /** The algorithm used to compute the digests */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The digest of the environment the workflow was planned in */
+    private String mEnvironment;
+
+    /** Maps job id to the digest of the job */
+    private Map<String, String> mJobs;
+
+    /** The default constructor. */
+    public WorkflowFingerprint() {
+        mEnvironment = null;
+        mJobs = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Computes the fingerprint for an abstract workflow.
+     *
+     * @param workflow the abstract workflow, before any refinement
+     * @param properties the properties the workflow is planned with
+     * @param options the planner options
+     * @param catalogs the catalog files that the workflow is planned with
+     * @return the fingerprint
+     * @throws IOException in case of error while reading the catalog files
+     */
+    public static WorkflowFingerprint compute(
+            ADag workflow,
+            Properties properties,
+            PlannerOptions options,
+            Collection<File> catalogs)
+            throws IOException {
+        WorkflowFingerprint fingerprint = new WorkflowFingerprint();
+        MessageDigest md = getMessageDigest();
+
+        // the environment
+        for (String key : new TreeSet<String>(properties.stringPropertyNames())) {
+            update(md, key + "=" + properties.getProperty(key));
+        }
+        update(md, "sites=" + new TreeSet<String>(options.getExecutionSites()));
+        for (String site : new TreeSet<String>(options.getExecutionSites())) {
+            update(md, "staging." + site + "=" + options.getStagingSite(site));
+        }
+        update(md, "output.sites=" + new TreeSet<String>(options.getOutputSites()));
+        update(md, "cluster=" + options.getClusteringTechnique());
+        update(md, "cleanup=" + options.getCleanup());
+        // the catalogs embedded in the workflow and the catalog files
+        ObjectMapper mapper = new ObjectMapper();
+        update(md, mapper.writeValueAsString(workflow.getSiteStore()));
+        update(md, mapper.writeValueAsString(workflow.getTransformationStore()));
+        update(md, mapper.writeValueAsString(workflow.getReplicaStore()));
+        for (File catalog : catalogs) {
+            update(md, catalog.getName());
+            if (catalog.isFile()) {
+                md.update(Files.readAllBytes(catalog.toPath()));
+            }
+        }
+        fingerprint.setEnvironmentDigest(toHex(md.digest()));
+
+        // the jobs
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            fingerprint.addJobDigest(node.getID(), digest(md, node));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Loads a fingerprint written out earlier.
+     *
+     * @param file the fingerprint file
+     * @return the fingerprint
+     * @throws IOException in case of error while reading the file
+     */
+    public static WorkflowFingerprint loadFrom(File file) throws IOException {
+        WorkflowFingerprint fingerprint = new WorkflowFingerprint();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int index = line.lastIndexOf(' ');
+                if (index <= 0) {
+                    throw new IOException("Invalid line in fingerprint file " + file + ": " + line);
+                }
+                String key = line.substring(0, index);
+                String value = line.substring(index + 1);
+                if (fingerprint.mEnvironment == null && key.equals(ENVIRONMENT_KEY)) {
+                    fingerprint.setEnvironmentDigest(value);
+                } else {
+                    fingerprint.addJobDigest(key, value);
+                }
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Writes out the fingerprint to a file.
+     *
+     * @param f the file to write to
+     * @throws IOException in case of error while writing out file.
+     */
+    public void writeOut(File f) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(f)))) {
+            writer.print(ENVIRONMENT_KEY);
+            writer.print(' ');
+            writer.println(mEnvironment);
+            for (Map.Entry<String, String> entry : mJobs.entrySet()) {
+                writer.print(entry.getKey());
+                writer.print(' ');
+                writer.println(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Sets the digest of the environment the workflow was planned in.
+     *
+     * @param digest the digest
+     */
+    public void setEnvironmentDigest(String digest) {
+        mEnvironment = digest;
+    }
+
+    /**
+     * Returns the digest of the environment the workflow was planned in.
+     *
+     * @return the digest
+     */
+    public String getEnvironmentDigest() {
+        return mEnvironment;
+    }
+
+    /**
+     * Adds the digest for a job.
+     *
+     * @param id the id of the job
+     * @param digest the digest
+     */
+    public void addJobDigest(String id, String digest) {
+        mJobs.put(id, digest);
+    }
+
+    /**
+     * Returns the digest for a job.
+     *
+     * @param id the id of the job
+     * @return the digest, else null if the job is not in the fingerprint
+     */
+    public String getJobDigest(String id) {
+        return mJobs.get(id);
+    }
+
+    /**
+     * Returns the ids of the jobs in the fingerprint.
+     *
+     * @return the job ids
+     */
+    public Set<String> getJobIDs() {
+        return Collections.unmodifiableSet(mJobs.keySet());
+    }
+
+    /**
+     * Returns the jobs of a workflow that changed with respect to a previous fingerprint. A job is
+     * considered changed if its digest differs from the one in the previous fingerprint, or if any
+     * of its ancestors changed, as the files it consumes may then differ. If the environment
+     * changed, all the jobs are considered changed.
+     *
+     * @param workflow the workflow that this fingerprint was computed for
+     * @param previous the fingerprint of the previous plan
+     * @return the ids of the jobs that changed
+     */
+    public Set<String> getChangedJobs(ADag workflow, WorkflowFingerprint previous) {
+        Set<String> changed = new HashSet<String>();
+        boolean all =
+                previous.getEnvironmentDigest() == null
+                        || !previous.getEnvironmentDigest().equals(this.getEnvironmentDigest());
+        for (Iterator<GraphNode> it = workflow.topologicalSortIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            String id = node.getID();
+            boolean dirty = all;
+            if (!dirty) {
+                String digest = previous.getJobDigest(id);
+                dirty = digest == null || !digest.equals(this.getJobDigest(id));
+            }
+            for (Iterator<GraphNode> pit = node.getParents().iterator();
+                    !dirty && pit.hasNext(); ) {
+                dirty = changed.contains(pit.next().getID());
+            }
+            if (dirty) {
+                changed.add(id);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Computes the digest for a job in the abstract workflow.
+     *
+     * @param md the message digest to use
+     * @param node the node for the job
+     * @return the digest in hex
+     */
+    private static String digest(MessageDigest md, GraphNode node) {
+        Job job = (Job) node.getContent();
+        md.reset();
+        update(md, node.getID());
+        update(md, job.getCompleteTCName());
+        update(md, job.getArguments());
+        update(md, job.stdIn);
+        update(md, job.stdOut);
+        update(md, job.stdErr);
+        update(md, sortedFiles(job.getInputFiles()));
+        update(md, sortedFiles(job.getOutputFiles()));
+        update(md, job.vdsNS);
+        update(md, job.condorVariables);
+        update(md, job.envVariables);
+        update(md, job.dagmanVariables);
+        update(md, job.globusRSL);
+        update(md, job.hints);
+        update(md, job.getSelectorProfiles());
+        update(md, job.getMetadata());
+        List<String> parents = new ArrayList<String>(node.getParents().size());
+        for (GraphNode parent : node.getParents()) {
+            parents.add(parent.getID());
+        }
+        Collections.sort(parents);
+        update(md, parents.toString());
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns a description of the files sorted by their lfns.
+     *
+     * @param files the files
+     * @return the description
+     */
+    private static String sortedFiles(Set<PegasusFile> files) {
+        List<PegasusFile> sorted = new ArrayList<PegasusFile>(files);
+        Collections.sort(sorted, (a, b) -> a.getLFN().compareTo(b.getLFN()));
+        return sorted.toString();
+    }
+
+    /**
+     * Updates the digest with the profiles in a namespace, in the order of their keys.
+     *
+     * @param md the message digest
+     * @param namespace the namespace, can be null
+     */
+    private static void update(MessageDigest md, Namespace namespace) {
+        if (namespace == null) {
+            update(md, (String) null);
+            return;
+        }
+        update(md, namespace.namespaceName());
+        Set keys = namespace.keySet();
+        if (keys != null) {
+            for (Object key : new TreeSet(keys)) {
+                update(md, key + "=" + namespace.get((String) key));
+            }
+        }
+    }
+
+    /**
+     * Updates the digest with a value, terminated by a null character so that adjacent values
+     * cannot run into each other.
+     *
+     * @param md the message digest
+     * @param value the value, can be null
+     */
+    private static void update(MessageDigest md, String value) {
+        if (value != null) {
+            md.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        md.update((byte) 0);
+    }
+
+    /**
+     * Returns the message digest to compute the digests with.
+     *
+     * @return the message digest
+     */
+    private static MessageDigest getMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unable to compute digests with " + DIGEST_ALGORITHM, e);
+        }
+    }
+
+    /**
+     * Converts bytes to a hex string.
+     *
+     * @param bytes the bytes
+     * @return the hex string
+     */
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
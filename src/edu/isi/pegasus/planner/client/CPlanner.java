@@ -34,11 +34,13 @@ import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.NameValue;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerMetrics;
+import edu.isi.pegasus.planner.classes.PlannerProfile;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.code.CodeGenerator;
 import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
 import edu.isi.pegasus.planner.code.GridStartFactory;
 import edu.isi.pegasus.planner.code.generator.Braindump;
+import edu.isi.pegasus.planner.common.LocalFileSystem;
 import edu.isi.pegasus.planner.common.PegasusConfiguration;
 import edu.isi.pegasus.planner.common.PegasusDBAdmin;
 import edu.isi.pegasus.planner.common.PegasusProperties;
@@ -56,14 +58,11 @@ import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -151,6 +150,9 @@ public class CPlanner extends Executable {
     /** A boolean indicating whether metrics should be sent to metrics server or not */
     private boolean mSendMetrics;
 
+    /** The directory from where the planner was launched. */
+    private String mLaunchDirectory;
+
     /** Default constructor. */
     public CPlanner() {
         this(null);
@@ -162,7 +164,21 @@ public class CPlanner extends Executable {
      * @param logger the logger object to use. can be null.
      */
     public CPlanner(LogManager logger) {
-        super(logger);
+        this(logger, null, System.getProperty("user.dir"));
+    }
+
+    /**
+     * The overload constructor, used to plan in a long lived JVM where the properties are loaded by
+     * the caller, and the planner is launched on behalf of a process running in another directory.
+     *
+     * @param logger the logger object to use. can be null.
+     * @param properties the properties to use. can be null.
+     * @param launchDirectory the directory from where the planner is launched, against which
+     *     relative paths passed in the arguments resolve.
+     */
+    public CPlanner(LogManager logger, PegasusProperties properties, String launchDirectory) {
+        super(logger, properties);
+        mLaunchDirectory = launchDirectory;
     }
 
     public void initialize(String[] opts, char confChar) {
@@ -193,8 +209,19 @@ public class CPlanner extends Executable {
      * @param args the main arguments passed to the planner.
      */
     public static void main(String[] args) {
-
         CPlanner cPlanner = new CPlanner();
+        System.exit(cPlanner.plan(args));
+    }
+
+    /**
+     * Plans a workflow with the arguments passed, in the same manner as the planner is invoked from
+     * the command line. Any error encountered while planning is logged, and translated into the
+     * exitcode returned.
+     *
+     * @param args the arguments passed to the planner.
+     * @return the exitcode of the planner.
+     */
+    public int plan(String[] args) {
         int result = 0;
         Date startDate = new Date();
         Date endDate = null;
@@ -203,75 +230,75 @@ public class CPlanner extends Executable {
 
         Exception plannerException = null;
         try {
-            cPlanner.initialize(args, '6');
-            cPlanner.mPMetrics.setStartTime(startDate);
-            cPlanner.executeCommand();
+            this.initialize(args, '6');
+            this.mPMetrics.setStartTime(startDate);
+            this.executeCommand();
         } catch (FactoryException fe) {
             plannerException = fe;
-            cPlanner.log(fe.convertException(), LogManager.FATAL_MESSAGE_LEVEL);
+            this.log(fe.convertException(), LogManager.FATAL_MESSAGE_LEVEL);
             result = 2;
         } catch (OutOfMemoryError error) {
-            if (cPlanner.mLogger == null) {
+            if (this.mLogger == null) {
                 // if you are out of memory or have wrong memory settings
                 // account for logger to be uninitialized
                 System.err.println("Out of memory error and logger is uninitialized");
             } else {
-                cPlanner.log(
+                this.log(
                         "Out of Memory Error " + error.getMessage(),
                         LogManager.FATAL_MESSAGE_LEVEL);
             }
             error.printStackTrace();
-            if (cPlanner.mLogger != null) {
+            if (this.mLogger != null) {
                 // lets print out some GC stats
-                cPlanner.logMemoryUsage();
+                this.logMemoryUsage();
             }
             result = 4;
         } catch (RuntimeException rte) {
             plannerException = rte;
             // catch all runtime exceptions including our own that
             // are thrown that may have chained causes
-            cPlanner.log(
-                    convertException(rte, cPlanner.mLogger.getLevel()),
+            this.log(
+                    convertException(rte, this.mLogger.getLevel()),
                     LogManager.FATAL_MESSAGE_LEVEL);
             result = 1;
         } catch (Exception e) {
             plannerException = e;
             // unaccounted for exceptions
-            cPlanner.log(
-                    convertException(e, cPlanner.mLogger.getLevel()),
+            this.log(
+                    convertException(e, this.mLogger.getLevel()),
                     LogManager.FATAL_MESSAGE_LEVEL);
             result = 3;
         } finally {
-            if (cPlanner != null && cPlanner.mBag != null) {
+            if (this.mBag != null) {
                 // PM-1947 cleanup a transient tc if it was generated
-                cPlanner.cleanupTransientTC(cPlanner.mBag.getHandleToTransformationCatalog());
+                this.cleanupTransientTC(this.mBag.getHandleToTransformationCatalog());
             }
             endDate = new Date();
         }
 
         try {
-            cPlanner.mPMetrics.setEndTime(endDate);
+            this.mPMetrics.setEndTime(endDate);
             double endtime = endDate.getTime();
             duration = (endtime - starttime) / 1000;
-            cPlanner.mPMetrics.setDuration(duration);
-            cPlanner.mPMetrics.setExitcode(result);
+            this.mPMetrics.setDuration(duration);
+            this.mPMetrics.setExitcode(result);
 
             if (plannerException != null) {
                 // we want the stack trace to a String Writer.
                 StringWriter sw = new StringWriter();
                 plannerException.printStackTrace(new PrintWriter(sw));
-                cPlanner.mPMetrics.setMetricsTypeToError();
-                cPlanner.mPMetrics.setErrorMessage(sw.toString());
+                this.mPMetrics.setMetricsTypeToError();
+                this.mPMetrics.setErrorMessage(sw.toString());
             }
             // lets write out the metrics
-            if (cPlanner.mSendMetrics) {
+            if (this.mSendMetrics) {
                 edu.isi.pegasus.planner.code.generator.Metrics metrics =
                         new edu.isi.pegasus.planner.code.generator.Metrics();
-                metrics.initialize(cPlanner.mBag);
-                metrics.logMetrics(cPlanner.mPMetrics);
+                metrics.initialize(this.mBag);
+                metrics.logMetrics(this.mPMetrics);
             } else {
                 // log
-                cPlanner.log(
+                this.log(
                         "No metrics logged or sent to the metrics server",
                         LogManager.DEBUG_MESSAGE_LEVEL);
             }
@@ -285,9 +312,9 @@ public class CPlanner extends Executable {
         // drill open the shell wrapper without messing up everything.
         if (result == 0) {
             try {
-                File src_file = new File(cPlanner.mPOptions.getDAX());
+                File src_file = new File(this.mPOptions.getDAX());
                 File dst_file =
-                        new File(cPlanner.mPOptions.getSubmitDirectory(), src_file.getName());
+                        new File(this.mPOptions.getSubmitDirectory(), src_file.getName());
                 if (!dst_file.exists()) dst_file.createNewFile();
 
                 FileChannel fc_src = null;
@@ -309,17 +336,17 @@ public class CPlanner extends Executable {
 
         // warn about non zero exit code
         if (result != 0) {
-            cPlanner.log(
+            this.log(
                     "Exiting with non-zero exit-code " + result, LogManager.DEBUG_MESSAGE_LEVEL);
         } else {
             // log the time taken to execute
-            cPlanner.log(
+            this.log(
                     "Time taken to execute is " + duration + " seconds",
                     LogManager.CONSOLE_MESSAGE_LEVEL);
         }
 
-        cPlanner.mLogger.logEventCompletion();
-        System.exit(result);
+        this.mLogger.logEventCompletion();
+        return result;
     }
 
     /** Loads all the properties that are needed by this class. */
@@ -348,7 +375,7 @@ public class CPlanner extends Executable {
         mBag.add(PegasusBag.PLANNER_OPTIONS, mPOptions);
         mBag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
         // PM-1486 set the planner directory
-        mBag.add(PegasusBag.PLANNER_DIRECTORY, new File(System.getProperty("user.dir")));
+        mBag.add(PegasusBag.PLANNER_DIRECTORY, new File(mPOptions.getLaunchDirectory()));
 
         Collection result = null;
 
@@ -374,7 +401,7 @@ public class CPlanner extends Executable {
         configurator.loadConfigurationPropertiesAndOptions(mProps, mPOptions);
 
         mLogger.log(
-                "Planner launched in the following directory " + System.getProperty("user.dir"),
+                "Planner launched in the following directory " + mPOptions.getLaunchDirectory(),
                 LogManager.INFO_MESSAGE_LEVEL);
         mLogger.log(
                 "Planner invoked with following arguments " + mPOptions.getOriginalArgString(),
@@ -513,7 +540,7 @@ public class CPlanner extends Executable {
             if (options.partOfDeferredRun()) {
                 // PM-667 log what directory the planner is launched in
                 // what the base submit directory is
-                String launchDir = System.getProperty("user.dir");
+                String launchDir = mPOptions.getLaunchDirectory();
                 mLogger.log(
                         "The directory in which the planner was launched " + launchDir,
                         LogManager.CONFIG_MESSAGE_LEVEL);
@@ -624,6 +651,8 @@ public class CPlanner extends Executable {
         // store the workflow metrics from the final dag into
         // the planner metrics
         mPMetrics.setWorkflowMetrics(finalDag.getWorkflowMetrics());
+        PlannerProfile profile = cwmain.getPlannerProfile();
+        mPMetrics.setPlannerProfile(profile);
 
         CodeGenerator codeGenerator = null;
         codeGenerator = CodeGeneratorFactory.loadInstance(cwmain.getPegasusBag());
@@ -645,6 +674,7 @@ public class CPlanner extends Executable {
                     LoggingKeys.EVENTS_PEGASUS_CODE_GENERATION,
                     LoggingKeys.DAX_ID,
                     finalDag.getAbstractWorkflowName());
+            profile.start(LoggingKeys.EVENTS_PEGASUS_CODE_GENERATION, finalDag);
 
             result = codeGenerator.generateCode(finalDag);
 
@@ -654,9 +684,18 @@ public class CPlanner extends Executable {
             // close the connection to planner cache
             mBag.getHandleToPlannerCache().close();
 
+            profile.complete(finalDag);
             mLogger.logEventCompletion();
         }
 
+        // record the operations done on the local filesystem
+        LocalFileSystem fs = mBag.getLocalFileSystem();
+        profile.increment(PlannerProfile.FORKS_AVOIDED_COUNTER, fs.getForksAvoided());
+        profile.increment(PlannerProfile.DIRECTORIES_CREATED_COUNTER, fs.getCreatedDirectories());
+
+        // write out the profile of the planner phases next to the braindump
+        writeOutPlannerProfile(profile, finalDag);
+
         // PM-1003 update metrics with whether pmc was used or not.
         mPMetrics.setUsesPMC(Braindump.plannerUsedPMC(mBag));
 
@@ -690,6 +729,33 @@ public class CPlanner extends Executable {
         return result;
     }
 
+    /**
+     * Writes out the profile of the planner phases in the submit directory. An error while writing
+     * out the profile is only logged, as the workflow itself was planned.
+     *
+     * @param profile the profile
+     * @param dag the planned workflow
+     */
+    private void writeOutPlannerProfile(PlannerProfile profile, ADag dag) {
+        File f =
+                new File(
+                        mPOptions.getSubmitDirectory(),
+                        edu.isi.pegasus.planner.code.generator.Abstract.getDAGFilename(
+                                mPOptions,
+                                dag.getLabel(),
+                                dag.getIndex(),
+                                PlannerProfile.PROFILE_FILE_SUFFIX));
+        try {
+            profile.writeOut(f);
+            mLogger.log("Written out planner profile to " + f, LogManager.DEBUG_MESSAGE_LEVEL);
+        } catch (IOException ioe) {
+            mLogger.log(
+                    "Unable to write out planner profile to " + f,
+                    ioe,
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+    }
+
     /**
      * Returns the name of the noop job.
      *
@@ -779,6 +845,7 @@ public class CPlanner extends Executable {
         // store the args with which planner was invoked
 
         PlannerOptions options = new PlannerOptions();
+        options.setLaunchDirectory(mLaunchDirectory);
         options.setSanitizePath(sanitizePath);
         options.setOriginalArgString(args);
         // we default to inplace cleanup unless overridden on command line
@@ -1664,65 +1731,30 @@ public class CPlanner extends Executable {
      *
      * @param source the file that has to be symlinked
      * @param destination the destination of the symlink
-     * @param directory the directory in which to execute the command
+     * @param directory the directory against which a relative destination is resolved
      * @param logErrorToDebug whether to log messeage to debug or not
      * @return boolean indicating if creation of symlink was successful or not
      */
     protected boolean createSymbolicLink(
             String source, String destination, File directory, boolean logErrorToDebug) {
         try {
-            Runtime rt = Runtime.getRuntime();
-            String command = "ln -sf " + source + " " + destination;
             mLogger.log(
                     "Creating symlink between " + source + " " + destination,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-
-            Process p =
-                    (directory == null)
-                            ? rt.exec(command, null)
-                            : // dont specify the directory to execute in
-                            rt.exec(command, null, directory);
-
-            // set up to read subprogram output
-            InputStream is = p.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            // set up to read subprogram error
-            InputStream er = p.getErrorStream();
-            InputStreamReader err = new InputStreamReader(er);
-            BufferedReader ebr = new BufferedReader(err);
-
-            // read output from subprogram
-            // and display it
-
-            String s, se = null;
-            while (((s = br.readLine()) != null) || ((se = ebr.readLine()) != null)) {
-                if (s != null) {
-                    mLogger.log(s, LogManager.DEBUG_MESSAGE_LEVEL);
-                } else {
-                    if (logErrorToDebug) {
-                        mLogger.log(se, LogManager.DEBUG_MESSAGE_LEVEL);
-                    } else {
-                        mLogger.log(se, LogManager.ERROR_MESSAGE_LEVEL);
-                    }
-                }
+            // a relative destination is resolved against the directory
+            File link = new File(destination);
+            if (directory != null && !link.isAbsolute()) {
+                link = new File(directory, destination);
             }
-
-            br.close();
+            mBag.getLocalFileSystem().createSymbolicLink(source, link, true);
             return true;
-        } catch (Exception ex) {
-            if (logErrorToDebug) {
-                mLogger.log(
-                        "Unable to create symlink to the log file",
-                        ex,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-            } else {
-                mLogger.log(
-                        "Unable to create symlink to the log file",
-                        ex,
-                        LogManager.ERROR_MESSAGE_LEVEL);
-            }
+        } catch (IOException ex) {
+            mLogger.log(
+                    "Unable to create symlink between " + source + " " + destination,
+                    ex,
+                    logErrorToDebug
+                            ? LogManager.DEBUG_MESSAGE_LEVEL
+                            : LogManager.ERROR_MESSAGE_LEVEL);
             return false;
         }
     }
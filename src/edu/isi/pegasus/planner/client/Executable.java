@@ -65,7 +65,19 @@ public abstract class Executable {
      * @param logger the logger to use. Can be null.
      */
     public Executable(LogManager logger) {
+        this(logger, null);
+    }
+
+    /**
+     * The overloaded constructor, that allows the properties to be passed in instead of being
+     * loaded from the conf option when the executable is initialized.
+     *
+     * @param logger the logger to use. Can be null.
+     * @param properties the properties to use. Can be null.
+     */
+    public Executable(LogManager logger, PegasusProperties properties) {
         mLogger = logger;
+        mProps = properties;
     }
 
     /**
@@ -100,8 +112,10 @@ public abstract class Executable {
      */
     protected void initialize(String[] opts, char confChar) {
         this.commandLineOpts = opts;
-        String propertyFile = lookupConfProperty(getCommandLineOptions(), confChar);
-        mProps = PegasusProperties.getInstance(propertyFile);
+        if (mProps == null) {
+            String propertyFile = lookupConfProperty(getCommandLineOptions(), confChar);
+            mProps = PegasusProperties.getInstance(propertyFile);
+        }
         mVersion = Version.instance().toString();
         // setup logging before doing anything with properties
         try {
@@ -194,36 +208,51 @@ public abstract class Executable {
         mLogger = LogManagerFactory.loadSingletonInstance(properties);
         mLogger.logEventStart("event.pegasus.planner", "planner.version", mVersion);
 
-        // get the logging value set in properties
-        String value = properties.getProperty("pegasus.log.*");
+        File log = getLogFile(properties);
 
         // use defaults if nothing is set.
-        if (value == null) {
+        if (log == null) {
             mLogger.log("Logging to default streams", LogManager.DEBUG_MESSAGE_LEVEL);
-            return;
         } else {
-            // take a backup of the log if required.
-            File f = new File(value);
-            File dir = f.getParentFile();
-            String basename = f.getName();
-
-            NumberFormat formatter = new DecimalFormat("000");
-            File backupFile = null;
-            // start from 000 onwards and check for existence
-            for (int i = 0; i < 999; i++) {
-                StringBuffer backup = new StringBuffer();
-                backup.append(basename).append(".").append(formatter.format(i));
-
-                // check if backup file exists.
-                backupFile = new File(dir, backup.toString());
-                if (!backupFile.exists()) {
-                    break;
-                }
-            }
-
             // log both output and error messages to value specified
-            mLogger.setWriters(backupFile.getAbsolutePath());
+            mLogger.setWriters(log.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the file to log to, as specified by the pegasus.log.* property. An existing log is
+     * not overwritten, instead the first of the numbered files basename.000 to basename.998 that
+     * does not exist is returned.
+     *
+     * @param properties reference of pegasus properties object.
+     * @return the file to log to, or null if the property is not set.
+     */
+    protected static File getLogFile(PegasusProperties properties) {
+        // get the logging value set in properties
+        String value = properties.getProperty("pegasus.log.*");
+        if (value == null) {
+            return null;
+        }
+
+        // take a backup of the log if required.
+        File f = new File(value);
+        File dir = f.getParentFile();
+        String basename = f.getName();
+
+        NumberFormat formatter = new DecimalFormat("000");
+        File backupFile = null;
+        // start from 000 onwards and check for existence
+        for (int i = 0; i < 999; i++) {
+            StringBuffer backup = new StringBuffer();
+            backup.append(basename).append(".").append(formatter.format(i));
+
+            // check if backup file exists.
+            backupFile = new File(dir, backup.toString());
+            if (!backupFile.exists()) {
+                break;
+            }
         }
+        return backupFile;
     }
 
     /** Loads all the properties that would be needed by the Toolkit classes. */
@@ -0,0 +1,627 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.util.CommonProperties;
+import edu.isi.pegasus.common.util.FactoryException;
+import edu.isi.pegasus.planner.catalog.CatalogCache;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long lived planner, that plans the sub workflows of hierarchical workflows in process. The
+ * pegasus-plan-client that is invoked as the PRE script of a sub workflow job hands over the
+ * arguments it was invoked with, and the daemon plans the sub workflow using {@link CPlanner}, as
+ * pegasus-plan would have. This saves starting a JVM for each sub workflow, and the contents of the
+ * file based catalogs are cached across the sub workflows using the {@link CatalogCache}.
+ *
+ * <p>The daemon listens on the loopback interface, and writes the port and a randomly generated
+ * token to a state file that is only readable by the user. A client has to present the token to
+ * have a sub workflow planned. Each request is a single line of JSON with the token, the directory
+ * the client was invoked in and the arguments. The planner output is streamed back to the client,
+ * followed by a last line with the exitcode of the planner.
+ *
+ * <p>The requests are read and authenticated concurrently, but the sub workflows are planned one
+ * at a time. The planner keeps state in static fields and singletons, such as the logger loaded by
+ * {@link LogManagerFactory#loadSingletonInstance()}, that would be shared by sub workflows planned
+ * concurrently in the same JVM.
+ */
+public class PlannerDaemon extends Executable {
+
+    /** The environment variable that points to the state file. */
+    public static final String STATE_FILE_ENV_KEY = "PEGASUS_PLANNER_DAEMON_FILE";
+
+    /** The path to the default state file, relative to the user's home directory. */
+    public static final String DEFAULT_STATE_FILE =
+            ".pegasus" + File.separator + "planner-daemon";
+
+    /** The prefix for the last line of a response, that contains the exitcode of the planner. */
+    public static final String EXITCODE_PREFIX = "pegasus-plan-daemon exitcode: ";
+
+    /** The default time in milliseconds that a client has to send its request in. */
+    public static final int DEFAULT_REQUEST_TIMEOUT = 30000;
+
+    /** The port to listen on. 0 means any free port. */
+    private int mPort;
+
+    /** The number of clients to serve concurrently. */
+    private int mThreads;
+
+    /** The time in milliseconds that a client has to send its request in. */
+    private volatile int mRequestTimeout;
+
+    /** The lock held while planning a sub workflow, so that one is planned at a time. */
+    private final Object mPlanLock;
+
+    /** The file the port and the token are written to. */
+    private File mStateFile;
+
+    /** The token a client has to present. */
+    private String mToken;
+
+    /** The socket the daemon listens on. */
+    private ServerSocket mServer;
+
+    /** The threads that plan the sub workflows. */
+    private ExecutorService mPool;
+
+    /** Parses the requests. */
+    private ObjectMapper mMapper;
+
+    /** The default constructor. */
+    public PlannerDaemon() {
+        this(null, null);
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param logger the logger to use. Can be null.
+     * @param properties the properties to use. Can be null.
+     */
+    public PlannerDaemon(LogManager logger, PegasusProperties properties) {
+        super(logger, properties);
+        mPort = 0;
+        // determined from the properties on start, unless specified
+        mThreads = 0;
+        mRequestTimeout = DEFAULT_REQUEST_TIMEOUT;
+        mPlanLock = new Object();
+        String state = System.getenv(STATE_FILE_ENV_KEY);
+        mStateFile =
+                (state == null)
+                        ? new File(System.getProperty("user.home"), DEFAULT_STATE_FILE)
+                        : new File(state);
+        mMapper = new ObjectMapper();
+    }
+
+    /** Loads all the properties that would be needed by the Toolkit classes */
+    public void loadProperties() {}
+
+    public LongOpt[] generateValidOptions() {
+        LongOpt[] longopts = new LongOpt[8];
+        longopts[0] = new LongOpt("port", LongOpt.REQUIRED_ARGUMENT, null, 'p');
+        longopts[1] = new LongOpt("threads", LongOpt.REQUIRED_ARGUMENT, null, 't');
+        longopts[2] = new LongOpt("state-file", LongOpt.REQUIRED_ARGUMENT, null, 's');
+        longopts[3] = new LongOpt("conf", LongOpt.REQUIRED_ARGUMENT, null, 'c');
+        longopts[4] = new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h');
+        longopts[5] = new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V');
+        longopts[6] = new LongOpt("verbose", LongOpt.NO_ARGUMENT, null, 'v');
+        longopts[7] = new LongOpt("quiet", LongOpt.NO_ARGUMENT, null, 'q');
+        return longopts;
+    }
+
+    /**
+     * Parses the options, starts the daemon and serves requests till the daemon is killed.
+     *
+     * @throws IOException in case of error while starting the daemon
+     */
+    public void executeCommand() throws IOException {
+        this.parseCommandLineArguments(getCommandLineOptions());
+        this.start();
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread() {
+                            public void run() {
+                                PlannerDaemon.this.stop();
+                            }
+                        });
+        this.serve();
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the arguments passed by the user at command line.
+     */
+    public void parseCommandLineArguments(String[] args) {
+        LongOpt[] longOptions = generateValidOptions();
+
+        Getopt g =
+                new Getopt(
+                        "pegasus-plan-daemon",
+                        args,
+                        "p:t:s:c:hVvq",
+                        longOptions,
+                        false);
+
+        int level = LogManager.WARNING_MESSAGE_LEVEL;
+        int option = 0;
+        while ((option = g.getopt()) != -1) {
+            switch (option) {
+                case 'p': // port
+                    mPort = Integer.parseInt(g.getOptarg());
+                    break;
+
+                case 't': // threads
+                    mThreads = Math.max(1, Integer.parseInt(g.getOptarg()));
+                    break;
+
+                case 's': // state-file
+                    mStateFile = new File(g.getOptarg());
+                    break;
+
+                case 'c': // conf
+                    // do nothing
+                    break;
+
+                case 'h': // help
+                    printLongVersion();
+                    System.exit(0);
+                    break;
+
+                case 'V': // version
+                    System.out.println(getGVDSVersion());
+                    System.exit(0);
+                    break;
+
+                case 'v': // Verbose mode
+                    level++;
+                    break;
+
+                case 'q': // Quiet mode
+                    level--;
+                    break;
+
+                default:
+                    mLogger.log(
+                            "Unrecognized option or Invalid argument to option : "
+                                    + (char) g.getOptopt(),
+                            LogManager.FATAL_MESSAGE_LEVEL);
+                    printShortVersion();
+                    System.exit(1);
+            }
+        }
+        if (level >= 0) {
+            mLogger.setLevel(level);
+        } else {
+            // set log level to FATAL only
+            mLogger.setLevel(LogManager.FATAL_MESSAGE_LEVEL);
+        }
+    }
+
+    /**
+     * Starts listening on the loopback interface, and writes out the state file.
+     *
+     * @throws IOException in case of error while starting the daemon
+     */
+    public void start() throws IOException {
+        SecureRandom random = new SecureRandom();
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        mToken = token.toString();
+
+        if (mThreads <= 0) {
+            mThreads = mProps.getPlannerDaemonThreads();
+        }
+        mServer = new ServerSocket(mPort, 50, InetAddress.getLoopbackAddress());
+        mPool = Executors.newFixedThreadPool(mThreads);
+        CatalogCache.enable();
+
+        // the state file is only to be readable by the user
+        File dir = mStateFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        File tmp = new File(dir, mStateFile.getName() + ".tmp");
+        tmp.delete();
+        Files.createFile(tmp.toPath());
+        try {
+            Files.setPosixFilePermissions(
+                    tmp.toPath(),
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        } catch (UnsupportedOperationException e) {
+            // not a posix file system
+            tmp.setReadable(false, false);
+            tmp.setReadable(true, true);
+        }
+        try (PrintWriter pw = new PrintWriter(tmp, "UTF-8")) {
+            pw.println("port=" + this.getPort());
+            pw.println("token=" + mToken);
+        }
+        Files.move(
+                tmp.toPath(),
+                mStateFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        mLogger.log(
+                "pegasus-plan-daemon listening on port "
+                        + this.getPort()
+                        + " with "
+                        + mThreads
+                        + " threads. State written to "
+                        + mStateFile,
+                LogManager.CONSOLE_MESSAGE_LEVEL);
+    }
+
+    /** Accepts the requests and hands them to the planning threads, till the daemon is stopped. */
+    public void serve() {
+        while (!mServer.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServer.accept();
+            } catch (SocketException e) {
+                // the daemon was stopped
+                break;
+            } catch (IOException e) {
+                mLogger.log("Unable to accept connection", e, LogManager.ERROR_MESSAGE_LEVEL);
+                continue;
+            }
+            mPool.execute(
+                    new Runnable() {
+                        public void run() {
+                            handle(socket);
+                        }
+                    });
+        }
+    }
+
+    /** Stops the daemon, waiting for the sub workflows being planned, and removes the state. */
+    public void stop() {
+        try {
+            if (mServer != null) {
+                mServer.close();
+            }
+        } catch (IOException e) {
+        }
+        if (mPool != null) {
+            mPool.shutdown();
+            try {
+                mPool.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        mStateFile.delete();
+    }
+
+    /**
+     * Returns the port the daemon listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return mServer.getLocalPort();
+    }
+
+    /**
+     * Returns the token the clients have to present.
+     *
+     * @return the token
+     */
+    public String getToken() {
+        return mToken;
+    }
+
+    /**
+     * Sets the time that a client has to send its request in, after connecting. Clients that do
+     * not are disconnected, so that they do not hold up the threads serving the clients.
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void setRequestTimeout(int timeout) {
+        mRequestTimeout = timeout;
+    }
+
+    /**
+     * Handles a single request, streaming the planner output and the exitcode back to the client.
+     *
+     * @param socket the connection to the client
+     */
+    protected void handle(Socket socket) {
+        try (Socket s = socket;
+                BufferedReader in =
+                        new BufferedReader(
+                                new InputStreamReader(
+                                        s.getInputStream(), StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(s.getOutputStream(), true, "UTF-8")) {
+            int result;
+            try {
+                s.setSoTimeout(mRequestTimeout);
+                String line = in.readLine();
+                // only the planner output is streamed back after the request is read
+                s.setSoTimeout(0);
+                JsonNode request = (line == null) ? null : mMapper.readTree(line);
+                if (request == null || !request.has("token") || !request.has("cwd")) {
+                    throw new RuntimeException("Invalid request " + line);
+                }
+                byte[] token = request.get("token").asText().getBytes(StandardCharsets.UTF_8);
+                if (!MessageDigest.isEqual(token, mToken.getBytes(StandardCharsets.UTF_8))) {
+                    throw new RuntimeException("Invalid token presented");
+                }
+                List<String> args = new LinkedList<String>();
+                for (Iterator<JsonNode> it = request.path("args").elements(); it.hasNext(); ) {
+                    args.add(it.next().asText());
+                }
+                result = this.plan(request.get("cwd").asText(), args, out);
+            } catch (Exception e) {
+                mLogger.log("Unable to plan for request", e, LogManager.ERROR_MESSAGE_LEVEL);
+                out.println("ERROR: " + e.getMessage());
+                result = 1;
+            }
+            out.println(EXITCODE_PREFIX + result);
+        } catch (IOException e) {
+            mLogger.log("Unable to respond to request", e, LogManager.ERROR_MESSAGE_LEVEL);
+        }
+    }
+
+    /**
+     * Plans a sub workflow with the arguments pegasus-plan would have been invoked with. The JVM
+     * properties in the arguments are applied to the properties loaded for the sub workflow. The
+     * other JVM options are ignored, as the sub workflow is planned in the JVM of the daemon.
+     *
+     * @param cwd the directory the client was invoked in
+     * @param args the arguments pegasus-plan would have been invoked with
+     * @param out the stream to log to, if a log file is not specified in the properties
+     * @return the exitcode of the planner
+     * @throws IOException in case of error while opening the log
+     */
+    protected int plan(String cwd, List<String> args, PrintStream out) throws IOException {
+        List<String> plannerArgs = new LinkedList<String>();
+        List<String[]> jvmProperties = new LinkedList<String[]>();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.equals("-D") && i + 1 < args.size()) {
+                // java.sh also allows a space after -D
+                arg = "-D" + args.get(++i);
+            }
+            if (isJVMOption(arg, 'D')) {
+                int index = arg.indexOf('=');
+                jvmProperties.add(
+                        (index == -1)
+                                ? new String[] {arg.substring(2), ""}
+                                : new String[] {
+                                    arg.substring(2, index), arg.substring(index + 1)
+                                });
+            } else if (isJVMOption(arg, 'X')) {
+                mLogger.log(
+                        "Ignoring JVM option " + arg + " for sub workflow",
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            } else {
+                plannerArgs.add(arg);
+            }
+            if (arg.equals("-V") || arg.equals("--version")) {
+                out.println(getGVDSVersion());
+                return 0;
+            }
+        }
+        String[] plannerOpts = plannerArgs.toArray(new String[0]);
+
+        // properties cannot be loaded from a file that is not there,
+        // without taking the daemon down
+        String conf = this.lookupConfProperty(plannerOpts, '6');
+        if (conf != null) {
+            File f = new File(conf);
+            f = f.isAbsolute() ? f : new File(cwd, conf);
+            if (!f.canRead()) {
+                throw new IOException("Unable to read properties file " + f);
+            }
+            conf = f.getAbsolutePath();
+        } else {
+            // pegasus-plan picks up the properties in it's working directory
+            File f = new File(cwd, CommonProperties.WORKING_DIR_PROPERTIES_FILE);
+            conf = f.canRead() ? f.getAbsolutePath() : null;
+        }
+        PegasusProperties props = PegasusProperties.getInstance(conf);
+        for (String[] property : jvmProperties) {
+            props.setProperty(property[0], property[1]);
+        }
+        this.resolveCatalogFiles(props, cwd);
+
+        mLogger.log(
+                "Planning in " + cwd + " with arguments " + args, LogManager.DEBUG_MESSAGE_LEVEL);
+        int result;
+        synchronized (mPlanLock) {
+            result = this.runPlanner(cwd, props, plannerOpts, out);
+        }
+        mLogger.log(
+                "Planned in " + cwd + " with exitcode " + result, LogManager.DEBUG_MESSAGE_LEVEL);
+        return result;
+    }
+
+    /**
+     * Runs the planner for a sub workflow. Only called for one sub workflow at a time.
+     *
+     * @param cwd the directory the client was invoked in
+     * @param props the properties for the sub workflow
+     * @param plannerOpts the options for the planner
+     * @param out the stream to log to, if a log file is not specified in the properties
+     * @return the exitcode of the planner
+     * @throws IOException in case of error while opening the log
+     */
+    protected int runPlanner(
+            String cwd, PegasusProperties props, String[] plannerOpts, PrintStream out)
+            throws IOException {
+        // each sub workflow has it's own logger, to log to the client
+        // or the log file of the sub workflow
+        LogManager logger = LogManagerFactory.loadInstance(props);
+        File log = Executable.getLogFile(props);
+        PrintStream ps = (log == null) ? out : new PrintStream(new FileOutputStream(log, true));
+        try {
+            logger.setWriter(LogManager.STREAM_TYPE.stdout, ps);
+            logger.setWriter(LogManager.STREAM_TYPE.stderr, ps);
+            logger.logEventStart("event.pegasus.planner", "planner.version", mVersion);
+            return new CPlanner(logger, props, cwd).plan(plannerOpts);
+        } finally {
+            // the messages queued for the stream are written before it is closed
+            logger.flush();
+            if (ps != out) {
+                ps.close();
+            }
+        }
+    }
+
+    /**
+     * Resolves the relative paths to the catalog files against the directory the client was
+     * invoked in, as pegasus-plan would have resolved them against it's working directory.
+     *
+     * @param props the properties for the sub workflow
+     * @param cwd the directory the client was invoked in
+     */
+    private void resolveCatalogFiles(PegasusProperties props, String cwd) {
+        Properties catalogs = props.matchingSubset("pegasus.catalog", true);
+        for (String key : catalogs.stringPropertyNames()) {
+            if (!key.endsWith(".file")) {
+                continue;
+            }
+            File f = new File(catalogs.getProperty(key));
+            if (!f.isAbsolute()) {
+                props.setProperty(key, new File(cwd, f.getPath()).getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Returns whether an argument is a JVM option of the type passed, in the same manner as the
+     * java.sh wrapper for pegasus-plan decides.
+     *
+     * @param arg the argument
+     * @param type D for properties or X for non standard options
+     * @return boolean
+     */
+    private boolean isJVMOption(String arg, char type) {
+        if (arg.length() < 3 || arg.charAt(0) != '-' || arg.charAt(1) != type) {
+            return false;
+        }
+        char c = arg.charAt(2);
+        return Character.isLetter(c) || c == '_';
+    }
+
+    /** Returns the short help. */
+    public void printShortVersion() {
+        String text =
+                "\n "
+                        + getGVDSVersion()
+                        + "\n"
+                        + " Usage: pegasus-plan-daemon [-Dprop  [..]] [-p <port>] [-t <threads>]"
+                        + " [-s <state file>]\n"
+                        + "        [-c <path to property file>] [-v] [-q] [-V] [-h]\n";
+
+        System.out.print(text);
+    }
+
+    public void printLongVersion() {
+        String text =
+                "\n "
+                        + getGVDSVersion()
+                        + "\n"
+                        + " pegasus-plan-daemon - Plans the sub workflows of hierarchical"
+                        + " workflows in a long lived JVM\n"
+                        + " \n"
+                        + " Usage: pegasus-plan-daemon [-Dprop  [..]] [--port <port>] [--threads"
+                        + " <threads>]\n"
+                        + "          [--state-file <state file>] [--conf <path to property"
+                        + " file>] [--verbose]\n"
+                        + "          [--quiet] [--version] [--help]\n"
+                        + "\n"
+                        + " Options \n"
+                        + " -p |--port       the port to listen on. Defaults to any free port.\n"
+                        + " -t |--threads    the number of clients to serve concurrently.\n"
+                        + "                  Defaults to pegasus.planner.daemon.threads.\n"
+                        + " -s |--state-file the file the port and token are written to."
+                        + " Defaults to\n"
+                        + "                  $"
+                        + STATE_FILE_ENV_KEY
+                        + " or ~/"
+                        + DEFAULT_STATE_FILE
+                        + "\n"
+                        + " -c |--conf       path to  property file\n"
+                        + " -v |--verbose    increases the verbosity of messages about what is"
+                        + " going on\n"
+                        + " -q |--quiet      decreases the verbosity of messages about what is"
+                        + " going on\n"
+                        + " -V |--version    displays the version of the Pegasus Workflow Planner\n"
+                        + " -h |--help       generates this help.\n"
+                        + "\n"
+                        + " Set pegasus.planner.daemon to true when planning the root workflow,"
+                        + " to have\n"
+                        + " the sub workflows planned by the daemon.\n";
+
+        System.out.print(text);
+    }
+
+    public static void main(String[] args) {
+        PlannerDaemon me = new PlannerDaemon();
+        int result = 0;
+        try {
+            me.initialize(args);
+            me.executeCommand();
+        } catch (FactoryException fe) {
+            me.log(fe.convertException(), LogManager.FATAL_MESSAGE_LEVEL);
+            result = 2;
+        } catch (Exception e) {
+            me.log(convertException(e), LogManager.FATAL_MESSAGE_LEVEL);
+            result = 1;
+        }
+        me.mLogger.logEventCompletion();
+        System.exit(result);
+    }
+}
@@ -0,0 +1,434 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs items with one or more resource requirements into bins, that are later turned into
+ * clustered jobs. The items are identified by their index, and the requirements for each resource
+ * dimension are held in a primitive array, so that nothing is parsed or allocated per comparison.
+ *
+ * <p>The first dimension is the primary one, usually the runtime. It is additive, determines the
+ * order in which the items are packed, and is the load that is balanced when packing into a fixed
+ * number of bins. Further dimensions are either additive, where the requirements of the items in
+ * a bin add up, or peak, where the bin requires the maximum of the requirements of its items. This
+ * mirrors how the Pegasus profiles of the jobs in a cluster are aggregated, e.g. runtimes are
+ * summed up while the memory of the clustered job is the maximum over its jobs.
+ *
+ * <p>Items whose requirement in any dimension exceeds the capacity of that dimension cannot be
+ * placed in any bin, and are returned by {@link #getUnpacked()}.
+ */
+public class BinPacker {
+
+    /** How the requirements of the items in a bin aggregate in a dimension */
+    public enum AGGREGATION {
+        sum,
+        max
+    }
+
+    /** The number of items to pack */
+    private final int mSize;
+
+    /** The requirements of the items, indexed by dimension and then item */
+    private final List<double[]> mValues;
+
+    /** The capacities of the dimensions */
+    private final List<Double> mCapacities;
+
+    /** The indices of the additive dimensions */
+    private final List<Integer> mAdditive;
+
+    /** The items that could not be packed by the last pack operation */
+    private int[] mUnpacked;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param values the requirements of the items in the primary dimension
+     * @param capacity the capacity of a bin in the primary dimension. Use {@link
+     *     Double#POSITIVE_INFINITY} for no limit.
+     */
+    public BinPacker(double[] values, double capacity) {
+        mSize = values.length;
+        mValues = new ArrayList<double[]>();
+        mCapacities = new ArrayList<Double>();
+        mAdditive = new ArrayList<Integer>();
+        mUnpacked = new int[0];
+        addDimension(values, AGGREGATION.sum, capacity);
+    }
+
+    /**
+     * Adds a further resource dimension.
+     *
+     * @param values the requirements of the items in the dimension
+     * @param aggregation how the requirements of the items in a bin aggregate
+     * @param capacity the capacity of a bin in the dimension
+     */
+    public void addDimension(double[] values, AGGREGATION aggregation, double capacity) {
+        if (values.length != mSize) {
+            throw new IllegalArgumentException(
+                    "Expected requirements for " + mSize + " items, got " + values.length);
+        }
+        if (aggregation == AGGREGATION.sum) {
+            mAdditive.add(mValues.size());
+        }
+        mValues.add(values);
+        mCapacities.add(capacity);
+    }
+
+    /**
+     * Returns the items that could not be placed in any bin by the last pack operation, as their
+     * requirements exceed the capacity of a bin.
+     *
+     * @return the indices of the items in the order of the primary dimension
+     */
+    public int[] getUnpacked() {
+        return mUnpacked;
+    }
+
+    /**
+     * Packs the items into as few bins as possible, using first fit decreasing. The items are
+     * considered in decreasing order of the primary dimension, and each is placed in the first bin
+     * that has room for it, else in a new bin. The open bins are kept in a tree of the minimum
+     * loads of the additive dimensions, so that the first bin with room is found in logarithmic
+     * time.
+     *
+     * @return the bins in the order they were opened, each holding the item indices in the order
+     *     they were placed
+     */
+    public int[][] firstFitDecreasing() {
+        int[] order = order();
+        int n = order.length;
+        int[] dims = additiveDimensions();
+        double[] caps = capacities(dims);
+
+        int leaves = 1;
+        while (leaves < n) {
+            leaves <<= 1;
+        }
+        // the min loads, with the root at 1 and the leaf for bin i at leaves + i.
+        // the leaves of the bins not opened yet have no load, so the search for the
+        // first bin with room opens a new bin if none of the open ones has room
+        double[][] tree = new double[dims.length][2 * leaves];
+
+        int[] binOf = new int[n];
+        int bins = 0;
+        for (int i = 0; i < n; i++) {
+            int item = order[i];
+            int bin = firstFit(tree, dims, caps, item, 1, 0, leaves);
+            binOf[i] = bin;
+            bins = Math.max(bins, bin + 1);
+            for (int d = 0; d < dims.length; d++) {
+                double[] min = tree[d];
+                int node = leaves + bin;
+                min[node] += mValues.get(dims[d])[item];
+                for (node >>= 1; node > 0; node >>= 1) {
+                    min[node] = Math.min(min[2 * node], min[2 * node + 1]);
+                }
+            }
+        }
+        return group(order, binOf, bins);
+    }
+
+    /**
+     * Packs the items into a fixed number of bins, balancing the load in the primary dimension
+     * using the longest processing time first rule. The items are considered in decreasing order
+     * of the primary dimension, and each is placed in the bin with the least load that has room for
+     * it. If no bin has room, because of the capacities of the additive dimensions, a new bin is
+     * opened.
+     *
+     * @param maxBins the number of bins
+     * @return the non empty bins, in the order they were opened
+     */
+    public int[][] longestProcessingTimeFirst(int maxBins) {
+        int[] order = order();
+        int n = order.length;
+        int[] dims = additiveDimensions();
+        double[] caps = capacities(dims);
+
+        int bins = Math.min(Math.max(maxBins, 1), n);
+        double[][] loads = new double[dims.length][Math.max(bins, 1)];
+        // a binary min heap of the bins keyed by the load in the primary dimension
+        int[] heap = new int[loads[0].length];
+        for (int b = 0; b < bins; b++) {
+            heap[b] = b;
+        }
+        int heapSize = bins;
+        int[] skipped = new int[0];
+
+        int[] binOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int item = order[i];
+            int bin = -1;
+            int skips = 0;
+            while (heapSize > 0) {
+                int candidate = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, 0, loads[0]);
+                if (fits(loads, candidate, dims, caps, item)) {
+                    bin = candidate;
+                    break;
+                }
+                if (skips == skipped.length) {
+                    skipped = Arrays.copyOf(skipped, Math.max(4, 2 * skips));
+                }
+                skipped[skips++] = candidate;
+            }
+            if (bin == -1) {
+                bin = bins++;
+                if (bin == loads[0].length) {
+                    for (int d = 0; d < dims.length; d++) {
+                        loads[d] = Arrays.copyOf(loads[d], 2 * bin);
+                    }
+                    heap = Arrays.copyOf(heap, 2 * bin);
+                }
+            }
+            for (int d = 0; d < dims.length; d++) {
+                loads[d][bin] += mValues.get(dims[d])[item];
+            }
+            binOf[i] = bin;
+
+            heap[heapSize] = bin;
+            siftUp(heap, heapSize++, loads[0]);
+            for (int s = 0; s < skips; s++) {
+                heap[heapSize] = skipped[s];
+                siftUp(heap, heapSize++, loads[0]);
+            }
+        }
+        return group(order, binOf, n == 0 ? 0 : bins);
+    }
+
+    /**
+     * Returns the items that can be packed, stably sorted in decreasing order of the primary
+     * dimension, and records the ones that can not.
+     *
+     * @return the item indices
+     */
+    private int[] order() {
+        int[] packable = new int[mSize];
+        int[] unpacked = new int[mSize];
+        int p = 0;
+        int u = 0;
+        for (int item = 0; item < mSize; item++) {
+            boolean fits = true;
+            for (int d = 0; d < mValues.size() && fits; d++) {
+                fits = mValues.get(d)[item] <= mCapacities.get(d);
+            }
+            if (fits) {
+                packable[p++] = item;
+            } else {
+                unpacked[u++] = item;
+            }
+        }
+        mUnpacked = Arrays.copyOf(unpacked, u);
+        int[] order = Arrays.copyOf(packable, p);
+        sort(order, new int[p], 0, p, mValues.get(0));
+        return order;
+    }
+
+    /**
+     * Returns the index of the first bin in a subtree, that has room for an item.
+     *
+     * @param tree the min loads of the bins for the additive dimensions
+     * @param dims the additive dimensions
+     * @param caps the capacities of the additive dimensions
+     * @param item the item
+     * @param node the root of the subtree
+     * @param first the first bin in the subtree
+     * @param width the number of bins in the subtree
+     * @return the bin, else -1 if no bin in the subtree has room
+     */
+    private int firstFit(
+            double[][] tree, int[] dims, double[] caps, int item, int node, int first, int width) {
+        for (int d = 0; d < dims.length; d++) {
+            // same check as for a single bin, as the least loaded bin is the
+            // one most likely to have room
+            if (!(tree[d][node] + mValues.get(dims[d])[item] <= caps[d])) {
+                return -1;
+            }
+        }
+        if (width == 1) {
+            return first;
+        }
+        int half = width >> 1;
+        int bin = firstFit(tree, dims, caps, item, 2 * node, first, half);
+        // with a single additive dimension, the left subtree is guaranteed to
+        // have room if it passed the check, else we backtrack to the right
+        return bin != -1 ? bin : firstFit(tree, dims, caps, item, 2 * node + 1, first + half, half);
+    }
+
+    /**
+     * Returns whether a bin has room for an item in all the additive dimensions.
+     *
+     * @param loads the loads of the bins for the additive dimensions
+     * @param bin the bin
+     * @param dims the additive dimensions
+     * @param caps the capacities of the additive dimensions
+     * @param item the item
+     * @return boolean
+     */
+    private boolean fits(double[][] loads, int bin, int[] dims, double[] caps, int item) {
+        for (int d = 0; d < dims.length; d++) {
+            if (!(loads[d][bin] + mValues.get(dims[d])[item] <= caps[d])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Groups the items by the bin they were placed in.
+     *
+     * @param order the items in the order they were placed
+     * @param binOf the bin for each placed item
+     * @param bins the number of bins
+     * @return the non empty bins
+     */
+    private int[][] group(int[] order, int[] binOf, int bins) {
+        int[] counts = new int[bins];
+        for (int bin : binOf) {
+            counts[bin]++;
+        }
+        int[][] result = new int[bins][];
+        int nonEmpty = 0;
+        for (int b = 0; b < bins; b++) {
+            result[b] = new int[counts[b]];
+            if (counts[b] > 0) {
+                nonEmpty++;
+            }
+            counts[b] = 0;
+        }
+        for (int i = 0; i < order.length; i++) {
+            int bin = binOf[i];
+            result[bin][counts[bin]++] = order[i];
+        }
+        if (nonEmpty == bins) {
+            return result;
+        }
+        int[][] packed = new int[nonEmpty][];
+        for (int b = 0, p = 0; b < bins; b++) {
+            if (result[b].length > 0) {
+                packed[p++] = result[b];
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the indices of the additive dimensions.
+     *
+     * @return the indices
+     */
+    private int[] additiveDimensions() {
+        int[] dims = new int[mAdditive.size()];
+        for (int d = 0; d < dims.length; d++) {
+            dims[d] = mAdditive.get(d);
+        }
+        return dims;
+    }
+
+    /**
+     * Returns the capacities for dimensions.
+     *
+     * @param dims the dimensions
+     * @return the capacities
+     */
+    private double[] capacities(int[] dims) {
+        double[] caps = new double[dims.length];
+        for (int d = 0; d < dims.length; d++) {
+            caps[d] = mCapacities.get(dims[d]);
+        }
+        return caps;
+    }
+
+    /**
+     * Stable merge sort of a range of item indices in decreasing order of their keys.
+     *
+     * @param items the item indices
+     * @param buffer scratch space of the same length
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param keys the keys indexed by item
+     */
+    private static void sort(int[] items, int[] buffer, int from, int to, double[] keys) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(items, buffer, from, mid, keys);
+        sort(items, buffer, mid, to, keys);
+        if (Double.compare(keys[items[mid - 1]], keys[items[mid]]) >= 0) {
+            // already in order
+            return;
+        }
+        System.arraycopy(items, from, buffer, from, to - from);
+        for (int i = from, l = from, r = mid; i < to; i++) {
+            if (r == to || (l < mid && Double.compare(keys[buffer[l]], keys[buffer[r]]) >= 0)) {
+                items[i] = buffer[l++];
+            } else {
+                items[i] = buffer[r++];
+            }
+        }
+    }
+
+    /**
+     * Whether a bin orders before another in the heap, by load and then by index.
+     *
+     * @param a the first bin
+     * @param b the second bin
+     * @param loads the loads of the bins
+     * @return boolean
+     */
+    private static boolean before(int a, int b, double[] loads) {
+        return loads[a] < loads[b] || (loads[a] == loads[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, double[] loads) {
+        int bin = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(bin, heap[parent], loads)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = bin;
+    }
+
+    private static void siftDown(int[] heap, int size, int index, double[] loads) {
+        if (size == 0) {
+            return;
+        }
+        int bin = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child], loads)) {
+                child++;
+            }
+            if (!before(heap[child], bin, loads)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = bin;
+    }
+}
@@ -331,8 +331,6 @@ public class Horizontal
                                     + cFactor[2],
                             LogManager.DEBUG_MESSAGE_LEVEL);
 
-                    Collections.sort(l, getBinPackingComparator());
-
                     mLogger.log(
                             "Job Type: "
                                     + ((Job) l.get(0)).getCompleteTCName()
@@ -365,7 +363,6 @@ public class Horizontal
                             "Clustering into fixed number of bins " + clusterNum,
                             LogManager.DEBUG_MESSAGE_LEVEL);
 
-                    Collections.sort(l, getBinPackingComparator());
                     bins = bestFitBinPack(l, clusterNum);
                 }
 
@@ -464,159 +461,151 @@ public class Horizontal
     }
 
     /**
-     * Perform best fit bin packing.
+     * Perform first fit decreasing bin packing.
      *
-     * @param jobs List of jobs sorted in decreasing order of the job runtime.
+     * @param jobs List of jobs to be clustered.
      * @param maxTime The maximum time for which the clustered job should run.
      * @return List of List of Jobs where each List <Job> is the set of jobs which should be
      *     clustered together so as to run in under maxTime.
      */
     private List<List<Job>> bestFitBinPack(List<Job> jobs, double maxTime) {
-
-        List<List<Job>> bins = new LinkedList<List<Job>>();
-        List<List<Job>> returnBins = new LinkedList<List<Job>>();
-        List<Double> binTime = new LinkedList<Double>();
-        double minJobRunTime = Double.MAX_VALUE;
-
-        if (jobs != null && jobs.size() > 0) {
-            minJobRunTime = Double.parseDouble(getRunTime(jobs.get(jobs.size() - 1)));
-        }
-
-        for (Job j : jobs) {
-            List<Job> bin;
-            double currentBinTime;
-            boolean isBreak = false;
-            double jobRunTime = Double.parseDouble(getRunTime(j));
-
-            mLogger.log(
-                    "Job " + j.getID() + " runtime " + jobRunTime, LogManager.DEBUG_MESSAGE_LEVEL);
-
-            // Create first bin.
-            if (bins.size() == 0) {
-                bins.add(new LinkedList<Job>());
-                binTime.add(0, 0d);
-            }
-
-            // Loop through each job.
-            for (int i = 0, k = bins.size(); i < k; ++i) {
-                currentBinTime = binTime.get(i);
-
-                // Is the job runtime greater than the max allowed runtime? Then
-                // do not cluster this job.
-                if (maxTime < jobRunTime) {
-                    mLogger.log(
-                            "Job "
-                                    + j.getID()
-                                    + " runtime "
-                                    + jobRunTime
-                                    + " is greater than clusters max run time "
-                                    + maxTime
-                                    + " specified by the Pegasus profile "
-                                    + Pegasus.MAX_RUN_TIME,
-                            LogManager.DEBUG_MESSAGE_LEVEL);
-                    break;
-                }
-
-                // Can we fit the job in an existing bin?
-                if (maxTime >= currentBinTime + jobRunTime) {
-                    bin = bins.get(i);
-                    bin.add(j);
-                    binTime.set(i, currentBinTime + jobRunTime);
-                    isBreak = true;
-                } else if (i == k - 1) {
-                    // We cannot fit the job in any of the open bins, so create
-                    // a new one.
-                    bin = new LinkedList<Job>();
-                    bin.add(j);
-                    bins.add(bin);
-                    binTime.add(binTime.size(), jobRunTime);
-                }
-
-                // Either this bin is full, or it does not even have space to
-                // fit the job with the smallest run time. So lets avoid trying
-                // to fit jobs in this bin.
-                if (binTime.get(i) + minJobRunTime > maxTime) {
-                    returnBins.add(bins.remove(i));
-                    binTime.remove(i);
-                }
-
-                // Job has been assigned a bin, no need to check other bins for
-                // space.
-                if (isBreak) break;
-            }
-        }
-
-        returnBins.addAll(bins);
-        return returnBins;
+        BinPacker packer = createBinPacker(jobs, maxTime);
+        return toBins(jobs, packer.firstFitDecreasing(), packer);
     }
 
     /**
-     * Perform best fit bin packing.
+     * Perform longest processing time first bin packing.
      *
-     * @param jobs List of jobs sorted in decreasing order of the job runtime.
+     * @param jobs List of jobs to be clustered.
      * @param maxBins The fixed-number of bins that should be created
      * @return List of List of Jobs where each List <Job> is the set of jobs which should be
-     *     clustered together so as to run in under maxTime.
+     *     clustered together so as to balance the runtime across the bins.
      */
     private List<List<Job>> bestFitBinPack(List<Job> jobs, int maxBins) {
+        BinPacker packer = createBinPacker(jobs, Double.POSITIVE_INFINITY);
+        return toBins(jobs, packer.longestProcessingTimeFirst(maxBins), packer);
+    }
 
-        class Bin {
-            private List<Job> bin = new LinkedList<Job>();
-            private double time = 0;
-
-            public void addJob(Job j) {
-                bin.add(j);
-                double jobRunTime = Double.parseDouble(getRunTime(j));
-                time += jobRunTime;
+    /**
+     * Creates the bin packer for the jobs, parsing the runtime of each job once. If the Pegasus
+     * profiles for the memory or cores available to a clustered job are set, the memory and cores
+     * required by the jobs are considered as further dimensions. Since the clustered job requests
+     * the maximum memory of its jobs, jobs requiring more than the limit are not clustered.
+     *
+     * @param jobs the jobs to be clustered
+     * @param maxTime the maximum time for which the clustered job should run
+     * @return the bin packer
+     */
+    private BinPacker createBinPacker(List<Job> jobs, double maxTime) {
+        boolean debug = mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL);
+        Job first = jobs.isEmpty() ? null : jobs.get(0);
+        double maxMemory = getClusterLimit(first, Pegasus.CLUSTERS_MAX_MEMORY_KEY);
+        double maxCores = getClusterLimit(first, Pegasus.CLUSTERS_MAX_CORES_KEY);
+
+        double[] runtimes = new double[jobs.size()];
+        double[] memory = new double[jobs.size()];
+        double[] cores = new double[jobs.size()];
+        int i = 0;
+        for (Job j : jobs) {
+            runtimes[i] = Double.parseDouble(getRunTime(j));
+            if (maxMemory != Double.POSITIVE_INFINITY) {
+                memory[i] = getResource(j, Pegasus.MEMORY_KEY);
             }
-
-            public List<Job> getJobs() {
-                return bin;
+            if (maxCores != Double.POSITIVE_INFINITY) {
+                cores[i] = getResource(j, Pegasus.CORES_KEY);
             }
-
-            public double getTime() {
-                return time;
+            if (debug) {
+                mLogger.log(
+                        "Job " + j.getID() + " runtime " + runtimes[i],
+                        LogManager.DEBUG_MESSAGE_LEVEL);
             }
+            i++;
         }
 
-        PriorityQueue<Bin> bins =
-                new PriorityQueue<Bin>(
-                        maxBins,
-                        new Comparator<Bin>() {
-                            @Override
-                            public int compare(Bin bin1, Bin bin2) {
-                                return (int) (bin1.getTime() - bin2.getTime());
-                            }
-                        });
-
-        // Initialize the bins, to the specified number of bins.
-        // If the number of jobs n is less than @maxBins then create n bins
-        maxBins = Math.min(maxBins, jobs.size());
-
-        for (int i = 0; i < maxBins; ++i) {
-            bins.add(new Bin());
+        BinPacker packer = new BinPacker(runtimes, maxTime);
+        if (maxMemory != Double.POSITIVE_INFINITY) {
+            packer.addDimension(memory, BinPacker.AGGREGATION.max, maxMemory);
+        }
+        if (maxCores != Double.POSITIVE_INFINITY) {
+            packer.addDimension(cores, BinPacker.AGGREGATION.max, maxCores);
         }
+        return packer;
+    }
 
-        for (Job j : jobs) {
-            Bin bin;
+    /**
+     * Converts the bins computed by the bin packer to lists of jobs.
+     *
+     * @param jobs the jobs that were packed
+     * @param packed the bins with the indices of the jobs
+     * @param packer the bin packer
+     * @return List of List of Jobs where each List <Job> is the set of jobs which should be
+     *     clustered together.
+     */
+    private List<List<Job>> toBins(List<Job> jobs, int[][] packed, BinPacker packer) {
+        Job[] index = jobs.toArray(new Job[jobs.size()]);
+        for (int item : packer.getUnpacked()) {
             mLogger.log(
-                    "Job " + j.getID() + " runtime " + getRunTime(j),
+                    "Job {} exceeds the limits for a clustered job specified by the Pegasus"
+                            + " profiles. Not clustering it",
+                    index[item].getID(),
                     LogManager.DEBUG_MESSAGE_LEVEL);
-
-            // Add the job to the bin with the shortest combined runtime
-            bin = bins.poll();
-            bin.addJob(j);
-            bins.offer(bin);
         }
 
-        List<List<Job>> returnBins = new LinkedList<List<Job>>();
+        List<List<Job>> bins = new LinkedList<List<Job>>();
+        for (int[] bin : packed) {
+            List<Job> l = new LinkedList<Job>();
+            for (int item : bin) {
+                l.add(index[item]);
+            }
+            bins.add(l);
+        }
+        mLogger.log(
+                "Packed "
+                        + (jobs.size() - packer.getUnpacked().length)
+                        + " jobs into "
+                        + bins.size()
+                        + " bins",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        return bins;
+    }
 
-        for (Bin b : bins) {
-            mLogger.log("Bin Size: " + b.getTime(), LogManager.DEBUG_MESSAGE_LEVEL);
-            returnBins.add(b.getJobs());
+    /**
+     * Returns the limit for a clustered job specified by a Pegasus profile.
+     *
+     * @param job the job to look up the profile in, can be null
+     * @param key the profile key
+     * @return the limit, else Double.POSITIVE_INFINITY if not specified
+     */
+    private double getClusterLimit(Job job, String key) {
+        String value = (job == null) ? null : job.vdsNS.getStringValue(key);
+        if (value == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Profile key " + key + " is not a valid number " + value, e);
         }
+    }
 
-        return returnBins;
+    /**
+     * Returns the amount of a resource required by a job as specified by a Pegasus profile. Values
+     * that are not numbers, e.g. expressions, are treated as not specified.
+     *
+     * @param job the job
+     * @param key the profile key
+     * @return the amount, else 0 if not specified
+     */
+    private double getResource(Job job, String key) {
+        String value = job.vdsNS.getStringValue(key);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     private String getRunTime(Job job) {
@@ -641,47 +630,6 @@ public class Horizontal
                 "Profile Key: " + Pegasus.RUNTIME_KEY + " is not set for the job " + job.getID());
     }
 
-    /**
-     * The comparator is used to sort a collection of jobs in decreasing order of their run times as
-     * specified by the Pegasus.DEPRECATED_RUNTIME_KEY property.
-     *
-     * @return
-     */
-    private Comparator<Job> getBinPackingComparator() {
-        return new Comparator<Job>() {
-
-            @Override
-            public int compare(Job job1, Job job2) {
-                String s1 = getRunTime(job1);
-                String s2 = getRunTime(job2);
-
-                double jobTime1 = Double.parseDouble(s1);
-                double jobTime2 = Double.parseDouble(s2);
-
-                return (int) (jobTime2 - jobTime1);
-            }
-
-            private String getRunTime(Job job) {
-
-                String sTmp = (String) job.vdsNS.get(Pegasus.RUNTIME_KEY);
-                if (sTmp != null && sTmp.length() > 0) {
-                    return sTmp;
-                }
-
-                sTmp = (String) job.vdsNS.get(Pegasus.DEPRECATED_RUNTIME_KEY);
-                if (sTmp != null && sTmp.length() > 0) {
-                    return sTmp;
-                }
-
-                throw new RuntimeException(
-                        "Profile Key: "
-                                + Pegasus.RUNTIME_KEY
-                                + " is not set for the job "
-                                + job.getID());
-            }
-        };
-    }
-
     /**
      * Returns the clustered workflow.
      *
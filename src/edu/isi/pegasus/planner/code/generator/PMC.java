@@ -29,6 +29,7 @@ import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -75,7 +76,11 @@ public class PMC extends Abstract {
 
         // create the base directory recovery
         File wdir = new File(mSubmitFileDir);
-        wdir.mkdirs();
+        try {
+            mBag.getLocalFileSystem().mkdirs(wdir);
+        } catch (IOException ioe) {
+            throw new CodeGeneratorException("Unable to create submit directory " + wdir, ioe);
+        }
     }
 
     /**
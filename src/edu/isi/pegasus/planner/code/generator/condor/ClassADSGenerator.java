@@ -97,7 +97,7 @@ public class ClassADSGenerator {
      *
      * @return
      */
-    public static Map<String, String> pegasusClassAdKeysToPegasusProfiles() {
+    public static synchronized Map<String, String> pegasusClassAdKeysToPegasusProfiles() {
         if (mPegasusClassAdsToPegasusProfiles == null) {
             mPegasusClassAdsToPegasusProfiles = new HashMap();
             mPegasusClassAdsToPegasusProfiles.put(ClassADSGenerator.MEMORY_KEY, Pegasus.MEMORY_KEY);
@@ -124,7 +124,7 @@ public class ClassADSGenerator {
      *
      * @return
      */
-    public static Map<String, String> pegasusProfilesToPegasusClassAdKeys() {
+    public static synchronized Map<String, String> pegasusProfilesToPegasusClassAdKeys() {
         if (mPegasusProfilesToPegasusClassAdKeys == null) {
             mPegasusProfilesToPegasusClassAdKeys = new HashMap();
             mPegasusProfilesToPegasusClassAdKeys.put(
@@ -59,13 +59,10 @@ import edu.isi.pegasus.planner.transfer.implementation.Transfer;
 
 import org.griphyn.vdl.euryale.VTorInUseException;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -73,10 +70,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class generates the condor submit files for the DAG which has to be submitted to the Condor
@@ -156,6 +160,9 @@ public class CondorGenerator extends Abstract {
     /** default value for CONDOR_JOBID env variable */
     public static final String DEFAULT_CONDOR_JOB_ID_ENV_VALUE = "$(cluster).$(process)";
 
+    /** The key for an inline submit description in the .dag file. */
+    public static final String SUBMIT_DESCRIPTION_KEY = "SUBMIT-DESCRIPTION";
+
     /** default prefix for user classads in .dag file * */
     public static final String DEFAULT_PREFIX_FOR_USER_CLASSADS_IN_DAG = "My.";
 
@@ -169,7 +176,7 @@ public class CondorGenerator extends Abstract {
     private static Map<String, String> mDefaultMaxJobsCategoryValues = null;
 
     /** Map that maps job type to corresponding condor concurrency limits */
-    private static Map<Integer, String> jobTypeToCondorConcurrencyLimits() {
+    private static synchronized Map<Integer, String> jobTypeToCondorConcurrencyLimits() {
         if (mJobTypeToCondorConcurrencyLimits == null) {
             // PM-933
             mJobTypeToCondorConcurrencyLimits = new HashMap();
@@ -196,7 +203,7 @@ public class CondorGenerator extends Abstract {
     }
 
     /** Map that maps job type to corresponding condor concurrency limits */
-    private static Map<String, String> defaultMaxJobsCategoryValues() {
+    private static synchronized Map<String, String> defaultMaxJobsCategoryValues() {
         if (mDefaultMaxJobsCategoryValues == null) {
             // PM-1212
             mDefaultMaxJobsCategoryValues = new HashMap();
@@ -265,6 +272,18 @@ public class CondorGenerator extends Abstract {
     /** The app name picked from pegasus properties */
     private String mAppName;
 
+    /** The number of threads to use for writing out the submit files. */
+    private int mThreads;
+
+    /** Boolean indicating whether to write the submit descriptions inline in the .dag file. */
+    private boolean mInlineSubmitDescriptions;
+
+    /** The style factory of a worker thread writing out submit files. */
+    private ThreadLocal<CondorStyleFactory> mWorkerStyleFactory;
+
+    /** The gridstart factory of a worker thread writing out submit files. */
+    private ThreadLocal<GridStartFactory> mWorkerGridStartFactory;
+
     /** The default constructor. */
     public CondorGenerator() {
         super();
@@ -272,6 +291,8 @@ public class CondorGenerator extends Abstract {
         mStyleFactory = new CondorStyleFactory();
         mGridStartFactory = new GridStartFactory();
         mEnvEscape = new CondorEnvironmentEscape();
+        mWorkerStyleFactory = new ThreadLocal<CondorStyleFactory>();
+        mWorkerGridStartFactory = new ThreadLocal<GridStartFactory>();
     }
 
     /**
@@ -286,7 +307,11 @@ public class CondorGenerator extends Abstract {
 
         // create the base directory recovery
         File wdir = new File(mSubmitFileDir);
-        wdir.mkdirs();
+        try {
+            mBag.getLocalFileSystem().mkdirs(wdir);
+        } catch (IOException ioe) {
+            throw new CodeGeneratorException("Unable to create submit directory " + wdir, ioe);
+        }
 
         mTCHandle = bag.getHandleToTransformationCatalog();
         mSiteStore = bag.getHandleToSiteStore();
@@ -297,6 +322,7 @@ public class CondorGenerator extends Abstract {
             // can still be null but it is fine
             mAppName = mProps.getProperty(PegasusProperties.PEGASUS_APP_METRICS_PREFIX + ".name");
         }
+        mThreads = mProps.getCodeGeneratorThreads();
 
         // instantiate and initialize the style factory
         mStyleFactory.initialize(bag);
@@ -310,6 +336,16 @@ public class CondorGenerator extends Abstract {
             mLogger.log(
                     "Condor Version detected is " + mCondorVersion, LogManager.DEBUG_MESSAGE_LEVEL);
         }
+
+        mInlineSubmitDescriptions = mProps.inlineCondorSubmitDescriptions();
+        if (mInlineSubmitDescriptions && mCondorVersion < CondorVersion.v_10_0_0) {
+            // inline submit descriptions are only understood by newer dagman
+            mLogger.log(
+                    "Inline submit descriptions require condor version 10.0.0 or higher."
+                            + " Writing out a submit file per job",
+                    LogManager.WARNING_MESSAGE_LEVEL);
+            mInlineSubmitDescriptions = false;
+        }
     }
 
     /**
@@ -354,7 +390,9 @@ public class CondorGenerator extends Abstract {
                 directory = new File(dir);
 
                 // try to create this directory if it does not exist
-                if (!directory.exists() && !directory.mkdirs()) {
+                try {
+                    mBag.getLocalFileSystem().mkdirs(directory);
+                } catch (IOException ioe) {
                     // directory does not exist and cannot be created
                     directory = null;
                 }
@@ -404,122 +442,26 @@ public class CondorGenerator extends Abstract {
         // write out any category based dagman knobs to the dagman file
         printDagString(this.getCategoryDAGManKnobs(mProps));
 
-        for (Iterator it = dag.iterator(); it.hasNext(); ) {
-            GraphNode node = (GraphNode) it.next();
-            Job job = (Job) node.getContent();
-
-            if (this.mAssignDefaultJobPriorities) {
-                int priority = 0;
-                if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
-                    // PM-1705, PM-1385  store the existing value with the jobs unless
-                    // there is a stagein job, for which we add the existing priority
-                    // to the depth based computed one.
-                    priority = job.condorVariables.getIntValue(Condor.PRIORITY_KEY, 0);
-                    if (job.getJobType() == Job.STAGE_IN_JOB) {
-                        // PM-1385 we add the precomputed priority to default priority
-                        priority = getJobPriority(job, node.getDepth()) + priority;
-                    }
-                } else {
-                    // only apply priority if job is not associated with a priority
-                    // beforehand and assign priorities by default is true
-                    priority = getJobPriority(job, node.getDepth());
-                }
-                // apply a priority to the job overwriting any preexisting priority
-                job.condorVariables.construct(
-                        Condor.PRIORITY_KEY, new Integer(priority).toString());
-
-                // log to debug
-                StringBuffer sb = new StringBuffer();
-                sb.append("Applying priority of ")
-                        .append(priority)
-                        .append(" to ")
-                        .append(job.getID());
-                mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-            }
-
-            // HTCondor ticket 5749 . We can assign DAG priorities only if
-            // detected condor version is greater than 8.5.6
-            if (mCondorVersion >= CondorVersion.v_8_5_6) {
-                // PM-1105 assign a DAGMAN priority that mirrors the condor
-                // job priority if set, only if DAGMAN priority is not already set
-                if (!job.dagmanVariables.containsKey(Dagman.PRIORITY_KEY)) {
-                    // check again if condor priority is set and mirror it
-                    if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
-                        job.dagmanVariables.construct(
-                                Dagman.PRIORITY_KEY,
-                                (String) job.condorVariables.get(Condor.PRIORITY_KEY));
-                    }
-                }
-            }
-
-            String prefixForUserClassadsinDAGFile = DEFAULT_PREFIX_FOR_USER_CLASSADS_IN_DAG;
-            ;
-            if (mCondorVersion < CondorVersion.v_8_9_4) {
-                // PM-1913 before condor 8.9.4 the only way to designate
-                // the classads was using the + as a prefix
-                prefixForUserClassadsinDAGFile = OLD_PREFIX_FOR_USER_CLASSADS_IN_DAG;
-            }
-
-            if (job instanceof DAGJob) {
-                // SUBDAG EXTERNAL  B  inner.dag
-                DAGJob djob = (DAGJob) job;
-
-                // djob.dagmanVariables.checkKeyInNS( Dagman.SUBDAG_EXTERNAL_KEY,
-                //                                  djob.getDAGFile() );
-                StringBuffer sb = new StringBuffer();
-                sb.append(Dagman.SUBDAG_EXTERNAL_KEY)
-                        .append(" ")
-                        .append(job.getName())
-                        .append(" ")
-                        .append(djob.getDAGFile());
-
-                // check if dag needs to run in a specific directory
-                String dagDir = djob.getDirectory();
-                if (dagDir != null) {
-                    sb.append(" ").append(Dagman.DIRECTORY_EXTERNAL_KEY).append(" ").append(dagDir);
-                }
-
-                // if no category is associated with the job, add a default
-                // category
-                if (!job.dagmanVariables.containsKey(Dagman.CATEGORY_KEY)) {
-                    job.dagmanVariables.construct(Dagman.CATEGORY_KEY, DEFAULT_SUBDAG_CATEGORY_KEY);
-                }
-
-                printDagString(sb.toString());
-
-                printDagString(
-                        job.dagmanVariables.toString(
-                                job.getName(), prefixForUserClassadsinDAGFile));
-            } else { // normal jobs and subdax jobs
-
-                if (job.typeRecursive()) {
-                    Job daxJob = job;
-                    job = subdaxGen.generateCode(job);
-
-                    // set the arguments to the DAX job to the ones
-                    // in the generated DAGJob to ensure stampede event
-                    // is generated correctly
-                    daxJob.setRemoteExecutable(job.getRemoteExecutable());
-                    daxJob.setArguments(job.getArguments());
-                }
-
-                if (job != null) {
-                    // the submit file for the job needs to be written out
-                    // write out a condor submit file
-                    generateCode(dag, job);
-                }
-
-                // write out all the dagman profile variables associated
-                // with the job to the .dag file.
-                printDagString(
-                        job.dagmanVariables.toString(
-                                job.getName(), prefixForUserClassadsinDAGFile));
-            }
-
+        // the submit files are optionally written out by a pool of worker
+        // threads. the entries in the .dag file are written in the order of
+        // the iteration, once the submit file for the job has been written
+        // out, as writing the submit file updates the dagman profiles of the job
+        ExecutorService pool = null;
+        int window = 0;
+        if (mThreads > 1) {
             mLogger.log(
-                    "Written Submit file : "
-                            + job.getFileFullPath(this.mSubmitFileDir, SUBMIT_FILE_SUFFIX),
+                    "Writing out submit files using " + mThreads + " threads",
                     LogManager.DEBUG_MESSAGE_LEVEL);
+            pool = Executors.newFixedThreadPool(mThreads);
+            // bounds the number of jobs waiting for their .dag file entry
+            window = mThreads * 4;
+        }
+        try {
+            this.writeSubmitFiles(dag, subdaxGen, pool, window);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
         }
         mLogger.logEventCompletion(LogManager.DEBUG_MESSAGE_LEVEL);
 
@@ -561,7 +503,12 @@ public class CondorGenerator extends Abstract {
         // PM-966 rename the tmp dag file back to the original key
         // before we write out the dag.condor.sub file
 
-        dagFile.renameTo(orgDAGFile);
+        try {
+            mBag.getLocalFileSystem().rename(dagFile, orgDAGFile);
+        } catch (IOException ioe) {
+            throw new CodeGeneratorException(
+                    "Unable to rename temporary dag file " + dagFile + " to " + orgDAGFile, ioe);
+        }
         mLogger.log(
                 "Renamed temporary dag file to : " + orgDAGFile, LogManager.DEBUG_MESSAGE_LEVEL);
 
@@ -601,6 +548,22 @@ public class CondorGenerator extends Abstract {
      * @throws CodeGeneratorException in case of any error occurring code generation.
      */
     public void generateCode(ADag dag, Job job) throws CodeGeneratorException {
+        this.generateCode(dag, job, false);
+    }
+
+    /**
+     * Generates the submit description for a single job, either to a condor submit file or to a
+     * String that is written inline to the .dag file.
+     *
+     * @param dag the dag of which the job is a part of.
+     * @param job the <code>Job</code> object holding the information about that particular job.
+     * @param inline boolean indicating whether to return the submit description instead of
+     *     writing it to a submit file.
+     * @return the submit description if inline is true, else null.
+     * @throws CodeGeneratorException in case of any error occurring code generation.
+     */
+    private String generateCode(ADag dag, Job job, boolean inline)
+            throws CodeGeneratorException {
         String dagname = dag.getLabel();
         String dagindex = dag.getIndex();
         String dagcount = dag.getCount();
@@ -617,11 +580,22 @@ public class CondorGenerator extends Abstract {
 
         // initialize the print stream to the file
         PrintWriter writer = null;
-        try {
-            writer = getWriter(job, SUBMIT_FILE_SUFFIX);
-        } catch (IOException ioe) {
-            throw new CodeGeneratorException(
-                    "IOException while writing submit file for job " + job.getName(), ioe);
+        StringWriter description = null;
+        if (inline) {
+            // the JOB entry in the .dag file refers to the submit description,
+            // named the same as the submit file would be so that the job
+            // submit directory can be determined from it
+            description = new StringWriter();
+            writer = new PrintWriter(description);
+            job.dagmanVariables.construct(
+                    Dagman.JOB_KEY, job.getFileRelativePath(SUBMIT_FILE_SUFFIX));
+        } else {
+            try {
+                writer = getWriter(job, SUBMIT_FILE_SUFFIX);
+            } catch (IOException ioe) {
+                throw new CodeGeneratorException(
+                        "IOException while writing submit file for job " + job.getName(), ioe);
+            }
         }
 
         // handle the globus rsl parameters
@@ -687,7 +661,271 @@ public class CondorGenerator extends Abstract {
 
         // close the print stream to the file (flush)
         writer.close();
-        return;
+        return inline ? description.toString() : null;
+    }
+
+    /**
+     * Writes out the submit files for the jobs in the workflow, and the corresponding entries in
+     * the .dag file in the order of the workflow iterator.
+     *
+     * @param dag the concrete workflow.
+     * @param subdaxGen the generator for the sub workflow jobs.
+     * @param pool the threads writing out the submit files, or null to write them out in the
+     *     calling thread.
+     * @param window the maximum number of jobs whose .dag file entries can be pending.
+     * @throws CodeGeneratorException in case of any error occurring code generation.
+     */
+    private void writeSubmitFiles(
+            ADag dag, SUBDAXGenerator subdaxGen, ExecutorService pool, int window)
+            throws CodeGeneratorException {
+        LinkedList<DAGEntry> pending = new LinkedList<DAGEntry>();
+        for (Iterator it = dag.iterator(); it.hasNext(); ) {
+            GraphNode node = (GraphNode) it.next();
+            Job job = (Job) node.getContent();
+
+            if (this.mAssignDefaultJobPriorities) {
+                int priority = 0;
+                if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
+                    // PM-1705, PM-1385  store the existing value with the jobs unless
+                    // there is a stagein job, for which we add the existing priority
+                    // to the depth based computed one.
+                    priority = job.condorVariables.getIntValue(Condor.PRIORITY_KEY, 0);
+                    if (job.getJobType() == Job.STAGE_IN_JOB) {
+                        // PM-1385 we add the precomputed priority to default priority
+                        priority = getJobPriority(job, node.getDepth()) + priority;
+                    }
+                } else {
+                    // only apply priority if job is not associated with a priority
+                    // beforehand and assign priorities by default is true
+                    priority = getJobPriority(job, node.getDepth());
+                }
+                // apply a priority to the job overwriting any preexisting priority
+                job.condorVariables.construct(
+                        Condor.PRIORITY_KEY, new Integer(priority).toString());
+
+                // log to debug
+                StringBuffer sb = new StringBuffer();
+                sb.append("Applying priority of ")
+                        .append(priority)
+                        .append(" to ")
+                        .append(job.getID());
+                mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+
+            // HTCondor ticket 5749 . We can assign DAG priorities only if
+            // detected condor version is greater than 8.5.6
+            if (mCondorVersion >= CondorVersion.v_8_5_6) {
+                // PM-1105 assign a DAGMAN priority that mirrors the condor
+                // job priority if set, only if DAGMAN priority is not already set
+                if (!job.dagmanVariables.containsKey(Dagman.PRIORITY_KEY)) {
+                    // check again if condor priority is set and mirror it
+                    if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
+                        job.dagmanVariables.construct(
+                                Dagman.PRIORITY_KEY,
+                                (String) job.condorVariables.get(Condor.PRIORITY_KEY));
+                    }
+                }
+            }
+
+            String prefixForUserClassadsinDAGFile = DEFAULT_PREFIX_FOR_USER_CLASSADS_IN_DAG;
+            ;
+            if (mCondorVersion < CondorVersion.v_8_9_4) {
+                // PM-1913 before condor 8.9.4 the only way to designate
+                // the classads was using the + as a prefix
+                prefixForUserClassadsinDAGFile = OLD_PREFIX_FOR_USER_CLASSADS_IN_DAG;
+            }
+
+            if (job instanceof DAGJob) {
+                // SUBDAG EXTERNAL  B  inner.dag
+                DAGJob djob = (DAGJob) job;
+
+                // djob.dagmanVariables.checkKeyInNS( Dagman.SUBDAG_EXTERNAL_KEY,
+                //                                  djob.getDAGFile() );
+                StringBuffer sb = new StringBuffer();
+                sb.append(Dagman.SUBDAG_EXTERNAL_KEY)
+                        .append(" ")
+                        .append(job.getName())
+                        .append(" ")
+                        .append(djob.getDAGFile());
+
+                // check if dag needs to run in a specific directory
+                String dagDir = djob.getDirectory();
+                if (dagDir != null) {
+                    sb.append(" ").append(Dagman.DIRECTORY_EXTERNAL_KEY).append(" ").append(dagDir);
+                }
+
+                // if no category is associated with the job, add a default
+                // category
+                if (!job.dagmanVariables.containsKey(Dagman.CATEGORY_KEY)) {
+                    job.dagmanVariables.construct(Dagman.CATEGORY_KEY, DEFAULT_SUBDAG_CATEGORY_KEY);
+                }
+
+                pending.add(
+                        new DAGEntry(job, prefixForUserClassadsinDAGFile, sb.toString(), null));
+            } else { // normal jobs and subdax jobs
+
+                if (job.typeRecursive()) {
+                    // the sub workflow generation looks at the parent jobs
+                    // whose submit files may still be written out
+                    this.writeDAGEntries(pending, 0);
+
+                    Job daxJob = job;
+                    job = subdaxGen.generateCode(job);
+
+                    // set the arguments to the DAX job to the ones
+                    // in the generated DAGJob to ensure stampede event
+                    // is generated correctly
+                    daxJob.setRemoteExecutable(job.getRemoteExecutable());
+                    daxJob.setArguments(job.getArguments());
+                }
+
+                Future<String> rendered = null;
+                if (job != null) {
+                    // the submit file for the job needs to be written out
+                    // write out a condor submit file
+                    rendered = this.writeSubmitFile(pool, dag, job);
+                }
+
+                // the dagman profile variables associated with the job are
+                // written to the .dag file once the submit file is written
+                pending.add(new DAGEntry(job, prefixForUserClassadsinDAGFile, null, rendered));
+            }
+
+            this.writeDAGEntries(pending, window);
+        }
+        this.writeDAGEntries(pending, 0);
+    }
+
+    /**
+     * Writes out the submit file for a job, either in the calling thread or by submitting it to
+     * the pool of worker threads. Each worker thread uses its own style and gridstart factories,
+     * as the implementations loaded by them maintain state while enabling a job.
+     *
+     * @param pool the threads writing out the submit files, can be null.
+     * @param dag the concrete workflow.
+     * @param job the job whose submit file is to be written out.
+     * @return the Future for the submit file, holding the submit description if it is to be
+     *     written inline to the .dag file.
+     * @throws CodeGeneratorException in case of any error occurring code generation.
+     */
+    private Future<String> writeSubmitFile(ExecutorService pool, final ADag dag, final Job job)
+            throws CodeGeneratorException {
+        final boolean inline = this.inlineSubmitDescription(job);
+        if (pool == null) {
+            return CompletableFuture.completedFuture(generateCode(dag, job, inline));
+        }
+        return pool.submit(
+                new Callable<String>() {
+                    public String call() throws CodeGeneratorException {
+                        if (mWorkerStyleFactory.get() == null) {
+                            CondorStyleFactory styleFactory = new CondorStyleFactory();
+                            styleFactory.initialize(mBag);
+                            GridStartFactory gridStartFactory = new GridStartFactory();
+                            gridStartFactory.initialize(
+                                    mBag,
+                                    mConcreteWorkflow,
+                                    getDAGFilename(mConcreteWorkflow, POSTSCRIPT_LOG_SUFFIX));
+                            mWorkerStyleFactory.set(styleFactory);
+                            mWorkerGridStartFactory.set(gridStartFactory);
+                        }
+                        return generateCode(dag, job, inline);
+                    }
+                });
+    }
+
+    /**
+     * Returns a boolean indicating whether the submit description for a job is written inline to
+     * the .dag file. Jobs with expression profiles always get a submit file, as pegasus-exitcode
+     * updates the expressions in the submit file between retries.
+     *
+     * @param job the job
+     * @return boolean
+     */
+    private boolean inlineSubmitDescription(Job job) {
+        if (!mInlineSubmitDescriptions) {
+            return false;
+        }
+        for (Iterator it = job.vdsNS.getProfileKeyIterator(); it.hasNext(); ) {
+            String key = (String) it.next();
+            if (key.endsWith(Pegasus.EXPRESSION_PROFILE_KEYS_SUFFIX)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes out the .dag file entries for the pending jobs, until at most window jobs remain
+     * pending. Waits for the submit file of a job to be written out before writing its entry.
+     *
+     * @param pending the jobs whose entries are to be written, in order.
+     * @param window the number of jobs that can remain pending.
+     * @throws CodeGeneratorException in case of any error occurring code generation.
+     */
+    void writeDAGEntries(LinkedList<DAGEntry> pending, int window)
+            throws CodeGeneratorException {
+        while (pending.size() > window) {
+            DAGEntry entry = pending.removeFirst();
+            Job job = entry.mJob;
+            String description = null;
+            if (entry.mRendered != null) {
+                try {
+                    description = entry.mRendered.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CodeGeneratorException(
+                            "Interrupted while writing submit file for job " + job.getName(), e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof CodeGeneratorException) {
+                        throw (CodeGeneratorException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new CodeGeneratorException(
+                            "Error while writing submit file for job " + job.getName(), cause);
+                }
+            }
+            if (entry.mPreamble != null) {
+                printDagString(entry.mPreamble);
+            }
+            if (description != null) {
+                // SUBMIT-DESCRIPTION  B.sub { ... }
+                StringBuilder sb = new StringBuilder();
+                sb.append(SUBMIT_DESCRIPTION_KEY)
+                        .append(" ")
+                        .append(job.dagmanVariables.get(Dagman.JOB_KEY))
+                        .append(" {")
+                        .append("\n")
+                        .append(description)
+                        .append("}");
+                printDagString(sb.toString());
+            }
+
+            // write out all the dagman profile variables associated
+            // with the job to the .dag file.
+            printDagString(job.dagmanVariables.toString(job.getName(), entry.mPrefix));
+
+            mLogger.log(
+                    (description == null)
+                            ? "Written Submit file : "
+                                    + job.getFileFullPath(this.mSubmitFileDir, SUBMIT_FILE_SUFFIX)
+                            : "Written Submit description inline for job : " + job.getName(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        }
+    }
+
+    /** Returns the style factory to use in the current thread. */
+    private CondorStyleFactory styleFactory() {
+        CondorStyleFactory factory = mWorkerStyleFactory.get();
+        return (factory == null) ? mStyleFactory : factory;
+    }
+
+    /** Returns the gridstart factory to use in the current thread. */
+    private GridStartFactory gridStartFactory() {
+        GridStartFactory factory = mWorkerGridStartFactory.get();
+        return (factory == null) ? mGridStartFactory : factory;
     }
 
     /**
@@ -1461,38 +1699,15 @@ public class CondorGenerator extends Abstract {
      */
     protected boolean generateLogFileSymlink(String logFile, String symlink) {
         try {
-            Runtime rt = Runtime.getRuntime();
-            String command = "ln -s " + logFile + " " + symlink;
             mLogger.log(
-                    "Creating symlink to the log file in the local temp directory\n" + command,
+                    "Creating symlink to the log file in the local temp directory "
+                            + symlink
+                            + " -> "
+                            + logFile,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = rt.exec(command, null);
-
-            // set up to read subprogram output
-            InputStream is = p.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            // set up to read subprogram error
-            InputStream er = p.getErrorStream();
-            InputStreamReader err = new InputStreamReader(er);
-            BufferedReader ebr = new BufferedReader(err);
-
-            // read output from subprogram
-            // and display it
-
-            String s, se = null;
-            while (((s = br.readLine()) != null) || ((se = ebr.readLine()) != null)) {
-                if (s != null) {
-                    mLogger.log(s, LogManager.DEBUG_MESSAGE_LEVEL);
-                } else {
-                    mLogger.log(se, LogManager.ERROR_MESSAGE_LEVEL);
-                }
-            }
-
-            br.close();
+            mBag.getLocalFileSystem().createSymbolicLink(logFile, new File(symlink), false);
             return true;
-        } catch (Exception ex) {
+        } catch (IOException ex) {
             mLogger.log(
                     "Unable to create symlink to the log file", ex, LogManager.ERROR_MESSAGE_LEVEL);
             return false;
@@ -1748,7 +1963,7 @@ public class CondorGenerator extends Abstract {
     protected void applyStyle(Job job, PrintWriter writer) throws CodeGeneratorException {
 
         // load  the appropriate style for the job
-        CondorStyle cs = mStyleFactory.loadInstance(job);
+        CondorStyle cs = this.styleFactory().loadInstance(job);
         String style = (String) job.vdsNS.get(Pegasus.STYLE_KEY);
 
         boolean isGlobus = style.equals(Pegasus.GLOBUS_STYLE) ? true : false;
@@ -1933,7 +2148,7 @@ public class CondorGenerator extends Abstract {
             writer.println("stream_output = false");
         }
 
-        GridStart gridStart = mGridStartFactory.loadGridStart(job, null);
+        GridStart gridStart = this.gridStartFactory().loadGridStart(job, null);
 
         // enable the job
         boolean enable = false;
@@ -1955,7 +2170,7 @@ public class CondorGenerator extends Abstract {
         }
 
         // apply the appropriate POSTScript
-        POSTScript ps = mGridStartFactory.loadPOSTScript(job, gridStart);
+        POSTScript ps = this.gridStartFactory().loadPOSTScript(job, gridStart);
         boolean constructed = ps.construct(job, Dagman.POST_SCRIPT_KEY);
 
         // write out all the dagman profile variables associated
@@ -2000,6 +2215,38 @@ public class CondorGenerator extends Abstract {
                 .append(replacement);
         mLogger.log(sb.toString(), LogManager.WARNING_MESSAGE_LEVEL);
     }
+
+    /** An entry for a job in the .dag file, that is yet to be written out. */
+    static class DAGEntry {
+
+        /** The job. */
+        private final Job mJob;
+
+        /** The prefix to use for the user classads. */
+        private final String mPrefix;
+
+        /** Any line to be written before the dagman profiles of the job, can be null. */
+        private final String mPreamble;
+
+        /** The Future for the submit file of the job, can be null. */
+        private final Future<String> mRendered;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param job the job.
+         * @param prefix the prefix to use for the user classads.
+         * @param preamble any line to be written before the dagman profiles of the job.
+         * @param rendered the Future for the submit file of the job, holding the submit
+         *     description if it is written inline.
+         */
+        public DAGEntry(Job job, String prefix, String preamble, Future<String> rendered) {
+            mJob = job;
+            mPrefix = prefix;
+            mPreamble = preamble;
+            mRendered = rendered;
+        }
+    }
 }
 
 class GraphNodeGSONAdapter extends TypeAdapter<GraphNode> {
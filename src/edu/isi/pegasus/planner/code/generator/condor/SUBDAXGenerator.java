@@ -48,12 +48,9 @@ import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.parser.DAXParserFactory;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
@@ -89,6 +86,12 @@ public class SUBDAXGenerator {
     /** The logical name with which to query the transformation catalog for cPlanner executable. */
     public static final String CPLANNER_LOGICAL_NAME = "pegasus-plan";
 
+    /**
+     * The client that hands over the planner invocation to a running pegasus-plan-daemon, and
+     * falls back to pegasus-plan if no daemon is running.
+     */
+    public static final String PLANNER_DAEMON_CLIENT_LOGICAL_NAME = "pegasus-plan-client";
+
     /** The namespace to use for condor dagman. */
     public static final String CONDOR_DAGMAN_NAMESPACE = "condor";
 
@@ -1374,7 +1377,17 @@ public class SUBDAXGenerator {
 
         // construct the prescript path
         StringBuffer script = new StringBuffer();
-        if (entry == null) {
+        if (mProps.usePlannerDaemon()) {
+            mLogger.log(
+                    "Sub workflow for job "
+                            + job.getID()
+                            + " will be planned via "
+                            + PLANNER_DAEMON_CLIENT_LOGICAL_NAME,
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            script.append(mProps.getBinDir())
+                    .append(File.separator)
+                    .append(PLANNER_DAEMON_CLIENT_LOGICAL_NAME);
+        } else if (entry == null) {
             // log to debug
             mLogger.log(
                     "Constructing the default path to the pegasus-plan",
@@ -1660,53 +1673,18 @@ public class SUBDAXGenerator {
     protected boolean createSymbolicLink(
             String source, String destination, boolean logErrorToDebug) {
         try {
-            Runtime rt = Runtime.getRuntime();
-            String command = "ln -sf " + source + " " + destination;
             mLogger.log(
                     "Creating symlink between " + source + " " + destination,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = rt.exec(command, null);
-
-            // set up to read subprogram output
-            InputStream is = p.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            // set up to read subprogram error
-            InputStream er = p.getErrorStream();
-            InputStreamReader err = new InputStreamReader(er);
-            BufferedReader ebr = new BufferedReader(err);
-
-            // read output from subprogram
-            // and display it
-
-            String s, se = null;
-            while (((s = br.readLine()) != null) || ((se = ebr.readLine()) != null)) {
-                if (s != null) {
-                    mLogger.log(s, LogManager.DEBUG_MESSAGE_LEVEL);
-                } else {
-                    if (logErrorToDebug) {
-                        mLogger.log(se, LogManager.DEBUG_MESSAGE_LEVEL);
-                    } else {
-                        mLogger.log(se, LogManager.ERROR_MESSAGE_LEVEL);
-                    }
-                }
-            }
-
-            br.close();
+            mBag.getLocalFileSystem().createSymbolicLink(source, new File(destination), true);
             return true;
-        } catch (Exception ex) {
-            if (logErrorToDebug) {
-                mLogger.log(
-                        "Unable to create symlink to the log file",
-                        ex,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-            } else {
-                mLogger.log(
-                        "Unable to create symlink to the log file",
-                        ex,
-                        LogManager.ERROR_MESSAGE_LEVEL);
-            }
+        } catch (IOException ex) {
+            mLogger.log(
+                    "Unable to create symlink between " + source + " " + destination,
+                    ex,
+                    logErrorToDebug
+                            ? LogManager.DEBUG_MESSAGE_LEVEL
+                            : LogManager.ERROR_MESSAGE_LEVEL);
             return false;
         }
     }
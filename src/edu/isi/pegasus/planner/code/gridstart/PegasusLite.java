@@ -14,9 +14,6 @@
 package edu.isi.pegasus.planner.code.gridstart;
 
 import edu.isi.pegasus.common.logging.LogManager;
-import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
-import edu.isi.pegasus.common.util.StreamGobbler;
-import edu.isi.pegasus.common.util.StreamGobblerCallback;
 import edu.isi.pegasus.common.util.Version;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.classes.Profiles;
@@ -1018,8 +1015,7 @@ public class PegasusLite implements GridStart {
             ostream.close();
 
             // set the xbit on the shell script
-            // for 3.2, we will have 1.6 as the minimum jdk requirement
-            shellWrapper.setExecutable(true);
+            mBag.getLocalFileSystem().setExecutable(shellWrapper);
 
             // JIRA PM-543
             job.setDirectory(null);
@@ -1152,42 +1148,14 @@ public class PegasusLite implements GridStart {
         }
 
         try {
-            // set the callback and run the grep command
-            Runtime r = Runtime.getRuntime();
-            String command = "chmod +x " + file;
-            mLogger.log("Setting xbit " + command, LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = r.exec(command);
-
-            // the default gobbler callback always log to debug level
-            StreamGobblerCallback callback =
-                    new DefaultStreamGobblerCallback(LogManager.DEBUG_MESSAGE_LEVEL);
-            // spawn off the gobblers with the already initialized default callback
-            StreamGobbler ips = new StreamGobbler(p.getInputStream(), callback);
-            StreamGobbler eps = new StreamGobbler(p.getErrorStream(), callback);
-
-            ips.start();
-            eps.start();
-
-            // wait for the threads to finish off
-            ips.join();
-            eps.join();
-
-            // get the status
-            int status = p.waitFor();
-            if (status != 0) {
-                mLogger.log(
-                        "Command " + command + " exited with status " + status,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-                return result;
-            }
+            mLogger.log("Setting xbit on " + file, LogManager.DEBUG_MESSAGE_LEVEL);
+            mBag.getLocalFileSystem().setExecutable(f);
             result = true;
         } catch (IOException ioe) {
             mLogger.log(
-                    "IOException while creating symbolic links ",
+                    "IOException while setting xbit on " + file,
                     ioe,
                     LogManager.ERROR_MESSAGE_LEVEL);
-        } catch (InterruptedException ie) {
-            // ignore
         }
         return result;
     }
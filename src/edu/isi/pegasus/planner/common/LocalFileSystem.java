@@ -0,0 +1,195 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The operations the planner does on the local filesystem while generating the executable
+ * workflow, such as setting the executable bit on the generated scripts, creating symbolic links
+ * and directories, and renaming files. The operations are done through java.nio.file, instead of
+ * forking chmod and ln for each file. The directories that are known to exist are remembered, so
+ * that the directories shared by the jobs in a workflow are only checked and created once.
+ *
+ * <p>An instance is shared by all the planner components through the PegasusBag, and can be used
+ * from multiple threads.
+ */
+public class LocalFileSystem {
+
+    /** The directories known to exist. */
+    private final Set<String> mDirectories;
+
+    /** The number of times the executable bit was set. */
+    private final AtomicLong mChmods;
+
+    /** The number of symbolic links created. */
+    private final AtomicLong mSymlinks;
+
+    /** The number of directories created. */
+    private final AtomicLong mCreatedDirectories;
+
+    /** The default constructor. */
+    public LocalFileSystem() {
+        mDirectories = ConcurrentHashMap.newKeySet();
+        mChmods = new AtomicLong(0);
+        mSymlinks = new AtomicLong(0);
+        mCreatedDirectories = new AtomicLong(0);
+    }
+
+    /**
+     * Sets the executable bit on a file, wherever the file is readable. This mirrors chmod +x.
+     *
+     * @param file the file for which the xbit is to be set
+     * @throws IOException if the file does not exist, or the permissions cannot be changed.
+     */
+    public void setExecutable(File file) throws IOException {
+        Path path = file.toPath();
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            if (permissions.contains(PosixFilePermission.OWNER_READ)) {
+                permissions.add(PosixFilePermission.OWNER_EXECUTE);
+            }
+            if (permissions.contains(PosixFilePermission.GROUP_READ)) {
+                permissions.add(PosixFilePermission.GROUP_EXECUTE);
+            }
+            if (permissions.contains(PosixFilePermission.OTHERS_READ)) {
+                permissions.add(PosixFilePermission.OTHERS_EXECUTE);
+            }
+            Files.setPosixFilePermissions(path, permissions);
+        } catch (UnsupportedOperationException e) {
+            // not a posix filesystem
+            if (!file.exists() || !file.setExecutable(true)) {
+                throw new IOException("Unable to set the xbit on file " + file);
+            }
+        }
+        mChmods.incrementAndGet();
+    }
+
+    /**
+     * Creates a symbolic link. If the link is to be overwritten, an existing file at the link path
+     * is atomically replaced, as ln -sf does.
+     *
+     * @param target the path the link points to, that is stored as is in the link
+     * @param link the path of the link to be created
+     * @param overwrite whether to replace an existing file at the link path
+     * @throws IOException in case of error while creating the link, or if a file exists at the link
+     *     path and overwrite is false.
+     */
+    public void createSymbolicLink(String target, File link, boolean overwrite)
+            throws IOException {
+        Path linkPath = link.toPath();
+        Path targetPath = Paths.get(target);
+        if (overwrite) {
+            // create the link alongside and rename it over the existing file
+            Path tmp =
+                    linkPath.resolveSibling(
+                            "." + linkPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            Files.createSymbolicLink(tmp, targetPath);
+            try {
+                this.move(tmp, linkPath);
+            } catch (IOException ioe) {
+                Files.deleteIfExists(tmp);
+                throw ioe;
+            }
+        } else {
+            Files.createSymbolicLink(linkPath, targetPath);
+        }
+        mSymlinks.incrementAndGet();
+    }
+
+    /**
+     * Creates a directory along with any missing parent directories. Directories already created
+     * or found through this instance are not checked again.
+     *
+     * @param dir the directory to create
+     * @return true if the directory was created, false if it already existed
+     * @throws IOException if the directory cannot be created, or a file exists at its path
+     */
+    public boolean mkdirs(File dir) throws IOException {
+        String key = dir.getAbsolutePath();
+        if (mDirectories.contains(key)) {
+            return false;
+        }
+
+        boolean created = false;
+        Path path = dir.toPath();
+        if (!Files.isDirectory(path)) {
+            Files.createDirectories(path);
+            mCreatedDirectories.incrementAndGet();
+            created = true;
+        }
+        mDirectories.add(key);
+        return created;
+    }
+
+    /**
+     * Renames a file, replacing the destination if it exists. The rename is atomic where the
+     * filesystem supports it.
+     *
+     * @param source the file to be renamed
+     * @param destination the new path for the file
+     * @throws IOException in case of error while renaming
+     */
+    public void rename(File source, File destination) throws IOException {
+        this.move(source.toPath(), destination.toPath());
+    }
+
+    /**
+     * Returns the number of forks of chmod and ln avoided by this instance.
+     *
+     * @return the number of forks avoided
+     */
+    public long getForksAvoided() {
+        return mChmods.get() + mSymlinks.get();
+    }
+
+    /**
+     * Returns the number of directories created by this instance.
+     *
+     * @return the number of directories created
+     */
+    public long getCreatedDirectories() {
+        return mCreatedDirectories.get();
+    }
+
+    /**
+     * Moves a file, atomically if possible, replacing the destination if it exists.
+     *
+     * @param source the source path
+     * @param destination the destination path
+     * @throws IOException in case of error while moving
+     */
+    private void move(Path source, Path destination) throws IOException {
+        try {
+            Files.move(
+                    source,
+                    destination,
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -329,7 +329,7 @@ public class PegasusProperties implements Cloneable {
      *
      * @return profiles object.
      */
-    public Profiles retrieveProfilesFromProperties() {
+    public synchronized Profiles retrieveProfilesFromProperties() {
         // retrieve up all the profiles that are specified in
         // the properties
         if (mProfiles == null) {
@@ -1186,6 +1186,25 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.transfer.refiner");
     }
 
+    /**
+     * Returns the number of threads to use for computing the transfers for the jobs in a level of
+     * the workflow.
+     *
+     * <p>Referred to by the "pegasus.transfer.refiner.threads" property.
+     *
+     * @return the number of threads specified in the property file, else 1.
+     */
+    public int getTransferRefinerThreads() {
+        String prop = mProps.getProperty("pegasus.transfer.refiner.threads", "1");
+        int val;
+        try {
+            val = Integer.parseInt(prop);
+        } catch (Exception e) {
+            return 1;
+        }
+        return Math.max(1, val);
+    }
+
     /**
      * Returns whether to introduce quotes around url's before handing to g-u-c and condor.
      *
@@ -1590,6 +1609,37 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.selector.site.keep.tmp", DEFAULT_SITE_SELECTOR_KEEP);
     }
 
+    /**
+     * Returns a boolean indicating whether the jobs are streamed to a single instance of the
+     * external site selector, instead of calling out to the site selector for each job.
+     *
+     * <p>Referred to by the "pegasus.selector.site.stream" property.
+     *
+     * @return the boolean value specified in the property file, else false.
+     */
+    public boolean streamToSiteSelector() {
+        return Boolean.parse(mProps.getProperty("pegasus.selector.site.stream"), false);
+    }
+
+    /**
+     * Returns the number of threads to use for incorporating the profiles into the jobs, once they
+     * have been mapped to sites.
+     *
+     * <p>Referred to by the "pegasus.planner.profiles.threads" property.
+     *
+     * @return the number of threads specified in the property file, else 1.
+     */
+    public int getProfileIncorporationThreads() {
+        String prop = mProps.getProperty("pegasus.planner.profiles.threads", "1");
+        int val;
+        try {
+            val = Integer.parseInt(prop);
+        } catch (Exception e) {
+            return 1;
+        }
+        return Math.max(1, val);
+    }
+
     // PROPERTIES RELATED TO KICKSTART AND EXITCODE
 
     /**
@@ -1877,6 +1927,20 @@ public class PegasusProperties implements Cloneable {
         return val;
     }
 
+    /**
+     * Returns a boolean indicating whether to write the condor submit descriptions for the jobs
+     * inline in the .dag file, instead of a submit file per job. Only the submit files are
+     * removed; in the condorio and nonsharedfs data configurations every PegasusLite job still
+     * gets its own .sh wrapper in the submit directory.
+     *
+     * <p>Referred to by the "pegasus.condor.submit.inline" property.
+     *
+     * @return value specified by the property. Defaults to false.
+     */
+    public boolean inlineCondorSubmitDescriptions() {
+        return Boolean.parse(mProps.getProperty("pegasus.condor.submit.inline"), false);
+    }
+
     /**
      * Whether Pegasus should associate condor concurrency limits or not
      *
@@ -2136,6 +2200,30 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse(mProps.getProperty("pegasus.parser.dax.data.dependencies"), true);
     }
 
+    /**
+     * Returns the name of the graph implementation used to store the workflow in memory.
+     *
+     * <p>Referred to by the "pegasus.graph.implementation" property.
+     *
+     * @return value in the properties file, else Map
+     */
+    public String getGraphImplementation() {
+        return mProps.getProperty("pegasus.graph.implementation", "Map");
+    }
+
+    /**
+     * Returns a boolean indicating whether to remove redundant edges from the executable workflow
+     * by computing its transitive reduction.
+     *
+     * <p>Referred to by the "pegasus.workflow.reduce.edges" property.
+     *
+     * @return boolean value in the properties file, else true if not specified or an invalid value
+     *     specified.
+     */
+    public boolean reduceWorkflowEdges() {
+        return Boolean.parse(mProps.getProperty("pegasus.workflow.reduce.edges"), true);
+    }
+
     /**
      * Returns the path to the wings properties file.
      *
@@ -2183,6 +2271,24 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.code.generator", DEFAULT_CODE_GENERATOR);
     }
 
+    /**
+     * Returns the number of threads to use for writing out the job submit files.
+     *
+     * <p>Referred to by the "pegasus.code.generator.threads" property.
+     *
+     * @return the number of threads specified in the property file, else 1.
+     */
+    public int getCodeGeneratorThreads() {
+        String prop = mProps.getProperty("pegasus.code.generator.threads", "1");
+        int val;
+        try {
+            val = Integer.parseInt(prop);
+        } catch (Exception e) {
+            return 1;
+        }
+        return Math.max(1, val);
+    }
+
     /**
      * Returns the mode for parsing the dax while writing out the partitioned daxes.
      *
@@ -2205,6 +2311,19 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.data.reuse.scope");
     }
 
+    /**
+     * Returns a boolean indicating whether the planner should plan incrementally with respect to
+     * the previous runs passed with --reuse. In that case, only the jobs that changed since the
+     * previous run are planned, while the unchanged jobs whose outputs exist are reused.
+     *
+     * <p>Referred to by the "pegasus.planner.incremental" property.
+     *
+     * @return the value specified in the properties file if valid boolean, else false.
+     */
+    public boolean planIncrementally() {
+        return Boolean.parse(mProps.getProperty("pegasus.planner.incremental"), false);
+    }
+
     /**
      * Returns the pegasus mode as an enum value. Defaults to production value.
      *
@@ -2367,6 +2486,38 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty(ROOT_WORKFLOW_UUID_PROPERTY_KEY, null);
     }
 
+    /**
+     * Returns a boolean indicating whether the sub workflows should be planned by a running
+     * pegasus-plan-daemon, instead of launching pegasus-plan for each of them.
+     *
+     * <p>Referred to by the "pegasus.planner.daemon" property.
+     *
+     * @return the value specified in the properties file if valid boolean, else false.
+     */
+    public boolean usePlannerDaemon() {
+        return Boolean.parse(mProps.getProperty("pegasus.planner.daemon"), false);
+    }
+
+    /**
+     * Returns the number of clients that the pegasus-plan-daemon serves concurrently.
+     *
+     * <p>Referred to by the "pegasus.planner.daemon.threads" property.
+     *
+     * @return the number of threads specified in the property file, else the number of available
+     *     processors.
+     */
+    public int getPlannerDaemonThreads() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        String prop = mProps.getProperty("pegasus.planner.daemon.threads");
+        int val;
+        try {
+            val = (prop == null) ? processors : Integer.parseInt(prop);
+        } catch (Exception e) {
+            return processors;
+        }
+        return Math.max(1, val);
+    }
+
     /**
      * Returns the bundle value for a particular transformation.
      *
@@ -2434,6 +2585,37 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.estimator");
     }
 
+    /**
+     * Returns a boolean indicating whether the estimates for the jobs are to be cached, and
+     * persisted in the submit directory for later planner runs.
+     *
+     * <p>Referred to by the "pegasus.estimator.cache" property
+     *
+     * @return the boolean value specified, else true
+     */
+    public boolean cacheEstimates() {
+        return Boolean.parse(mProps.getProperty("pegasus.estimator.cache"), true);
+    }
+
+    /**
+     * Returns the number of threads to use for estimating the distinct jobs of a workflow, when
+     * the estimates are cached.
+     *
+     * <p>Referred to by the "pegasus.estimator.threads" property.
+     *
+     * @return the number of threads specified in the property file, else 1.
+     */
+    public int getEstimatorThreads() {
+        String prop = mProps.getProperty("pegasus.estimator.threads", "1");
+        int val;
+        try {
+            val = Integer.parseInt(prop);
+        } catch (Exception e) {
+            return 1;
+        }
+        return Math.max(1, val);
+    }
+
     /**
      * Sets the file backend to which properties maybe written out to
      *
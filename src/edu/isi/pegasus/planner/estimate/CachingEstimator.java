@@ -0,0 +1,364 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.estimate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.namespace.Metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An estimator that caches the estimates of another estimator. The estimates are cached against a
+ * signature of the job, made up of the transformation, the execution site, the arguments with the
+ * whitespace normalized, and the metadata attributes of the job. Jobs with the same signature, as
+ * is the case for most jobs in a level of a workflow, are estimated only once.
+ *
+ * <p>The cache can be written out to the submit directory, and loaded in a later planner run so
+ * that replanning the workflow does not estimate the jobs again. A cache written out with another
+ * estimator, or with different estimator properties, is not loaded.
+ */
+public class CachingEstimator implements Estimator {
+
+    /** The suffix to use while constructing the name of the estimates file */
+    public static final String ESTIMATES_FILE_SUFFIX = ".estimates";
+
+    /** The prefix of the properties that configure the estimators. */
+    public static final String ESTIMATOR_PROPERTY_PREFIX = "pegasus.estimator";
+
+    /** The properties with the prefix that do not affect the estimates. */
+    private static final Set<String> PLANNER_PROPERTIES =
+            new TreeSet<String>(
+                    Arrays.asList(
+                            ESTIMATOR_PROPERTY_PREFIX + ".cache",
+                            ESTIMATOR_PROPERTY_PREFIX + ".threads"));
+
+    /** The key for the environment in the estimates file */
+    private static final String ENVIRONMENT_KEY = "environment";
+
+    /** The key for the estimates in the estimates file */
+    private static final String ESTIMATES_KEY = "estimates";
+
+    /** The separator between the components of a signature. */
+    private static final char SIGNATURE_SEPARATOR = '\u0000';
+
+    /** The estimator whose estimates are cached. */
+    private final Estimator mEstimator;
+
+    /** Maps the signature of a job to the estimates for it. */
+    private final Map<String, Map<String, String>> mCache;
+
+    /** The signatures whose estimates were loaded from the earlier runs. */
+    private final Set<String> mLoaded;
+
+    /** The number of estimates served from the cache. */
+    private final AtomicLong mHits;
+
+    /** The number of estimates served from the estimates loaded from the earlier runs. */
+    private final AtomicLong mReused;
+
+    /** The environment the estimates are computed in. */
+    private String mEnvironment;
+
+    private LogManager mLogger;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param estimator the estimator whose estimates are to be cached.
+     */
+    public CachingEstimator(Estimator estimator) {
+        mEstimator = estimator;
+        mCache = new ConcurrentHashMap<String, Map<String, String>>();
+        mLoaded = ConcurrentHashMap.newKeySet();
+        mHits = new AtomicLong(0);
+        mReused = new AtomicLong(0);
+        mEnvironment = estimator.getClass().getName();
+    }
+
+    /**
+     * Initialization method. The estimator whose estimates are cached is expected to be initialized
+     * already.
+     *
+     * @param dag the workflow
+     * @param bag bag of Pegasus initialization objects.
+     */
+    public void initialize(ADag dag, PegasusBag bag) {
+        mLogger = bag.getLogger();
+
+        // the estimates are only valid for the same estimator configuration
+        StringBuilder environment = new StringBuilder(mEstimator.getClass().getName());
+        Properties props =
+                bag.getPegasusProperties().matchingSubset(ESTIMATOR_PROPERTY_PREFIX, true);
+        for (String key : new TreeSet<String>(props.stringPropertyNames())) {
+            if (PLANNER_PROPERTIES.contains(key)) {
+                continue;
+            }
+            environment.append(SIGNATURE_SEPARATOR).append(key).append('=');
+            environment.append(props.getProperty(key));
+        }
+        mEnvironment = environment.toString();
+    }
+
+    /**
+     * Returns all estimates for a job, from the cache if a job with the same signature was
+     * estimated before.
+     *
+     * @param job the job for which estimation is required
+     * @return the estimates
+     */
+    public Map<String, String> getAllEstimates(Job job) {
+        String signature = signature(job);
+        Map<String, String> estimates = mCache.get(signature);
+        if (estimates == null) {
+            estimates = this.estimate(job);
+            Map<String, String> existing = mCache.putIfAbsent(signature, estimates);
+            if (existing != null) {
+                estimates = existing;
+            }
+        } else {
+            mHits.incrementAndGet();
+            if (mLoaded.contains(signature)) {
+                mReused.incrementAndGet();
+            }
+        }
+        return new HashMap<String, String>(estimates);
+    }
+
+    /**
+     * Return the estimated Runtime of a job
+     *
+     * @param job the job for which estimation is required
+     * @return the runtime
+     */
+    public String getRuntime(Job job) {
+        return this.getAllEstimates(job).get("runtime");
+    }
+
+    /**
+     * Return the estimated memory requirements of a job
+     *
+     * @param job the job for which estimation is required
+     * @return the memory usage
+     */
+    public String getMemory(Job job) {
+        return this.getAllEstimates(job).get("memory");
+    }
+
+    /**
+     * Estimates a batch of jobs, such as the jobs in a level of the workflow, ahead of the calls
+     * to retrieve the estimates for them. Only one job for each signature not in the cache is
+     * estimated, with the estimations done in parallel if more than one thread is specified.
+     *
+     * @param jobs the jobs to estimate
+     * @param threads the number of threads to use
+     * @return the number of estimations done
+     */
+    public int estimate(Collection<Job> jobs, int threads) {
+        // one job for each signature not in the cache
+        Map<String, Job> missing = new LinkedHashMap<String, Job>();
+        for (Job job : jobs) {
+            String signature = signature(job);
+            if (!mCache.containsKey(signature) && !missing.containsKey(signature)) {
+                missing.put(signature, job);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        mLogger.log(
+                "Estimating " + missing.size() + " distinct jobs out of " + jobs.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+
+        List<Map.Entry<String, Job>> entries =
+                new ArrayList<Map.Entry<String, Job>>(missing.entrySet());
+        if (threads <= 1 || entries.size() == 1) {
+            for (Map.Entry<String, Job> entry : entries) {
+                mCache.putIfAbsent(entry.getKey(), this.estimate(entry.getValue()));
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.submit(
+                                () ->
+                                        entries.parallelStream()
+                                                .forEach(
+                                                        entry ->
+                                                                mCache.putIfAbsent(
+                                                                        entry.getKey(),
+                                                                        this.estimate(
+                                                                                entry.getValue()))))
+                        .get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while estimating jobs", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException("Unable to estimate jobs", cause);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of estimates served from the cache, including the ones for jobs with the
+     * same signature as a job estimated earlier in this run.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return mHits.get();
+    }
+
+    /**
+     * Returns the number of estimates served from the estimates loaded from earlier runs, that
+     * were not computed again in this run.
+     *
+     * @return the number of estimates reused
+     */
+    public long getReusedEstimates() {
+        return mReused.get();
+    }
+
+    /**
+     * Returns the number of distinct signatures in the cache.
+     *
+     * @return the size of the cache
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    /**
+     * Loads the estimates written out by an earlier run. The estimates are not loaded if the file
+     * was written out with a different estimator configuration.
+     *
+     * @param f the estimates file
+     * @return the number of estimates loaded
+     * @throws IOException in case of error while reading the file
+     */
+    public int loadFrom(File f) throws IOException {
+        Map<String, Object> contents =
+                new ObjectMapper().readValue(f, new TypeReference<Map<String, Object>>() {});
+        if (!mEnvironment.equals(contents.get(ENVIRONMENT_KEY))) {
+            mLogger.log(
+                    "Ignoring estimates in " + f + " computed with a different estimator",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            return 0;
+        }
+
+        int loaded = 0;
+        Object estimates = contents.get(ESTIMATES_KEY);
+        if (estimates instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) estimates).entrySet()) {
+                if (!(entry.getValue() instanceof Map)) {
+                    throw new IOException("Invalid estimates in file " + f + " " + entry);
+                }
+                Map<String, String> values = new HashMap<String, String>();
+                for (Map.Entry<?, ?> value : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                    values.put(String.valueOf(value.getKey()), String.valueOf(value.getValue()));
+                }
+                String signature = String.valueOf(entry.getKey());
+                if (mCache.putIfAbsent(signature, values) == null) {
+                    mLoaded.add(signature);
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes out the cached estimates to a file, for later runs to load.
+     *
+     * @param f the file to write to
+     * @throws IOException in case of error while writing out file.
+     */
+    public void writeOut(File f) throws IOException {
+        Map<String, Object> contents = new LinkedHashMap<String, Object>();
+        contents.put(ENVIRONMENT_KEY, mEnvironment);
+        contents.put(ESTIMATES_KEY, new TreeMap<String, Map<String, String>>(mCache));
+        new ObjectMapper().writeValue(f, contents);
+    }
+
+    /**
+     * Returns the signature of a job that the estimates are cached against.
+     *
+     * @param job the job
+     * @return the signature
+     */
+    protected static String signature(Job job) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(job.getCompleteTCName()).append(SIGNATURE_SEPARATOR);
+        sb.append(job.getSiteHandle()).append(SIGNATURE_SEPARATOR);
+        String arguments = job.getArguments();
+        if (arguments != null) {
+            sb.append(arguments.trim().replaceAll("\\s+", " "));
+        }
+
+        // the estimators estimate on the basis of the metadata
+        Metadata m = (Metadata) job.getMetadata();
+        Map<String, String> metadata = new TreeMap<String, String>();
+        for (Iterator it = m.getProfileKeyIterator(); it.hasNext(); ) {
+            String key = (String) it.next();
+            metadata.put(key, String.valueOf(m.get(key)));
+        }
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            sb.append(SIGNATURE_SEPARATOR).append(entry.getKey()).append('=');
+            sb.append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Estimates a job using the underlying estimator.
+     *
+     * @param job the job
+     * @return the estimates
+     */
+    private Map<String, String> estimate(Job job) {
+        Map<String, String> estimates = mEstimator.getAllEstimates(job);
+        return (estimates == null)
+                ? Collections.<String, String>emptyMap()
+                : new HashMap<String, String>(estimates);
+    }
+}
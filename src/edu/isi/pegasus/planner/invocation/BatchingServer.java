@@ -0,0 +1,726 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.invocation;
+
+import edu.isi.pegasus.planner.parser.InvocationParser;
+
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.AppenderComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.griphyn.vdl.dbschema.DatabaseSchema;
+import org.griphyn.vdl.dbschema.PTC;
+import org.griphyn.vdl.directive.Connect;
+import org.griphyn.vdl.toolkit.FriendlyNudge;
+import org.griphyn.vdl.util.ChimeraProperties;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A kickstart invocation record server that speaks the same protocol as the {@link SimpleServer},
+ * for when thousands of jobs finish per minute. Instead of a thread per connection, all the
+ * connections are served by a single thread with non blocking I/O. The records are parsed by a
+ * fixed pool of worker threads, each of which reuses its own parser, and are handed to a single
+ * database thread through a bounded queue. The database thread inserts all the records that have
+ * queued up in a single transaction, and only then replies to the clients.
+ *
+ * <p>The protocol is line based. A client sends <code>PARSE filename ECP/1.0</code> for each
+ * kickstart record, and receives <code>300 Result code n</code> in order. <code>QUIT</code> closes
+ * the connection, and <code>SHUTDOWN</code> stops the server.
+ */
+public class BatchingServer {
+
+    /** The default port the server listens on. Same as the one of the SimpleServer. */
+    public static final int DEFAULT_PORT = 65533;
+
+    /** The default number of records that can wait to be inserted into the database. */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /** The default maximum number of records inserted in a single transaction. */
+    public static final int DEFAULT_BATCH_SIZE = 128;
+
+    /** The exit code reported when a record cannot be parsed or stored. */
+    private static final int FAILURE = 5;
+
+    /** The logger. */
+    private static final Logger c_logger = LogManager.getLogger(BatchingServer.class);
+
+    /** Marks the end of the records to the database thread. */
+    private static final Pending END = new Pending(null, 0, null);
+
+    /** The channel the server accepts connections on. */
+    private final ServerSocketChannel mServer;
+
+    /** The selector serving all the connections. */
+    private final Selector mSelector;
+
+    /** The tasks to be run by the selector thread, such as changing interest ops. */
+    private final Queue<Runnable> mSelectorTasks;
+
+    /** The workers that read and parse the records. */
+    private final ExecutorService mWorkers;
+
+    /** The parser of each worker thread, that is reused across records. */
+    private final ThreadLocal<InvocationParser> mParsers;
+
+    /** The parsed records waiting to be inserted into the database. */
+    private final BlockingQueue<Pending> mQueue;
+
+    /** The maximum number of records inserted in a single transaction. */
+    private final int mBatchSize;
+
+    /** The provenance tracking catalog. null, if the records are not to be stored. */
+    private final PTC mPTC;
+
+    /** The thread inserting the records into the database. */
+    private final Thread mWriter;
+
+    /** Whether an empty kickstart record signals failure or not. */
+    private boolean mEmptyFail = true;
+
+    /** Whether the server has been asked to shutdown. */
+    private volatile boolean mTerminate;
+
+    /** The number of records that were inserted into the database. */
+    private final AtomicLong mRecords = new AtomicLong();
+
+    /** The number of transactions the records were inserted in. */
+    private final AtomicLong mBatches = new AtomicLong();
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param port the port to listen on the loopback interface. 0 picks a free port.
+     * @param ptc the provenance tracking catalog to store the records in, or null if the records
+     *     are only to be parsed.
+     * @param schemaLocation the location of the invocation record XML schema, or null to use the
+     *     schema hint in the records.
+     * @param threads the number of threads parsing the records
+     * @param queueSize the number of parsed records that can wait for the database
+     * @param batchSize the maximum number of records inserted in a single transaction
+     * @throws IOException if the server cannot listen on the port
+     */
+    public BatchingServer(
+            int port, PTC ptc, String schemaLocation, int threads, int queueSize, int batchSize)
+            throws IOException {
+        mPTC = ptc;
+        mBatchSize = Math.max(1, batchSize);
+        mQueue = new ArrayBlockingQueue<Pending>(Math.max(1, queueSize));
+        mParsers = ThreadLocal.withInitial(() -> new InvocationParser(schemaLocation));
+
+        AtomicInteger count = new AtomicInteger();
+        mWorkers =
+                Executors.newFixedThreadPool(
+                        Math.max(1, threads),
+                        (Runnable r) -> {
+                            String name = "BatchingServer-parser-" + count.incrementAndGet();
+                            Thread t = new Thread(r, name);
+                            t.setDaemon(true);
+                            return t;
+                        });
+        mWriter = new Thread(this::write, "BatchingServer-database");
+
+        mSelectorTasks = new ConcurrentLinkedQueue<Runnable>();
+        mSelector = Selector.open();
+        mServer = ServerSocketChannel.open();
+        byte[] loopback = {127, 0, 0, 1};
+        mServer.bind(new InetSocketAddress(InetAddress.getByAddress(loopback), port), 128);
+        mServer.configureBlocking(false);
+        mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return mServer.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of records inserted into the database so far.
+     *
+     * @return the number of records
+     */
+    public long getRecordCount() {
+        return mRecords.get();
+    }
+
+    /**
+     * Returns the number of transactions the records were inserted in so far.
+     *
+     * @return the number of transactions
+     */
+    public long getBatchCount() {
+        return mBatches.get();
+    }
+
+    /**
+     * Sets whether an empty kickstart record signals failure or success.
+     *
+     * @param emptyFail boolean
+     */
+    public void setEmptyFail(boolean emptyFail) {
+        mEmptyFail = emptyFail;
+    }
+
+    /** Asks the server to stop. Returns immediately, with the server stopping in serve(). */
+    public void shutdown() {
+        mTerminate = true;
+        mSelector.wakeup();
+    }
+
+    /**
+     * Serves the clients till the server is shutdown. The records being processed when the server
+     * is shutdown are stored and replied to, before the method returns.
+     *
+     * @throws IOException in case of error on the server socket
+     */
+    public void serve() throws IOException {
+        mWriter.start();
+        c_logger.info("listening on port " + getPort());
+        try {
+            while (!mTerminate) {
+                mSelector.select();
+                for (Runnable task; (task = mSelectorTasks.poll()) != null; ) {
+                    task.run();
+                }
+                for (Iterator<SelectionKey> it = mSelector.selectedKeys().iterator();
+                        it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection c = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            c.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            c.flush();
+                        }
+                    }
+                }
+            }
+        } finally {
+            mServer.close();
+            drain();
+        }
+        c_logger.info(
+                "finished shutdown, stored " + mRecords + " records in " + mBatches + " batches");
+    }
+
+    /** Stops the workers and the database thread, once they are done with the pending records. */
+    private void drain() {
+        mWorkers.shutdown();
+        try {
+            mWorkers.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            mQueue.put(END);
+            mWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // the last replies are sent out with blocking writes, which
+        // requires the connections to be deregistered from the selector
+        List<Connection> connections = new ArrayList<Connection>();
+        for (SelectionKey key : mSelector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                connections.add((Connection) key.attachment());
+            }
+        }
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            c_logger.warn("While closing selector: " + e.getMessage());
+        }
+        for (Connection c : connections) {
+            c.close(true);
+        }
+    }
+
+    /** Accepts a new connection. */
+    private void accept() throws IOException {
+        SocketChannel channel = mServer.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(mSelector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * Runs a task in the selector thread.
+     *
+     * @param task the task
+     */
+    private void inSelector(Runnable task) {
+        mSelectorTasks.add(task);
+        mSelector.wakeup();
+    }
+
+    /**
+     * Handles a request line from a client.
+     *
+     * @param c the connection the request came on
+     * @param line the request
+     */
+    private void handle(Connection c, String line) {
+        if (c_logger.isDebugEnabled()) {
+            c_logger.debug(c.mRemote + ": received >>" + line + "<<");
+        }
+        if (line.startsWith("PARSE")) {
+            // request to parse a given file
+            String[] request = line.split("[ \t]", 3);
+            if (request.length != 3) {
+                c.reply("400 Illegal request format", false);
+            } else if (!request[2].equals("ECP/1.0")) {
+                c.reply("501 Unrecognized version", false);
+            } else {
+                CompletableFuture<Integer> result = process(request[1]);
+                c.reply(result.thenApply((Integer r) -> "300 Result code " + r), false);
+            }
+        } else if (line.equals("QUIT")) {
+            c.reply("200 Good-bye", true);
+        } else if (line.equals("SHUTDOWN")) {
+            c.reply("200 Shutting down server, good-bye", true);
+            shutdown();
+        } else {
+            c.reply("500 Illegal request", true);
+        }
+    }
+
+    /**
+     * Reads and parses the kickstart record in a file in a worker thread, and queues it up to be
+     * stored in the database.
+     *
+     * @param filename the file with the kickstart record
+     * @return the exit code derived from the record, once it has been stored
+     */
+    private CompletableFuture<Integer> process(String filename) {
+        CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+        mWorkers.execute(
+                () -> {
+                    try {
+                        String xml = SimpleServer.readFile(filename, mEmptyFail);
+                        InvocationRecord invocation =
+                                mParsers.get().parse(new StringReader(xml));
+                        if (invocation == null) {
+                            throw new FriendlyNudge(
+                                    "invalid XML invocation record in "
+                                            + filename
+                                            + ", assuming failure",
+                                    FAILURE);
+                        }
+                        int status = SimpleServer.determineExitStatus(invocation);
+                        if (mPTC == null) {
+                            result.complete(status);
+                        } else {
+                            // blocks, if the database is falling behind
+                            mQueue.put(new Pending(invocation, status, result));
+                        }
+                    } catch (FriendlyNudge fn) {
+                        c_logger.warn(fn.getMessage());
+                        result.complete(fn.getResult());
+                    } catch (Exception e) {
+                        c_logger.warn(filename + ": " + e.getMessage());
+                        result.complete(FAILURE);
+                    }
+                });
+        return result;
+    }
+
+    /** The loop of the database thread, that stores the queued up records in batches. */
+    private void write() {
+        List<Pending> batch = new ArrayList<Pending>(mBatchSize);
+        boolean done = false;
+        while (!done) {
+            batch.clear();
+            try {
+                batch.add(mQueue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            mQueue.drainTo(batch, mBatchSize - 1);
+            done = batch.remove(END);
+            if (!batch.isEmpty()) {
+                store(batch);
+            }
+        }
+    }
+
+    /**
+     * Stores a batch of records in a single transaction, and completes the replies to them. If the
+     * transaction fails, the records are stored one at a time, so that only the records that
+     * cannot be stored are reported as failed.
+     *
+     * @param batch the records
+     */
+    private void store(List<Pending> batch) {
+        List<InvocationRecord> records = new ArrayList<InvocationRecord>(batch.size());
+        for (Pending p : batch) {
+            records.add(p.mRecord);
+        }
+        try {
+            mRecords.addAndGet(mPTC.saveInvocations(records));
+            mBatches.incrementAndGet();
+            for (Pending p : batch) {
+                p.mResult.complete(p.mStatus);
+            }
+            return;
+        } catch (Exception e) {
+            c_logger.warn("While storing a batch of " + batch.size() + ": " + e.getMessage());
+        }
+
+        for (Pending p : batch) {
+            try {
+                mRecords.addAndGet(mPTC.saveInvocations(Collections.singletonList(p.mRecord)));
+                mBatches.incrementAndGet();
+                p.mResult.complete(p.mStatus);
+            } catch (Exception e) {
+                c_logger.warn("While storing a record: " + e.getMessage());
+                p.mResult.complete(FAILURE);
+            }
+        }
+    }
+
+    /** A parsed record waiting to be stored, with the reply to complete once it is stored. */
+    private static class Pending {
+
+        private final InvocationRecord mRecord;
+
+        private final int mStatus;
+
+        private final CompletableFuture<Integer> mResult;
+
+        public Pending(InvocationRecord record, int status, CompletableFuture<Integer> result) {
+            mRecord = record;
+            mStatus = status;
+            mResult = result;
+        }
+    }
+
+    /** The state of a client connection. */
+    private class Connection {
+
+        private final SocketChannel mChannel;
+
+        private final SelectionKey mKey;
+
+        private final String mRemote;
+
+        /** The bytes read from the client. */
+        private final ByteBuffer mIn = ByteBuffer.allocate(4096);
+
+        /** The part of the current request line read so far. */
+        private final StringBuilder mLine = new StringBuilder();
+
+        /** The replies not yet written to the client. */
+        private final Deque<ByteBuffer> mOut = new ArrayDeque<ByteBuffer>();
+
+        /** Completes once the replies to all the requests so far have been queued up. */
+        private CompletableFuture<Void> mTail = CompletableFuture.completedFuture(null);
+
+        /** Whether the client has sent its last request. */
+        private boolean mClosing;
+
+        /** Whether to close the connection once all the replies are written. */
+        private boolean mCloseAfterFlush;
+
+        public Connection(SocketChannel channel, SelectionKey key) {
+            mChannel = channel;
+            mKey = key;
+            InetSocketAddress remote =
+                    (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+            mRemote = remote.getAddress().getHostAddress() + ":" + remote.getPort();
+        }
+
+        /** Reads the available bytes, and handles the complete request lines. */
+        public void read() {
+            int n;
+            try {
+                n = mChannel.read(mIn);
+            } catch (IOException e) {
+                c_logger.warn(mRemote + ": I/O error: " + e.getMessage());
+                close(false);
+                return;
+            }
+            if (n == -1) {
+                // the client went away without a QUIT
+                mKey.interestOps(0);
+                mClosing = true;
+                reply(CompletableFuture.completedFuture(null), true);
+                return;
+            }
+
+            mIn.flip();
+            while (mIn.hasRemaining() && !mClosing) {
+                char ch = (char) (mIn.get() & 0xFF);
+                if (ch == '\n') {
+                    int length = mLine.length();
+                    if (length > 0 && mLine.charAt(length - 1) == '\r') {
+                        mLine.setLength(length - 1);
+                    }
+                    String line = mLine.toString();
+                    mLine.setLength(0);
+                    handle(this, line);
+                } else {
+                    mLine.append(ch);
+                }
+            }
+            mIn.clear();
+        }
+
+        /**
+         * Queues up a reply, that is written after the replies to the previous requests.
+         *
+         * @param reply the reply
+         * @param close whether to close the connection after the reply
+         */
+        public void reply(String reply, boolean close) {
+            reply(CompletableFuture.completedFuture(reply), close);
+        }
+
+        /**
+         * Queues up a reply, that is written once it completes and after the replies to the
+         * previous requests.
+         *
+         * @param reply the reply. A null reply is not written.
+         * @param close whether to close the connection after the reply
+         */
+        public void reply(CompletableFuture<String> reply, boolean close) {
+            if (close) {
+                mClosing = true;
+                mKey.interestOps(mKey.interestOps() & ~SelectionKey.OP_READ);
+            }
+            mTail =
+                    mTail.thenCombine(reply, (Void v, String r) -> r)
+                            .thenAccept((String r) -> send(r, close));
+        }
+
+        /**
+         * Writes a reply to the client, or queues it up if the client is not ready for it.
+         *
+         * @param reply the reply
+         * @param close whether to close the connection after the reply
+         */
+        private synchronized void send(String reply, boolean close) {
+            if (reply != null) {
+                mOut.add(ByteBuffer.wrap((reply + "\n").getBytes(StandardCharsets.US_ASCII)));
+            }
+            mCloseAfterFlush |= close;
+            flush();
+        }
+
+        /** Writes as much of the queued up replies as the client takes. */
+        public synchronized void flush() {
+            try {
+                while (!mOut.isEmpty()) {
+                    ByteBuffer b = mOut.peek();
+                    mChannel.write(b);
+                    if (b.hasRemaining()) {
+                        break;
+                    }
+                    mOut.poll();
+                }
+            } catch (IOException e) {
+                c_logger.warn(mRemote + ": I/O error: " + e.getMessage());
+                close(false);
+                return;
+            }
+
+            if (mOut.isEmpty()) {
+                if (mCloseAfterFlush) {
+                    close(false);
+                } else if ((mKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                    inSelector(() -> setInterest(SelectionKey.OP_WRITE, false));
+                }
+            } else {
+                inSelector(() -> setInterest(SelectionKey.OP_WRITE, true));
+            }
+        }
+
+        /**
+         * Closes the connection.
+         *
+         * @param flush whether to write out the queued up replies first
+         */
+        public synchronized void close(boolean flush) {
+            if (!mChannel.isOpen()) {
+                return;
+            }
+            try {
+                if (flush && !mOut.isEmpty()) {
+                    mChannel.configureBlocking(true);
+                    for (ByteBuffer b : mOut) {
+                        mChannel.write(b);
+                    }
+                }
+            } catch (IOException e) {
+                c_logger.warn(mRemote + ": I/O error: " + e.getMessage());
+            }
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            c_logger.info(mRemote + ": finished");
+        }
+
+        /**
+         * Adds or removes an interest op of the connection, if it is still open.
+         *
+         * @param op the op
+         * @param on whether to add or remove the op
+         */
+        private void setInterest(int op, boolean on) {
+            if (mKey.isValid()) {
+                mKey.interestOps(on ? mKey.interestOps() | op : mKey.interestOps() & ~op);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        // PM-1836 log4j 2.x style configuration
+        ConfigurationBuilder<BuiltConfiguration> builder =
+                ConfigurationBuilderFactory.newConfigurationBuilder();
+        AppenderComponentBuilder console = builder.newAppender("stdout", "Console");
+        console.add(
+                builder.newLayout("PatternLayout")
+                        .addAttribute("pattern", "%d{yyyy-MM-dd HH:mm:ss.SSS} %-5p [%c{1}] %m%n"));
+        builder.add(console);
+        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef("stdout")));
+        Configurator.initialize(builder.build());
+
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueSize = DEFAULT_QUEUE_SIZE;
+        int batchSize = DEFAULT_BATCH_SIZE;
+
+        LongOpt[] longOptions = {
+            new LongOpt("port", LongOpt.REQUIRED_ARGUMENT, null, 'p'),
+            new LongOpt("threads", LongOpt.REQUIRED_ARGUMENT, null, 't'),
+            new LongOpt("queue", LongOpt.REQUIRED_ARGUMENT, null, 'q'),
+            new LongOpt("batch", LongOpt.REQUIRED_ARGUMENT, null, 'b'),
+            new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h')
+        };
+        Getopt g = new Getopt("BatchingServer", args, "p:t:q:b:h", longOptions, false);
+        int option;
+        try {
+            while ((option = g.getopt()) != -1) {
+                switch (option) {
+                    case 'p':
+                        port = Integer.parseInt(g.getOptarg());
+                        break;
+                    case 't':
+                        threads = Integer.parseInt(g.getOptarg());
+                        break;
+                    case 'q':
+                        queueSize = Integer.parseInt(g.getOptarg());
+                        break;
+                    case 'b':
+                        batchSize = Integer.parseInt(g.getOptarg());
+                        break;
+                    case 'h':
+                    default:
+                        System.out.println(
+                                "Usage: BatchingServer [-p port] [-t threads] [-q queue size]"
+                                        + " [-b batch size]");
+                        System.exit(option == 'h' ? 0 : 1);
+                }
+            }
+        } catch (NumberFormatException e) {
+            c_logger.fatal("Invalid number " + e.getMessage());
+            System.exit(1);
+        }
+
+        DatabaseSchema dbschema = null;
+        BatchingServer server = null;
+        try {
+            // stand up the connection to the PTC
+            ChimeraProperties props = ChimeraProperties.instance();
+            String ptcSchemaName = props.getPTCSchemaName();
+            if (ptcSchemaName != null) {
+                dbschema = new Connect().connectDatabase(ptcSchemaName);
+                if (!(dbschema instanceof PTC)) {
+                    c_logger.warn(
+                            "Your database cannot store invocation records"
+                                    + ", assuming no-database-mode");
+                }
+            }
+            server =
+                    new BatchingServer(
+                            port,
+                            (dbschema instanceof PTC) ? (PTC) dbschema : null,
+                            props.getPTCSchemaLocation(),
+                            threads,
+                            queueSize,
+                            batchSize);
+        } catch (Exception e) {
+            c_logger.fatal("Unable to instantiate a server: " + e.getMessage());
+            System.exit(1);
+        }
+
+        try {
+            server.serve();
+        } catch (IOException e) {
+            c_logger.fatal("Server failed: " + e.getMessage());
+        }
+
+        if (dbschema != null) {
+            try {
+                dbschema.close();
+            } catch (Exception e) {
+                c_logger.warn("During database disconnect: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -108,7 +108,7 @@ public class SimpleServer extends Toolkit {
      * @param input is the file instance from which to read contents.
      * @return the result code from reading the file
      */
-    private String extractToMemory(java.io.File input) throws FriendlyNudge {
+    private static String extractToMemory(java.io.File input) throws FriendlyNudge {
         StringWriter out = null;
 
         // open the files
@@ -178,7 +178,7 @@ public class SimpleServer extends Toolkit {
      *   6   impossible case
      * </pre>
      */
-    private int determineExitStatus(InvocationRecord ivr) {
+    static int determineExitStatus(InvocationRecord ivr) {
         boolean seen = false;
         for (Iterator i = ivr.iterateJob(); i.hasNext(); ) {
             Job job = (Job) i.next();
@@ -219,6 +219,42 @@ public class SimpleServer extends Toolkit {
         return seen ? 0 : 5;
     }
 
+    /**
+     * Reads the kickstart record from the specified file into memory, after checking that the file
+     * exists, is readable and has contents.
+     *
+     * @param filename is the name of the file with the kickstart record.
+     * @param emptyFail whether an empty file signals failure or success.
+     * @return the XML of the kickstart record.
+     * @throws FriendlyNudge with the exit code to report, if the file cannot be read.
+     */
+    static String readFile(String filename, boolean emptyFail) throws FriendlyNudge {
+        // check input file
+        java.io.File check = new java.io.File(filename);
+
+        // test 1: file exists
+        if (!check.exists())
+            throw new FriendlyNudge("file does not exist " + filename + ", assuming failure", 5);
+
+        // test 2: file is readable
+        if (!check.canRead())
+            throw new FriendlyNudge("unable to read file " + filename + ", assuming failure", 5);
+
+        // test 3: file has nonzero size
+        if (check.length() == 0) {
+            if (emptyFail) {
+                throw new FriendlyNudge(
+                        "file " + filename + " has zero length" + ", assuming failure", 5);
+            } else {
+                throw new FriendlyNudge(
+                        "file " + filename + " has zero length" + ", assuming success", 0);
+            }
+        }
+
+        // test 4: extract XML into tmp file
+        return extractToMemory(check);
+    }
+
     /**
      * Reads the contents of the specified file, and returns with the remote exit code contained in
      * the job chain.
@@ -230,32 +266,8 @@ public class SimpleServer extends Toolkit {
         int result = 0;
 
         try {
-            // check input file
-            java.io.File check = new java.io.File(filename);
-
-            // test 1: file exists
-            if (!check.exists())
-                throw new FriendlyNudge(
-                        "file does not exist " + filename + ", assuming failure", 5);
-
-            // test 2: file is readable
-            if (!check.canRead())
-                throw new FriendlyNudge(
-                        "unable to read file " + filename + ", assuming failure", 5);
-
-            // test 3: file has nonzero size
-            if (check.length() == 0) {
-                if (m_emptyFail) {
-                    throw new FriendlyNudge(
-                            "file " + filename + " has zero length" + ", assuming failure", 5);
-                } else {
-                    throw new FriendlyNudge(
-                            "file " + filename + " has zero length" + ", assuming success", 0);
-                }
-            }
-
-            // test 4: extract XML into tmp file
-            String temp = extractToMemory(check);
+            // tests 1 to 4: read the XML of the record into memory
+            String temp = readFile(filename, m_emptyFail);
 
             // test 5: try to parse XML -- but there is only one parser
             InvocationRecord invocation = null;
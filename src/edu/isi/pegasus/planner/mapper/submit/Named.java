@@ -17,11 +17,13 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.LocalFileSystem;
 import edu.isi.pegasus.planner.mapper.MapperException;
 import edu.isi.pegasus.planner.mapper.SubmitMapper;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Properties;
 
 /**
@@ -50,6 +52,9 @@ public class Named implements SubmitMapper {
 
     private File mBaseSubmitDirectory;
 
+    /** The local filesystem through which the job directories are created */
+    private LocalFileSystem mFileSystem;
+
     /** Default constructor. */
     public Named() {}
 
@@ -65,6 +70,7 @@ public class Named implements SubmitMapper {
         mLogger = bag.getLogger();
         PlannerOptions options = bag.getPlannerOptions();
         mBaseSubmitDirectory = new File(options.getSubmitDirectory());
+        mFileSystem = bag.getLocalFileSystem();
     }
 
     /**
@@ -78,10 +84,10 @@ public class Named implements SubmitMapper {
 
         // create the relative dir on the submit host if not created already
         File fullDir = new File(mBaseSubmitDirectory, relative);
-        if (!fullDir.exists()) {
-            if (!fullDir.mkdirs()) {
-                throw new MapperException("Unable to create directory " + fullDir);
-            }
+        try {
+            mFileSystem.mkdirs(fullDir);
+        } catch (IOException ioe) {
+            throw new MapperException("Unable to create directory " + fullDir, ioe);
         }
 
         return new File(relative);
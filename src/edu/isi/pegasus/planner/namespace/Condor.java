@@ -43,7 +43,7 @@ public class Condor extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> classAdKeysToPegasusProfiles() {
+    public static synchronized Map<String, String> classAdKeysToPegasusProfiles() {
         if (mClassAdToPegasus == null) {
             mClassAdToPegasus = new HashMap();
             mClassAdToPegasus.put(Condor.REQUEST_MEMORY_KEY, Pegasus.MEMORY_KEY);
@@ -975,6 +975,7 @@ public class Condor extends Namespace {
             key = key.toLowerCase();
         }
 
+        this.copyOnWrite();
         mProfileMap.put(key, value);
     }
 
@@ -1021,15 +1022,6 @@ public class Condor extends Namespace {
         return st.toString();
     }
 
-    /**
-     * Returns a copy of the current namespace object.
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return new Condor(this.mProfileMap);
-    }
-
     /**
      * Updates a file path with with classad variable name; if the path starts with the value of the
      * classad.
@@ -229,6 +229,7 @@ public class Dagman extends Namespace {
      */
     public void construct(String key, String value) {
         // convert to uppercase the key
+        this.copyOnWrite();
         mProfileMap.put(key.toUpperCase(), value);
     }
 
@@ -649,15 +650,4 @@ public class Dagman extends Namespace {
         }
         return value.toString();
     }
-
-    /**
-     * Returns a copy of the current namespace object.
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        Dagman ns = (mProfileMap == null) ? new Dagman() : new Dagman(this.mProfileMap);
-        ns.mJobName = (mJobName == null) ? null : new String(this.mJobName);
-        return ns;
-    }
 }
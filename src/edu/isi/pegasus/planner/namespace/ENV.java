@@ -133,6 +133,7 @@ public class ENV extends Namespace {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         if (mProfileMap == null) mProfileMap = new LinkedHashMap();
         mProfileMap.put(key, value);
     }
@@ -252,13 +253,4 @@ public class ENV extends Namespace {
             this.construct(key, (String) profiles.get(key));
         }
     }
-
-    /**
-     * Returns a copy of the current namespace object.
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return (mProfileMap == null ? new ENV() : new ENV(this.mProfileMap));
-    }
 }
@@ -50,7 +50,7 @@ public class Globus extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> rslToPegasusProfiles() {
+    public static synchronized Map<String, String> rslToPegasusProfiles() {
         if (mRSLToPegasus == null) {
             mRSLToPegasus = new HashMap();
             mRSLToPegasus.put(Globus.TOTAL_MEMORY_KEY, Pegasus.MEMORY_KEY);
@@ -69,7 +69,7 @@ public class Globus extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> pegasusProfilesToRSLKey() {
+    public static synchronized Map<String, String> pegasusProfilesToRSLKey() {
         if (mPegasusToRSL == null) {
             mPegasusToRSL = new HashMap();
             mPegasusToRSL.put(Pegasus.MEMORY_KEY, Globus.TOTAL_MEMORY_KEY);
@@ -90,7 +90,7 @@ public class Globus extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> rslToEnvProfiles() {
+    public static synchronized Map<String, String> rslToEnvProfiles() {
         if (mRSLToENV == null) {
             mRSLToENV = new HashMap();
             mRSLToENV.put(Globus.MAX_MEMORY_KEY, "PEGASUS_MEMORY");
@@ -104,7 +104,7 @@ public class Globus extends Namespace {
         return mRSLToENV;
     }
 
-    public static final Set<String> rslKeysSubstitutedWithPegasusClassAds() {
+    public static final synchronized Set<String> rslKeysSubstitutedWithPegasusClassAds() {
         if (mRSLKeysSubstitutedWithPegasusClassAds == null) {
             mRSLKeysSubstitutedWithPegasusClassAds = new HashSet();
             mRSLKeysSubstitutedWithPegasusClassAds.add(Globus.COUNT_KEY);
@@ -209,6 +209,7 @@ public class Globus extends Namespace {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         mProfileMap.put(key.toLowerCase(), value);
     }
 
@@ -447,15 +448,6 @@ public class Globus extends Namespace {
         return convert(mProfileMap);
     }
 
-    /**
-     * Returns a copy of the current namespace object
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return new Globus(this.mProfileMap);
-    }
-
     /**
      * Returns the aggregator to be used for the profile key while merging. If no aggregator is
      * found, the then default Aggregator (Update) is used.
@@ -88,17 +88,6 @@ public class Hints extends Namespace {
         return mNamespace;
     }
 
-    /**
-     * Provides an iterator to traverse the profiles by their keys.
-     *
-     * @return an iterator over the keys to walk the profile list.
-     */
-    public Iterator getProfileKeyIterator() {
-        return (this.mProfileMap == null)
-                ? new EmptyIterator()
-                : this.mProfileMap.keySet().iterator();
-    }
-
     /**
      * Constructs a new element of the format (key=value). It first checks if the map has been
      * initialised or not. If not then allocates memory first.
@@ -107,6 +96,7 @@ public class Hints extends Namespace {
      * @param value is the right hand side.
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         if (mProfileMap == null) mProfileMap = new TreeMap();
         mProfileMap.put(key, value);
     }
@@ -201,14 +191,16 @@ public class Hints extends Namespace {
      * @return Map
      */
     public java.util.Map deprecatedTable() {
-        if (mDeprecatedTable == null) {
-            // only initialize once and only once, as needed.
-            mDeprecatedTable = new java.util.HashMap();
-            mDeprecatedTable.put(DEPRECATED_EXECUTION_SITE_KEY, EXECUTION_SITE_KEY);
-            mDeprecatedTable.put(DEPRECATED_PFN_HINT_KEY, PFN_HINT_KEY);
+        synchronized (Hints.class) {
+            if (mDeprecatedTable == null) {
+                // only initialize once and only once, as needed.
+                mDeprecatedTable = new java.util.HashMap();
+                mDeprecatedTable.put(DEPRECATED_EXECUTION_SITE_KEY, EXECUTION_SITE_KEY);
+                mDeprecatedTable.put(DEPRECATED_PFN_HINT_KEY, PFN_HINT_KEY);
+            }
+
+            return mDeprecatedTable;
         }
-
-        return mDeprecatedTable;
     }
 
     /**
@@ -251,13 +243,4 @@ public class Hints extends Namespace {
 
         return st.toString();
     }
-
-    /**
-     * Returns a copy of the current namespace object.
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return (mProfileMap == null) ? new Hints() : new Hints(this.mProfileMap);
-    }
 }
@@ -83,17 +83,6 @@ public class Metadata extends Namespace {
         return mNamespace;
     }
 
-    /**
-     * Provides an iterator to traverse the profiles by their keys.
-     *
-     * @return an iterator over the keys to walk the profile list.
-     */
-    public Iterator getProfileKeyIterator() {
-        return (this.mProfileMap == null)
-                ? new EmptyIterator()
-                : this.mProfileMap.keySet().iterator();
-    }
-
     /**
      * Constructs a new element of the format (key=value). It first checks if the map has been
      * initialised or not. If not then allocates memory first.
@@ -102,6 +91,7 @@ public class Metadata extends Namespace {
      * @param value is the right hand side.
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         if (mProfileMap == null) mProfileMap = new HashMap();
         mProfileMap.put(key, value);
     }
@@ -191,15 +181,6 @@ public class Metadata extends Namespace {
         return "";
     }
 
-    /**
-     * Returns a copy of the current namespace object.
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return (mProfileMap == null) ? new Metadata() : new Metadata(this.mProfileMap);
-    }
-
     /**
      * Custom serializer for YAML representation of Metadata Cannot be used directly, unless
      * enclosed in another object such as Replica Location.
@@ -23,10 +23,17 @@ import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry
 import edu.isi.pegasus.planner.classes.Profile;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 /**
  * The base namespace class that all the othernamespace handling classes extend. Some constants are
@@ -36,7 +43,7 @@ import java.util.Set;
  * @author Gaurang Mehta
  * @version $Revision$
  */
-public abstract class Namespace /*extends Data*/ {
+public abstract class Namespace /*extends Data*/ implements Cloneable {
 
     /** The LogManager object which is used to log all the messages. */
     public LogManager mLogger = LogManagerFactory.loadSingletonInstance();
@@ -76,6 +83,18 @@ public abstract class Namespace /*extends Data*/ {
     @SerializedName("profiles")
     protected Map mProfileMap;
 
+    /**
+     * Whether the profile map is shared with other namespace objects or not. A shared map is never
+     * modified, and is copied before the first modification made through this namespace.
+     */
+    private transient boolean mShared;
+
+    /**
+     * The interned profile maps. A map is held only as long as some namespace object refers to it.
+     */
+    private static final Map<Map, WeakReference<Map>> sInterned =
+            new WeakHashMap<Map, WeakReference<Map>>();
+
     /**
      * Checks if the namespace specified is valid or not.
      *
@@ -134,7 +153,9 @@ public abstract class Namespace /*extends Data*/ {
      * @return an iterator over the keys to walk the profile list.
      */
     public Iterator getProfileKeyIterator() {
-        return (mProfileMap == null) ? new EmptyIterator() : this.mProfileMap.keySet().iterator();
+        return (mProfileMap == null)
+                ? new EmptyIterator()
+                : Collections.unmodifiableSet(this.mProfileMap.keySet()).iterator();
     }
 
     /**
@@ -328,6 +349,7 @@ public abstract class Namespace /*extends Data*/ {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         mProfileMap.put(key, value);
     }
 
@@ -338,17 +360,18 @@ public abstract class Namespace /*extends Data*/ {
      * @return the value object if it exists. null if the key does not exist in the namespace.
      */
     public Object removeKey(Object key) {
+        this.copyOnWrite();
         return mProfileMap.remove(key);
     }
 
     /**
-     * Returns the key set associated with the namespace.
+     * Returns a read only view of the key set associated with the namespace.
      *
      * @return key set if the mProfileMap is populated. null if the associated mProfileMap is not
      *     populated.
      */
     public Set keySet() {
-        return (mProfileMap == null) ? null : mProfileMap.keySet();
+        return (mProfileMap == null) ? null : Collections.unmodifiableSet(mProfileMap.keySet());
     }
 
     /**
@@ -531,12 +554,36 @@ public abstract class Namespace /*extends Data*/ {
     /** Resets the namespace, removing all profiles associated */
     public void reset() {
         if (this.mProfileMap != null) {
+            this.copyOnWrite();
             this.mProfileMap.clear();
         }
     }
 
     /**
-     * Returns the clone of the object.
+     * Replaces the profile map with an equal map that is shared with other namespace objects that
+     * have the same profiles, so that jobs with the same profiles share a single copy of them.
+     * The namespace can still be modified afterwards, in which case it gets its own copy of the
+     * profiles first.
+     */
+    public void intern() {
+        if (mProfileMap == null) {
+            return;
+        }
+        synchronized (sInterned) {
+            WeakReference<Map> ref = sInterned.get(mProfileMap);
+            Map canonical = (ref == null) ? null : ref.get();
+            if (canonical == null) {
+                sInterned.put(mProfileMap, new WeakReference<Map>(mProfileMap));
+            } else if (canonical != mProfileMap && Namespace.sameOrder(canonical, mProfileMap)) {
+                mProfileMap = canonical;
+            }
+            mShared = true;
+        }
+    }
+
+    /**
+     * Returns the clone of the object. The clone shares the profile map with this namespace until
+     * either of them is modified.
      *
      * @return the clone
      */
@@ -544,19 +591,68 @@ public abstract class Namespace /*extends Data*/ {
         Namespace obj;
         try {
             obj = (Namespace) super.clone();
-            for (Iterator it = this.getProfileKeyIterator(); it.hasNext(); ) {
-                String key = (String) it.next();
-                obj.construct(key, (String) this.get(key));
-            }
-
         } catch (CloneNotSupportedException e) {
             // somewhere in the hierarch chain clone is not implemented
             throw new RuntimeException(
                     "Clone not implemented in the base class of " + this.getClass().getName(), e);
         }
+        if (mProfileMap != null) {
+            this.mShared = true;
+            obj.mShared = true;
+        }
         return obj;
     }
 
+    /**
+     * Gives the namespace its own copy of the profile map, if the map is shared with other
+     * namespace objects. It should be called before the profile map is modified.
+     */
+    protected void copyOnWrite() {
+        if (mShared) {
+            if (mProfileMap != null) {
+                mProfileMap = Namespace.copy(mProfileMap);
+            }
+            mShared = false;
+        }
+    }
+
+    /**
+     * Returns a copy of a profile map, of the same type and ordering as the map passed.
+     *
+     * @param map the map to copy
+     * @return the copy
+     */
+    private static Map copy(Map map) {
+        if (map instanceof SortedMap) {
+            return new TreeMap((SortedMap) map);
+        }
+        if (map instanceof LinkedHashMap) {
+            return new LinkedHashMap(map);
+        }
+        return new HashMap(map);
+    }
+
+    /**
+     * Returns whether two equal maps can replace each other, that is, they are of the same type
+     * and iterate over their keys in the same order.
+     *
+     * @param one the first map
+     * @param two the second map
+     * @return boolean
+     */
+    private static boolean sameOrder(Map one, Map two) {
+        if (one.getClass() != two.getClass()) {
+            return false;
+        }
+        Iterator it = two.keySet().iterator();
+        for (Object key : one.keySet()) {
+            if (!it.hasNext() || !key.equals(it.next())) {
+                return false;
+            }
+        }
+        return !it.hasNext();
+    }
+
     /** An empty iterator that allows me to traverse in case of null objects. */
     protected class EmptyIterator implements Iterator {
 
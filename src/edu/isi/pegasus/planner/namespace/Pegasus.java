@@ -82,6 +82,20 @@ public class Pegasus extends Namespace {
      */
     public static final String MAX_RUN_TIME = "clusters.maxruntime";
 
+    /**
+     * The name of the key that if set in the Pegasus namespace specifies the memory in MB available
+     * to a clustered job. This key is used while clustering jobs horizontally according to run
+     * times. Jobs requiring more memory are not clustered.
+     */
+    public static final String CLUSTERS_MAX_MEMORY_KEY = "clusters.maxmemory";
+
+    /**
+     * The name of the key that if set in the Pegasus namespace specifies the number of cores
+     * available to a clustered job. This key is used while clustering jobs horizontally according
+     * to run times. Jobs requiring more cores are not clustered.
+     */
+    public static final String CLUSTERS_MAX_CORES_KEY = "clusters.maxcores";
+
     /**
      * The name of the key that determines the clustering executable to be used to run the
      * merged/collapsed job.
@@ -517,6 +531,7 @@ public class Pegasus extends Namespace {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         if (mProfileMap == null) mProfileMap = new TreeMap();
         mProfileMap.put(key.toLowerCase(), value);
     }
@@ -578,6 +593,8 @@ public class Pegasus extends Namespace {
                         || (key.compareTo(CHANGE_DIR_KEY) == 0)
                         || (key.compareTo(CHAIN_STAGE_IN_KEY) == 0)
                         || (key.compareTo(MAX_RUN_TIME) == 0)
+                        || (key.compareTo(CLUSTERS_MAX_MEMORY_KEY) == 0)
+                        || (key.compareTo(CLUSTERS_MAX_CORES_KEY) == 0)
                         || (key.compareTo(CREATE_AND_CHANGE_DIR_KEY) == 0)
                         || (key.compareTo(CORES_KEY) == 0)
                         || (key.compareTo(Pegasus.CHECKPOINT_TIME_KEY) == 0)
@@ -859,15 +876,17 @@ public class Pegasus extends Namespace {
      * @return Map
      */
     public java.util.Map deprecatedTable() {
-        if (mDeprecatedTable == null) {
-            // only initialize once and only once, as needed.
-            mDeprecatedTable = new java.util.TreeMap();
-            mDeprecatedTable.put(DEPRECATED_BUNDLE_STAGE_IN_KEY, BUNDLE_STAGE_IN_KEY);
-            mDeprecatedTable.put(DEPRECATED_CHANGE_DIR_KEY, CHANGE_DIR_KEY);
-            mDeprecatedTable.put(DEPRECATED_RUNTIME_KEY, RUNTIME_KEY);
+        synchronized (Pegasus.class) {
+            if (mDeprecatedTable == null) {
+                // only initialize once and only once, as needed.
+                mDeprecatedTable = new java.util.TreeMap();
+                mDeprecatedTable.put(DEPRECATED_BUNDLE_STAGE_IN_KEY, BUNDLE_STAGE_IN_KEY);
+                mDeprecatedTable.put(DEPRECATED_CHANGE_DIR_KEY, CHANGE_DIR_KEY);
+                mDeprecatedTable.put(DEPRECATED_RUNTIME_KEY, RUNTIME_KEY);
+            }
+
+            return mDeprecatedTable;
         }
-
-        return mDeprecatedTable;
     }
 
     /**
@@ -976,15 +995,6 @@ public class Pegasus extends Namespace {
         return containsKey(key) ? get(key).toString() : null;
     }
 
-    /**
-     * Returns a copy of the current namespace object
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return (mProfileMap == null) ? new Pegasus() : new Pegasus(this.mProfileMap);
-    }
-
     /**
      * Complain for a non numeric value
      *
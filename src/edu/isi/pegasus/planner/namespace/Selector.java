@@ -97,6 +97,7 @@ public class Selector extends Namespace {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
+        this.copyOnWrite();
         if (mProfileMap == null) mProfileMap = new TreeMap();
         mProfileMap.put(key, value);
     }
@@ -190,13 +191,4 @@ public class Selector extends Namespace {
     public String toCondor() {
         return "";
     }
-
-    /**
-     * Returns a copy of the current namespace object.
-     *
-     * @return the Cloned object
-     */
-    public Object clone() {
-        return (mProfileMap == null ? new Selector() : new Selector(this.mProfileMap));
-    }
 }
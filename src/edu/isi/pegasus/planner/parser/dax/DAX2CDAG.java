@@ -39,6 +39,7 @@ import edu.isi.pegasus.planner.dax.Invoke;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.namespace.Selector;
 import edu.isi.pegasus.planner.parser.XMLParser;
+import edu.isi.pegasus.planner.partitioner.graph.GraphFactory;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
 import java.util.HashMap;
@@ -107,9 +108,9 @@ public class DAX2CDAG implements Callback {
      * @param dax the path to the DAX file.
      */
     public void initialize(PegasusBag bag, String dax) {
-        mDag = new ADag();
-        mJobMap = new HashMap<String, String>();
         mProps = bag.getPegasusProperties();
+        mDag = new ADag(GraphFactory.loadInstance(mProps.getGraphImplementation()));
+        mJobMap = new HashMap<String, String>();
         mLogger = bag.getLogger();
         mDone = false;
         this.mJobPrefix =
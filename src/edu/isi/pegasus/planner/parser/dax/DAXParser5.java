@@ -17,6 +17,7 @@ import static edu.isi.pegasus.planner.parser.SiteCatalogYAMLParser.SCHEMA_URI;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.InjectableValues;
@@ -171,13 +172,24 @@ public class DAXParser5 extends YAMLParser implements DAXParser {
                 throw new RuntimeException("Callback not initialized when parsing initiated");
             }
             ObjectCodec oc = parser.getCodec();
-            JsonNode node = oc.readTree(parser);
+
+            // the document is read one top level key at a time, and the jobs and
+            // dependencies one entry at a time, so that the whole document is never
+            // materialized in memory
+            JsonToken token = parser.currentToken();
+            if (token == null) {
+                token = parser.nextToken();
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new RuntimeException(
+                        WorkflowKeywords.WORKFLOW + ": value should be of type object ");
+            }
 
             Map attrs = new HashMap();
             attrs.put("index", "0");
-            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
-                Map.Entry<String, JsonNode> e = it.next();
-                String key = e.getKey();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                token = parser.nextToken();
 
                 WorkflowKeywords reservedKey = WorkflowKeywords.getReservedKey(key);
 
@@ -186,18 +198,21 @@ public class DAXParser5 extends YAMLParser implements DAXParser {
                         // ignore any user defined extensions
                         // example x-: {apiLang: python, createdBy: bamboo, createdOn: '07-10-20
                         // 11:09:29'}
+                        parser.skipChildren();
                         continue;
                     }
                     this.complainForIllegalKey(
-                            WorkflowKeywords.WORKFLOW.getReservedName(), key, node);
+                            WorkflowKeywords.WORKFLOW.getReservedName(),
+                            key,
+                            (JsonNode) oc.readTree(parser));
                 }
                 switch (reservedKey) {
                     case PEGASUS:
-                        attrs.put("version", node.get(key).asText());
+                        attrs.put("version", ((JsonNode) oc.readTree(parser)).asText());
                         break;
 
                     case X_PEGASUS:
-                        JsonNode pegasusExtensionsNode = node.get(key);
+                        JsonNode pegasusExtensionsNode = oc.readTree(parser);
                         ObjectMapper mapper = new ObjectMapper();
                         Map<String, String> m =
                                 mapper.convertValue(pegasusExtensionsNode, Map.class);
@@ -214,48 +229,34 @@ public class DAXParser5 extends YAMLParser implements DAXParser {
                         break;
 
                     case METADATA:
-                        for (Profile p : this.createMetadata(node.get(key))) {
+                        for (Profile p : this.createMetadata((JsonNode) oc.readTree(parser))) {
                             c.cbMetadata(p);
                         }
                         break;
 
                     case NAME:
-                        attrs.put("name", node.get(key).asText());
+                        attrs.put("name", ((JsonNode) oc.readTree(parser)).asText());
                         c.cbDocument(attrs);
                         break;
 
                     case REPLICA_CATALOG:
-                        JsonNode rcNode = node.get(key);
-                        if (rcNode != null) {
-                            parser = rcNode.traverse(oc);
-                            ReplicaStore store = parser.readValueAs(ReplicaStore.class);
-                            c.cbReplicaStore(store);
-                        }
+                        ReplicaStore replicaStore = parser.readValueAs(ReplicaStore.class);
+                        c.cbReplicaStore(replicaStore);
                         break;
 
                     case SITE_CATALOG:
-                        JsonNode scNode = node.get(key);
-                        if (scNode != null) {
-                            parser = scNode.traverse(oc);
-                            SiteStore store = parser.readValueAs(SiteStore.class);
-                            c.cbSiteStore(store);
-                        }
+                        SiteStore siteStore = parser.readValueAs(SiteStore.class);
+                        c.cbSiteStore(siteStore);
                         break;
 
                     case TRANSFORMATION_CATALOG:
-                        JsonNode tcNode = node.get(key);
-                        if (tcNode != null) {
-                            parser = tcNode.traverse(oc);
-                            TransformationStore store =
-                                    parser.readValueAs(TransformationStore.class);
-                            c.cbTransformationStore(store);
-                        }
+                        TransformationStore transformationStore =
+                                parser.readValueAs(TransformationStore.class);
+                        c.cbTransformationStore(transformationStore);
                         break;
 
                     case HOOKS:
-                        JsonNode hooksNode = node.get(key);
-                        if (hooksNode != null) {
-                            parser = hooksNode.traverse(oc);
+                        if (token != JsonToken.VALUE_NULL) {
                             Notifications notifications = parser.readValueAs(Notifications.class);
                             for (Invoke.WHEN when : Invoke.WHEN.values()) {
                                 for (Invoke i : notifications.getNotifications(when)) {
@@ -266,10 +267,8 @@ public class DAXParser5 extends YAMLParser implements DAXParser {
                         break;
 
                     case JOBS:
-                        JsonNode jobsNode = node.get(key);
-                        if (jobsNode.isArray()) {
-                            for (JsonNode jobNode : jobsNode) {
-                                parser = jobNode.traverse(oc);
+                        if (token == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() != JsonToken.END_ARRAY) {
                                 Job job = parser.readValueAs(Job.class);
                                 c.cbJob(job);
                             }
@@ -279,9 +278,9 @@ public class DAXParser5 extends YAMLParser implements DAXParser {
                         break;
 
                     case JOB_DEPENDENCIES:
-                        JsonNode dependenciesNode = node.get(key);
-                        if (dependenciesNode.isArray()) {
-                            for (JsonNode dependencyNode : dependenciesNode) {
+                        if (token == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                                JsonNode dependencyNode = oc.readTree(parser);
                                 String jobID =
                                         dependencyNode
                                                 .get(WorkflowKeywords.JOB_ID.getReservedName())
@@ -302,7 +301,9 @@ public class DAXParser5 extends YAMLParser implements DAXParser {
 
                     default:
                         this.complainForUnsupportedKey(
-                                WorkflowKeywords.WORKFLOW.getReservedName(), key, node);
+                                WorkflowKeywords.WORKFLOW.getReservedName(),
+                                key,
+                                (JsonNode) oc.readTree(parser));
                 }
             }
             c.cbDone();
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+/**
+ * A factory class to load the Graph implementation used to store the workflow.
+ */
+public class GraphFactory {
+
+    /** The name of the default implementation backed by a map of nodes with hash sets of edges. */
+    public static final String MAP_IMPLEMENTATION = "Map";
+
+    /** The name of the implementation that stores edges in primitive int lists. */
+    public static final String INDEXED_IMPLEMENTATION = "Indexed";
+
+    /** The default implementation to use. */
+    public static final String DEFAULT_IMPLEMENTATION = MAP_IMPLEMENTATION;
+
+    /**
+     * Loads the Graph implementation corresponding to the name passed.
+     *
+     * @param implementation the name of the implementation, case insensitive. null results in the
+     *     default implementation.
+     * @return the Graph
+     * @throws RuntimeException if the implementation is not known
+     */
+    public static Graph loadInstance(String implementation) {
+        implementation = (implementation == null) ? DEFAULT_IMPLEMENTATION : implementation.trim();
+        if (implementation.equalsIgnoreCase(MAP_IMPLEMENTATION)) {
+            return new MapGraph();
+        } else if (implementation.equalsIgnoreCase(INDEXED_IMPLEMENTATION)) {
+            return new IndexedGraph();
+        }
+        throw new RuntimeException("Unknown graph implementation specified " + implementation);
+    }
+
+    /**
+     * Returns a new, empty Graph of the same implementation as the graph passed.
+     *
+     * @param graph the graph
+     * @return the new Graph
+     */
+    public static Graph newInstance(Graph graph) {
+        return (graph instanceof IndexedGraph) ? new IndexedGraph() : new MapGraph();
+    }
+}
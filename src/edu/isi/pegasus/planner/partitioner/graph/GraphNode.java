@@ -18,9 +18,11 @@ import com.google.gson.annotations.SerializedName;
 
 import edu.isi.pegasus.planner.classes.Data;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -148,6 +150,13 @@ public class GraphNode extends Data {
      * @param parents
      */
     public void setParents(Collection<GraphNode> parents) {
+        if (mParents instanceof IndexedGraph.EdgeView) {
+            // the edges are stored in the graph
+            List<GraphNode> copy = new ArrayList<GraphNode>(parents);
+            mParents.clear();
+            mParents.addAll(copy);
+            return;
+        }
         mParents = (parents instanceof Set) ? (Set) parents : new HashSet(parents);
     }
 
@@ -158,9 +167,28 @@ public class GraphNode extends Data {
      * @param children
      */
     public void setChildren(Collection<GraphNode> children) {
+        if (mChildren instanceof IndexedGraph.EdgeView) {
+            // the edges are stored in the graph
+            List<GraphNode> copy = new ArrayList<GraphNode>(children);
+            mChildren.clear();
+            mChildren.addAll(copy);
+            return;
+        }
         mChildren = (children instanceof Set) ? (Set) children : new HashSet(children);
     }
 
+    /**
+     * Sets the views through which the parents and children of the node are accessed, for graph
+     * implementations that store the edges themselves.
+     *
+     * @param parents the view of the parents
+     * @param children the view of the children
+     */
+    void setEdgeViews(Set<GraphNode> parents, Set<GraphNode> children) {
+        mParents = parents;
+        mChildren = children;
+    }
+
     /**
      * Sets the depth associated with the node.
      *
@@ -244,6 +272,12 @@ public class GraphNode extends Data {
 
     /** Reset all the edges associated with this node. */
     public final void resetEdges() {
+        if (mParents instanceof IndexedGraph.EdgeView) {
+            // removes the edges from the other ends also
+            mParents.clear();
+            mChildren.clear();
+            return;
+        }
         mParents = new HashSet();
         mChildren = new HashSet();
     }
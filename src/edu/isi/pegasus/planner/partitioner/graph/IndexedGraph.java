@@ -0,0 +1,682 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A Graph implementation that stores the edges of the graph in primitive int lists, instead of
+ * the two <code>HashSet</code> objects per node that are used when nodes are added to a <code>
+ * MapGraph</code>.
+ *
+ * <p>Each node added to the graph is interned to an int index. The parents and children of a node
+ * are stored as growable int arrays indexed by the node index, and the <code>GraphNode</code> only
+ * holds two lightweight set views that translate the indices back to nodes. An edge is stored once
+ * for the parent and once for the child, so adding an edge via <code>addChild</code> on the parent
+ * also makes the parent visible via <code>getParents</code> of the child.
+ *
+ * <p>Nodes that are linked to a node in this graph, without being added to the graph first, are
+ * interned automatically. However, they are only returned by the graph lookup and iteration
+ * methods once they are added using <code>addNode</code>. A node can belong to only one graph at a
+ * time, and has to be removed from a graph before it is added to another. The index of a removed
+ * node is reused for nodes interned later.
+ *
+ * <p>The iterators returned by the set views iterate over the edges as they were when the iterator
+ * was created, so that the edges can be modified while iterating. The edges are copied only if
+ * they are modified while an iterator is in use.
+ */
+public class IndexedGraph extends MapGraph {
+
+    /** The initial capacity of the node arrays. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The values iterated over for a node without edges. */
+    private static final int[] EMPTY = new int[0];
+
+    /** The nodes indexed by their interned index. */
+    private GraphNode[] mNodes;
+
+    /** The parents of each node indexed by the interned index. Null if no parents. */
+    private IntList[] mParents;
+
+    /** The children of each node indexed by the interned index. Null if no children. */
+    private IntList[] mChildren;
+
+    /** The number of indices assigned, including the released ones. */
+    private int mCount;
+
+    /** The indices released by the removed nodes, that are reused before assigning new ones. */
+    private IntList mFree;
+
+    /** The default constructor. */
+    public IndexedGraph() {
+        this(false);
+    }
+
+    /**
+     * The overloaded constructor
+     *
+     * @param preserveInsertionOrder a boolean indicating whether you want to preserve insertion
+     *     order. If set to true, the nodeIterator() will return nodes in the order they were added.
+     */
+    public IndexedGraph(boolean preserveInsertionOrder) {
+        super(preserveInsertionOrder);
+        mNodes = new GraphNode[INITIAL_CAPACITY];
+        mParents = new IntList[INITIAL_CAPACITY];
+        mChildren = new IntList[INITIAL_CAPACITY];
+        mCount = 0;
+        mFree = new IntList();
+    }
+
+    /**
+     * Adds a node to the Graph. It overwrites an already existing node with the same ID. Any
+     * existing edges of the node are moved into the graph.
+     *
+     * @param node the node to be added to the Graph.
+     * @throws IllegalArgumentException if the node belongs to another IndexedGraph
+     */
+    public void addNode(GraphNode node) {
+        this.index(node);
+        super.addNode(node);
+    }
+
+    /**
+     * Removes a node from the Graph. The parents of the node become the parents of the children of
+     * the node. The node is detached from the graph, and can be added to another graph.
+     *
+     * @param identifier the id of the node to be removed.
+     * @return boolean indicating whether the node was removed or not.
+     */
+    public boolean remove(String identifier) {
+        GraphNode removalNode = this.getNode(identifier);
+        if (removalNode == null) {
+            // node does not exist only.
+            return false;
+        }
+
+        // take a copy as the edges are removed from both ends
+        List<GraphNode> parents = new ArrayList<GraphNode>(removalNode.getParents());
+        List<GraphNode> children = new ArrayList<GraphNode>(removalNode.getChildren());
+        removalNode.resetEdges();
+
+        for (GraphNode parent : parents) {
+            for (GraphNode child : children) {
+                this.addEdge(parent, child);
+            }
+        }
+
+        mStore.remove(identifier);
+        this.release(removalNode);
+        return true;
+    }
+
+    /**
+     * Returns the root nodes of the Graph.
+     *
+     * @return a list containing <code>GraphNode</code> corresponding to the root nodes.
+     */
+    public List<GraphNode> getRoots() {
+        List<GraphNode> rootNodes = new LinkedList();
+        for (Iterator<GraphNode> it = this.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            if (node.getParents().isEmpty()) {
+                rootNodes.add(node);
+            }
+        }
+        return rootNodes;
+    }
+
+    /**
+     * Returns the leaf nodes of the Graph.
+     *
+     * @return a list containing <code>GraphNode</code> corresponding to the leaf nodes.
+     */
+    public List<GraphNode> getLeaves() {
+        List<GraphNode> leaves = new LinkedList();
+        for (Iterator<GraphNode> it = this.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            if (node.getChildren().isEmpty()) {
+                leaves.add(node);
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * Adds an edge between two nodes in the graph.
+     *
+     * @param parent the parent node .
+     * @param child the child node .
+     * @throws IllegalArgumentException if either node belongs to another IndexedGraph
+     */
+    public void addEdge(GraphNode parent, GraphNode child) {
+        this.addEdge(this.index(parent), this.index(child));
+    }
+
+    /**
+     * Returns the number of edges in the graph, between all interned nodes.
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            count += (mChildren[i] == null) ? 0 : mChildren[i].size();
+        }
+        return count;
+    }
+
+    /**
+     * Trims the backing arrays of the graph to their current sizes. Useful to call once a graph
+     * has been constructed and is not expected to grow anymore.
+     */
+    public void trimToSize() {
+        mNodes = Arrays.copyOf(mNodes, Math.max(1, mCount));
+        mParents = Arrays.copyOf(mParents, mNodes.length);
+        mChildren = Arrays.copyOf(mChildren, mNodes.length);
+        for (int i = 0; i < mCount; i++) {
+            if (mParents[i] != null) {
+                mParents[i].trimToSize();
+            }
+            if (mChildren[i] != null) {
+                mChildren[i].trimToSize();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the object.
+     *
+     * @return clone of the object.
+     */
+    public Object clone() {
+        return new java.lang.CloneNotSupportedException("Clone() not implemented in IndexedGraph");
+    }
+
+    /**
+     * Returns the index for a node, interning it if the node is not interned in this graph.
+     *
+     * <p>When a node is interned, the existing edges of the node are moved into the graph, and the
+     * nodes linked to it are interned in turn.
+     *
+     * @param node the node
+     * @return the index of the node.
+     * @throws IllegalArgumentException if the node, or a node linked to it, belongs to another
+     *     IndexedGraph
+     */
+    int index(GraphNode node) {
+        int index = this.indexOf(node);
+        if (index >= 0) {
+            return index;
+        }
+
+        LinkedList<Object[]> pending = new LinkedList();
+        index = this.intern(node, pending);
+        while (!pending.isEmpty()) {
+            Object[] entry = pending.removeFirst();
+            int current = (Integer) entry[0];
+            for (GraphNode parent : (Collection<GraphNode>) entry[1]) {
+                int p = this.indexOf(parent);
+                this.addEdge((p >= 0) ? p : this.intern(parent, pending), current);
+            }
+            for (GraphNode child : (Collection<GraphNode>) entry[2]) {
+                int c = this.indexOf(child);
+                this.addEdge(current, (c >= 0) ? c : this.intern(child, pending));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of a node if it is interned in this graph.
+     *
+     * @param node the node
+     * @return the index, else -1
+     */
+    int indexOf(GraphNode node) {
+        Collection<GraphNode> parents = node.getParents();
+        if (parents instanceof EdgeView) {
+            EdgeView view = (EdgeView) parents;
+            if (view.mGraph == this) {
+                return view.mIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Assigns an index to a node and swaps its edge sets with views into this graph. The existing
+     * edges of the node are recorded in the pending list, to be added later.
+     *
+     * @param node the node
+     * @param pending the list of pending edges to be added
+     * @return the index assigned
+     * @throws IllegalArgumentException if the node belongs to another IndexedGraph
+     */
+    private int intern(GraphNode node, List<Object[]> pending) {
+        Collection<GraphNode> parents = node.getParents();
+        Collection<GraphNode> children = node.getChildren();
+        if (parents instanceof EdgeView) {
+            // moving the node would silently drop its edges in the other graph
+            throw new IllegalArgumentException(
+                    "Node "
+                            + node.getID()
+                            + " belongs to another graph. Remove it from there first");
+        }
+
+        int index;
+        if (mFree.size() > 0) {
+            index = mFree.removeLast();
+        } else {
+            if (mCount == mNodes.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, mNodes.length * 2);
+                mNodes = Arrays.copyOf(mNodes, capacity);
+                mParents = Arrays.copyOf(mParents, capacity);
+                mChildren = Arrays.copyOf(mChildren, capacity);
+            }
+            index = mCount++;
+        }
+        mNodes[index] = node;
+
+        if ((parents != null && !parents.isEmpty()) || (children != null && !children.isEmpty())) {
+            pending.add(
+                    new Object[] {
+                        index,
+                        new ArrayList<GraphNode>(parents),
+                        new ArrayList<GraphNode>(children)
+                    });
+        }
+        node.setEdgeViews(new EdgeView(this, index, true), new EdgeView(this, index, false));
+        return index;
+    }
+
+    /**
+     * Releases the index of a node without any edges, and detaches the node from the graph.
+     *
+     * @param node the node
+     */
+    private void release(GraphNode node) {
+        int index = this.indexOf(node);
+        if (index < 0) {
+            return;
+        }
+        mNodes[index] = null;
+        mParents[index] = null;
+        mChildren[index] = null;
+        mFree.add(index);
+        node.setEdgeViews(new HashSet<GraphNode>(), new HashSet<GraphNode>());
+    }
+
+    /**
+     * Adds an edge between the two nodes.
+     *
+     * @param parent the index of the parent
+     * @param child the index of the child
+     * @return true if the edge did not exist
+     */
+    private boolean addEdge(int parent, int child) {
+        if (mChildren[parent] == null) {
+            mChildren[parent] = new IntList();
+        }
+        if (!mChildren[parent].add(child)) {
+            return false;
+        }
+        if (mParents[child] == null) {
+            mParents[child] = new IntList();
+        }
+        mParents[child].add(parent);
+        return true;
+    }
+
+    /**
+     * Removes an edge between the two nodes.
+     *
+     * @param parent the index of the parent
+     * @param child the index of the child
+     * @return true if the edge existed
+     */
+    private boolean removeEdge(int parent, int child) {
+        if (mChildren[parent] == null || !mChildren[parent].remove(child)) {
+            return false;
+        }
+        mParents[child].remove(parent);
+        return true;
+    }
+
+    /** A set view of the parents or children of a node in the graph. */
+    static class EdgeView extends AbstractSet<GraphNode> {
+
+        /** The graph backing the view. */
+        private final IndexedGraph mGraph;
+
+        /** The index of the node whose edges are viewed. */
+        private final int mIndex;
+
+        /** Boolean indicating whether the view is of the parents or the children. */
+        private final boolean mParents;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param graph the graph backing the view
+         * @param index the index of the node
+         * @param parents true for a view of the parents, false for the children
+         */
+        EdgeView(IndexedGraph graph, int index, boolean parents) {
+            mGraph = graph;
+            mIndex = index;
+            mParents = parents;
+        }
+
+        /**
+         * Returns the list of edges backing this view.
+         *
+         * @return the list, or null if there are no edges
+         */
+        private IntList list() {
+            return mParents ? mGraph.mParents[mIndex] : mGraph.mChildren[mIndex];
+        }
+
+        public int size() {
+            IntList list = this.list();
+            return (list == null) ? 0 : list.size();
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof GraphNode)) {
+                return false;
+            }
+            IntList list = this.list();
+            int other = mGraph.indexOf((GraphNode) o);
+            return list != null && other >= 0 && list.contains(other);
+        }
+
+        public boolean add(GraphNode node) {
+            int other = mGraph.index(node);
+            return mParents ? mGraph.addEdge(other, mIndex) : mGraph.addEdge(mIndex, other);
+        }
+
+        public boolean remove(Object o) {
+            if (!(o instanceof GraphNode)) {
+                return false;
+            }
+            int other = mGraph.indexOf((GraphNode) o);
+            if (other < 0) {
+                return false;
+            }
+            return mParents ? mGraph.removeEdge(other, mIndex) : mGraph.removeEdge(mIndex, other);
+        }
+
+        public void clear() {
+            IntList list = this.list();
+            if (list == null) {
+                return;
+            }
+            // removing the edges copies the values, if they are shared with iterators
+            int[] values = list.values();
+            for (int i = list.size() - 1; i >= 0; i--) {
+                int other = values[i];
+                if (mParents) {
+                    mGraph.removeEdge(other, mIndex);
+                } else {
+                    mGraph.removeEdge(mIndex, other);
+                }
+            }
+        }
+
+        public Iterator<GraphNode> iterator() {
+            IntList list = this.list();
+            // the list copies the values before modifying them, if they are shared
+            final int[] snapshot = (list == null) ? EMPTY : list.values();
+            final int size = (list == null) ? 0 : list.size();
+            return new Iterator<GraphNode>() {
+                private int mCursor = 0;
+
+                public boolean hasNext() {
+                    return mCursor < size;
+                }
+
+                public GraphNode next() {
+                    if (mCursor >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return mGraph.mNodes[snapshot[mCursor++]];
+                }
+
+                public void remove() {
+                    if (mCursor == 0) {
+                        throw new IllegalStateException();
+                    }
+                    EdgeView.this.remove(mGraph.mNodes[snapshot[mCursor - 1]]);
+                }
+            };
+        }
+    }
+
+    /**
+     * A growable list of distinct ints. Lists that grow beyond a threshold maintain an open
+     * addressing hash index from value to position, so that lookups remain constant time for nodes
+     * with a large number of parents or children. Removals move the last element into the removed
+     * position.
+     *
+     * <p>The values array can be shared with iterators, in which case it is copied before a value
+     * in it is overwritten. Appending does not require a copy, as the iterators only see the
+     * values up to the size of the list when they were created.
+     */
+    static class IntList {
+
+        /** The size beyond which a hash index is maintained. */
+        private static final int HASH_THRESHOLD = 16;
+
+        /** The values in the list. */
+        private int[] mValues;
+
+        /** The number of values in the list. */
+        private int mSize;
+
+        /** Open addressing table storing position + 1 of the values, 0 indicating empty. */
+        private int[] mTable;
+
+        /** Whether the values array is shared with an iterator. */
+        private boolean mShared;
+
+        /** The default constructor. */
+        IntList() {
+            mValues = new int[2];
+            mSize = 0;
+            mTable = null;
+            mShared = false;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+
+        /**
+         * Returns the values array without copying it. The array is not modified until the list
+         * is, and only the values up to the current size are valid.
+         *
+         * @return the values array
+         */
+        int[] values() {
+            mShared = true;
+            return mValues;
+        }
+
+        /**
+         * Removes and returns the last value.
+         *
+         * @return the last value
+         */
+        int removeLast() {
+            int value = mValues[mSize - 1];
+            this.remove(value);
+            return value;
+        }
+
+        boolean contains(int value) {
+            return this.position(value) >= 0;
+        }
+
+        /**
+         * Adds a value to the list if not already present.
+         *
+         * @param value the value
+         * @return true if the value was added
+         */
+        boolean add(int value) {
+            if (this.position(value) >= 0) {
+                return false;
+            }
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+                mShared = false;
+            }
+            mValues[mSize++] = value;
+            if (mTable != null) {
+                if (mSize * 2 > mTable.length) {
+                    this.rehash();
+                } else {
+                    this.insert(mSize - 1);
+                }
+            } else if (mSize > HASH_THRESHOLD) {
+                this.rehash();
+            }
+            return true;
+        }
+
+        /**
+         * Removes a value from the list.
+         *
+         * @param value the value
+         * @return true if the value was present
+         */
+        boolean remove(int value) {
+            int position = this.position(value);
+            if (position < 0) {
+                return false;
+            }
+            if (mShared) {
+                mValues = Arrays.copyOf(mValues, mValues.length);
+                mShared = false;
+            }
+            int last = mSize - 1;
+            if (mTable != null) {
+                this.delete(value);
+                if (position != last) {
+                    // the last value moves into the freed position
+                    this.delete(mValues[last]);
+                    mValues[position] = mValues[last];
+                    this.insert(position);
+                }
+            } else {
+                mValues[position] = mValues[last];
+            }
+            mSize--;
+            return true;
+        }
+
+        void trimToSize() {
+            mValues = Arrays.copyOf(mValues, Math.max(1, mSize));
+            mShared = false;
+        }
+
+        /**
+         * Returns the position of a value in the list.
+         *
+         * @param value the value
+         * @return the position, else -1
+         */
+        private int position(int value) {
+            if (mTable == null) {
+                for (int i = 0; i < mSize; i++) {
+                    if (mValues[i] == value) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            int mask = mTable.length - 1;
+            for (int slot = hash(value) & mask; mTable[slot] != 0; slot = (slot + 1) & mask) {
+                if (mValues[mTable[slot] - 1] == value) {
+                    return mTable[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /** Rebuilds the hash index for the current values. */
+        private void rehash() {
+            int capacity = Integer.highestOneBit(Math.max(HASH_THRESHOLD, mSize) * 4);
+            mTable = new int[capacity];
+            for (int i = 0; i < mSize; i++) {
+                this.insert(i);
+            }
+        }
+
+        /**
+         * Inserts the value at a position into the hash index.
+         *
+         * @param position the position of the value
+         */
+        private void insert(int position) {
+            int mask = mTable.length - 1;
+            int slot = hash(mValues[position]) & mask;
+            while (mTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mTable[slot] = position + 1;
+        }
+
+        /**
+         * Deletes a value from the hash index using backward shift deletion.
+         *
+         * @param value the value
+         */
+        private void delete(int value) {
+            int mask = mTable.length - 1;
+            int slot = hash(value) & mask;
+            while (mValues[mTable[slot] - 1] != value) {
+                slot = (slot + 1) & mask;
+            }
+            int free = slot;
+            for (int next = (free + 1) & mask; mTable[next] != 0; next = (next + 1) & mask) {
+                int home = hash(mValues[mTable[next] - 1]) & mask;
+                // move the entry back if its home slot is not in (free, next]
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    mTable[free] = mTable[next];
+                    free = next;
+                }
+            }
+            mTable[free] = 0;
+        }
+
+        private static int hash(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
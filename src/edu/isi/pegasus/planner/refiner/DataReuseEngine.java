@@ -24,6 +24,7 @@ import edu.isi.pegasus.planner.partitioner.graph.Bag;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -55,6 +56,9 @@ import java.util.Set;
  *  )
  * </pre>
  *
+ * When planning incrementally, the jobs that changed since the previous run of the workflow are
+ * never marked for deletion.
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -85,6 +89,9 @@ public class DataReuseEngine extends Engine implements Refiner {
     /** All files discovered in the replica catalog */
     private Set<String> mWorkflowFilesInRC;
 
+    /** The ids of the jobs that are never deleted, as they changed since the previous run. */
+    private Set<String> mChangedJobs;
+
     /**
      * The constructor
      *
@@ -99,6 +106,18 @@ public class DataReuseEngine extends Engine implements Refiner {
         mWorkflow = orgDag;
         mDataReuseScope = getDataReuseScope(mProps.getDataReuseScope());
         mPartialDataReuse = mDataReuseScope.equals(SCOPE.partial);
+        mChangedJobs = new HashSet<String>();
+    }
+
+    /**
+     * Sets the jobs that changed since a previous run of the workflow, when planning
+     * incrementally. These jobs are never deleted from the workflow, even if their output files
+     * exist in the Replica Catalog, as the existing files are from the previous run.
+     *
+     * @param ids the ids of the changed jobs
+     */
+    public void setChangedJobs(Set<String> ids) {
+        mChangedJobs = ids;
     }
 
     /**
@@ -239,14 +258,21 @@ public class DataReuseEngine extends Engine implements Refiner {
 
             String jobName = job.jobName;
 
+            if (mChangedJobs.contains(node.getID())) {
+                mLogger.log(
+                        "Job {} changed since the previous run. Not looking for o/p files in RC",
+                        node.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                continue;
+            }
+
             if (job.getOutputFiles().isEmpty()) {
                 // a job with no output file should not be
                 // marked as a job in the RC
                 // Otherwise it can result in whole workflow being reduced
                 // if such a node is the leaf of the workflow.
                 mLogger.log(
-                        "Job " + job.getName() + " has no o/p files",
-                        LogManager.DEBUG_MESSAGE_LEVEL);
+                        "Job {} has no o/p files", job.getName(), LogManager.DEBUG_MESSAGE_LEVEL);
                 continue;
             }
 
@@ -259,8 +285,8 @@ public class DataReuseEngine extends Engine implements Refiner {
 
                     mLogger.log(
                             "Partial Data Reuse Enabled. Not looking for output files in RC for job"
-                                    + " "
-                                    + job.getID(),
+                                    + " {}",
+                            job.getID(),
                             LogManager.DEBUG_MESSAGE_LEVEL);
                     continue;
                 }
@@ -301,7 +327,7 @@ public class DataReuseEngine extends Engine implements Refiner {
             // only if noOfSuccessFulMatches is equal to the number of output
             // files in job
             if (noOfOutputFilesInJob == noOfSuccessfulMatches) {
-                mLogger.log("\t" + jobName, LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log("\t{}", jobName, LogManager.DEBUG_MESSAGE_LEVEL);
                 jobsInReplica.add(node);
             }
             // reinitialise the variables
@@ -353,7 +379,7 @@ public class DataReuseEngine extends Engine implements Refiner {
 
             // System.out.println( "Traversing " + node.getID() );
             boolean markedForDeletion = ((BooleanBag) node.getBag()).getBooleanValue();
-            if (!markedForDeletion) {
+            if (!markedForDeletion && !mChangedJobs.contains(node.getID())) {
                 // If a node is not already marked for deletion , it  can be marked
                 // for deletion if
                 //    a) all it's children have been marked for deletion AND
@@ -365,10 +391,10 @@ public class DataReuseEngine extends Engine implements Refiner {
                     // check whether a child node is marked for deletion or not
                     if (!((BooleanBag) child.getBag()).getBooleanValue()) {
                         mLogger.log(
-                                node.getID()
-                                        + "  will not be deleted as not as child "
-                                        + child.getID()
-                                        + " is not marked for deletion ",
+                                "{}  will not be deleted as not as child {} is not marked for"
+                                        + " deletion ",
+                                node.getID(),
+                                child.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                         delete = false;
                         break;
@@ -380,7 +406,8 @@ public class DataReuseEngine extends Engine implements Refiner {
                     // OR output fies with transfer=true exist in RC
                     if (!transferOutput(node)) {
                         mLogger.log(
-                                "Cascaded Deletion: Node can be deleted " + node.getID(),
+                                "Cascaded Deletion: Node can be deleted {}",
+                                node.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                         ((BooleanBag) node.getBag()).add(true);
                         markedForDeletion = true;
@@ -392,7 +419,8 @@ public class DataReuseEngine extends Engine implements Refiner {
             // add the node for deletion
             if (markedForDeletion) {
                 mLogger.log(
-                        "Marking node for removal from the workflow " + node.getID(),
+                        "Marking node for removal from the workflow {}",
+                        node.getID(),
                         LogManager.DEBUG_MESSAGE_LEVEL);
                 this.mAllDeletedJobs.add((Job) node.getContent());
                 this.mAllDeletedNodes.add(node);
@@ -403,7 +431,8 @@ public class DataReuseEngine extends Engine implements Refiner {
         // after the bottom up iteration is done
         for (GraphNode node : mAllDeletedNodes) {
             mLogger.log(
-                    "Removing node from the workflow " + node.getID(),
+                    "Removing node from the workflow {}",
+                    node.getID(),
                     LogManager.DEBUG_MESSAGE_LEVEL);
             workflow.remove(node.getID());
         }
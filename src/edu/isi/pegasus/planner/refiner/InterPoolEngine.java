@@ -34,6 +34,8 @@ import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
 import edu.isi.pegasus.planner.code.generator.Stampede;
 import edu.isi.pegasus.planner.common.PegRandom;
 import edu.isi.pegasus.planner.common.PegasusConfiguration;
+import edu.isi.pegasus.planner.estimate.CachingEstimator;
+import edu.isi.pegasus.planner.estimate.Default;
 import edu.isi.pegasus.planner.estimate.Estimator;
 import edu.isi.pegasus.planner.estimate.EstimatorFactory;
 import edu.isi.pegasus.planner.namespace.Globus;
@@ -46,13 +48,21 @@ import edu.isi.pegasus.planner.selector.TransformationSelector;
 import edu.isi.pegasus.planner.selector.site.SiteSelectorFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This engine calls out to the Site Selector selected by the user and maps the jobs in the workflow
@@ -82,10 +92,27 @@ public class InterPoolEngine extends Engine implements Refiner {
     private SiteSelector mSiteSelector;
 
     /**
-     * The handle to the transformation selector, that ends up selecting what transformations to
-     * pick up.
+     * The transformation selectors, that end up selecting what transformations to pick up, indexed
+     * by their name.
      */
-    private TransformationSelector mTXSelector;
+    private Map<String, TransformationSelector> mTXSelectors;
+
+    /**
+     * The transformation catalog entries resolved for a transformation on a site by a selector.
+     * Only entries that were the sole candidate are cached, as the selection amongst multiple
+     * candidates may differ from job to job.
+     */
+    private Map<String, TransformationCatalogEntry> mResolvedTCEntries;
+
+    /** The number of threads to use for incorporating the site mapping into the jobs. */
+    private int mThreads;
+
+    /** The number of threads to use for computing the estimates of the distinct jobs. */
+    private int mEstimatorThreads;
+
+    /** The pools used to incorporate the profiles, indexed by the number of threads. */
+    private static final Map<Integer, ForkJoinPool> POOLS =
+            new ConcurrentHashMap<Integer, ForkJoinPool>();
 
     /**
      * The handle to the transformation catalog mapper object that caches the queries to the
@@ -100,6 +127,9 @@ public class InterPoolEngine extends Engine implements Refiner {
     /** Handle to the estimator. */
     private Estimator mEstimator;
 
+    /** The cache of the estimates, if the estimates are cached. */
+    private CachingEstimator mEstimateCache;
+
     /**
      * Handle to the transformation store that stores the transformation catalog entries picked up
      * from the transformations directory.
@@ -119,7 +149,10 @@ public class InterPoolEngine extends Engine implements Refiner {
         // initialize the transformation mapper
         mTCMapper = Mapper.loadTCMapper(mProps.getTCMapperMode(), mBag);
         mBag.add(PegasusBag.TRANSFORMATION_MAPPER, mTCMapper);
-        mTXSelector = null;
+        mTXSelectors = new HashMap<String, TransformationSelector>();
+        mResolvedTCEntries = new HashMap<String, TransformationCatalogEntry>();
+        mThreads = mProps.getProfileIncorporationThreads();
+        mEstimatorThreads = mProps.getEstimatorThreads();
         mPegasusConfiguration = new PegasusConfiguration(bag.getLogger());
     }
 
@@ -136,6 +169,12 @@ public class InterPoolEngine extends Engine implements Refiner {
         mExecPools = (Set) mPOptions.getExecutionSites();
         mLogger.log("List of executions sites is " + mExecPools, LogManager.DEBUG_MESSAGE_LEVEL);
         this.mEstimator = EstimatorFactory.loadEstimator(dag, bag);
+        if (mProps.cacheEstimates() && !(mEstimator instanceof Default)) {
+            mEstimateCache = new CachingEstimator(mEstimator);
+            mEstimateCache.initialize(dag, bag);
+            loadEstimates(dag);
+            mEstimator = mEstimateCache;
+        }
     }
 
     /**
@@ -167,6 +206,26 @@ public class InterPoolEngine extends Engine implements Refiner {
 
         // going through all the jobs making up the Adag, to do the physical mapping
         scheduleJobs(mDag, pools);
+
+        if (mEstimateCache != null) {
+            // for later runs to not estimate the jobs again
+            File f = getEstimatesFile(mPOptions.getSubmitDirectory(), mDag);
+            try {
+                mEstimateCache.writeOut(f);
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to write out estimates to " + f, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of job estimates that were reused from the estimates written out by
+     * earlier runs, instead of being computed by the estimator.
+     *
+     * @return the number of estimates reused
+     */
+    public long getEstimatesReused() {
+        return (mEstimateCache == null) ? 0 : mEstimateCache.getReusedEstimates();
     }
 
     /**
@@ -181,11 +240,10 @@ public class InterPoolEngine extends Engine implements Refiner {
         mSiteSelector = SiteSelectorFactory.loadInstance(mBag);
         mSiteSelector.mapWorkflow(dag, sites);
 
-        int i = 0;
-
         // Iterate through the jobs and hand them to
         // the site selector if required
-        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); i++) {
+        List<Job> jobs = new LinkedList<Job>();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
             GraphNode node = it.next();
             Job job = (Job) node.getContent();
 
@@ -202,11 +260,19 @@ public class InterPoolEngine extends Engine implements Refiner {
                 for (Iterator consist = dflow.nodeIterator(); consist.hasNext(); ) {
                     GraphNode n = (GraphNode) consist.next();
                     Job j = (Job) n.getContent();
-                    incorporateSiteMapping(j, sites);
+                    jobs.add(j);
                 }
             }
-            incorporateSiteMapping(job, sites);
-        } // end of mapping all jobs
+            jobs.add(job);
+        }
+
+        if (mThreads > 1 || (mEstimateCache != null && mEstimatorThreads > 1)) {
+            incorporateSiteMapping(jobs, sites);
+        } else {
+            for (Job job : jobs) {
+                incorporateSiteMapping(job, sites);
+            }
+        }
 
         // PM-916 write out all the metadata related events for the
         // mapped workflow
@@ -220,13 +286,72 @@ public class InterPoolEngine extends Engine implements Refiner {
      * @param sites
      */
     protected void incorporateSiteMapping(Job job, List<String> sites) {
+        TransformationCatalogEntry entry = mapJob(job, sites);
+        incorporateProfilesAndStagingSite(job, entry);
+        completeMapping(job, entry);
+    }
+
+    /**
+     * Incorporates the site mapping for a list of jobs, with the incorporation of the profiles
+     * done in parallel. The site checks and the transformation selection, and the staging of the
+     * executables and the estimates, are done for the jobs in order on the calling thread, as the
+     * transformation selection may pick an entry at random. This ensures that the jobs are mapped
+     * the same irrespective of how the profile incorporation is scheduled across the threads.
+     *
+     * @param jobs the jobs to be mapped in order
+     * @param sites the list of execution sites, specified by the user.
+     */
+    protected void incorporateSiteMapping(List<Job> jobs, List<String> sites) {
+        Job[] mapped = jobs.toArray(new Job[0]);
+        TransformationCatalogEntry[] entries = new TransformationCatalogEntry[mapped.length];
+        for (int i = 0; i < mapped.length; i++) {
+            entries[i] = mapJob(mapped[i], sites);
+        }
+
+        // the profiles from the properties are retrieved lazily
+        mProps.retrieveProfilesFromProperties();
+        getPool(mThreads).invoke(new IncorporateProfiles(mapped, entries, 0, mapped.length));
+
+        if (mEstimateCache != null) {
+            // estimate the distinct jobs together, before incorporating the estimates
+            mEstimateCache.estimate(Arrays.asList(mapped), mEstimatorThreads);
+        }
+        for (int i = 0; i < mapped.length; i++) {
+            completeMapping(mapped[i], entries[i]);
+        }
+    }
+
+    /**
+     * Returns the pool to incorporate the profiles with, for a number of threads. The pools are
+     * shared by all the instances in the JVM, so that planning multiple workflows in the same JVM
+     * does not start new threads for each workflow. The worker threads of a pool are daemon
+     * threads, and exit when idle.
+     *
+     * @param threads the number of threads
+     * @return the pool
+     */
+    private static ForkJoinPool getPool(int threads) {
+        return POOLS.computeIfAbsent(threads, ForkJoinPool::new);
+    }
+
+    /**
+     * Incorporates the hints, checks to ensure a job has been mapped correctly and looks up the
+     * transformation catalog entry for the job.
+     *
+     * @param job the job
+     * @param sites the list of execution sites, specified by the user.
+     * @return the transformation catalog entry to be associated with the job
+     */
+    private TransformationCatalogEntry mapJob(Job job, List<String> sites) {
         StringBuilder error = null;
         // check if the user has specified any hints in the dax
         incorporateHint(job, Selector.EXECUTION_SITE_KEY);
 
         String site = job.getSiteHandle();
         mLogger.log(
-                "Setting up site mapping for job " + job.getName(), LogManager.DEBUG_MESSAGE_LEVEL);
+                "Setting up site mapping for job {}",
+                job.getName(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
 
         if (site == null) {
             complainForFailedSiteMapping(job, sites);
@@ -248,16 +373,27 @@ public class InterPoolEngine extends Engine implements Refiner {
         }
 
         mLogger.log(
-                "Job was mapped to " + job.jobName + " to site " + site,
+                "Job was mapped to {} to site {}",
+                job.jobName,
+                site,
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
+        // do transformation selection
+        return lookupTC(job);
+    }
+
+    /**
+     * Incorporates the profiles into a mapped job, and sets the staging site for the job. Only
+     * updates the job itself, and hence can be done for multiple jobs in parallel.
+     *
+     * @param job the job
+     * @param entry the transformation catalog entry to be associated with the job
+     */
+    private void incorporateProfilesAndStagingSite(Job job, TransformationCatalogEntry entry) {
         // GH-2167 associate default resource profiles for the job
         incorporateDefaultResourceProfiles(job);
 
-        // incorporate the profiles and
-        // do transformation selection
-        // set the staging site for the job
-        TransformationCatalogEntry entry = lookupTC(job);
+        // incorporate the profiles
         incorporateProfiles(job, entry);
 
         // PM-810 assign data configuration for the job if
@@ -265,7 +401,17 @@ public class InterPoolEngine extends Engine implements Refiner {
         if (!job.vdsNS.containsKey(Pegasus.DATA_CONFIGURATION_KEY)) {
             job.setDataConfiguration(PegasusConfiguration.DEFAULT_DATA_CONFIGURATION_VALUE);
         }
+        // set the staging site for the job
         job.setStagingSiteHandle(determineStagingSite(job));
+    }
+
+    /**
+     * Handles the staging of the executables for a job and incorporates the estimates.
+     *
+     * @param job the job
+     * @param entry the transformation catalog entry associated with the job
+     */
+    private void completeMapping(Job job, TransformationCatalogEntry entry) {
         handleExecutableFileTransfers(job, entry);
 
         // PM-882 incorporate estimates on runtimes of the jobs
@@ -301,7 +447,9 @@ public class InterPoolEngine extends Engine implements Refiner {
         String siteHandle = job.getSiteHandle();
 
         mLogger.log(
-                "For job " + job.getName() + " updating profiles from site " + job.getSiteHandle(),
+                "For job {} updating profiles from site {}",
+                job.getName(),
+                siteHandle,
                 LogManager.TRACE_MESSAGE_LEVEL);
 
         // the profile information from the site catalog needs to be
@@ -328,6 +476,10 @@ public class InterPoolEngine extends Engine implements Refiner {
         // catalog.
         job.updateProfiles(mProps);
 
+        // jobs of the same transformation on the same site mostly end up
+        // with the same profiles, that are shared till a job modifies them
+        job.internProfiles();
+
         /* PM-810
         //handle dependent executables
         handleFileTransfersForDependantExecutables( job );
@@ -365,7 +517,14 @@ public class InterPoolEngine extends Engine implements Refiner {
             if (tcEntries != null && tcEntries.size() > 0) {
                 // select a tc entry calling out to
                 // the transformation selector
-                tcEntry = selectTCEntry(tcEntries, job, mProps.getTXSelectorMode());
+                tcEntry =
+                        selectTCEntry(
+                                job.namespace,
+                                job.logicalName,
+                                job.version,
+                                tcEntries,
+                                job,
+                                mProps.getTXSelectorMode());
                 if (tcEntry == null) {
                     error = new StringBuffer();
                     error.append("Transformation selection operation for job  ")
@@ -432,12 +591,13 @@ public class InterPoolEngine extends Engine implements Refiner {
         }
         if (cTx != null) {
             mLogger.log(
-                    "Container Executable "
-                            + cTx.getLFN()
-                            + " for job "
-                            + job.getID()
-                            + " being staged from "
-                            + cTx.getSourceURL(),
+                    () ->
+                            "Container Executable "
+                                    + cTx.getLFN()
+                                    + " for job "
+                                    + job.getID()
+                                    + " being staged from "
+                                    + cTx.getSourceURL(),
                     LogManager.DEBUG_MESSAGE_LEVEL);
             job.addInputFile(cTx);
         }
@@ -545,7 +705,9 @@ public class InterPoolEngine extends Engine implements Refiner {
             return null;
         }
         mLogger.log(
-                "Job " + job.getID() + " associated with container " + c.getLFN(),
+                "Job {} associated with container {}",
+                job.getID(),
+                c.getLFN(),
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
         FileTransfer fTx = new FileTransfer(c.getLFN(), job.jobName);
@@ -614,7 +776,8 @@ public class InterPoolEngine extends Engine implements Refiner {
                     // select a tc entry calling out to
                     // the transformation selector , we only should stage
                     // never pick any installed one.
-                    TransformationCatalogEntry tcEntry = selectTCEntry(tcEntries, job, "Staged");
+                    TransformationCatalogEntry tcEntry =
+                            selectTCEntry(lfn[0], lfn[1], lfn[2], tcEntries, job, "Staged");
                     if (tcEntry == null) {
                         error = new StringBuffer();
                         error.append("Transformation selection operation for job  ")
@@ -656,10 +819,9 @@ public class InterPoolEngine extends Engine implements Refiner {
                         // the executable is going to be staged
                         // job.executable = externalStagedPath;
                         mLogger.log(
-                                "Dependent Executable "
-                                        + input.getLFN()
-                                        + " being staged from "
-                                        + fTx.getSourceURL(),
+                                "Dependent Executable {} being staged from {}",
+                                input.getLFN(),
+                                fTx.getSourceURL(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                     }
                 }
@@ -674,6 +836,48 @@ public class InterPoolEngine extends Engine implements Refiner {
         }
     }
 
+    /**
+     * Calls out to the transformation selector to select an entry from a list of valid
+     * transformation catalog entries for a transformation. If the transformation has a single
+     * valid entry on the site, the entry resolved is cached and reused for the other jobs
+     * referring to the same transformation.
+     *
+     * @param namespace the namespace of the transformation.
+     * @param name the name of the transformation.
+     * @param version the version of the transformation.
+     * @param entries list of <code>TransformationCatalogEntry</code> objects.
+     * @param job the job.
+     * @param selector the selector to be called
+     * @return the selected <code>TransformationCatalogEntry</code> object null when transformation
+     *     selector is unable to select any transformation
+     */
+    private TransformationCatalogEntry selectTCEntry(
+            String namespace,
+            String name,
+            String version,
+            List entries,
+            Job job,
+            String selector) {
+        if (entries.size() > 1) {
+            // the selection may differ from job to job
+            return selectTCEntry(entries, job, selector);
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append(Separator.combine(namespace, name, version))
+                .append('@')
+                .append(job.getSiteHandle())
+                .append('#')
+                .append(selector);
+        String k = key.toString();
+        TransformationCatalogEntry entry = mResolvedTCEntries.get(k);
+        if (entry == null && !mResolvedTCEntries.containsKey(k)) {
+            entry = selectTCEntry(entries, job, selector);
+            mResolvedTCEntries.put(k, entry);
+        }
+        return entry;
+    }
+
     /**
      * Calls out to the transformation selector to select an entry from a list of valid
      * transformation catalog entries.
@@ -688,8 +892,12 @@ public class InterPoolEngine extends Engine implements Refiner {
 
         // load the transformation selector. different
         // selectors may end up being loaded for different jobs.
-        mTXSelector = TransformationSelector.loadTXSelector(selector);
-        entries = mTXSelector.getTCEntry(entries, job.getSiteHandle());
+        TransformationSelector txSelector = mTXSelectors.get(selector);
+        if (txSelector == null) {
+            txSelector = TransformationSelector.loadTXSelector(selector);
+            mTXSelectors.put(selector, txSelector);
+        }
+        entries = txSelector.getTCEntry(entries, job.getSiteHandle());
         return (entries == null || entries.size() == 0)
                 ? null
                 : entries.size() > 1
@@ -794,6 +1002,50 @@ public class InterPoolEngine extends Engine implements Refiner {
         }
     }
 
+    /**
+     * Loads the estimates written out by the earlier runs of the workflow into the estimate cache.
+     * The earlier runs are the ones in the submit directory, when the workflow is replanned into
+     * it, and in the submit directories passed for data reuse.
+     *
+     * @param dag the workflow
+     */
+    private void loadEstimates(ADag dag) {
+        Set<String> dirs = new LinkedHashSet<String>();
+        dirs.add(mPOptions.getSubmitDirectory());
+        dirs.addAll(mPOptions.getDataReuseSubmitDirectories());
+        for (String dir : dirs) {
+            File f = getEstimatesFile(dir, dag);
+            if (!f.exists()) {
+                continue;
+            }
+            try {
+                int loaded = mEstimateCache.loadFrom(f);
+                mLogger.log(
+                        "Loaded " + loaded + " estimates from " + f, LogManager.DEBUG_MESSAGE_LEVEL);
+            } catch (IOException ex) {
+                mLogger.log(
+                        "Unable to load estimates from " + f, ex, LogManager.WARNING_MESSAGE_LEVEL);
+            }
+        }
+    }
+
+    /**
+     * Returns the path to the estimates file for the workflow in a submit directory.
+     *
+     * @param directory the submit directory
+     * @param dag the workflow
+     * @return the estimates file
+     */
+    private File getEstimatesFile(String directory, ADag dag) {
+        return new File(
+                directory,
+                edu.isi.pegasus.planner.code.generator.Abstract.getDAGFilename(
+                        mPOptions,
+                        dag.getLabel(),
+                        dag.getIndex(),
+                        CachingEstimator.ESTIMATES_FILE_SUFFIX));
+    }
+
     /**
      * Converts a Vector to a List. It only copies by reference.
      *
@@ -907,4 +1159,51 @@ public class InterPoolEngine extends Engine implements Refiner {
         job.vdsNS.checkKeyInNSIfNotSet(Pegasus.MEMORY_KEY, DEFAULT_MEMORY_IN_MB_FOR_JOB);
         job.vdsNS.checkKeyInNSIfNotSet(Pegasus.DISKSPACE_KEY, DEFAULT_DISK_IN_MB_FOR_JOB);
     }
+
+    /**
+     * Incorporates the profiles and the staging site for a range of mapped jobs, splitting the
+     * range till it is small enough to be done by a single thread.
+     */
+    private class IncorporateProfiles extends RecursiveAction {
+
+        /** The number of jobs below which the range is not split further. */
+        private static final int THRESHOLD = 64;
+
+        private final Job[] mJobs;
+
+        private final TransformationCatalogEntry[] mEntries;
+
+        private final int mStart;
+
+        private final int mEnd;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param jobs the mapped jobs
+         * @param entries the transformation catalog entries associated with the jobs
+         * @param start the start of the range, inclusive
+         * @param end the end of the range, exclusive
+         */
+        IncorporateProfiles(Job[] jobs, TransformationCatalogEntry[] entries, int start, int end) {
+            mJobs = jobs;
+            mEntries = entries;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= THRESHOLD) {
+                for (int i = mStart; i < mEnd; i++) {
+                    incorporateProfilesAndStagingSite(mJobs[i], mEntries[i]);
+                }
+                return;
+            }
+            int mid = (mStart + mEnd) >>> 1;
+            invokeAll(
+                    new IncorporateProfiles(mJobs, mEntries, mStart, mid),
+                    new IncorporateProfiles(mJobs, mEntries, mid, mEnd));
+        }
+    }
 }
@@ -24,10 +24,13 @@ import edu.isi.pegasus.planner.classes.NameValue;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerCache;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.PlannerProfile;
+import edu.isi.pegasus.planner.classes.WorkflowFingerprint;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Properties;
@@ -89,6 +92,9 @@ public class MainEngine extends Engine {
     /** The handle to the node collapser. */
     private NodeCollapser mNodeCollapser;
 
+    /** The profile of the refinement phases. */
+    private PlannerProfile mProfile;
+
     /**
      * This constructor initialises the class variables to the variables passed. The pool names
      * specified should be present in the pool.config file
@@ -101,6 +107,7 @@ public class MainEngine extends Engine {
         mOriginalDag = orgDag;
         mExecSites = (Set) mPOptions.getExecutionSites();
         mOutputSites = (Set) mPOptions.getOutputSites();
+        mProfile = new PlannerProfile();
     }
 
     /**
@@ -111,8 +118,7 @@ public class MainEngine extends Engine {
     public ADag runPlanner() {
         String abstractWFName = mOriginalDag.getAbstractWorkflowName();
         // create the main event refinement event
-        mLogger.logEventStart(
-                LoggingKeys.EVENT_PEGASUS_REFINEMENT, LoggingKeys.DAX_ID, abstractWFName);
+        logEventStart(LoggingKeys.EVENT_PEGASUS_REFINEMENT, abstractWFName, mOriginalDag);
 
         // refinement process starting
         mOriginalDag.setWorkflowRefinementStarted(true);
@@ -122,13 +128,37 @@ public class MainEngine extends Engine {
         PegasusProperties propsBeforePlanning = (PegasusProperties) this.mProps.clone();
 
         String message = null;
+        mProfile.start(LoggingKeys.EVENT_PEGASUS_LOAD_REPLICA_CATALOG, mOriginalDag);
         mRCBridge = new ReplicaCatalogBridge(mOriginalDag, mBag);
+        mProfile.complete(mOriginalDag);
+
+        Set<File> catalogFiles =
+                getCatalogFileSources(
+                        mBag.getHandleToSiteStore(),
+                        mBag.getHandleToTransformationCatalog(),
+                        mRCBridge);
+
+        // fingerprint the workflow before the properties are updated with
+        // catalog defaults pointing into the submit directory
+        WorkflowFingerprint fingerprint = null;
+        if (mProps.planIncrementally()) {
+            logEventStart(LoggingKeys.EVENT_PEGASUS_FINGERPRINT, abstractWFName, mOriginalDag);
+            try {
+                fingerprint =
+                        WorkflowFingerprint.compute(
+                                mOriginalDag,
+                                propsBeforePlanning.matchingSubset("pegasus", true),
+                                mPOptions,
+                                catalogFiles);
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to fingerprint the workflow", ex);
+            }
+            logEventCompletion(mOriginalDag);
+        }
 
         // PM-1047 copy all catalog file sources to submit directory
         copyCatalogFiles(
-                mBag.getHandleToSiteStore(),
-                mBag.getHandleToTransformationCatalog(),
-                mRCBridge,
+                catalogFiles,
                 new File(this.mPOptions.getSubmitDirectory(), CATALOGS_DIR_BASENAME));
 
         // PM-1537 add any default catalog file sources
@@ -156,10 +186,8 @@ public class MainEngine extends Engine {
         mOriginalDag.getWorkflowMetrics().lockTaskMetrics(true);
 
         // check for cyclic dependencies
-        mLogger.logEventStart(
-                LoggingKeys.EVENT_PEGASUS_CYCLIC_DEPENDENCY_CHECK,
-                LoggingKeys.DAX_ID,
-                abstractWFName);
+        logEventStart(
+                LoggingKeys.EVENT_PEGASUS_CYCLIC_DEPENDENCY_CHECK, abstractWFName, mOriginalDag);
         if (mOriginalDag.hasCycles()) {
             NameValue nv = mOriginalDag.getCyclicEdge();
             String error =
@@ -168,22 +196,30 @@ public class MainEngine extends Engine {
                             : "Cyclic dependency detected " + nv.getKey() + " -> " + nv.getValue();
             throw new RuntimeException(error);
         }
-        mLogger.logEventCompletion();
+        logEventCompletion(mOriginalDag);
 
+        // the data reuse engine logs its own events
+        mProfile.start(LoggingKeys.EVENT_PEGASUS_REDUCE, mOriginalDag);
         mRedEng = new DataReuseEngine(mOriginalDag, mBag);
+        if (fingerprint != null) {
+            mRedEng.setChangedJobs(getChangedJobs(mOriginalDag, fingerprint));
+        }
         mReducedDag = mRedEng.reduceWorkflow(mOriginalDag, mRCBridge);
+        mProfile.complete(mReducedDag);
+        mProfile.increment(
+                PlannerProfile.DELETED_JOBS_COUNTER, mRedEng.getDeletedJobs().size());
 
         // unmark arg strings
         // unmarkArgs();
         mOriginalDag = null;
 
-        mLogger.logEventStart(
-                LoggingKeys.EVENT_PEGASUS_SITESELECTION, LoggingKeys.DAX_ID, abstractWFName);
+        logEventStart(LoggingKeys.EVENT_PEGASUS_SITESELECTION, abstractWFName, mReducedDag);
         mIPEng = new InterPoolEngine(mReducedDag, mBag);
         mIPEng.determineSites();
         mBag = mIPEng.getPegasusBag();
+        mProfile.increment(PlannerProfile.ESTIMATES_REUSED_COUNTER, mIPEng.getEstimatesReused());
         mIPEng = null;
-        mLogger.logEventCompletion();
+        logEventCompletion(mReducedDag);
 
         // initialize the deployment engine
         // required to setup the TC with the deployed worker package
@@ -193,8 +229,7 @@ public class MainEngine extends Engine {
 
         // do the node cluster
         if (mPOptions.getClusteringTechnique() != null) {
-            mLogger.logEventStart(
-                    LoggingKeys.EVENT_PEGASUS_CLUSTER, LoggingKeys.DAX_ID, abstractWFName);
+            logEventStart(LoggingKeys.EVENT_PEGASUS_CLUSTER, abstractWFName, mReducedDag);
             mNodeCollapser = new NodeCollapser(mBag);
 
             try {
@@ -204,7 +239,7 @@ public class MainEngine extends Engine {
             }
 
             mNodeCollapser = null;
-            mLogger.logEventCompletion();
+            logEventCompletion(mReducedDag);
         }
 
         message = "Grafting transfer nodes in the workflow";
@@ -212,15 +247,15 @@ public class MainEngine extends Engine {
         plannerCache.initialize(mBag, mReducedDag);
 
         mLogger.log(message, LogManager.INFO_MESSAGE_LEVEL);
-        mLogger.logEventStart(
-                LoggingKeys.EVENT_PEGASUS_ADD_TRANSFER_NODES, LoggingKeys.DAX_ID, abstractWFName);
+        logEventStart(LoggingKeys.EVENT_PEGASUS_ADD_TRANSFER_NODES, abstractWFName, mReducedDag);
         mTransEng =
                 new TransferEngine(
                         mReducedDag, mBag, mRedEng.getDeletedJobs(), mRedEng.getDeletedLeafJobs());
         mTransEng.addTransferNodes(mRCBridge, plannerCache);
         mTransEng = null;
         mRedEng = null;
-        mLogger.logEventCompletion();
+        logEventCompletion(mReducedDag);
+        mProfile.increment(PlannerProfile.RC_LOOKUPS_COUNTER, mRCBridge.getLookupCount());
 
         // populate the transient RC into PegasusBag
         mBag.add(PegasusBag.PLANNER_CACHE, plannerCache);
@@ -237,12 +272,11 @@ public class MainEngine extends Engine {
             // execution pools.
             message = "Grafting the remote workdirectory creation jobs " + "in the workflow";
             // mLogger.log(message,LogManager.INFO_MESSAGE_LEVEL);
-            mLogger.logEventStart(
-                    LoggingKeys.EVENT_PEGASUS_GENERATE_WORKDIR, LoggingKeys.DAX_ID, abstractWFName);
+            logEventStart(LoggingKeys.EVENT_PEGASUS_GENERATE_WORKDIR, abstractWFName, mReducedDag);
             mCreateEng = new CreateDirectory(mBag);
             mCreateEng.addCreateDirectoryNodes(mReducedDag);
             mCreateEng = null;
-            mLogger.logEventCompletion();
+            logEventCompletion(mReducedDag);
         }
 
         // add the cleanup nodes in place
@@ -250,11 +284,10 @@ public class MainEngine extends Engine {
                 || (mPOptions.getCleanup() != PlannerOptions.CLEANUP_OPTIONS.none
                         && mPOptions.getCleanup() != PlannerOptions.CLEANUP_OPTIONS.leaf)) {
             message = "Adding cleanup jobs in the workflow";
-            mLogger.logEventStart(
-                    LoggingKeys.EVENT_PEGASUS_GENERATE_CLEANUP, LoggingKeys.DAX_ID, abstractWFName);
+            logEventStart(LoggingKeys.EVENT_PEGASUS_GENERATE_CLEANUP, abstractWFName, mReducedDag);
             CleanupEngine cEngine = new CleanupEngine(mBag);
             mReducedDag = cEngine.addCleanupJobs(mReducedDag);
-            mLogger.logEventCompletion();
+            logEventCompletion(mReducedDag);
         }
 
         if (mPOptions.getCleanup() == null
@@ -272,30 +305,55 @@ public class MainEngine extends Engine {
             */
 
             // PM-150
-            mLogger.logEventStart("Adding Leaf Cleanup Jobs", LoggingKeys.DAX_ID, abstractWFName);
+            logEventStart("Adding Leaf Cleanup Jobs", abstractWFName, mReducedDag);
             mRemoveEng =
                     new RemoveDirectory(mReducedDag, mBag, this.mPOptions.getSubmitDirectory());
             mReducedDag = mRemoveEng.addRemoveDirectoryNodes(mReducedDag);
-            mLogger.logEventCompletion();
+            logEventCompletion(mReducedDag);
             mRemoveEng = null;
         }
 
+        if (mProps.reduceWorkflowEdges()) {
+            // PM-714 the LCA based ReduceEdges does not scale for the planner
+            // performance test case. use the bitset based transitive reduction
+            logEventStart(LoggingKeys.EVENT_PEGASUS_REDUCE_EDGES, abstractWFName, mReducedDag);
+            TransitiveReduction reduction = new TransitiveReduction();
+            mReducedDag = reduction.reduce(mReducedDag);
+            mLogger.log(
+                    "Removed " + reduction.getRemovedEdges() + " redundant edges from the workflow",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            logEventCompletion(mReducedDag);
+        }
+
         try {
-            /* PM-714. The approach does not scale for the planner performance test case.
-            mLogger.logEventStart( "workflow.prune", LoggingKeys.DAX_ID, abstractWFName );
-            ReduceEdges p = new ReduceEdges();
-            p.reduce(mReducedDag);
-            mLogger.logEventCompletion();
-            */
             // PM-1535 write out the properties file in the submit directory
             propsBeforePlanning.writeOutProperties();
         } catch (IOException ex) {
             throw new RuntimeException("Unable to write out properties to submit directory", ex);
         }
-        mLogger.logEventCompletion();
+
+        if (fingerprint != null) {
+            // for the next run to plan incrementally against this one
+            File f = getFingerprintFile(mPOptions.getSubmitDirectory(), mReducedDag);
+            try {
+                fingerprint.writeOut(f);
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to write out fingerprint to " + f, ex);
+            }
+        }
+        logEventCompletion(mReducedDag);
         return mReducedDag;
     }
 
+    /**
+     * Returns the profile of the refinement phases.
+     *
+     * @return the profile
+     */
+    public PlannerProfile getPlannerProfile() {
+        return mProfile;
+    }
+
     /**
      * Returns the cleanup dag for the concrete dag.
      *
@@ -314,6 +372,28 @@ public class MainEngine extends Engine {
         return mBag;
     }
 
+    /**
+     * Logs the start of a refinement event, and starts profiling it as a phase.
+     *
+     * @param event the name of the event
+     * @param abstractWFName the name of the workflow
+     * @param dag the workflow at the start of the event
+     */
+    private void logEventStart(String event, String abstractWFName, ADag dag) {
+        mLogger.logEventStart(event, LoggingKeys.DAX_ID, abstractWFName);
+        mProfile.start(event, dag);
+    }
+
+    /**
+     * Completes the profiling of the phase started last, and logs the completion of its event.
+     *
+     * @param dag the workflow at the end of the event
+     */
+    private void logEventCompletion(ADag dag) {
+        mProfile.complete(dag);
+        mLogger.logEventCompletion();
+    }
+
     /**
      * Unmarks the arguments , that are tagged in the DaxParser. At present there are no tagging.
      *
@@ -344,11 +424,18 @@ public class MainEngine extends Engine {
         return result;
     }
 
-    private void copyCatalogFiles(
+    /**
+     * Returns the file sources of the catalogs the workflow is planned with.
+     *
+     * @param siteStore the site store
+     * @param transformationCatalog the transformation catalog
+     * @param replicaBridge the replica catalog bridge
+     * @return the catalog files
+     */
+    private Set<File> getCatalogFileSources(
             SiteStore siteStore,
             TransformationCatalog transformationCatalog,
-            ReplicaCatalogBridge replicaBridge,
-            File directory) {
+            ReplicaCatalogBridge replicaBridge) {
         Set<File> sources = new LinkedHashSet();
         if (replicaBridge != null) {
             sources.addAll(replicaBridge.getReplicaFileSources());
@@ -362,7 +449,16 @@ public class MainEngine extends Engine {
         if (sc != null) {
             sources.add(sc);
         }
+        return sources;
+    }
 
+    /**
+     * Copies the catalog files to a directory.
+     *
+     * @param sources the catalog files
+     * @param directory the directory to copy to
+     */
+    private void copyCatalogFiles(Set<File> sources, File directory) {
         if (!directory.exists()) {
             directory.mkdir();
         }
@@ -391,6 +487,79 @@ public class MainEngine extends Engine {
         }
     }
 
+    /**
+     * Returns the jobs of the workflow that changed since the previous runs passed for data reuse,
+     * by comparing the fingerprint of the workflow against the ones written out in the submit
+     * directories of the previous runs. If a previous run has no fingerprint, all the jobs are
+     * considered changed, as it is unknown what the outputs of that run correspond to.
+     *
+     * @param workflow the abstract workflow
+     * @param fingerprint the fingerprint of the workflow
+     * @return the ids of the changed jobs
+     */
+    private Set<String> getChangedJobs(ADag workflow, WorkflowFingerprint fingerprint) {
+        Set<String> changed = new HashSet<String>();
+        Set<String> dirs = mPOptions.getDataReuseSubmitDirectories();
+        if (dirs.isEmpty()) {
+            mLogger.log(
+                    "Planning incrementally, but no previous runs specified with --reuse",
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+        for (String dir : dirs) {
+            File f = getFingerprintFile(dir, workflow);
+            WorkflowFingerprint previous = null;
+            if (!f.exists()) {
+                mLogger.log(
+                        "No fingerprint of previous run found at " + f,
+                        LogManager.WARNING_MESSAGE_LEVEL);
+            } else {
+                try {
+                    previous = WorkflowFingerprint.loadFrom(f);
+                } catch (IOException ex) {
+                    mLogger.log(
+                            "Unable to load fingerprint of previous run from " + f,
+                            ex,
+                            LogManager.WARNING_MESSAGE_LEVEL);
+                }
+            }
+            if (previous == null) {
+                changed.addAll(fingerprint.getJobIDs());
+                continue;
+            }
+            if (!fingerprint.getEnvironmentDigest().equals(previous.getEnvironmentDigest())) {
+                mLogger.log(
+                        "Properties, options or catalogs changed since the previous run in " + dir,
+                        LogManager.INFO_MESSAGE_LEVEL);
+            }
+            changed.addAll(fingerprint.getChangedJobs(workflow, previous));
+        }
+        mLogger.log(
+                changed.size()
+                        + " of "
+                        + workflow.size()
+                        + " jobs changed since the previous runs "
+                        + dirs,
+                LogManager.INFO_MESSAGE_LEVEL);
+        return changed;
+    }
+
+    /**
+     * Returns the path to the fingerprint file for the workflow in a submit directory.
+     *
+     * @param directory the submit directory
+     * @param workflow the workflow
+     * @return the fingerprint file
+     */
+    private File getFingerprintFile(String directory, ADag workflow) {
+        return new File(
+                directory,
+                edu.isi.pegasus.planner.code.generator.Abstract.getDAGFilename(
+                        mPOptions,
+                        workflow.getLabel(),
+                        workflow.getIndex(),
+                        WorkflowFingerprint.FINGERPRINT_FILE_SUFFIX));
+    }
+
     /**
      * Return any catalog related properties related to default file paths that were picked up
      *
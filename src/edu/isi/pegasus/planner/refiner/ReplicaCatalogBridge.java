@@ -41,7 +41,9 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -49,6 +51,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This coordinates the look up to the Replica Location Service, to determine the logical to
@@ -154,6 +157,18 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
     /** The inherited Replica Store */
     private ReplicaStore mInheritedReplicaStore;
 
+    /**
+     * Maps each LFN to its locations merged across all the replica stores, built once the stores
+     * are loaded.
+     */
+    private Map<String, ReplicaLocation> mLocationIndex;
+
+    /** The files for which mappings exist in any of the replica stores. */
+    private Set<String> mFilesInReplica;
+
+    /** The number of lookups of the locations of a file. */
+    private final AtomicLong mLookups = new AtomicLong();
+
     /**
      * A boolean indicating whether the cache file needs to be treated as a replica catalog or not.
      */
@@ -358,6 +373,8 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
                 mReplicaFileSources.add(new File(source));
             }
         }
+
+        this.buildLocationIndex();
     }
 
     /**
@@ -386,72 +403,8 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
      * @see #mSearchFiles
      */
     public Set<String> getFilesInReplica() {
-
-        // check if any exist in the cache
-        Set result = mCacheStore.getLFNs(mSearchFiles);
-        mLogger.log(
-                result.size() + " entries found in cache of total " + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-
-        // PM-1681 check in the previous runs
-        Set lfns = mPreviousRunsReplicaStore.getLFNs(mSearchFiles);
-        mLogger.log(
-                lfns.size()
-                        + " entries found in previous submit dirs of total "
-                        + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-        result.addAll(lfns);
-
-        // check if any exist in input directory
-        lfns = this.mDirectoryReplicaStore.getLFNs(mSearchFiles);
-        mLogger.log(
-                lfns.size() + " entries found in input directories of total " + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-        result.addAll(lfns);
-
-        // check in the main replica catalog
-        if ((this.mDAXReplicaStore.isEmpty() && mDirectoryReplicaStore.isEmpty())
-                && (mRCDown || mReplicaCatalog == null)) {
-            mLogger.log(
-                    "Replica Catalog is either down or connection to it was never opened ",
-                    LogManager.WARNING_MESSAGE_LEVEL);
-            return result;
-        }
-
-        // lookup from the DAX Replica Store
-        lfns = this.mDAXReplicaStore.getLFNs();
-        mLogger.log(
-                lfns.size()
-                        + " entries found in abstract workflow replica store of total "
-                        + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-        result.addAll(lfns);
-
-        // lookup from the inherited Replica Store
-        lfns = this.mInheritedReplicaStore.getLFNs(mSearchFiles);
-        mLogger.log(
-                lfns.size()
-                        + " entries found in inherited replica store of total "
-                        + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-        result.addAll(lfns);
-
-        // look up from the the main replica catalog
-        lfns = mReplicaStore.getLFNs();
-        mLogger.log(
-                lfns.size()
-                        + " entries found in input replica catalog of total "
-                        + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-        result.addAll(lfns);
-
-        mLogger.log(
-                result.size()
-                        + " entries found in all replica sources of total "
-                        + mSearchFiles.size(),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-
-        return result;
+        // callers are free to modify the set returned
+        return new HashSet<String>(mFilesInReplica);
     }
 
     /**
@@ -471,65 +424,17 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
      * @see edu.isi.pegasus.planner.classes.ReplicaLocation
      */
     public ReplicaLocation getFileLocs(String lfn) {
+        mLookups.incrementAndGet();
+        return mLocationIndex.get(lfn);
+    }
 
-        ReplicaLocation cacheEntry = retrieveFromCache(lfn);
-        ReplicaLocation result = null;
-
-        // first check from cache
-        if (cacheEntry != null && !mTreatCacheAsRC) {
-            mLogger.log(
-                    "Location of file " + cacheEntry + " retrieved from cache",
-                    LogManager.TRACE_MESSAGE_LEVEL);
-            return cacheEntry;
-        }
-        result =
-                (cacheEntry == null)
-                        ? cacheEntry
-                        : new ReplicaLocation(cacheEntry); // result can be null
-
-        // PM-1681 check in the previous runs if specified
-        if (this.mPreviousRunsReplicaStore.containsLFN(lfn)) {
-            return this.mPreviousRunsReplicaStore.getReplicaLocation(lfn);
-        }
-
-        // we prefer location in Directory over the DAX entries
-        if (this.mDirectoryReplicaStore.containsLFN(lfn)) {
-            return this.mDirectoryReplicaStore.getReplicaLocation(lfn);
-        }
-
-        // we prefer location in DAX over the inherited replica store
-        ReplicaLocation daxEntry = null;
-        if (this.mDAXReplicaStore.containsLFN(lfn)) {
-            daxEntry = this.mDAXReplicaStore.getReplicaLocation(lfn);
-            if (this.mDAXLocationsAsRC) {
-                // dax entry is non null
-                if (result == null) {
-                    result = daxEntry;
-                } else {
-                    // merge with what we received from the cache
-                    result.merge(daxEntry);
-                }
-            } else {
-                return daxEntry;
-            }
-        }
-
-        // we prefer location in inherited replica store over replica catalog
-        // this is for hierarchal workflows, where the parent is the parent workflow
-        // in recursive hierarchy
-        if (this.mInheritedReplicaStore.containsLFN(lfn)) {
-            return this.mInheritedReplicaStore.getReplicaLocation(lfn);
-        }
-
-        ReplicaLocation rcEntry = mReplicaStore.getReplicaLocation(lfn);
-        if (result == null) {
-            result = rcEntry; // can still be null
-        } else {
-            // merge from entry received from replica catalog
-            result.merge(rcEntry);
-        }
-
-        return result;
+    /**
+     * Returns the number of lookups of the locations of a file done so far.
+     *
+     * @return the number of lookups
+     */
+    public long getLookupCount() {
+        return mLookups.get();
     }
 
     /**
@@ -891,6 +796,177 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
         return sb.toString();
     }
 
+    /**
+     * Builds the index of LFN to locations, and the set of files in replica, from all the replica
+     * sources. The stores are not updated once the bridge is initialized, so the results for every
+     * LFN are resolved once here, instead of probing each store on every lookup.
+     */
+    private void buildLocationIndex() {
+        Set<String> lfns = new HashSet<String>();
+        lfns.addAll(mCacheStore.getLFNs());
+        lfns.addAll(mPreviousRunsReplicaStore.getLFNs());
+        lfns.addAll(mDirectoryReplicaStore.getLFNs());
+        lfns.addAll(mDAXReplicaStore.getLFNs());
+        lfns.addAll(mInheritedReplicaStore.getLFNs());
+        lfns.addAll(mReplicaStore.getLFNs());
+
+        Map<String, ReplicaLocation> index =
+                new HashMap<String, ReplicaLocation>(lfns.size() * 4 / 3 + 1);
+        for (String lfn : lfns) {
+            ReplicaLocation rl = this.resolveFileLocs(lfn);
+            if (rl != null) {
+                index.put(lfn, rl);
+            }
+        }
+        mLocationIndex = Collections.unmodifiableMap(index);
+        mFilesInReplica = Collections.unmodifiableSet(this.computeFilesInReplica());
+        mLogger.log(
+                "Indexed locations of " + mLocationIndex.size() + " files from all replica sources",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+    }
+
+    /**
+     * Resolves the locations of a file across all the replica sources, in order of precedence.
+     * Only called once per LFN, when the location index is built.
+     *
+     * @param lfn The name of the logical file whose PFN mappings are required.
+     * @return ReplicaLocation containing all the locations for that LFN, or null
+     */
+    private ReplicaLocation resolveFileLocs(String lfn) {
+
+        ReplicaLocation cacheEntry = retrieveFromCache(lfn);
+        ReplicaLocation result = null;
+
+        // first check from cache
+        if (cacheEntry != null && !mTreatCacheAsRC) {
+            return cacheEntry;
+        }
+        result =
+                (cacheEntry == null)
+                        ? cacheEntry
+                        : new ReplicaLocation(cacheEntry); // result can be null
+
+        // PM-1681 check in the previous runs if specified
+        if (this.mPreviousRunsReplicaStore.containsLFN(lfn)) {
+            return this.mPreviousRunsReplicaStore.getReplicaLocation(lfn);
+        }
+
+        // we prefer location in Directory over the DAX entries
+        if (this.mDirectoryReplicaStore.containsLFN(lfn)) {
+            return this.mDirectoryReplicaStore.getReplicaLocation(lfn);
+        }
+
+        // we prefer location in DAX over the inherited replica store
+        ReplicaLocation daxEntry = null;
+        if (this.mDAXReplicaStore.containsLFN(lfn)) {
+            daxEntry = this.mDAXReplicaStore.getReplicaLocation(lfn);
+            if (this.mDAXLocationsAsRC) {
+                // dax entry is non null
+                if (result == null) {
+                    // copy, as the entry from the replica catalog is merged in later
+                    result = new ReplicaLocation(daxEntry);
+                } else {
+                    // merge with what we received from the cache
+                    result.merge(daxEntry);
+                }
+            } else {
+                return daxEntry;
+            }
+        }
+
+        // we prefer location in inherited replica store over replica catalog
+        // this is for hierarchal workflows, where the parent is the parent workflow
+        // in recursive hierarchy
+        if (this.mInheritedReplicaStore.containsLFN(lfn)) {
+            return this.mInheritedReplicaStore.getReplicaLocation(lfn);
+        }
+
+        ReplicaLocation rcEntry = mReplicaStore.getReplicaLocation(lfn);
+        if (result == null) {
+            result = rcEntry; // can still be null
+        } else {
+            // merge from entry received from replica catalog
+            result.merge(rcEntry);
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines the files for which mappings exist in any of the replica sources. Only called
+     * once, when the location index is built.
+     *
+     * @return a <code>Set</code> of logical file names
+     */
+    private Set<String> computeFilesInReplica() {
+
+        // check if any exist in the cache
+        Set result = mCacheStore.getLFNs(mSearchFiles);
+        mLogger.log(
+                result.size() + " entries found in cache of total " + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+
+        // PM-1681 check in the previous runs
+        Set lfns = mPreviousRunsReplicaStore.getLFNs(mSearchFiles);
+        mLogger.log(
+                lfns.size()
+                        + " entries found in previous submit dirs of total "
+                        + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        result.addAll(lfns);
+
+        // check if any exist in input directory
+        lfns = this.mDirectoryReplicaStore.getLFNs(mSearchFiles);
+        mLogger.log(
+                lfns.size() + " entries found in input directories of total " + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        result.addAll(lfns);
+
+        // check in the main replica catalog
+        if ((this.mDAXReplicaStore.isEmpty() && mDirectoryReplicaStore.isEmpty())
+                && (mRCDown || mReplicaCatalog == null)) {
+            mLogger.log(
+                    "Replica Catalog is either down or connection to it was never opened ",
+                    LogManager.WARNING_MESSAGE_LEVEL);
+            return result;
+        }
+
+        // lookup from the DAX Replica Store
+        lfns = this.mDAXReplicaStore.getLFNs();
+        mLogger.log(
+                lfns.size()
+                        + " entries found in abstract workflow replica store of total "
+                        + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        result.addAll(lfns);
+
+        // lookup from the inherited Replica Store
+        lfns = this.mInheritedReplicaStore.getLFNs(mSearchFiles);
+        mLogger.log(
+                lfns.size()
+                        + " entries found in inherited replica store of total "
+                        + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        result.addAll(lfns);
+
+        // look up from the the main replica catalog
+        lfns = mReplicaStore.getLFNs();
+        mLogger.log(
+                lfns.size()
+                        + " entries found in input replica catalog of total "
+                        + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        result.addAll(lfns);
+
+        mLogger.log(
+                result.size()
+                        + " entries found in all replica sources of total "
+                        + mSearchFiles.size(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+
+        return result;
+    }
+
     /**
      * Retrieves a location from the cache table, that contains the contents of the cache files
      * specified at runtime.
@@ -920,7 +996,7 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
      * @param cacheFiles set of paths to the cache files.
      */
     private void loadCacheFiles(Set cacheFiles) {
-        mLogger.log("Loading cache files: " + cacheFiles, LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("Loading cache files: {}", cacheFiles, LogManager.DEBUG_MESSAGE_LEVEL);
         mCacheStore = this.getReplicaStoreFromFiles(cacheFiles);
     }
 
@@ -981,7 +1057,9 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
 
             store.add(cacheMap);
             mLogger.log(
-                    "Loaded " + cacheMap.size() + " entry from file " + file,
+                    "Loaded {} entry from file {}",
+                    cacheMap.size(),
+                    file,
                     LogManager.DEBUG_MESSAGE_LEVEL);
         }
 
@@ -1008,7 +1086,7 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
         // set the appropriate property to designate path to file
         cacheProps.setProperty(ReplicaCatalogBridge.CACHE_REPLICA_CATALOG_KEY, file);
 
-        mLogger.log("Loading  file: " + file, LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("Loading  file: {}", file, LogManager.DEBUG_MESSAGE_LEVEL);
         try {
             simpleFile =
                     ReplicaFactory.loadInstance(
@@ -1059,7 +1137,7 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
             // set the appropriate property to designate path to file
             properties.setProperty(ReplicaCatalogBridge.DIRECTORY_REPLICA_CATALOG_KEY, directory);
 
-            mLogger.log("Loading from directory: " + directory, LogManager.DEBUG_MESSAGE_LEVEL);
+            mLogger.log("Loading from directory: {}", directory, LogManager.DEBUG_MESSAGE_LEVEL);
             try {
                 catalog =
                         ReplicaFactory.loadInstance(
@@ -1136,10 +1214,9 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
                     props.matchingSubset(ReplicaCatalogBridge.OUTPUT_REPLICA_CATALOG_PREFIX, false);
 
             mLogger.log(
-                    "Loading from output replica catalog of type "
-                            + implementor
-                            + " with connection props: "
-                            + connectProps,
+                    "Loading from output replica catalog of type {} with connection props: {}",
+                    implementor,
+                    connectProps,
                     LogManager.DEBUG_MESSAGE_LEVEL);
             try {
                 catalog = ReplicaFactory.loadInstance(implementor, this.mBag, connectProps);
@@ -34,6 +34,7 @@ import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.mapper.StagingMapper;
 import edu.isi.pegasus.planner.mapper.StagingMapperFactory;
 import edu.isi.pegasus.planner.mapper.SubmitMapperFactory;
+import edu.isi.pegasus.planner.mapper.staging.Flat;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
@@ -41,14 +42,17 @@ import edu.isi.pegasus.planner.selector.ReplicaSelector;
 import edu.isi.pegasus.planner.selector.replica.ReplicaSelectorFactory;
 import edu.isi.pegasus.planner.transfer.JobPlacer;
 import edu.isi.pegasus.planner.transfer.Refiner;
+import edu.isi.pegasus.planner.transfer.generator.CacheTracker;
 import edu.isi.pegasus.planner.transfer.generator.StageIn;
 import edu.isi.pegasus.planner.transfer.generator.StageOut;
 import edu.isi.pegasus.planner.transfer.refiner.RefinerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -56,6 +60,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The transfer engine, which on the basis of the pools on which the jobs are to run, adds nodes to
@@ -237,8 +243,6 @@ public class TransferEngine extends Engine {
                 mDag, mBag, mTXRefiner, mRCBridge, mReplicaSelector, mPlannerCache, mWorkflowCache);
 
         Job currentJob;
-        String currentJobName;
-        String msg;
 
         // convert the dax to a graph representation and walk it
         // in a top down manner
@@ -246,58 +250,24 @@ public class TransferEngine extends Engine {
         Graph workflow = mDag;
         boolean stageOut = this.mPOptions.doStageOut();
 
-        for (Iterator it = workflow.iterator(); it.hasNext(); ) {
-            GraphNode node = (GraphNode) it.next();
-            currentJob = (Job) node.getContent();
-
-            // PM-833 associate a directory with the job
-            // that is used to determine relative submit directory
-            currentJob.setRelativeSubmitDirectory(getRelativeSubmitDirectory(currentJob));
-
-            // set the node depth as the level
-            currentJob.setLevel(node.getDepth());
-            currentJobName = currentJob.getName();
-
-            mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
-            msg = "Job being traversed is " + currentJobName;
-            mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
-            msg = "To be run at " + currentJob.executionPool;
-            mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
-
-            // getting the parents of that node
-            Collection<GraphNode> parents = node.getParents();
-            mLogger.log("Parents of job:" + node.parentsToString(), LogManager.DEBUG_MESSAGE_LEVEL);
-            processParents(currentJob, parents);
+        int threads = mProps.getTransferRefinerThreads();
+        if (threads > 1 && !(mStagingMapper instanceof Flat)) {
+            // the other staging mappers place the files in directories
+            // based on the order in which the jobs are traversed
+            mLogger.log(
+                    "Transfers are refined on a single thread, as the staging mapper "
+                            + mStagingMapper.description()
+                            + " depends on the order of the jobs",
+                    LogManager.CONFIG_MESSAGE_LEVEL);
+            threads = 1;
+        }
 
-            // transfer the nodes output files
-            // to the output sites
-            if (stageOut) {
-                Collection<FileTransfer> localTransfersToOutputSites = new LinkedList();
-                Collection<FileTransfer> remoteTransfersToOutputSites = new LinkedList();
-                Set<String> outputSites = new HashSet();
-                outputSites.addAll(this.mOutputSites);
-
-                if (this.mPOptions.getOutputMap() != null) {
-                    // PM-1608 special null site notation to indicate that mapper should return
-                    // locations of files without matching on site name
-                    outputSites.add(null);
-                }
-                for (String outputSite : outputSites) {
-                    Collection<FileTransfer>[] fileTransfers =
-                            mStageOutFileTransferGenerator.constructFileTX(currentJob, outputSite);
-                    localTransfersToOutputSites.addAll(fileTransfers[0]);
-                    remoteTransfersToOutputSites.addAll(fileTransfers[1]);
-                }
-                mTXRefiner.addStageOutXFERNodes(
-                        currentJob, localTransfersToOutputSites, remoteTransfersToOutputSites, rcb);
+        if (threads > 1) {
+            this.addTransferNodesByLevel(workflow, stageOut, threads);
+        } else {
+            for (Iterator it = workflow.iterator(); it.hasNext(); ) {
+                this.addTransferNodes((GraphNode) it.next(), null, stageOut);
             }
-
-            // PM-1765 even if staging outputs, locations for generated
-            // output files are tracked in this one function below uniformly
-
-            // create the cache file always
-            // Pegasus Bug PM-32 and PM-356
-            trackInCaches(currentJob);
         }
 
         // we are done with the traversal.
@@ -349,6 +319,176 @@ public class TransferEngine extends Engine {
         this.mWorkflowCache.close();
     }
 
+    /**
+     * Adds the transfer nodes for a job to the workflow, and tracks the files created by the job in
+     * the caches.
+     *
+     * @param node the node for the job
+     * @param transfers the transfers for the inputs of the job computed already, else null if they
+     *     are to be computed now
+     * @param stageOut whether to stage out the outputs of the job
+     */
+    private void addTransferNodes(GraphNode node, StageInTransfers transfers, boolean stageOut) {
+        Job currentJob = (Job) node.getContent();
+
+        // PM-833 associate a directory with the job
+        // that is used to determine relative submit directory
+        currentJob.setRelativeSubmitDirectory(getRelativeSubmitDirectory(currentJob));
+
+        // set the node depth as the level
+        currentJob.setLevel(node.getDepth());
+        String currentJobName = currentJob.getName();
+
+        mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("Job being traversed is {}", currentJobName, LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("To be run at {}", currentJob.executionPool, LogManager.DEBUG_MESSAGE_LEVEL);
+
+        // getting the parents of that node
+        Collection<GraphNode> parents = node.getParents();
+        mLogger.log(
+                () -> "Parents of job:" + node.parentsToString(), LogManager.DEBUG_MESSAGE_LEVEL);
+
+        if (transfers == null) {
+            processParents(currentJob, parents);
+        } else {
+            addStageInTransferNodes(currentJob, transfers);
+        }
+
+        // transfer the nodes output files
+        // to the output sites
+        if (stageOut) {
+            Collection<FileTransfer> localTransfersToOutputSites = new LinkedList();
+            Collection<FileTransfer> remoteTransfersToOutputSites = new LinkedList();
+            Set<String> outputSites = new HashSet();
+            outputSites.addAll(this.mOutputSites);
+
+            if (this.mPOptions.getOutputMap() != null) {
+                // PM-1608 special null site notation to indicate that mapper should return
+                // locations of files without matching on site name
+                outputSites.add(null);
+            }
+            for (String outputSite : outputSites) {
+                Collection<FileTransfer>[] fileTransfers =
+                        mStageOutFileTransferGenerator.constructFileTX(currentJob, outputSite);
+                localTransfersToOutputSites.addAll(fileTransfers[0]);
+                remoteTransfersToOutputSites.addAll(fileTransfers[1]);
+            }
+            mTXRefiner.addStageOutXFERNodes(
+                    currentJob,
+                    localTransfersToOutputSites,
+                    remoteTransfersToOutputSites,
+                    mRCBridge);
+        }
+
+        // PM-1765 even if staging outputs, locations for generated
+        // output files are tracked in this one function below uniformly
+
+        // create the cache file always
+        // Pegasus Bug PM-32 and PM-356
+        trackInCaches(currentJob);
+    }
+
+    /**
+     * Adds the transfer nodes to the workflow level by level. The transfers for the inputs of the
+     * jobs in a level, both the stage in transfers for the raw inputs and the inter site transfers
+     * for the outputs of the parents, are computed concurrently, with the cache entries deferred.
+     * The transfer nodes are then added to the workflow for the jobs in the order of traversal on
+     * the calling thread, so that the transfer nodes created and their names are the same as when
+     * the jobs are refined one after the other. Only the Flat staging mapper is used with more
+     * than one thread, as the other mappers depend on the order of the jobs.
+     *
+     * @param workflow the workflow
+     * @param stageOut whether to stage out the outputs of the jobs
+     * @param threads the number of threads to use
+     */
+    private void addTransferNodesByLevel(Graph workflow, boolean stageOut, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // the breadth first traversal returns the jobs level by level
+            List<GraphNode> level = new ArrayList<GraphNode>();
+            for (Iterator it = workflow.iterator(); it.hasNext(); ) {
+                GraphNode node = (GraphNode) it.next();
+                if (!level.isEmpty() && level.get(0).getDepth() != node.getDepth()) {
+                    this.addTransferNodes(pool, level, stageOut);
+                    level.clear();
+                }
+                level.add(node);
+            }
+            if (!level.isEmpty()) {
+                this.addTransferNodes(pool, level, stageOut);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Adds the transfer nodes for the jobs in a level of the workflow.
+     *
+     * @param pool the pool to compute the transfers in
+     * @param level the nodes for the jobs in the level, in the order of traversal
+     * @param stageOut whether to stage out the outputs of the jobs
+     */
+    private void addTransferNodes(ForkJoinPool pool, List<GraphNode> level, boolean stageOut) {
+        GraphNode[] nodes = level.toArray(new GraphNode[0]);
+        StageInTransfers[] transfers = new StageInTransfers[nodes.length];
+        boolean[] concurrent = this.canConstructConcurrently(nodes);
+        pool.invoke(new ConstructStageInTransfers(nodes, concurrent, transfers, 0, nodes.length));
+
+        for (int i = 0; i < nodes.length; i++) {
+            // jobs that were not computed concurrently are refined now
+            this.addTransferNodes(nodes[i], transfers[i], stageOut);
+        }
+    }
+
+    /**
+     * Determines for the jobs in a level, whether the transfers for a job can be computed
+     * concurrently with the other jobs. Sub workflow jobs and the children of sub workflow jobs are
+     * excluded, as computing their inter site transfers updates the input cache of the sub workflow
+     * job or the output map of the parent sub workflow job. These are the only shared structures,
+     * apart from the deferred cache entries, updated while computing the inter site transfers for a
+     * job. Also excluded are the jobs that share an input PegasusFile object with another job in
+     * the level, or whose input PegasusFile object is an output of a parent of another job in the
+     * level, as the flags of the input files are updated while computing the transfers.
+     *
+     * @param nodes the nodes for the jobs in the level
+     * @return whether the transfers can be computed concurrently, indexed as the nodes
+     */
+    private boolean[] canConstructConcurrently(GraphNode[] nodes) {
+        boolean[] result = new boolean[nodes.length];
+        // maps input file objects to the index of the job they belong to
+        Map<PegasusFile, Integer> owners = new IdentityHashMap<PegasusFile, Integer>();
+        for (int i = 0; i < nodes.length; i++) {
+            Job job = (Job) nodes[i].getContent();
+            result[i] = !(job instanceof DAXJob || job instanceof DAGJob);
+            for (GraphNode parent : nodes[i].getParents()) {
+                Job pJob = (Job) parent.getContent();
+                if (pJob instanceof DAXJob || pJob instanceof DAGJob) {
+                    result[i] = false;
+                }
+            }
+            for (PegasusFile pf : job.getInputFiles()) {
+                Integer owner = owners.put(pf, i);
+                if (owner != null && owner != i) {
+                    result[owner] = false;
+                    result[i] = false;
+                }
+            }
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (GraphNode parent : nodes[i].getParents()) {
+                for (PegasusFile pf : ((Job) parent.getContent()).getOutputFiles()) {
+                    Integer owner = owners.get(pf);
+                    if (owner != null && owner != i) {
+                        result[owner] = false;
+                        result[i] = false;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns the staging site to be used for a job. If a staging site is not determined from the
      * options it is set to be the execution site for the job
@@ -374,6 +514,26 @@ public class TransferEngine extends Engine {
      *     job.
      */
     private void processParents(Job job, Collection<GraphNode> parents) {
+        StageInTransfers transfers =
+                this.constructStageInTransfers(
+                        job, parents, new CacheTracker(mPlannerCache, mWorkflowCache, false));
+        this.addStageInTransferNodes(job, transfers);
+    }
+
+    /**
+     * Computes the inter site transfers from the parents of a job, and the stage in transfers for
+     * the job's input files that are not generated by the parents. The transfers are not added to
+     * the workflow. For compute jobs, whose parents are not sub workflow jobs, this can be called
+     * concurrently for the jobs in a level that do not share PegasusFile objects.
+     *
+     * @param job the <code>Job</code> object containing all the details of the job.
+     * @param parents list <code>GraphNode</code> objects corresponding to the parent jobs of the
+     *     job.
+     * @param tracker the tracker for the planner and workflow cache entries
+     * @return the transfers
+     */
+    private StageInTransfers constructStageInTransfers(
+            Job job, Collection<GraphNode> parents, CacheTracker tracker) {
 
         Vector vRCSearchFiles = new Vector(); // vector of PegasusFile
 
@@ -382,17 +542,7 @@ public class TransferEngine extends Engine {
 
         // interpool transfer of the nodes parents
         // output files
-        Collection[] interSiteFileTX = this.getInterpoolFileTX(job, parents);
-        Collection localInterSiteTX = interSiteFileTX[0];
-        Collection remoteInterSiteTX = interSiteFileTX[1];
-
-        // only add if there are files to transfer
-        if (!localInterSiteTX.isEmpty()) {
-            mTXRefiner.addInterSiteTXNodes(job, localInterSiteTX, true);
-        }
-        if (!remoteInterSiteTX.isEmpty()) {
-            mTXRefiner.addInterSiteTXNodes(job, remoteInterSiteTX, false);
-        }
+        Collection<FileTransfer>[] interSiteFileTX = this.getInterpoolFileTX(job, parents, tracker);
 
         // check if node ip files are in the parents out files
         // if files are not, then these are to be got
@@ -432,12 +582,41 @@ public class TransferEngine extends Engine {
                         mStageInFileTransferGenerator.constructFileTX((DAGJob) job, vRCSearchFiles);
             } else {
                 // get the locations from the RC
-                fileTransfers = mStageInFileTransferGenerator.constructFileTX(job, vRCSearchFiles);
+                fileTransfers =
+                        mStageInFileTransferGenerator.constructFileTX(job, vRCSearchFiles, tracker);
             }
         }
 
-        Collection<FileTransfer> localFileTransfersToStagingSite = fileTransfers[0];
-        Collection<FileTransfer> remoteFileTransfersToStagingSite = fileTransfers[1];
+        StageInTransfers transfers = new StageInTransfers();
+        transfers.mInterSite = interSiteFileTX;
+        transfers.mStageIn = fileTransfers;
+        transfers.mTracker = tracker;
+        return transfers;
+    }
+
+    /**
+     * Adds the inter site and the stage in transfer nodes for a job to the workflow, and inserts
+     * any entries deferred by the tracker into the caches.
+     *
+     * @param job the job
+     * @param transfers the transfers computed for the job
+     */
+    private void addStageInTransferNodes(Job job, StageInTransfers transfers) {
+        transfers.mTracker.apply();
+
+        Collection<FileTransfer> localInterSiteTX = transfers.mInterSite[0];
+        Collection<FileTransfer> remoteInterSiteTX = transfers.mInterSite[1];
+
+        // only add if there are files to transfer
+        if (!localInterSiteTX.isEmpty()) {
+            mTXRefiner.addInterSiteTXNodes(job, localInterSiteTX, true);
+        }
+        if (!remoteInterSiteTX.isEmpty()) {
+            mTXRefiner.addInterSiteTXNodes(job, remoteInterSiteTX, false);
+        }
+
+        Collection<FileTransfer> localFileTransfersToStagingSite = transfers.mStageIn[0];
+        Collection<FileTransfer> remoteFileTransfersToStagingSite = transfers.mStageIn[1];
 
         // add the stage in transfer nodes if required
         if (!(localFileTransfersToStagingSite.isEmpty()
@@ -473,9 +652,11 @@ public class TransferEngine extends Engine {
      * @param job the job with reference to which interpool file transfers need to be determined.
      * @param parents Collection of <code>GraphNode</code> objects corresponding to the parent jobs
      *     of the job.
+     * @param tracker the tracker for the planner and workflow cache entries
      * @return array of Collection of <code>FileTransfer</code> objects
      */
-    private Collection<FileTransfer>[] getInterpoolFileTX(Job job, Collection<GraphNode> parents) {
+    private Collection<FileTransfer>[] getInterpoolFileTX(
+            Job job, Collection<GraphNode> parents, CacheTracker tracker) {
         String destSiteHandle = job.getStagingSiteHandle();
         // contains the remote_initialdir if specified for the job
         String destRemoteDir = job.vdsNS.getStringValue(Pegasus.REMOTE_INITIALDIR_KEY);
@@ -575,7 +756,8 @@ public class TransferEngine extends Engine {
                     // for the cleanup algorithm
                     // only the destination is tracked as source will have been
                     // tracked for the parent jobs
-                    trackInPlannerCache(outFile, thirdPartyDestPutURL, destSiteHandle);
+                    tracker.trackInPlannerCache(
+                            outFile, thirdPartyDestPutURL, destSiteHandle, OPERATION.put);
 
                     if (pJob instanceof DAXJob) {
                         // PM-1608 we don't create inter site transfers instead we need
@@ -583,12 +765,13 @@ public class TransferEngine extends Engine {
                         // the output map should transfer files to the staging site of the compute
                         // job in question. we log in the output map file for the DAX job
                         mLogger.log(
-                                "Parent DAX job "
-                                        + pJob.getID()
-                                        + " will transfer output file to "
-                                        + ft.getDestURL()
-                                        + " which is required by "
-                                        + job.getID(),
+                                () ->
+                                        "Parent DAX job "
+                                                + pJob.getID()
+                                                + " will transfer output file to "
+                                                + ft.getDestURL()
+                                                + " which is required by "
+                                                + job.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                         ((DAXJob) pJob).addOutputFileLocation(mBag, ft);
 
@@ -603,7 +786,7 @@ public class TransferEngine extends Engine {
                     String thirdPartyDestGetURL =
                             this.getURLOnSharedScratch(
                                     destSite, job, OPERATION.get, addOn, outFile);
-                    trackInWorkflowCache(outFile, thirdPartyDestGetURL, destSiteHandle);
+                    tracker.trackInWorkflowCache(outFile, thirdPartyDestGetURL, destSiteHandle);
 
                     // add all the possible source urls iterating through
                     // the list of grid ftp servers associated with the dest pool.
@@ -674,11 +857,9 @@ public class TransferEngine extends Engine {
             if (integrityDisabledFiles.contains(ip)) {
                 ip.setForIntegrityChecking(false);
                 mLogger.log(
-                        "Disabled file "
-                                + ip.getLFN()
-                                + " for job "
-                                + job.getID()
-                                + " for integrity checking",
+                        "Disabled file {} for job {} for integrity checking",
+                        ip.getLFN(),
+                        job.getID(),
                         LogManager.TRACE_MESSAGE_LEVEL);
             }
         }
@@ -901,8 +1082,7 @@ public class TransferEngine extends Engine {
         try {
             File f = mSubmitDirMapper.getRelativeDir(job);
             mLogger.log(
-                    "Directory for job " + job.getID() + " is " + f,
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+                    "Directory for job {} is {}", job.getID(), f, LogManager.DEBUG_MESSAGE_LEVEL);
             relative = f.getPath();
         } catch (Exception ex) {
             throw new RuntimeException(
@@ -950,4 +1130,79 @@ public class TransferEngine extends Engine {
         }
         return rc;
     }
+
+    /** The transfers computed for the inputs of a job, before they are added to the workflow. */
+    private static class StageInTransfers {
+
+        /** The inter site transfers from the parents, to be run locally and remotely. */
+        private Collection<FileTransfer>[] mInterSite;
+
+        /** The stage in transfers for the raw inputs, to be run locally and remotely. */
+        private Collection<FileTransfer>[] mStageIn;
+
+        /** The tracker holding the cache entries for the transfers. */
+        private CacheTracker mTracker;
+    }
+
+    /**
+     * Computes the transfers for the inputs of a range of jobs in a level, splitting the range till
+     * it is small enough to be done by a single thread.
+     */
+    private class ConstructStageInTransfers extends RecursiveAction {
+
+        /** The number of jobs below which the range is not split further. */
+        private static final int THRESHOLD = 64;
+
+        private final GraphNode[] mNodes;
+
+        private final boolean[] mConcurrent;
+
+        private final StageInTransfers[] mTransfers;
+
+        private final int mStart;
+
+        private final int mEnd;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param nodes the nodes for the jobs in the level
+         * @param concurrent whether the transfers for a job can be computed concurrently
+         * @param transfers the array to store the computed transfers in
+         * @param start the start of the range, inclusive
+         * @param end the end of the range, exclusive
+         */
+        ConstructStageInTransfers(
+                GraphNode[] nodes,
+                boolean[] concurrent,
+                StageInTransfers[] transfers,
+                int start,
+                int end) {
+            mNodes = nodes;
+            mConcurrent = concurrent;
+            mTransfers = transfers;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= THRESHOLD) {
+                for (int i = mStart; i < mEnd; i++) {
+                    if (mConcurrent[i]) {
+                        mTransfers[i] =
+                                constructStageInTransfers(
+                                        (Job) mNodes[i].getContent(),
+                                        mNodes[i].getParents(),
+                                        new CacheTracker(mPlannerCache, mWorkflowCache, true));
+                    }
+                }
+                return;
+            }
+            int mid = (mStart + mEnd) >>> 1;
+            invokeAll(
+                    new ConstructStageInTransfers(mNodes, mConcurrent, mTransfers, mStart, mid),
+                    new ConstructStageInTransfers(mNodes, mConcurrent, mTransfers, mid, mEnd));
+        }
+    }
 }
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.DAXJob;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the transitive reduction of a workflow i.e. removes every edge A -> C for which there
+ * is another path A -> B -> ... -> C in the workflow. Such edges are redundant for DAGMan, as the
+ * ordering is already enforced by the longer path.
+ *
+ * <p>Unlike {@link ReduceEdges}, the nodes are first mapped to compact integer ids in topological
+ * order, and the edges are stored as int arrays. Reachability is then computed bottom up using bit
+ * sets. To bound the memory usage for large workflows, the bit sets are computed in windows over
+ * the target nodes, so that at any time each node only holds the reachability bits for the nodes
+ * in the current window. The running time is O( E * N / 64 ) and the memory O( N * W / 8 ) where W
+ * is the window size in bits.
+ *
+ * <p>Redundant edges that carry information beyond ordering are retained. These are edges from a
+ * job to a child that consumes one of its outputs, edges from stage-in jobs, and edges from and to
+ * sub workflow jobs, as the code generation for integrity checking and hierarchical workflows
+ * relies on the immediate parents of a job.
+ */
+public class TransitiveReduction {
+
+    /** The default maximum number of bytes to use for the reachability bit sets. */
+    public static final long DEFAULT_MAX_BITSET_BYTES = 64 * 1024 * 1024;
+
+    /** The maximum number of bytes to use for the reachability bit sets. */
+    private final long mMaxBitSetBytes;
+
+    /** The number of edges removed in the last call to reduce. */
+    private int mRemovedEdges;
+
+    /** The default constructor. */
+    public TransitiveReduction() {
+        this(DEFAULT_MAX_BITSET_BYTES);
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param maxBitSetBytes the maximum number of bytes to use for the reachability bit sets.
+     */
+    public TransitiveReduction(long maxBitSetBytes) {
+        mMaxBitSetBytes = Math.max(8, maxBitSetBytes);
+        mRemovedEdges = 0;
+    }
+
+    /**
+     * Prunes redundant edges from the workflow. For example if A->B->C and A->C exists, we can
+     * delete edge A->C
+     *
+     * @param dag the workflow
+     * @return the workflow with the redundant edges removed
+     */
+    public ADag reduce(ADag dag) {
+        return (ADag) this.reduce((Graph) dag);
+    }
+
+    /**
+     * Prunes redundant edges from the workflow.
+     *
+     * @param workflow the workflow
+     * @return the workflow with the redundant edges removed
+     */
+    public Graph reduce(Graph workflow) {
+        mRemovedEdges = 0;
+        int n = workflow.size();
+        if (n < 3) {
+            // need at least three nodes for a redundant edge
+            return workflow;
+        }
+
+        // assign compact ids to the nodes
+        GraphNode[] nodes = new GraphNode[n];
+        Map<String, Integer> ids = new HashMap<String, Integer>(n * 2);
+        int count = 0;
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            ids.put(node.getID(), count);
+            nodes[count++] = node;
+        }
+        n = count;
+
+        // children stored in CSR form
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + nodes[i].getChildren().size();
+        }
+        int[] children = new int[offsets[n]];
+        int[] inDegree = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = offsets[i];
+            for (GraphNode child : nodes[i].getChildren()) {
+                Integer id = ids.get(child.getID());
+                if (id == null) {
+                    throw new RuntimeException(
+                            "Edge to node not in workflow "
+                                    + nodes[i].getID()
+                                    + " -> "
+                                    + child.getID());
+                }
+                children[j++] = id;
+                inDegree[id]++;
+            }
+        }
+        ids = null;
+
+        // topological sort using kahn's algorithm
+        int[] order = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int u = order[head++];
+            for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+                if (--inDegree[children[j]] == 0) {
+                    order[tail++] = children[j];
+                }
+            }
+        }
+        if (tail != n) {
+            throw new RuntimeException(
+                    "Unable to compute transitive reduction as the workflow has cycles");
+        }
+        inDegree = null;
+
+        // relabel the nodes by their topological position so that
+        // any node can only reach nodes with a higher label
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i;
+        }
+        int[] topoOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int u = order[i];
+            topoOffsets[i + 1] = topoOffsets[i] + (offsets[u + 1] - offsets[u]);
+        }
+        int[] topoChildren = new int[children.length];
+        for (int i = 0; i < n; i++) {
+            int u = order[i];
+            int k = topoOffsets[i];
+            for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+                topoChildren[k++] = position[children[j]];
+            }
+            // visit the children closest in the topological order first
+            Arrays.sort(topoChildren, topoOffsets[i], topoOffsets[i + 1]);
+        }
+        children = null;
+        offsets = null;
+        position = null;
+
+        boolean[] redundant = this.computeRedundantEdges(n, topoOffsets, topoChildren);
+
+        // remove the redundant edges from the graph
+        for (int i = 0; i < n; i++) {
+            GraphNode parent = nodes[order[i]];
+            for (int j = topoOffsets[i]; j < topoOffsets[i + 1]; j++) {
+                if (redundant[j]) {
+                    GraphNode child = nodes[order[topoChildren[j]]];
+                    if (!this.canRemove(parent, child)) {
+                        continue;
+                    }
+                    parent.removeChild(child);
+                    child.removeParent(parent);
+                    mRemovedEdges++;
+                }
+            }
+        }
+
+        return workflow;
+    }
+
+    /**
+     * Returns the number of edges removed in the last call to reduce.
+     *
+     * @return the number of edges removed
+     */
+    public int getRemovedEdges() {
+        return mRemovedEdges;
+    }
+
+    /**
+     * Returns a boolean indicating whether a redundant edge can be removed from the workflow.
+     *
+     * @param parent the parent node of the edge
+     * @param child the child node of the edge
+     * @return true if the edge only enforces ordering and can be removed
+     */
+    protected boolean canRemove(GraphNode parent, GraphNode child) {
+        if (!(parent.getContent() instanceof Job) || !(child.getContent() instanceof Job)) {
+            return true;
+        }
+        Job p = (Job) parent.getContent();
+        Job c = (Job) child.getContent();
+        if (p instanceof DAXJob || c instanceof DAXJob) {
+            // sub workflows refer to the cache files of their parent sub workflows
+            return false;
+        }
+        if (p.getJobType() == Job.STAGE_IN_JOB) {
+            // integrity checking pulls meta files from stage-in parents
+            return false;
+        }
+        Set<PegasusFile> inputs = c.getInputFiles();
+        for (PegasusFile output : p.getOutputFiles()) {
+            if (inputs.contains(output)) {
+                // data dependency between the jobs
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines the redundant edges in a graph whose nodes are labelled in topological order.
+     *
+     * <p>The edge u -> c is redundant if c is reachable from another child of u. Since a node can
+     * only reach nodes with a higher label, it is sufficient to look at the children of u with a
+     * label lower than c.
+     *
+     * @param n the number of nodes
+     * @param offsets the offsets into the children array for each node
+     * @param children the children of each node sorted in ascending order
+     * @return boolean array indexed by edge, indicating whether the edge is redundant
+     */
+    boolean[] computeRedundantEdges(int n, int[] offsets, int[] children) {
+        boolean[] redundant = new boolean[children.length];
+
+        // the number of 64 bit words per node in a window
+        long maxWords = mMaxBitSetBytes / 8 / n;
+        int words = (int) Math.max(1, Math.min(maxWords, (n + 63) / 64));
+        int windowSize = words * 64;
+        long[] reach = new long[n * words];
+        long[] current = new long[words];
+
+        for (int lo = 0; lo < n; lo += windowSize) {
+            int hi = Math.min(n, lo + windowSize);
+            Arrays.fill(reach, 0, hi * words, 0L);
+
+            // nodes at or beyond hi cannot reach anything in the window
+            for (int u = hi - 1; u >= 0; u--) {
+                int start = offsets[u];
+                int end = offsets[u + 1];
+                if (start == end) {
+                    continue;
+                }
+                Arrays.fill(current, 0L);
+                for (int j = start; j < end; j++) {
+                    int c = children[j];
+                    if (c >= hi) {
+                        // children are sorted
+                        break;
+                    }
+                    if (c >= lo) {
+                        int bit = c - lo;
+                        long mask = 1L << (bit & 63);
+                        int word = bit >>> 6;
+                        if ((current[word] & mask) != 0) {
+                            // reachable through a sibling
+                            redundant[j] = true;
+                        }
+                        current[word] |= mask;
+                    }
+                    int base = c * words;
+                    for (int w = 0; w < words; w++) {
+                        current[w] |= reach[base + w];
+                    }
+                }
+                System.arraycopy(current, 0, reach, u * words, words);
+            }
+        }
+        return redundant;
+    }
+}
@@ -22,6 +22,9 @@ import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNodeContent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,6 +47,21 @@ public class InPlace extends AbstractCleanupStrategy {
     /** Number of jobs on a level of the workflow per cleanup job */
     public static final float NUM_JOBS_PER_LEVEL_PER_CLEANUP_JOB = 5;
 
+    /** The interned identifiers of the LFN's of the files in the workflow */
+    private Map<String, Integer> mFileIDs;
+
+    /** The identifiers of the files that should not be cleaned up */
+    private BitSet mDoNotCleanIDs;
+
+    /** The mark of the job that last considered a file for cleanup, indexed by file identifier */
+    private int[] mMarkedBy;
+
+    /** The mark of the job whose files are being considered for cleanup */
+    private int mMark;
+
+    /** The index of the jobs in the workflow in a topological order */
+    private Map<GraphNode, Integer> mTopologicalIndex;
+
     /**
      * Adds cleanup jobs to the workflow.
      *
@@ -55,6 +73,21 @@ public class InPlace extends AbstractCleanupStrategy {
         // invoke addCleanupJobs from super class.
         workflow = super.addCleanupJobs(workflow);
 
+        mFileIDs = new HashMap();
+        mDoNotCleanIDs = new BitSet();
+        mMarkedBy = new int[0];
+        mMark = 0;
+        for (Iterator it = mDoNotClean.iterator(); it.hasNext(); ) {
+            mDoNotCleanIDs.set(fileID(((PegasusFile) it.next()).getLFN()));
+        }
+
+        // the order is determined before any cleanup jobs are added
+        mTopologicalIndex = new HashMap(workflow.size());
+        int index = 0;
+        for (Iterator<GraphNode> it = workflow.topologicalSortIterator(); it.hasNext(); ) {
+            mTopologicalIndex.put(it.next(), index++);
+        }
+
         // for each site do the process of adding cleanup jobs
         for (Iterator it = mResMap.entrySet().iterator(); it.hasNext(); ) {
             Map.Entry entry = (Map.Entry) it.next();
@@ -68,7 +101,10 @@ public class InPlace extends AbstractCleanupStrategy {
 
     /**
      * Adds cleanup jobs for the workflow scheduled to a particular site a breadth first search
-     * strategy is implemented based on the depth of the job in the workflow
+     * strategy is implemented based on the depth of the job in the workflow. The levels are
+     * traversed bottom up, so that a file is cleaned up by the cleanup job of the deepest job
+     * that uses it at the site, and every other job using the file is made a parent of that
+     * cleanup job.
      *
      * @param site the site ID
      * @param leaves the leaf jobs that are scheduled to site
@@ -76,30 +112,28 @@ public class InPlace extends AbstractCleanupStrategy {
      */
     private void addCleanUpJobs(String site, Set leaves, Graph workflow) {
 
-        mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
-        HashMap cleanedBy = new HashMap();
+        mLogger.log("{} {}", site, leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
+        HashMap<String, GraphNode> cleanedBy = new HashMap();
 
-        // the below in case we get rid of the primitive java 1.4
-        // PriorityQueue<GraphNode> pQ=new
-        // PriorityQueue<GraphNode>(resMap.get(site).size(),GraphNode_ORDER);
-        StringBuffer message = new StringBuffer();
-        message.append("Leaf  jobs scheduled at site ").append(site).append(" are ");
-        for (Iterator it = leaves.iterator(); it.hasNext(); ) {
-            message.append(((GraphNode) it.next()).getID());
-            message.append(",");
+        if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+            StringBuilder message = new StringBuilder();
+            message.append("Leaf  jobs scheduled at site ").append(site).append(" are ");
+            for (Iterator it = leaves.iterator(); it.hasNext(); ) {
+                message.append(((GraphNode) it.next()).getID());
+                message.append(",");
+            }
+            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
         }
-        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
 
-        // its a Set of GraphNode's
-        Set[] pQA = new Set[mMaxDepth + 1];
-        for (int i = 0; i < pQA.length; i++) {
-            pQA[i] = new HashSet();
+        // the jobs at each depth of the workflow. each level is traversed
+        // once in the iteration order of its set
+        List<Set<GraphNode>> levels = new ArrayList(mMaxDepth + 1);
+        for (int i = 0; i <= mMaxDepth; i++) {
+            levels.add(new HashSet());
         }
-
-        // populate the priority Array pQA with all the leaf nodes
         for (Iterator it = leaves.iterator(); it.hasNext(); ) {
             GraphNode gN = (GraphNode) it.next();
-            pQA[gN.getDepth()].add(gN);
+            levels.get(gN.getDepth()).add(gN);
         }
 
         // PM-1950, PM-1974 track if the site is localC . that indicates
@@ -114,9 +148,7 @@ public class InPlace extends AbstractCleanupStrategy {
             List<GraphNode> cleanupNodesPerLevel = new LinkedList();
 
             // process all elements in the current priority
-            while (pQA[curP].size() >= 1) {
-                GraphNode curGN = (GraphNode) pQA[curP].iterator().next();
-                pQA[curP].remove(curGN);
+            for (GraphNode curGN : levels.get(curP)) {
                 Job curGN_SI = (Job) curGN.getContent();
                 boolean isSubWorkflow = curGN_SI instanceof DAXJob;
 
@@ -124,23 +156,20 @@ public class InPlace extends AbstractCleanupStrategy {
                     continue;
                 }
 
-                //              Leads to corruption of input files for the job.
-                //                Set fileSet = curGN_SI.getInputFiles();
-                Set<PegasusFile> fileSet = new HashSet(curGN_SI.getInputFiles());
+                // a new mark for the files considered for this job
+                mMark++;
+                List<PegasusFile> cleanupFiles = new LinkedList();
 
-                // PM-698 traverse through the input files and unset those
+                // PM-698 traverse through the input files and skip those
                 // that have cleanup flag set to false
-                for (Iterator<PegasusFile> it = fileSet.iterator(); it.hasNext(); ) {
-                    PegasusFile pf = it.next();
+                for (PegasusFile pf : (Set<PegasusFile>) curGN_SI.getInputFiles()) {
                     if (!pf.canBeCleanedup()) {
                         // PM-969 we only consider the cleanup attribute and not the transfer flag
                         // itself
-                        it.remove();
                         mLogger.log(
-                                "File "
-                                        + pf.getLFN()
-                                        + " will not be cleaned up for job "
-                                        + curGN_SI.getID(),
+                                "File {} will not be cleaned up for job {}",
+                                pf.getLFN(),
+                                curGN_SI.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                         continue;
                     }
@@ -148,22 +177,17 @@ public class InPlace extends AbstractCleanupStrategy {
                     if (cleanupOnlyContainerInSubmitDir) {
                         // PM-1950, PM-1974 container for container universe jobs is staged
                         // via the submit directory on the local site.
-                        // so keep the file only  if the site is matches localC, else remove
-                        if (pf.isContainerFile() && curGN_SI.runsInContainerUniverse()) {
-                            continue;
-                        } else {
-                            it.remove();
+                        // so consider the file only  if the site is matches localC
+                        if (!(pf.isContainerFile() && curGN_SI.runsInContainerUniverse())) {
                             continue;
                         }
-                    }
-
-                    // PM-1918 additional filtering for sub workflow input file
-                    // ensure only those input files, whose source site matches
-                    // the site id have to be considered. In case of sub workflow jobs,
-                    // the inputs can come in from parent compute jobs that may run
-                    // on sites other than site local (which is what sub workflow staging/execution
-                    // site is set)
-                    if (isSubWorkflow) {
+                    } else if (isSubWorkflow) {
+                        // PM-1918 additional filtering for sub workflow input file
+                        // ensure only those input files, whose source site matches
+                        // the site id have to be considered. In case of sub workflow jobs,
+                        // the inputs can come in from parent compute jobs that may run
+                        // on sites other than site local (which is what sub workflow
+                        // staging/execution site is set)
                         String sourceCleanupSite = pf.getMetadata(this.CLEANUP_SOURCE_SITE_KEY);
 
                         // an input file in a sub workflow can be associated with exactly
@@ -174,10 +198,10 @@ public class InPlace extends AbstractCleanupStrategy {
                         } else {
                             // the cleanup site does not match. do not consider this file
                             // for the site in this invocation
-                            it.remove();
                             continue;
                         }
                     }
+                    considerForCleanup(pf, curGN, cleanedBy, cleanupFiles);
                 } // end of traversal through job input files
 
                 for (Object obj : curGN_SI.getOutputFiles()) {
@@ -190,59 +214,29 @@ public class InPlace extends AbstractCleanupStrategy {
 
                     if (pf.canBeCleanedup()) {
                         // PM-739 only add if the cleanup flag is set to true
-                        fileSet.add(pf);
+                        considerForCleanup(pf, curGN, cleanedBy, cleanupFiles);
                     } else {
                         mLogger.log(
-                                "File "
-                                        + pf.getLFN()
-                                        + " will not be cleaned up for job "
-                                        + curGN_SI.getID(),
+                                "File {} will not be cleaned up for job {}",
+                                pf.getLFN(),
+                                curGN_SI.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                     }
                 }
 
-                // remove the files in fileSet that are in this.mDoNotClean
-                Set fileSet2 = new HashSet(fileSet);
-                for (Iterator itfs2 = fileSet2.iterator(); itfs2.hasNext(); ) {
-                    Object _dum_pf = itfs2.next();
-                    if (this.mDoNotClean.contains(_dum_pf)) {
-                        fileSet.remove(_dum_pf);
-                    }
-                }
-
                 // create new GraphNode with MLogicalID=mLogicalName , mParents
                 // mContent ID ,Name , jobtype
                 // the files it cleans up are specified in mContent.inputFiles
                 // create a dummy GraphNode .first create Job object and then add it to GraphNode
                 GraphNode nuGN = new GraphNode(generateCleanupID(curGN_SI), curGN_SI.getTXName());
 
-                List<PegasusFile> cleanupFiles = new LinkedList();
-                for (Iterator it = fileSet.iterator(); it.hasNext(); ) {
-                    PegasusFile file = (PegasusFile) it.next();
-
-                    // check if its already set up to be cleaned up
-                    if (cleanedBy.containsKey(file.getLFN())) {
-                        GraphNode child = (GraphNode) cleanedBy.get(file.getLFN());
-                        if (!child.getParents().contains(curGN)) {
-                            child.addParent(curGN);
-                        }
-                        if (!curGN.getChildren().contains(child)) {
-                            curGN.addChild(child);
-                        }
-                    } else {
-
-                        cleanupFiles.add(file);
-                    }
-                } // all the files
-
                 // create a cleanup job if the cleanup cleanupNode has any files to delete
                 //                if( nuGN.getParents().size() >= 1 ){
                 if (!cleanupFiles.isEmpty()) {
                     mLogger.log(
-                            "Adding stub cleanup node with ID "
-                                    + nuGN.getID()
-                                    + " to the level list for level "
-                                    + curP,
+                            "Adding stub cleanup node with ID {} to the level list for level {}",
+                            nuGN.getID(),
+                            curP,
                             LogManager.DEBUG_MESSAGE_LEVEL);
 
                     // PM-663, we need to store the compute job
@@ -251,7 +245,7 @@ public class InPlace extends AbstractCleanupStrategy {
                     nuGN.setContent(cleanupContent);
                     cleanupNodesPerLevel.add(nuGN);
                 }
-            } // end of while loop .  //process all elements in the current priority
+            } // end of for loop .  //process all elements in the current priority
 
             // we now have a list of cleanup jobs for this level
             List<GraphNode> clusteredCleanupGraphNodes =
@@ -282,13 +276,11 @@ public class InPlace extends AbstractCleanupStrategy {
                                         + cleanupNode.getID());
                     }
                     computeJob = (Job) node.getContent();
-                    message = new StringBuffer();
-                    message.append("For cleanup job ")
-                            .append(cleanupNode.getID())
-                            .append(" the associated compute job is ")
-                            .append(computeJob.getID());
-
-                    mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                    mLogger.log(
+                            "For cleanup job {} the associated compute job is {}",
+                            cleanupNode.getID(),
+                            computeJob.getID(),
+                            LogManager.DEBUG_MESSAGE_LEVEL);
 
                 } else {
                     computeJob = curGN_SI;
@@ -324,15 +316,15 @@ public class InPlace extends AbstractCleanupStrategy {
                 "For site: " + site + " number of files cleaned up - " + cleanedBy.keySet().size(),
                 LogManager.INFO_MESSAGE_LEVEL);
         mLogger.log("CLEANUP LIST", LogManager.DEBUG_MESSAGE_LEVEL);
-        for (Iterator it = cleanedBy.keySet().iterator(); it.hasNext(); ) {
-            String lfn = (String) it.next();
-            GraphNode cl_GN = (GraphNode) cleanedBy.get(lfn);
-            Job cl_si = (Job) cl_GN.getContent();
-            // Arun please use a StringBuffer first
-            // Karan March 13, 2007
-            mLogger.log(
-                    "file:" + lfn + "  site:" + cl_si.getSiteHandle() + " " + cl_GN.getID(),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+        if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+            for (Iterator<String> it = cleanedBy.keySet().iterator(); it.hasNext(); ) {
+                String lfn = it.next();
+                GraphNode cl_GN = cleanedBy.get(lfn);
+                Job cl_si = (Job) cl_GN.getContent();
+                mLogger.log(
+                        "file:" + lfn + "  site:" + cl_si.getSiteHandle() + " " + cl_GN.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
         }
 
         // reduce dependencies. for each cleanup job X, look at the parents of
@@ -341,12 +333,67 @@ public class InPlace extends AbstractCleanupStrategy {
         // be removed.
         for (GraphNode cleanupNode : wfCleanupNodes) {
             mLogger.log(
-                    "Reducing edges for the cleanup node " + cleanupNode.getID(),
-                    mLogger.DEBUG_MESSAGE_LEVEL);
+                    "Reducing edges for the cleanup node {}",
+                    cleanupNode.getID(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
             reduceDependency(cleanupNode);
         }
     }
 
+    /**
+     * Considers a file used by a job for cleanup. If the file is already cleaned up by a cleanup
+     * job of a deeper level, the job is made a parent of that cleanup job, else the file is added
+     * to the files to be cleaned up for the job. A file is considered only once for a job.
+     *
+     * @param file the file
+     * @param node the node of the job using the file
+     * @param cleanedBy a map that tracks which file was deleted by which cleanup job
+     * @param cleanupFiles the files to be cleaned up for the job
+     */
+    private void considerForCleanup(
+            PegasusFile file,
+            GraphNode node,
+            HashMap<String, GraphNode> cleanedBy,
+            List<PegasusFile> cleanupFiles) {
+        int id = fileID(file.getLFN());
+        if (mMarkedBy[id] == mMark) {
+            return;
+        }
+        mMarkedBy[id] = mMark;
+
+        // files that should not be cleaned up
+        if (mDoNotCleanIDs.get(id)) {
+            return;
+        }
+
+        // check if its already set up to be cleaned up
+        GraphNode child = cleanedBy.get(file.getLFN());
+        if (child == null) {
+            cleanupFiles.add(file);
+        } else {
+            child.addParent(node);
+            node.addChild(child);
+        }
+    }
+
+    /**
+     * Returns the interned identifier for a LFN.
+     *
+     * @param lfn the LFN
+     * @return the identifier
+     */
+    private int fileID(String lfn) {
+        Integer id = mFileIDs.get(lfn);
+        if (id == null) {
+            id = mFileIDs.size();
+            mFileIDs.put(lfn, id);
+            if (id >= mMarkedBy.length) {
+                mMarkedBy = Arrays.copyOf(mMarkedBy, Math.max(16, 2 * mMarkedBy.length));
+            }
+        }
+        return id;
+    }
+
     /**
      * Reduces the number of edges between the nodes and it's parents.
      *
@@ -368,42 +415,46 @@ public class InPlace extends AbstractCleanupStrategy {
         // If a path exists, then the edge from Z to cleanup job can
         // be removed.
         Collection<GraphNode> parents = node.getParents();
-        List redundant = new LinkedList();
-        HashSet visit = new HashSet();
-        for (Iterator itp = node.getParents().iterator(); itp.hasNext(); ) {
-            LinkedList mque = new LinkedList();
-            mque.add(itp.next());
 
-            while (mque.size() > 0) {
-                GraphNode popGN = (GraphNode) mque.removeFirst();
+        // the ancestors that come before all the parents in the topological
+        // order of the workflow cannot be parents themselves, and neither
+        // can their ancestors. so the search can stop at them
+        int first = Integer.MAX_VALUE;
+        for (GraphNode parent : parents) {
+            Integer index = (mTopologicalIndex == null) ? null : mTopologicalIndex.get(parent);
+            first = Math.min(first, (index == null) ? Integer.MIN_VALUE : index);
+        }
 
-                if (visit.contains(popGN)) {
-                    continue;
-                }
+        List<GraphNode> redundant = new LinkedList();
+        Set<GraphNode> visit = new HashSet();
+        LinkedList<GraphNode> mque = new LinkedList();
+        for (GraphNode parent : parents) {
+            mque.addAll(parent.getParents());
+        }
+        while (!mque.isEmpty()) {
+            GraphNode ancestor = mque.removeFirst();
+            if (!visit.add(ancestor)) {
+                continue;
+            }
 
-                visit.add(popGN);
+            Integer index = (mTopologicalIndex == null) ? null : mTopologicalIndex.get(ancestor);
+            if (index != null && index < first) {
+                continue;
+            }
 
-                for (Iterator itp_pop = popGN.getParents().iterator(); itp_pop.hasNext(); ) {
-                    GraphNode pop_pGN = (GraphNode) itp_pop.next();
-                    // check if its redundant ..if so add it to redundant list
-                    if (parents.contains(pop_pGN)) {
-                        redundant.add(pop_pGN);
-                    } else {
-                        // mque.addAll( pop_pGN.getParents() );
-                        for (Iterator itgp = pop_pGN.getParents().iterator(); itgp.hasNext(); ) {
-                            GraphNode gpGN = (GraphNode) itgp.next();
-                            if (!visit.contains(gpGN)) {
-                                mque.add(gpGN);
-                            }
-                        }
-                    }
+            // check if its redundant ..if so add it to redundant list
+            if (parents.contains(ancestor)) {
+                redundant.add(ancestor);
+            }
+            for (GraphNode gpGN : ancestor.getParents()) {
+                if (!visit.contains(gpGN)) {
+                    mque.add(gpGN);
                 }
             }
         }
 
         // remove all redundant nodes that were found
-        for (Iterator itr = redundant.iterator(); itr.hasNext(); ) {
-            GraphNode r_GN = (GraphNode) itr.next();
+        for (GraphNode r_GN : redundant) {
             node.removeParent(r_GN);
             r_GN.removeChild(node);
         }
@@ -426,12 +477,11 @@ public class InPlace extends AbstractCleanupStrategy {
             if (!job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
 
                 // log to debug
-                StringBuilder sb = new StringBuilder();
-                sb.append("Applying priority of ")
-                        .append(node.getDepth())
-                        .append(" to ")
-                        .append(job.getID());
-                mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log(
+                        "Applying priority of {} to {}",
+                        node.getDepth(),
+                        job.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
 
                 // apply a priority to the job overwriting any preexisting priority
                 job.condorVariables.construct(
@@ -530,7 +580,10 @@ public class InPlace extends AbstractCleanupStrategy {
      * @return a set of clustered cleanup nodes
      */
     private List<GraphNode> clusterCleanupGraphNodes(
-            List<GraphNode> cleanupNodes, HashMap cleanedBy, String site, int level) {
+            List<GraphNode> cleanupNodes,
+            HashMap<String, GraphNode> cleanedBy,
+            String site,
+            int level) {
         List<GraphNode> clusteredCleanupJobs = new LinkedList();
 
         // sanity check for empty list
@@ -625,7 +678,11 @@ public class InPlace extends AbstractCleanupStrategy {
      *     null if the clustered cleanup node has no files to delete
      */
     private GraphNode createClusteredCleanupGraphNode(
-            List<GraphNode> nodes, HashMap cleanedBy, String site, int level, int index) {
+            List<GraphNode> nodes,
+            HashMap<String, GraphNode> cleanedBy,
+            String site,
+            int level,
+            int index) {
         GraphNode clusteredCleanupNode = new GraphNode(generateClusteredJobID(site, level, index));
 
         // sanity check
@@ -661,7 +718,7 @@ public class InPlace extends AbstractCleanupStrategy {
                     // somewhere during the clustering of the cleanup nodes at this
                     // level, the file was designated to cleaned up by a
                     // clustered cleanup node
-                    GraphNode existingCleanupNode = (GraphNode) cleanedBy.get(file.getLFN());
+                    GraphNode existingCleanupNode = cleanedBy.get(file.getLFN());
                     mLogger.log(
                             "\t\tFile "
                                     + file.getLFN()
@@ -214,6 +214,9 @@ public class Default implements ReplicaSelector {
                 continue;
             }
 
+            // the entries may be shared with other jobs whose replicas are
+            // selected concurrently. so the priority is set on a copy
+            rce = (ReplicaCatalogEntry) rce.clone();
             if (rce.getPFN().startsWith(PegasusURL.FILE_URL_SCHEME)) {
                 // file URL's have highest priority
                 rce.addAttribute(ReplicaSelector.PRIORITY_KEY, FILE_URLS_PRIORITY_KEY);
@@ -133,6 +133,8 @@ public class Regex extends Default {
                 // System.out.println( "Applying regex " + r );
                 if (r.matches(pfn)) {
                     match = true;
+                    // the priority is set on a copy of the entry, as in Default
+                    rce = (ReplicaCatalogEntry) rce.clone();
                     if (candidatesByRank.containsKey(r)) {
                         List<ReplicaCatalogEntry> l = candidatesByRank.get(r);
                         l.add(rce);
@@ -21,12 +21,12 @@ import edu.isi.pegasus.planner.common.PegRandom;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A replica selector, that allows the user to specify good sites and bad sites for staging in data
@@ -106,8 +106,9 @@ public class Restricted extends Default {
      */
     public Restricted(PegasusProperties properties) {
         super(properties);
-        mIgnoredSitesMap = new HashMap(15);
-        mPreferredSitesMap = new HashMap(15);
+        // the maps are built lazily, while replicas may be selected concurrently
+        mIgnoredSitesMap = new ConcurrentHashMap(15);
+        mPreferredSitesMap = new ConcurrentHashMap(15);
         mGlobalIgnoredSites = getSitesSet(mProps.getAllIgnoredSites());
         mGlobalPreferredSites = getSitesSet(mProps.getAllPreferredSites());
     }
@@ -316,15 +317,16 @@ public class Restricted extends Default {
             return;
         }
 
-        // build up preferred sites for site
-        String name = getProperty(site, this.PROPERTY_PREFER_SUFFIX);
-        Set p = this.getSitesSet(mProps.getProperty(name));
-        mPreferredSitesMap.put(site, p);
-
         // build up ignored sites for site
-        name = getProperty(site, this.PROPERTY_IGNORE_SUFFIX);
+        String name = getProperty(site, this.PROPERTY_IGNORE_SUFFIX);
         Set i = this.getSitesSet(mProps.getProperty(name));
         mIgnoredSitesMap.put(site, i);
+
+        // build up preferred sites for site. put in last, as the
+        // entry marks the site as computed
+        name = getProperty(site, this.PROPERTY_PREFER_SUFFIX);
+        Set p = this.getSitesSet(mProps.getProperty(name));
+        mPreferredSitesMap.put(site, p);
     }
 
     /**
@@ -21,6 +21,7 @@ import edu.isi.pegasus.planner.namespace.Selector;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -49,32 +50,47 @@ public abstract class AbstractPerJob extends Abstract {
             // node.getDepth());
             job.setLevel(node.getDepth());
 
-            // only map a job for which execute site hint
-            // is not specified in the DAX
-            String executionKey = Selector.EXECUTION_SITE_KEY;
-            if (job.getSelectorProfiles().containsKey(executionKey)
-                    || job.hints.containsKey(executionKey)) {
-                mLogger.log(
-                        "Job "
-                                + job.getID()
-                                + " will be mapped based on selector|hints profile key "
-                                + executionKey,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-            } else {
-                if (job instanceof DataFlowJob) {
-                    // PM-1205 datalfows are clustered jobs
-                    // we map the constituent jobs not the datalfow job itself.
-                    for (Iterator consist = ((DataFlowJob) job).nodeIterator();
-                            consist.hasNext(); ) {
-                        GraphNode n = (GraphNode) consist.next();
-                        Job j = (Job) n.getContent();
-                        mapJob(j, sites);
-                    }
-                }
+            for (Job j : this.getJobsToMap(job)) {
+                mapJob(j, sites);
+            }
+        }
+    }
+
+    /**
+     * Returns the jobs that need to be mapped for a job in the workflow. A job for which the
+     * execution site is specified in the DAX is not mapped. For a dataflow job, the constituent
+     * jobs are mapped before the dataflow job itself.
+     *
+     * @param job the job in the workflow
+     * @return the jobs to be mapped, in the order they are to be mapped
+     */
+    protected List<Job> getJobsToMap(Job job) {
+        List<Job> result = new LinkedList<Job>();
 
-                mapJob(job, sites);
+        // only map a job for which execute site hint
+        // is not specified in the DAX
+        String executionKey = Selector.EXECUTION_SITE_KEY;
+        if (job.getSelectorProfiles().containsKey(executionKey)
+                || job.hints.containsKey(executionKey)) {
+            mLogger.log(
+                    "Job "
+                            + job.getID()
+                            + " will be mapped based on selector|hints profile key "
+                            + executionKey,
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        } else {
+            if (job instanceof DataFlowJob) {
+                // PM-1205 datalfows are clustered jobs
+                // we map the constituent jobs not the datalfow job itself.
+                for (Iterator consist = ((DataFlowJob) job).nodeIterator(); consist.hasNext(); ) {
+                    GraphNode n = (GraphNode) consist.next();
+                    result.add((Job) n.getContent());
+                }
             }
+
+            result.add(job);
         }
+        return result;
     }
 
     /**
@@ -15,6 +15,8 @@ package edu.isi.pegasus.planner.selector.site;
 
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
+import edu.isi.pegasus.common.util.StreamGobbler;
 import edu.isi.pegasus.planner.catalog.site.classes.Directory;
 import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
@@ -22,6 +24,7 @@ import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -29,12 +32,18 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the class that implements a call-out to a site selector which is an application or
@@ -151,6 +160,22 @@ import java.util.StringTokenizer;
  * selector, see property <code>pegasus.selector.site.timeout</code>. By default, a site selector is
  * given up upon after 60 s.
  *
+ * <p>If the property <code>pegasus.selector.site.stream</code> is set to true, the external
+ * application is started only once for the workflow, with the single commandline argument <code>
+ * --stream</code>. The jobs are written to its stdin, one job per line, with the key-value pairs
+ * above separated by tabs instead of newlines. The jobs in a level of the workflow are written
+ * together, followed by an empty line. The application answers each job with a line on stdout,
+ * that starts with the job id, followed by a whitespace and the solution as described above, for
+ * example
+ *
+ * <pre>
+ *   ID000001 SOLUTION:siteY
+ * </pre>
+ *
+ * The answers may be written in any order, and are awaited before the jobs in the next level are
+ * written. Once all the jobs are mapped, the stdin of the application is closed, and it is expected
+ * to exit. The timeout applies to each answer.
+ *
  * <p>
  *
  * @author Karan Vahi
@@ -186,6 +211,15 @@ public class NonJavaCallout extends AbstractPerJob {
     /** The version number associated with this API of non java callout site selection. */
     public static final String VERSION = "2.0";
 
+    /**
+     * The argument with which the external site selector is started, when the jobs are streamed to
+     * it.
+     */
+    public static final String STREAM_ARGUMENT = "--stream";
+
+    /** The separator between the key value pairs of a job, when the jobs are streamed. */
+    public static final String RECORD_SEPARATOR = "\t";
+
     // tristate variables for keeping the temporary files generated
 
     /** The state denoting never to keep the temporary files. */
@@ -222,6 +256,12 @@ public class NonJavaCallout extends AbstractPerJob {
     /** The abstract DAG. */
     private ADag mAbstractDag;
 
+    /**
+     * Whether the jobs are streamed to a single instance of the site selector, instead of calling
+     * out to the site selector for each job.
+     */
+    private boolean mStream;
+
     /** The default constructor. */
     public NonJavaCallout() {
         super();
@@ -246,6 +286,7 @@ public class NonJavaCallout extends AbstractPerJob {
         this.loadEnvironmentVariables();
         // get the value from the properties file.
         mKeepTMP = getKeepTMPValue(mProps.getSiteSelectorKeep());
+        mStream = mProps.streamToSiteSelector();
     }
 
     /**
@@ -259,7 +300,116 @@ public class NonJavaCallout extends AbstractPerJob {
     public void mapWorkflow(ADag workflow, List sites) {
         mAbstractDag = workflow;
         // PM-747 no need for conversion as ADag now implements Graph interface
-        super.mapWorkflow(workflow, sites);
+        if (mStream) {
+            this.streamWorkflow(workflow, sites);
+        } else {
+            super.mapWorkflow(workflow, sites);
+        }
+    }
+
+    /**
+     * Maps the jobs in the workflow by streaming them to a single instance of the external site
+     * selector. The jobs in a level are sent together, and their answers are awaited before the
+     * jobs in the next level are sent.
+     *
+     * @param workflow the workflow.
+     * @param sites the list of <code>String</code> objects representing the execution sites that
+     *     can be used.
+     */
+    private void streamWorkflow(ADag workflow, List sites) {
+        if (this.mSiteSelectorPath == null) {
+            throw new RuntimeException(
+                    "Site Selector: Please set the path to the external site "
+                            + "selector in the properties! ");
+        }
+
+        CoProcess selector = new CoProcess();
+        Map<String, Job> batch = new LinkedHashMap<String, Job>();
+        int level = -1;
+        try {
+            // iterate through the jobs in BFS
+            for (Iterator it = workflow.iterator(); it.hasNext(); ) {
+                GraphNode node = (GraphNode) it.next();
+                Job job = (Job) node.getContent();
+                job.setLevel(node.getDepth());
+
+                if (node.getDepth() != level) {
+                    // all the jobs in the previous level have been collected
+                    this.mapBatch(selector, batch, sites);
+                    level = node.getDepth();
+                }
+
+                for (Job j : this.getJobsToMap(job)) {
+                    if (batch.containsKey(j.logicalId)) {
+                        // the answers are matched by the job id
+                        this.mapBatch(selector, batch, sites);
+                    }
+                    batch.put(j.logicalId, j);
+                }
+            }
+            this.mapBatch(selector, batch, sites);
+        } finally {
+            selector.close();
+        }
+    }
+
+    /**
+     * Sends a batch of jobs to the site selector, and maps the jobs as the answers for them are
+     * read. The jobs for which no answer is received are mapped to no site. The batch is cleared
+     * once done.
+     *
+     * @param selector the site selector
+     * @param batch the jobs indexed by the job id
+     * @param sites the list of <code>String</code> objects representing the execution sites that
+     *     can be used.
+     */
+    private void mapBatch(CoProcess selector, Map<String, Job> batch, List sites) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, Job> pending = new LinkedHashMap<String, Job>(batch);
+        batch.clear();
+        try {
+            for (Job job : pending.values()) {
+                selector.send(String.join(RECORD_SEPARATOR, this.getJobDescription(job, sites)));
+            }
+            // an empty line ends the batch
+            selector.send("");
+            selector.flush();
+
+            while (!pending.isEmpty()) {
+                String s = selector.readLine(mTimeout);
+                if (s == null) {
+                    mLogger.log(
+                            "External Site Selector timed out or exited with "
+                                    + pending.size()
+                                    + " jobs not mapped",
+                            LogManager.ERROR_MESSAGE_LEVEL);
+                    selector.destroy();
+                    break;
+                }
+                mLogger.log("[Site Selector stdout] " + s, LogManager.DEBUG_MESSAGE_LEVEL);
+
+                // the answer is prefixed by the job id
+                s = s.trim();
+                int index = s.indexOf(' ');
+                if (index > 0) {
+                    String id = s.substring(0, index);
+                    Job job = pending.get(id);
+                    if (job != null && parseStdOut(job, s.substring(index + 1))) {
+                        pending.remove(id);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            mLogger.log("[Site selector] " + e.getMessage(), LogManager.ERROR_MESSAGE_LEVEL);
+            selector.destroy();
+        }
+
+        for (Job job : pending.values()) {
+            job.setSiteHandle(null);
+        }
     }
 
     /**
@@ -444,76 +594,11 @@ public class NonJavaCallout extends AbstractPerJob {
         try {
             pw = new PrintWriter(new FileWriter(f));
 
-            // write out the version of the api
-            pw.println("version=" + this.VERSION);
-
-            // fw.write("\nvds_job_name=" + job.jobName);
-            pw.println("transformation=" + job.getCompleteTCName());
-            pw.println("derivation=" + job.getCompleteDVName());
-
-            // write out the job id and level as gotten from dax
-            pw.println("job.level=" + job.level);
-            pw.println("job.id=" + job.logicalId);
-
-            // at present Pegasus always asks to schedule compute jobs
-            // User should be able to specify through vdl or the pool config file.
-            // Karan Feb 10 3:00 PM PDT
-            // pw.println("vds_scheduler_preference=regular");
-
-            // write down the list of exec Pools and their corresponding grid
-            // ftp servers
-            if (pools.isEmpty()) {
-                // just write out saying illustrating no exec pool or grid ftp
-                // server passed to site selector. Upto the selector to do what
-                // it wants.
-
-                // FIXME: We need to define this part of the interface. If there
-                // are not site candidates, should it ever reach this part of
-                // the code? If now, insert assertion and abort here. If yes, we
-                // need to define this case! But just silently write the below
-                // will not site will with our set of site selectors.
-                pw.println("resource.id=NONE NONE");
-            } else {
-                String st, pool;
-                for (Iterator i = pools.iterator(); i.hasNext(); ) {
-                    pool = (String) i.next();
-                    st = "resource.id=" + pool + " ";
-
-                    SiteCatalogEntry site = mSiteStore.lookup(pool);
-                    /*
-                    for( Iterator it = site.getHeadNodeFS().getScratch().getSharedDirectory().getFileServersIterator(); it.hasNext();){
-                        pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
-                    }*/
-                    Directory d = site.getDirectory(Directory.TYPE.shared_scratch);
-                    if (d != null) {
-                        for (FileServer.OPERATION op : FileServer.OPERATION.values()) {
-                            for (Iterator it = d.getFileServersIterator(op); it.hasNext(); ) {
-                                pw.println(st + ((FileServer) it.next()).getURLPrefix());
-                            }
-                        }
-                    }
-                } // for
+            // each key value pair goes on a line of its own
+            for (String pair : this.getJobDescription(job, pools)) {
+                pw.println(pair);
             }
 
-            // write the input files
-            for (Iterator i = job.inputFiles.iterator(); i.hasNext(); )
-                pw.println("input.lfn=" + ((PegasusFile) i.next()).getLFN());
-
-            // write workflow related metadata
-            if (this.mAbstractDag != null) {
-                pw.println("wf.name=" + mAbstractDag.getLabel());
-                pw.println("wf.index=" + mAbstractDag.getIndex());
-                // pw.println("workflow.time=" + mAbstractDag.dagInfo.time??);
-                // FIXME: Try File.lastModified() on the DAX file
-
-                // should actually be picked up from the properties file
-                pw.println("wf.manager=" + "dagman");
-            }
-
-            // uninitialized values
-            pw.println("vo.name=" + "NONE");
-            pw.println("vo.group=" + "NONE");
-
             // done
             pw.flush();
             pw.close();
@@ -535,6 +620,94 @@ public class NonJavaCallout extends AbstractPerJob {
         return f;
     }
 
+    /**
+     * Returns the job knowledge passed to the external site selector, as a list of key value
+     * pairs. The job knowledge derives from the contents of the DAX job's <code>Job</code> record,
+     * and the a list of site candidates. The pairs are laid out in the class's introductory
+     * documentation.
+     *
+     * @param job is a representation of the DAX compute job whose site of execution need to be
+     *     determined.
+     * @param pools is a list of site candidates. The items of the list are <code>String</code>
+     *     objects.
+     * @return the key value pairs, each in the form key=value
+     */
+    private List<String> getJobDescription(Job job, List pools) {
+        List<String> pairs = new LinkedList<String>();
+
+        // write out the version of the api
+        pairs.add("version=" + this.VERSION);
+
+        // fw.write("\nvds_job_name=" + job.jobName);
+        pairs.add("transformation=" + job.getCompleteTCName());
+        pairs.add("derivation=" + job.getCompleteDVName());
+
+        // write out the job id and level as gotten from dax
+        pairs.add("job.level=" + job.level);
+        pairs.add("job.id=" + job.logicalId);
+
+        // at present Pegasus always asks to schedule compute jobs
+        // User should be able to specify through vdl or the pool config file.
+        // Karan Feb 10 3:00 PM PDT
+        // pw.println("vds_scheduler_preference=regular");
+
+        // write down the list of exec Pools and their corresponding grid
+        // ftp servers
+        if (pools.isEmpty()) {
+            // just write out saying illustrating no exec pool or grid ftp
+            // server passed to site selector. Upto the selector to do what
+            // it wants.
+
+            // FIXME: We need to define this part of the interface. If there
+            // are not site candidates, should it ever reach this part of
+            // the code? If now, insert assertion and abort here. If yes, we
+            // need to define this case! But just silently write the below
+            // will not site will with our set of site selectors.
+            pairs.add("resource.id=NONE NONE");
+        } else {
+            String st, pool;
+            for (Iterator i = pools.iterator(); i.hasNext(); ) {
+                pool = (String) i.next();
+                st = "resource.id=" + pool + " ";
+
+                SiteCatalogEntry site = mSiteStore.lookup(pool);
+                /*
+                for( Iterator it = site.getHeadNodeFS().getScratch().getSharedDirectory().getFileServersIterator(); it.hasNext();){
+                    pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
+                }*/
+                Directory d = site.getDirectory(Directory.TYPE.shared_scratch);
+                if (d != null) {
+                    for (FileServer.OPERATION op : FileServer.OPERATION.values()) {
+                        for (Iterator it = d.getFileServersIterator(op); it.hasNext(); ) {
+                            pairs.add(st + ((FileServer) it.next()).getURLPrefix());
+                        }
+                    }
+                }
+            } // for
+        }
+
+        // write the input files
+        for (Iterator i = job.inputFiles.iterator(); i.hasNext(); )
+            pairs.add("input.lfn=" + ((PegasusFile) i.next()).getLFN());
+
+        // write workflow related metadata
+        if (this.mAbstractDag != null) {
+            pairs.add("wf.name=" + mAbstractDag.getLabel());
+            pairs.add("wf.index=" + mAbstractDag.getIndex());
+            // pw.println("workflow.time=" + mAbstractDag.dagInfo.time??);
+            // FIXME: Try File.lastModified() on the DAX file
+
+            // should actually be picked up from the properties file
+            pairs.add("wf.manager=" + "dagman");
+        }
+
+        // uninitialized values
+        pairs.add("vo.name=" + "NONE");
+        pairs.add("vo.group=" + "NONE");
+
+        return pairs;
+    }
+
     /**
      * Extracts the chosen site from the site selector's answer. Parses the <i>stdout</i> sent by
      * the selector, to see, if the execution pool and the jobmanager were sent or not.
@@ -672,6 +845,164 @@ public class NonJavaCallout extends AbstractPerJob {
         return val;
     }
 
+    /**
+     * The external site selector started once, to which the jobs are streamed on stdin. The answers
+     * on stdout are read by a separate thread, so that the site selector never blocks on writing
+     * them while a batch is being sent.
+     */
+    private class CoProcess {
+
+        /** Marks the end of the output of the site selector. */
+        private final String END_OF_OUTPUT = new String();
+
+        /** The running site selector, else null. */
+        private Process mProcess;
+
+        /** The stdin of the site selector. */
+        private PrintWriter mInput;
+
+        /** The lines written by the site selector on its stdout. */
+        private BlockingQueue<String> mOutput;
+
+        /** Whether the end of the output of the site selector has been read. */
+        private boolean mEnded;
+
+        /**
+         * Sends a line to the site selector, starting it if required.
+         *
+         * @param line the line
+         * @throws IOException in case of error while starting the site selector
+         */
+        public void send(String line) throws IOException {
+            if (mProcess == null) {
+                this.start();
+            }
+            mInput.println(line);
+        }
+
+        /**
+         * Flushes the lines sent to the site selector.
+         *
+         * @throws IOException if the lines cannot be written to the site selector
+         */
+        public void flush() throws IOException {
+            mInput.flush();
+            if (mInput.checkError()) {
+                throw new IOException("Unable to write to the site selector");
+            }
+        }
+
+        /**
+         * Returns the next line written by the site selector on its stdout.
+         *
+         * @param timeout the seconds to wait for the line, a value of 0 or less to wait forever
+         * @return the line, or null if the site selector timed out or exited
+         */
+        public String readLine(int timeout) {
+            if (mEnded) {
+                return null;
+            }
+            String line = null;
+            try {
+                line =
+                        (timeout <= 0)
+                                ? mOutput.take()
+                                : mOutput.poll(timeout, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (line == END_OF_OUTPUT) {
+                mEnded = true;
+                line = null;
+            }
+            return line;
+        }
+
+        /** Kills the site selector. It is started again if another line is sent. */
+        public void destroy() {
+            if (mProcess != null) {
+                mProcess.destroy();
+                mProcess = null;
+            }
+        }
+
+        /** Closes the stdin of the site selector, and waits for it to exit. */
+        public void close() {
+            if (mProcess == null) {
+                return;
+            }
+            mInput.close();
+            try {
+                boolean exited = true;
+                if (mTimeout <= 0) {
+                    mProcess.waitFor();
+                } else {
+                    exited = mProcess.waitFor(mTimeout, TimeUnit.SECONDS);
+                }
+                if (!exited) {
+                    mLogger.log(
+                            "External Site Selector did not exit after " + mTimeout + " seconds",
+                            LogManager.ERROR_MESSAGE_LEVEL);
+                } else if (mProcess.exitValue() != 0) {
+                    // let the user know site selector exited with non zero
+                    mLogger.log(
+                            "Site Selector exited with non zero exit status "
+                                    + mProcess.exitValue(),
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
+            } catch (InterruptedException e) {
+                mLogger.log(
+                        "Waiting for site selector to exit: " + e.getMessage(),
+                        LogManager.ERROR_MESSAGE_LEVEL);
+            }
+            this.destroy();
+        }
+
+        /**
+         * Starts the site selector.
+         *
+         * @throws IOException in case of error while starting the site selector
+         */
+        private void start() throws IOException {
+            String command = mSiteSelectorPath + " " + STREAM_ARGUMENT;
+            mLogger.log("Starting site selector " + command, LogManager.DEBUG_MESSAGE_LEVEL);
+            Process p = Runtime.getRuntime().exec(command, getEnvArrFromMap());
+
+            final BlockingQueue<String> output = new LinkedBlockingQueue<String>();
+            final BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
+            Thread reader =
+                    new Thread(
+                            () -> {
+                                try {
+                                    String line;
+                                    while ((line = br.readLine()) != null) {
+                                        output.add(line);
+                                    }
+                                } catch (IOException e) {
+                                    // the site selector was killed
+                                } finally {
+                                    output.add(END_OF_OUTPUT);
+                                }
+                            },
+                            "site-selector-stdout");
+            reader.setDaemon(true);
+            reader.start();
+
+            // the stderr is logged as errors
+            StreamGobbler errors =
+                    new StreamGobbler(
+                            p.getErrorStream(),
+                            new DefaultStreamGobblerCallback(LogManager.ERROR_MESSAGE_LEVEL));
+            errors.setDaemon(true);
+            errors.start();
+
+            mProcess = p;
+            mInput = new PrintWriter(new OutputStreamWriter(p.getOutputStream()));
+            mOutput = output;
+            mEnded = false;
+        }
+    }
+
     /**
      * The main program that allows you to test. FIXME: Test programs should have prefix
      * Test.....java
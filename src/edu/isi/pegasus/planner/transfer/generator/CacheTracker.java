@@ -0,0 +1,112 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.transfer.generator;
+
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.FileServerType.OPERATION;
+import edu.isi.pegasus.planner.classes.PlannerCache;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Tracks the locations of the files in a workflow in the planner cache and the workflow cache. The
+ * entries are either inserted in the caches right away, or are deferred till apply() is called.
+ * Deferring allows the transfers for a job to be computed on another thread, while the caches are
+ * updated in the same order as when the jobs are refined one after the other.
+ */
+public class CacheTracker {
+
+    /** The planner cache that tracks all the files being materialized in the workflow. */
+    private final PlannerCache mPlannerCache;
+
+    /** The workflow cache that tracks the GET URL's for the files on the staging sites. */
+    private final ReplicaCatalog mWorkflowCache;
+
+    /** The deferred inserts, else null if the entries are inserted right away. */
+    private List<Runnable> mDeferred;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param plannerCache the planner cache
+     * @param workflowCache the workflow cache
+     * @param defer whether to defer the inserts till apply() is called
+     */
+    public CacheTracker(PlannerCache plannerCache, ReplicaCatalog workflowCache, boolean defer) {
+        mPlannerCache = plannerCache;
+        mWorkflowCache = workflowCache;
+        mDeferred = defer ? new LinkedList<Runnable>() : null;
+    }
+
+    /**
+     * Inserts an entry into the planner cache.
+     *
+     * @param lfn the logical name of the file.
+     * @param pfn the pfn
+     * @param site the site handle
+     * @param type the type of url
+     */
+    public void trackInPlannerCache(String lfn, String pfn, String site, OPERATION type) {
+        if (mDeferred == null) {
+            mPlannerCache.insert(lfn, pfn, site, type);
+        } else {
+            mDeferred.add(() -> mPlannerCache.insert(lfn, pfn, site, type));
+        }
+    }
+
+    /**
+     * Inserts an entry into the planner cache.
+     *
+     * @param lfn the logical name of the file.
+     * @param rce replica catalog entry
+     * @param type the type of url
+     */
+    public void trackInPlannerCache(String lfn, ReplicaCatalogEntry rce, OPERATION type) {
+        if (mDeferred == null) {
+            mPlannerCache.insert(lfn, rce, type);
+        } else {
+            mDeferred.add(() -> mPlannerCache.insert(lfn, rce, type));
+        }
+    }
+
+    /**
+     * Inserts an entry into the workflow cache that is to be written out to the submit directory.
+     *
+     * @param lfn the logical name of the file.
+     * @param pfn the pfn
+     * @param site the site handle
+     */
+    public void trackInWorkflowCache(String lfn, String pfn, String site) {
+        if (mDeferred == null) {
+            mWorkflowCache.insert(lfn, pfn, site);
+        } else {
+            mDeferred.add(() -> mWorkflowCache.insert(lfn, pfn, site));
+        }
+    }
+
+    /**
+     * Inserts the deferred entries into the caches, in the order they were tracked. Entries
+     * tracked afterwards are inserted right away.
+     */
+    public void apply() {
+        if (mDeferred != null) {
+            for (Runnable insert : mDeferred) {
+                insert.run();
+            }
+            mDeferred = null;
+        }
+    }
+}
@@ -303,6 +303,27 @@ public class StageIn extends Abstract {
      */
     public Collection<FileTransfer>[] constructFileTX(
             Job job, Collection<PegasusFile> searchFiles) {
+        return this.constructFileTX(
+                job, searchFiles, new CacheTracker(mPlannerCache, mWorkflowCache, false));
+    }
+
+    /**
+     * Constructs FileTransfer required for staging in raw inputs of a compute Job, tracking the
+     * locations of the staged files with the tracker passed. The method does not update any state
+     * shared across jobs, other than through the tracker, and can be called for different jobs
+     * concurrently as long as the jobs do not share PegasusFile objects.
+     *
+     * @param job the <code>Job</code>object for whose ipfile have to search the Replica Mechanism
+     *     for.
+     * @param searchFiles Collection containing the PegasusFile objects corresponding to the files
+     *     that need to have their mapping looked up from the Replica Mechanism.
+     * @param tracker the tracker for the planner and workflow cache entries
+     * @return array of Collection of <code>FileTransfer</code> objects, with the first Collection
+     *     referring to transfers that need to happen on submit node, and the second Collection
+     *     referring to transfers that need to happen on staging site
+     */
+    public Collection<FileTransfer>[] constructFileTX(
+            Job job, Collection<PegasusFile> searchFiles, CacheTracker tracker) {
         Collection<FileTransfer>[] result = new Collection[2];
         Collection<FileTransfer> localFileTransfers = new LinkedList();
         Collection<FileTransfer> remoteFileTransfers = new LinkedList();
@@ -628,12 +649,12 @@ public class StageIn extends Abstract {
                     // PM-698 . we have to clone since original site attribute will be different
                     ReplicaCatalogEntry rce = (ReplicaCatalogEntry) selLoc.clone();
                     rce.setResourceHandle(executionSiteHandle);
-                    trackInPlannerCache(lfn, rce, FileServerType.OPERATION.get);
+                    tracker.trackInPlannerCache(lfn, rce, FileServerType.OPERATION.get);
 
                     if (candidateNum == 1) {
                         // PM-1014 we only track the first candidate in the workflow cache
                         // i.e the cache file written out in the submit directory
-                        trackInWorkflowCache(lfn, sourceURL, selLoc.getResourceHandle());
+                        tracker.trackInWorkflowCache(lfn, sourceURL, selLoc.getResourceHandle());
                     }
                     // ensure the input file does not get cleaned up by the
                     // InPlace cleanup algorithm
@@ -645,13 +666,14 @@ public class StageIn extends Abstract {
                     // part of the first level staging
                     // we always store the thirdparty url
                     // trackInCaches( lfn, destPutURL, job.getSiteHandle() );
-                    trackInPlannerCache(lfn, destPutURL, stagingSiteHandle);
+                    tracker.trackInPlannerCache(
+                            lfn, destPutURL, stagingSiteHandle, FileServerType.OPERATION.put);
 
                     if (candidateNum == 1) {
                         // PM-1014 we only track the first candidate in the workflow cache
                         // i.e the cache file written out in the submit directory
 
-                        trackInWorkflowCache(lfn, destGetURL, stagingSiteHandle);
+                        tracker.trackInWorkflowCache(lfn, destGetURL, stagingSiteHandle);
                     }
                 }
 
@@ -779,18 +801,6 @@ public class StageIn extends Abstract {
         return bypass;
     }
 
-    /**
-     * Inserts an entry into the workflow cache that is to be written out to the submit directory.
-     *
-     * @param lfn the logical name of the file.
-     * @param pfn the pfn
-     * @param site the site handle
-     */
-    private void trackInWorkflowCache(String lfn, String pfn, String site) {
-
-        mWorkflowCache.insert(lfn, pfn, site);
-    }
-
     /**
      * Removes file URL's from FT sources that if the site attribute for it does not match site
      * handle passed
@@ -1066,45 +1076,6 @@ public class StageIn extends Abstract {
         throw new RuntimeException(error.toString());
     }
 
-    /**
-     * Inserts an entry into the planner cache as a put URL.
-     *
-     * @param lfn the logical name of the file.
-     * @param pfn the pfn
-     * @param site the site handle
-     */
-    private void trackInPlannerCache(String lfn, String pfn, String site) {
-
-        trackInPlannerCache(lfn, pfn, site, FileServerType.OPERATION.put);
-    }
-
-    /**
-     * Inserts an entry into the planner cache as a put URL.
-     *
-     * @param lfn the logical name of the file.
-     * @param rce replica catalog entry
-     * @param type the type of url
-     */
-    private void trackInPlannerCache(
-            String lfn, ReplicaCatalogEntry rce, FileServerType.OPERATION type) {
-
-        mPlannerCache.insert(lfn, rce, type);
-    }
-
-    /**
-     * Inserts an entry into the planner cache as a put URL.
-     *
-     * @param lfn the logical name of the file.
-     * @param pfn the pfn
-     * @param site the site handle
-     * @param type the type of url
-     */
-    private void trackInPlannerCache(
-            String lfn, String pfn, String site, FileServerType.OPERATION type) {
-
-        mPlannerCache.insert(lfn, pfn, site, type);
-    }
-
     /**
      * A convenience method that indicates whether to enable symlinking for a job or not
      *
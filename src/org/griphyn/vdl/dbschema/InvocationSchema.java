@@ -240,6 +240,47 @@ public class InvocationSchema extends DatabaseSchema implements PTC {
      * @return true, if insertion was successful, false otherwise.
      */
     public boolean saveInvocation(InvocationRecord ivr) throws SQLException {
+        return saveInvocation(ivr, true);
+    }
+
+    /**
+     * Inserts a batch of invocation records into the database, skipping the records that already
+     * exist in the database. All records are inserted in a single transaction, which saves a
+     * commit per record.
+     *
+     * @param records is the list of invocation records to store.
+     * @return the number of records that were inserted.
+     */
+    public int saveInvocations(List<InvocationRecord> records) throws SQLException {
+        int result = 0;
+        for (InvocationRecord ivr : records) {
+            long id;
+            try {
+                // FIXME: (start,host,pid) may not be a sufficient secondary key
+                id = getInvocationID(ivr.getStart(), ivr.getHostAddress(), ivr.getPID());
+            } catch (SQLException e) {
+                m_dbdriver.rollback();
+                throw e; // re-throw
+            }
+            if (id == -1) {
+                // rolls back the whole batch on failure
+                saveInvocation(ivr, false);
+                ++result;
+            }
+        }
+
+        m_dbdriver.commit();
+        return result;
+    }
+
+    /**
+     * Inserts an invocation record into the database.
+     *
+     * @param ivr is the invocation record to store.
+     * @param commit whether to commit the transaction after the insertion.
+     * @return true, if insertion was successful, false otherwise.
+     */
+    private boolean saveInvocation(InvocationRecord ivr, boolean commit) throws SQLException {
         // big outer try
         try {
             long id = -1;
@@ -326,7 +367,7 @@ public class InvocationSchema extends DatabaseSchema implements PTC {
             }
 
             // done
-            m_dbdriver.commit();
+            if (commit) m_dbdriver.commit();
             return true;
         } catch (SQLException e) {
             // show complete exception chain
@@ -27,6 +27,7 @@ import java.io.*;
 import java.lang.reflect.*;
 import java.net.InetAddress;
 import java.sql.*;
+import java.util.List;
 import java.util.Properties;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -189,4 +190,23 @@ public class NXDInvSchema extends DatabaseSchema implements PTC {
             throw new SQLException(e.getMessage());
         }
     }
+
+    /**
+     * Inserts a batch of invocation records into the database, skipping the records that already
+     * exist in the database. The XML database does not support transactions, so the records are
+     * stored one after the other.
+     *
+     * @param records is the list of invocation records to store.
+     * @return the number of records that were inserted.
+     */
+    public int saveInvocations(List<InvocationRecord> records) throws SQLException {
+        int result = 0;
+        for (InvocationRecord ivr : records) {
+            if (getInvocationID(ivr.getStart(), ivr.getHostAddress(), ivr.getPID()) == -1) {
+                saveInvocation(ivr);
+                ++result;
+            }
+        }
+        return result;
+    }
 }
@@ -19,6 +19,7 @@ import edu.isi.pegasus.planner.invocation.InvocationRecord;
 import java.net.InetAddress;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.List;
 
 /**
  * This interface defines a common base for all database schemas that supports the handling of the
@@ -56,4 +57,15 @@ public interface PTC extends Catalog {
      * @throws java.sql.SQLException Exception
      */
     public boolean saveInvocation(InvocationRecord ivr) throws SQLException;
+
+    /**
+     * Inserts a batch of invocation records into the database, skipping the records that already
+     * exist in the database. The records are stored in a single transaction, so that either all or
+     * none of them are stored.
+     *
+     * @param records is the list of invocation records to store.
+     * @return the number of records that were inserted.
+     * @throws java.sql.SQLException Exception
+     */
+    public int saveInvocations(List<InvocationRecord> records) throws SQLException;
 }
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.invocation.BatchingServer;
+
+import org.griphyn.vdl.dbschema.InvocationSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks the BatchingServer, by replaying a recorded kickstart record from a number of
+ * concurrent clients, each waiting for the reply to a record before sending the next. Each
+ * replayed record is given its own pid, so that the catalog does not skip it as a duplicate.
+ *
+ * <p>With a batch size and a thread count of 1 the server approximates the SimpleServer, that
+ * parses with a single parser and commits each record on its own. By default the records are only
+ * parsed. With -p database=true they are also stored in an embedded SQLite provenance tracking
+ * catalog, for which the sqlite-jdbc jar has to be on the classpath.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchingServerBenchmark {
+
+    /** The recorded kickstart record that is replayed. */
+    private static final String RECORD =
+            "test/junit/edu/isi/pegasus/planner/invocation/input/kickstart.xml";
+
+    /** The tables of the provenance tracking catalog, as the InvocationSchema populates them. */
+    private static final String[] PTC_TABLES = {
+        "CREATE TABLE IF NOT EXISTS ptc_uname("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, archmode VARCHAR(16), "
+                + "sysname VARCHAR(64), os_release VARCHAR(64), machine VARCHAR(64))",
+        "CREATE TABLE IF NOT EXISTS ptc_rusage("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, utime DOUBLE PRECISION, "
+                + "stime DOUBLE PRECISION, minflt INTEGER, majflt INTEGER, nswaps INTEGER, "
+                + "nsignals INTEGER, nvcsw INTEGER, nivcsw INTEGER)",
+        "CREATE TABLE IF NOT EXISTS ptc_stat("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, errno INTEGER, fname TEXT, "
+                + "fdesc INTEGER, size BIGINT, mode INTEGER, inode BIGINT, atime TIMESTAMP, "
+                + "ctime TIMESTAMP, mtime TIMESTAMP, uid INTEGER, gid INTEGER)",
+        "CREATE TABLE IF NOT EXISTS ptc_invocation("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, creator VARCHAR(32), "
+                + "creationtime TIMESTAMP, wf_label VARCHAR(32), wf_time TIMESTAMP, "
+                + "version VARCHAR(4), start TIMESTAMP, duration DOUBLE PRECISION, "
+                + "tr_namespace VARCHAR(255), tr_name VARCHAR(255), tr_version VARCHAR(20), "
+                + "dv_namespace VARCHAR(255), dv_name VARCHAR(255), dv_version VARCHAR(20), "
+                + "resource VARCHAR(48), host VARCHAR(64), pid INTEGER, uid INTEGER, "
+                + "gid INTEGER, cwd TEXT, arch INTEGER, total INTEGER)",
+        "CREATE INDEX IF NOT EXISTS ptc_invocation_sk ON ptc_invocation(start, host, pid)",
+        "CREATE TABLE IF NOT EXISTS ptc_job("
+                + "id BIGINT, type VARCHAR(32), start TIMESTAMP, duration DOUBLE PRECISION, "
+                + "pid INTEGER, rusage INTEGER, stat INTEGER, exitcode INTEGER, "
+                + "exit_msg TEXT, args TEXT)",
+        "CREATE TABLE IF NOT EXISTS ptc_lfn("
+                + "id BIGINT, stat INTEGER, initial CHAR(1), lfn VARCHAR(255))"
+    };
+
+    /** Matches the pid attribute of the invocation element. */
+    private static final Pattern PID =
+            Pattern.compile("(<invocation\\b[^>]*?\\spid=\")(\\d+)(\")", Pattern.DOTALL);
+
+    @Param({"10000"})
+    public int records;
+
+    @Param({"16"})
+    public int clients;
+
+    @Param({"1", "8"})
+    public int threads;
+
+    @Param({"1", "128"})
+    public int batchSize;
+
+    @Param({"false"})
+    public boolean database;
+
+    private Path mDir;
+
+    private String mRecord;
+
+    private InvocationSchema mPTC;
+
+    private BatchingServer mServer;
+
+    private Thread mServing;
+
+    private List<String> mFiles;
+
+    private int mReplayed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDir = Files.createTempDirectory("pegasus-benchmark");
+        mRecord =
+                new String(
+                        Files.readAllBytes(new File(RECORD).toPath()), StandardCharsets.ISO_8859_1);
+        if (database) {
+            mPTC = embeddedPTC(mDir.resolve("ptc.db").toFile());
+        }
+        File schema =
+                new File(
+                        System.getProperty("pegasus.home.schemadir", "share/pegasus/schema"),
+                        "iv-2.1.xsd");
+        mServer =
+                new BatchingServer(
+                        0,
+                        mPTC,
+                        schema.getAbsolutePath(),
+                        threads,
+                        BatchingServer.DEFAULT_QUEUE_SIZE,
+                        batchSize);
+        mServing =
+                new Thread(
+                        () -> {
+                            try {
+                                mServer.serve();
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+        mServing.start();
+    }
+
+    /** Writes out the records replayed in the next invocation, with pids not used before. */
+    @Setup(Level.Invocation)
+    public void replay() throws IOException {
+        mFiles = new ArrayList<String>(records);
+        for (int i = 0; i < records; i++) {
+            Matcher m = PID.matcher(mRecord);
+            if (!m.find()) {
+                throw new IOException("No pid in " + RECORD);
+            }
+            String copy = m.replaceFirst("$1" + (100000 + mReplayed++) + "$3");
+            Path file = mDir.resolve("ivr-" + i + ".xml");
+            Files.write(file, copy.getBytes(StandardCharsets.ISO_8859_1));
+            mFiles.add(file.toString());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        mServing.join();
+        if (mPTC != null) {
+            mPTC.close();
+        }
+        PlannerPipeline.delete(mDir.toFile());
+    }
+
+    @Benchmark
+    public int load() throws Exception {
+        final int port = mServer.getPort();
+        final List<String> files = mFiles;
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int c = 0; c < clients; c++) {
+            results.add(
+                    executor.submit(
+                            () -> {
+                                int failures = 0;
+                                try (Socket socket =
+                                                new Socket(InetAddress.getLoopbackAddress(), port);
+                                        PrintWriter out =
+                                                new PrintWriter(socket.getOutputStream(), true);
+                                        BufferedReader in =
+                                                new BufferedReader(
+                                                        new InputStreamReader(
+                                                                socket.getInputStream(),
+                                                                StandardCharsets.US_ASCII))) {
+                                    for (int i; (i = next.getAndIncrement()) < files.size(); ) {
+                                        out.println("PARSE " + files.get(i) + " ECP/1.0");
+                                        if (!"300 Result code 0".equals(in.readLine())) {
+                                            failures++;
+                                        }
+                                    }
+                                    out.println("QUIT");
+                                    in.readLine();
+                                }
+                                return failures;
+                            }));
+        }
+
+        int failures = 0;
+        for (Future<Integer> f : results) {
+            failures += f.get();
+        }
+        executor.shutdown();
+        if (failures > 0) {
+            throw new IllegalStateException(failures + " records were not stored");
+        }
+        return failures;
+    }
+
+    /**
+     * Creates a provenance tracking catalog in a SQLite database file.
+     *
+     * @param database the database file
+     * @return the catalog
+     */
+    private static InvocationSchema embeddedPTC(File database) throws Exception {
+        String url = "jdbc:sqlite:" + database.getAbsolutePath();
+        try (Connection c = DriverManager.getConnection(url);
+                Statement s = c.createStatement()) {
+            for (String table : PTC_TABLES) {
+                s.executeUpdate(table);
+            }
+        }
+        System.setProperty("pegasus.catalog.provenance.db.url", url);
+        return new InvocationSchema("SQLite");
+    }
+}
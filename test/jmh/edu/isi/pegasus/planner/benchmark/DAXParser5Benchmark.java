@@ -0,0 +1,163 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStore;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStore;
+import edu.isi.pegasus.planner.classes.CompoundTransformation;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PCRelation;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.dax.Invoke;
+import edu.isi.pegasus.planner.parser.dax.Callback;
+import edu.isi.pegasus.planner.parser.dax.DAXParser5;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yaml.snakeyaml.LoaderOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the streaming parse of large YAML workflows by DAXParser5, with a callback that does
+ * not retain the jobs, against reading the same workflow into a tree, as the parser did before it
+ * streamed the jobs and dependencies. Run with -prof gc to compare the memory allocated, or with a
+ * smaller heap to see the tree read fail where the streaming parse does not.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DAXParser5Benchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private File mBaseDir;
+
+    private File mWorkflow;
+
+    private PegasusBag mBag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mBaseDir = PlannerPipeline.createBaseDirectory();
+        mWorkflow = new File(mBaseDir, "workflow.yml");
+        new WorkflowGenerator(WorkflowGenerator.Shape.layered, size).writeYAML(mWorkflow);
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.parser.document.size", "2047");
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        logger.logEventStart("benchmark.planner.parser.dax", "parse", "0");
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        PlannerPipeline.delete(mBaseDir);
+    }
+
+    @Benchmark
+    public long streamingParse() {
+        CountingCallback callback = new CountingCallback();
+        DAXParser5 parser = new DAXParser5(mBag, "5.0");
+        parser.setDAXCallback(callback);
+        parser.parse(mWorkflow.getAbsolutePath());
+        return callback.mJobs + callback.mEdges;
+    }
+
+    @Benchmark
+    public JsonNode treeRead() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setCodePointLimit(Integer.MAX_VALUE);
+        ObjectMapper mapper =
+                new ObjectMapper(YAMLFactory.builder().loaderOptions(options).build());
+        return mapper.readTree(mWorkflow);
+    }
+
+    /** A callback that counts the jobs and dependencies, without retaining them. */
+    private static class CountingCallback implements Callback {
+
+        private long mJobs;
+
+        private long mEdges;
+
+        public void initialize(PegasusBag bag, String dax) {}
+
+        public Object getConstructedObject() {
+            return null;
+        }
+
+        public void cbDocument(Map attributes) {}
+
+        public void cbWfInvoke(Invoke invoke) {}
+
+        public void cbFile(ReplicaLocation rl) {}
+
+        public void cbReplicaStore(ReplicaStore store) {}
+
+        public void cbExecutable(TransformationCatalogEntry tce) {}
+
+        public void cbCompoundTransformation(CompoundTransformation compoundTransformation) {}
+
+        public void cbTransformationStore(TransformationStore store) {}
+
+        public void cbSiteStore(SiteStore store) {}
+
+        public void cbMetadata(Profile p) {}
+
+        public void cbJob(Job job) {
+            mJobs++;
+        }
+
+        public void cbParents(String child, List<PCRelation> parents) {}
+
+        public void cbChildren(String parent, List<String> children) {
+            mEdges += children.size();
+        }
+
+        public void cbDone() {}
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.classes.ADag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing of generated workflows, in the YAML format and in the DAX 3 XML format.
+ * The parser is the one the planner picks for the workflow, with the default callback.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DAXParserBenchmark {
+
+    @Param({"diamond", "fan", "montage", "layered"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"yml", "xml"})
+    public String format;
+
+    private File mBaseDir;
+
+    private PlannerPipeline mPipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mBaseDir = PlannerPipeline.createBaseDirectory();
+        WorkflowGenerator generator =
+                new WorkflowGenerator(WorkflowGenerator.Shape.valueOf(shape), size);
+        File workflow = new File(mBaseDir, "workflow." + format);
+        if (format.equals("xml")) {
+            generator.writeXML(workflow);
+        } else {
+            generator.writeYAML(workflow);
+        }
+        // the parse phase loads the properties and catalogs the parser needs
+        mPipeline = new PlannerPipeline(mBaseDir, workflow, null);
+        mPipeline.run(PlannerPipeline.Phase.parse);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mPipeline.close();
+        PlannerPipeline.delete(mBaseDir);
+    }
+
+    @Benchmark
+    public ADag parse() {
+        return mPipeline.parseWorkflow();
+    }
+}
@@ -0,0 +1,365 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.SiteFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerCache;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
+import edu.isi.pegasus.planner.common.PegasusConfiguration;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.parser.DAXParserFactory;
+import edu.isi.pegasus.planner.parser.dax.Callback;
+import edu.isi.pegasus.planner.parser.dax.DAXParser;
+import edu.isi.pegasus.planner.refiner.CleanupEngine;
+import edu.isi.pegasus.planner.refiner.CreateDirectory;
+import edu.isi.pegasus.planner.refiner.DataReuseEngine;
+import edu.isi.pegasus.planner.refiner.DeployWorkerPackage;
+import edu.isi.pegasus.planner.refiner.InterPoolEngine;
+import edu.isi.pegasus.planner.refiner.NodeCollapser;
+import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
+import edu.isi.pegasus.planner.refiner.TransferEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Plans a generated workflow phase by phase, in the same sequence as the MainEngine, so that the
+ * benchmarks can time a single phase of the planner on the workflow as the phases before it left
+ * it. Each pipeline plans into a submit directory of its own, that is deleted when the pipeline is
+ * closed.
+ *
+ * <p>The workflows are planned for a condor pool with a shared filesystem, that can access the
+ * file URLs of the local site, so that the worker package does not need to be deployed. As with
+ * the planner, the code generation phase requires condor_submit_dag to be in the PATH.
+ */
+public class PlannerPipeline implements AutoCloseable {
+
+    /** The phases of the planner, in the order they are run. */
+    public enum Phase {
+        parse,
+        data_reuse,
+        site_selection,
+        cluster,
+        transfer,
+        cleanup,
+        code_generation
+    }
+
+    /** The execution site that the workflows are planned for. */
+    public static final String EXECUTION_SITE = "condorpool";
+
+    /** The output site for the workflows. */
+    public static final String OUTPUT_SITE = "local";
+
+    /** The number of pipelines created, to give each its own submit directory. */
+    private static int sPipelines = 0;
+
+    /** The directory with the catalogs and the properties. */
+    private final File mBaseDir;
+
+    /** The workflow to plan. */
+    private final File mWorkflow;
+
+    /** The submit directory. */
+    private final File mSubmitDir;
+
+    /** The clustering technique to use, null for no clustering. */
+    private final String mClustering;
+
+    /** The next phase to run. */
+    private Phase mNext;
+
+    private PegasusBag mBag;
+
+    private ADag mDag;
+
+    private ReplicaCatalogBridge mRCBridge;
+
+    private DataReuseEngine mDataReuseEngine;
+
+    private DeployWorkerPackage mDeploy;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param baseDir the directory populated by {@link #createBaseDirectory()}
+     * @param workflow the workflow to plan
+     * @param clustering the clustering technique, null for no clustering
+     */
+    public PlannerPipeline(File baseDir, File workflow, String clustering) {
+        mBaseDir = baseDir;
+        mWorkflow = workflow;
+        mClustering = clustering;
+        synchronized (PlannerPipeline.class) {
+            mSubmitDir = new File(new File(baseDir, "submit"), "run" + sPipelines++);
+        }
+        mNext = Phase.parse;
+    }
+
+    /**
+     * Creates a temporary directory with a site catalog and properties to plan with.
+     *
+     * @return the directory
+     * @throws IOException in case of error while writing out the files
+     */
+    public static File createBaseDirectory() throws IOException {
+        File dir = Files.createTempDirectory("pegasus-benchmark").toFile();
+        File sites = new File(dir, "sites.yml");
+        try (PrintWriter pw = new PrintWriter(sites)) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("sites:");
+            site(pw, EXECUTION_SITE, dir, "sharedScratch");
+            pw.println("     condor:");
+            pw.println("       universe: vanilla");
+            pw.println("     pegasus:");
+            pw.println("       style: condor");
+            pw.println("       auxillary.local: \"true\"");
+            site(pw, OUTPUT_SITE, dir, "sharedScratch", "sharedStorage");
+        }
+        try (PrintWriter pw = new PrintWriter(new File(dir, "pegasus.properties"))) {
+            pw.println("pegasus.catalog.site.file = " + sites.getAbsolutePath());
+            pw.println("pegasus.data.configuration = sharedfs");
+            pw.println("pegasus.dir.useTimestamp = false");
+            pw.println("pegasus.condor.logs.symlink = false");
+            pw.println("pegasus.metrics.app = benchmark");
+        }
+        return dir;
+    }
+
+    /**
+     * Writes out a site with a directory of each type passed, ending with the profiles of the
+     * site, so that more profiles can be written out after it.
+     */
+    private static void site(PrintWriter pw, String name, File dir, String... types) {
+        pw.println(" - name: " + name);
+        pw.println("   arch: x86_64");
+        pw.println("   os.type: linux");
+        pw.println("   directories:");
+        for (String type : types) {
+            File d = new File(new File(dir, name), type);
+            pw.println("    - type: " + type);
+            pw.println("      path: " + d.getAbsolutePath());
+            pw.println("      fileServers:");
+            pw.println("       - operation: all");
+            pw.println("         url: file://" + d.getAbsolutePath());
+        }
+        pw.println("   profiles:");
+        pw.println("     env:");
+        pw.println("       PEGASUS_HOME: /usr");
+    }
+
+    /**
+     * Deletes a directory and all its contents.
+     *
+     * @param dir the directory
+     * @throws IOException in case of error while deleting
+     */
+    public static void delete(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Runs all the phases before a phase.
+     *
+     * @param phase the phase
+     */
+    public void runUntil(Phase phase) {
+        while (mNext.compareTo(phase) < 0) {
+            run(mNext);
+        }
+    }
+
+    /**
+     * Runs a phase. The phases before it should have been run.
+     *
+     * @param phase the phase
+     */
+    public void run(Phase phase) {
+        if (phase != mNext) {
+            throw new IllegalStateException("Expected to run phase " + mNext + " not " + phase);
+        }
+        switch (phase) {
+            case parse:
+                parse();
+                break;
+
+            case data_reuse:
+                mRCBridge = new ReplicaCatalogBridge(mDag, mBag);
+                mDataReuseEngine = new DataReuseEngine(mDag, mBag);
+                mDag = mDataReuseEngine.reduceWorkflow(mDag, mRCBridge);
+                break;
+
+            case site_selection:
+                InterPoolEngine ipEngine = new InterPoolEngine(mDag, mBag);
+                ipEngine.determineSites();
+                mBag = ipEngine.getPegasusBag();
+                mDeploy = DeployWorkerPackage.loadDeployWorkerPackage(mBag);
+                mDeploy.initialize(mDag);
+                break;
+
+            case cluster:
+                if (mClustering != null) {
+                    try {
+                        mDag = new NodeCollapser(mBag).cluster(mDag);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Unable to cluster the workflow", e);
+                    }
+                }
+                break;
+
+            case transfer:
+                PlannerCache plannerCache = new PlannerCache();
+                plannerCache.initialize(mBag, mDag);
+                new TransferEngine(
+                                mDag,
+                                mBag,
+                                mDataReuseEngine.getDeletedJobs(),
+                                mDataReuseEngine.getDeletedLeafJobs())
+                        .addTransferNodes(mRCBridge, plannerCache);
+                mBag.add(PegasusBag.PLANNER_CACHE, plannerCache);
+                mRCBridge.closeConnection();
+                mDag = mDeploy.addSetupNodes(mDag);
+                mDag =
+                        CreateDirectory.loadCreateDirectoryStraegyInstance(mBag)
+                                .addCreateDirectoryNodes(mDag);
+                break;
+
+            case cleanup:
+                mDag = new CleanupEngine(mBag).addCleanupJobs(mDag);
+                break;
+
+            case code_generation:
+                try {
+                    CodeGeneratorFactory.loadInstance(mBag).generateCode(mDag);
+                } catch (Exception e) {
+                    throw new RuntimeException("Unable to generate code", e);
+                } finally {
+                    mBag.getHandleToPlannerCache().close();
+                }
+                break;
+        }
+        Phase[] phases = Phase.values();
+        mNext = (phase.ordinal() + 1 < phases.length) ? phases[phase.ordinal() + 1] : null;
+    }
+
+    /**
+     * Returns the workflow as planned so far.
+     *
+     * @return the workflow
+     */
+    public ADag getWorkflow() {
+        return mDag;
+    }
+
+    /** Deletes the submit directory. */
+    public void close() throws IOException {
+        delete(mSubmitDir);
+    }
+
+    /**
+     * Parses the workflow with the parser the planner would pick for it. Can be called again once
+     * the parse phase has been run.
+     *
+     * @return the parsed workflow
+     */
+    public ADag parseWorkflow() {
+        String dax = mWorkflow.getAbsolutePath();
+        DAXParser p =
+                DAXParserFactory.loadDAXParser(mBag, DAXParserFactory.DEFAULT_CALLBACK_CLASS, dax);
+        Callback cb = p.getDAXCallback();
+        p.parse(dax);
+        return (ADag) cb.getConstructedObject();
+    }
+
+    /**
+     * Loads the properties, options and catalogs, and parses the workflow, in the same way as the
+     * CPlanner.
+     */
+    private void parse() {
+        mSubmitDir.mkdirs();
+        PegasusProperties props =
+                PegasusProperties.getInstance(
+                        new File(mBaseDir, "pegasus.properties").getAbsolutePath());
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("benchmark.planner", "workflow", mWorkflow.getName());
+
+        PlannerOptions options = new PlannerOptions();
+        options.setLaunchDirectory(mBaseDir.getAbsolutePath());
+        options.setDAX(mWorkflow.getAbsolutePath());
+        options.setExecutionSites(EXECUTION_SITE);
+        options.setOutputSites(OUTPUT_SITE);
+        options.setCleanup(PlannerOptions.CLEANUP_OPTIONS.inplace);
+        if (mClustering != null) {
+            options.setClusteringTechnique(mClustering);
+        }
+        options.setSubmitDirectory(mSubmitDir.getParent(), mSubmitDir.getName());
+        options.setRandomDir(mSubmitDir.getName());
+
+        PegasusConfiguration configurator = new PegasusConfiguration(logger);
+        configurator.loadConfigurationPropertiesAndOptions(props, options);
+
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mBag.add(PegasusBag.PLANNER_OPTIONS, options);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        mBag.add(PegasusBag.PLANNER_DIRECTORY, mBaseDir);
+
+        mDag = parseWorkflow();
+        mDag.generateFlowName();
+        mDag.setFlowTimestamp(options.getDateTime(props.useExtendedTimeStamp()));
+        mDag.setDAXMTime(mWorkflow);
+        mDag.generateFlowID();
+        mDag.setReleaseVersion();
+        mDag.setRootWorkflowUUID(mDag.getWorkflowUUID());
+        // the refinement does not update the task metrics
+        mDag.getWorkflowMetrics().lockTaskMetrics(true);
+        mDag.setWorkflowRefinementStarted(true);
+
+        Set<String> sites = new HashSet<String>();
+        sites.add("*");
+        SiteStore store = SiteFactory.loadSiteStore(sites, mBag);
+        store.setForPlannerUse(props, options);
+        configurator.updateSiteStoreAndOptions(store, options, props);
+        mBag.add(PegasusBag.SITE_STORE, store);
+        mBag.add(
+                PegasusBag.TRANSFORMATION_CATALOG,
+                TransformationFactory.loadInstanceWithStores(mBag, mDag));
+
+        try {
+            props.setPropertiesFileBackend(mSubmitDir.getAbsolutePath());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write to submit directory " + mSubmitDir, e);
+        }
+    }
+}
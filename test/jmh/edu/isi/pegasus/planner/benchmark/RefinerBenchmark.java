@@ -0,0 +1,198 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.benchmark.PlannerPipeline.Phase;
+import edu.isi.pegasus.planner.classes.ADag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the refinement phases of the planner on generated workflows. Before each invocation,
+ * the workflow is planned up to the phase being benchmarked, so that every invocation times a
+ * single phase on the workflow as the phases before it left it.
+ *
+ * <p>The phases are slow enough on large workflows to be timed in single shot mode. Workflows of
+ * a million jobs can be benchmarked by passing -p size=1000000 to the benchmark runner.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RefinerBenchmark {
+
+    /** The generated workflow, along with the catalogs and properties to plan it with. */
+    @State(Scope.Benchmark)
+    public static class Workflow {
+
+        @Param({"diamond", "fan", "montage", "layered"})
+        public String shape;
+
+        @Param({"1000", "10000", "100000"})
+        public int size;
+
+        private File mBaseDir;
+
+        private File mWorkflow;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            mBaseDir = PlannerPipeline.createBaseDirectory();
+            mWorkflow = new File(mBaseDir, "workflow.yml");
+            new WorkflowGenerator(WorkflowGenerator.Shape.valueOf(shape), size)
+                    .writeYAML(mWorkflow);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            PlannerPipeline.delete(mBaseDir);
+        }
+    }
+
+    /** The workflow planned up to the phase being benchmarked. */
+    public abstract static class Planned {
+
+        private PlannerPipeline mPipeline;
+
+        /**
+         * Returns the phase being benchmarked.
+         *
+         * @return the phase
+         */
+        protected abstract Phase phase();
+
+        /**
+         * Returns the clustering technique to plan with.
+         *
+         * @return the clustering technique, null for no clustering
+         */
+        protected String clustering() {
+            return null;
+        }
+
+        @Setup(Level.Invocation)
+        public void setUp(Workflow workflow) {
+            mPipeline = new PlannerPipeline(workflow.mBaseDir, workflow.mWorkflow, clustering());
+            mPipeline.runUntil(phase());
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            mPipeline.close();
+        }
+
+        /**
+         * Runs the phase being benchmarked.
+         *
+         * @return the workflow after the phase
+         */
+        public ADag run() {
+            mPipeline.run(phase());
+            return mPipeline.getWorkflow();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DataReuse extends Planned {
+        protected Phase phase() {
+            return Phase.data_reuse;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SiteSelection extends Planned {
+        protected Phase phase() {
+            return Phase.site_selection;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class HorizontalClustering extends Planned {
+        protected Phase phase() {
+            return Phase.cluster;
+        }
+
+        protected String clustering() {
+            return "horizontal";
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Transfer extends Planned {
+        protected Phase phase() {
+            return Phase.transfer;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InPlaceCleanup extends Planned {
+        protected Phase phase() {
+            return Phase.cleanup;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CondorCodeGeneration extends Planned {
+        protected Phase phase() {
+            return Phase.code_generation;
+        }
+    }
+
+    @Benchmark
+    public ADag dataReuse(DataReuse planned) {
+        return planned.run();
+    }
+
+    @Benchmark
+    public ADag siteSelection(SiteSelection planned) {
+        return planned.run();
+    }
+
+    @Benchmark
+    public ADag horizontalClustering(HorizontalClustering planned) {
+        return planned.run();
+    }
+
+    @Benchmark
+    public ADag transfer(Transfer planned) {
+        return planned.run();
+    }
+
+    @Benchmark
+    public ADag inPlaceCleanup(InPlaceCleanup planned) {
+        return planned.run();
+    }
+
+    @Benchmark
+    public ADag condorCodeGeneration(CondorCodeGeneration planned) {
+        return planned.run();
+    }
+}
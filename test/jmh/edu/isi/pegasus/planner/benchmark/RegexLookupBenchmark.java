@@ -0,0 +1,143 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.replica.impl.Regex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks bulk lookups against the Regex replica catalog, populated with a mix of prefix,
+ * suffix and unindexable regex rules. The indexed lookup of the catalog is compared against a
+ * linear scan over all the patterns, as the catalog did before it was indexed. As a single lookup
+ * of all the LFNs takes seconds, each invocation is timed on its own.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RegexLookupBenchmark {
+
+    /** The site that the replicas are registered at. */
+    private static final String SITE = "local";
+
+    @Param({"100000"})
+    public int lfns;
+
+    @Param({"5000"})
+    public int rules;
+
+    private File mDir;
+
+    private Regex mCatalog;
+
+    private List<Pattern> mPatterns;
+
+    private Set<String> mLFNs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("pegasus-benchmark").toFile();
+        mCatalog = new Regex();
+        mCatalog.connect(new File(mDir, "replicas.txt").getAbsolutePath());
+        mPatterns = new ArrayList<Pattern>();
+        for (int i = 0; i < rules; i++) {
+            String lfn;
+            switch (i % 10) {
+                case 0:
+                    lfn = ".*\\.ext" + i;
+                    break;
+                case 1:
+                    lfn = "(run|test)" + i + "_.*";
+                    break;
+                default:
+                    lfn = "project/run" + i + "/(\\d+)/.*\\.dat";
+            }
+            Map<String, Object> attr = new HashMap<String, Object>();
+            attr.put(Regex.REGEX_KEY, "true");
+            attr.put(ReplicaCatalogEntry.RESOURCE_HANDLE, SITE);
+            mCatalog.insert(lfn, new ReplicaCatalogEntry("file:///storage/[1]/[0]", attr));
+            mPatterns.add(Pattern.compile(lfn));
+        }
+
+        Random random = new Random(42);
+        mLFNs = new LinkedHashSet<String>();
+        while (mLFNs.size() < lfns) {
+            int rule = random.nextInt(rules * 2);
+            int n = mLFNs.size();
+            switch (rule % 10) {
+                case 0:
+                    mLFNs.add("f" + n + ".ext" + rule);
+                    break;
+                case 1:
+                    mLFNs.add("run" + rule + "_" + n);
+                    break;
+                default:
+                    mLFNs.add("project/run" + rule + "/" + n + "/f.dat");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        PlannerPipeline.delete(mDir);
+    }
+
+    @Benchmark
+    public Map indexedLookup() {
+        return mCatalog.lookup(mLFNs, SITE);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int matched = 0;
+        for (String lfn : mLFNs) {
+            for (Pattern p : mPatterns) {
+                if (p.matcher(lfn).matches()) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
+import edu.isi.pegasus.planner.catalog.replica.impl.Directory;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading and querying the file and directory based replica catalog implementations,
+ * populated with an entry for every file in a workflow. The JDBCRC implementation is not
+ * benchmarked, as it requires a database created with pegasus-db-admin.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReplicaCatalogBenchmark {
+
+    /** The site that the replicas are registered at. */
+    private static final String SITE = "local";
+
+    /** The number of files looked up together in a bulk lookup. */
+    private static final int BULK_LOOKUP_SIZE = 1000;
+
+    @Param({"SimpleFile", "YAML", "Regex", "Directory"})
+    public String implementation;
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private File mDir;
+
+    private PegasusBag mBag;
+
+    private Properties mConnectProps;
+
+    private ReplicaCatalog mCatalog;
+
+    private Set<String> mBulk;
+
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDir = Files.createTempDirectory("pegasus-benchmark").toFile();
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+
+        mConnectProps = new Properties();
+        if (implementation.equals("Directory")) {
+            File data = new File(mDir, "data");
+            data.mkdirs();
+            for (int i = 0; i < entries; i++) {
+                new File(data, lfn(i)).createNewFile();
+            }
+            mConnectProps.setProperty(Directory.DIRECTORY_PROPERTY_KEY, data.getAbsolutePath());
+            mConnectProps.setProperty(Directory.SITE_PROPERTY_KEY, SITE);
+        } else {
+            String suffix = implementation.equals("YAML") ? ".yml" : ".txt";
+            File file = new File(mDir, "replicas" + suffix);
+            mConnectProps.setProperty("file", file.getAbsolutePath());
+            ReplicaCatalog catalog = connect();
+            for (int i = 0; i < entries; i++) {
+                catalog.insert(lfn(i), "file:///data/" + lfn(i), SITE);
+            }
+            // writes out the catalog
+            catalog.close();
+            mConnectProps.setProperty(ReplicaCatalog.READ_ONLY_KEY, "true");
+        }
+
+        mCatalog = connect();
+        mBulk = new HashSet<String>();
+        for (int i = 0; i < Math.min(BULK_LOOKUP_SIZE, entries); i++) {
+            mBulk.add(lfn((int) ((i * 7919L) % entries)));
+        }
+        mNext = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mCatalog.close();
+        PlannerPipeline.delete(mDir);
+    }
+
+    @Benchmark
+    public int load() throws Exception {
+        ReplicaCatalog catalog = connect();
+        int size = catalog.list().size();
+        catalog.close();
+        return size;
+    }
+
+    @Benchmark
+    public String lookup() {
+        mNext = (mNext + 7919) % entries;
+        return mCatalog.lookup(lfn(mNext), SITE);
+    }
+
+    @Benchmark
+    public Map bulkLookup() {
+        return mCatalog.lookup(mBulk, SITE);
+    }
+
+    /** Connects to the catalog being benchmarked. */
+    private ReplicaCatalog connect() throws Exception {
+        return ReplicaFactory.loadInstance(
+                implementation, mBag, (Properties) mConnectProps.clone());
+    }
+
+    /** Returns the lfn of the i'th entry. */
+    private static String lfn(int i) {
+        return "f." + i;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.benchmark.PlannerPipeline.Phase;
+import edu.isi.pegasus.planner.classes.ADag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the transfer refinement on wide workflows, with the transfers for the jobs in a level
+ * computed by a varying number of threads. The default workflow has 100,000 jobs in levels of 1000
+ * jobs, and a million files, as each job has nine raw inputs and an output.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class TransferRefinerBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private File mBaseDir;
+
+    private File mWorkflow;
+
+    private PlannerPipeline mPipeline;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        mBaseDir = PlannerPipeline.createBaseDirectory();
+        try (PrintWriter pw =
+                new PrintWriter(new FileWriter(new File(mBaseDir, "pegasus.properties"), true))) {
+            pw.println("pegasus.transfer.refiner.threads = " + threads);
+        }
+        mWorkflow = new File(mBaseDir, "workflow.yml");
+        new WorkflowGenerator(WorkflowGenerator.Shape.wide, size).writeYAML(mWorkflow);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        PlannerPipeline.delete(mBaseDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        mPipeline = new PlannerPipeline(mBaseDir, mWorkflow, null);
+        mPipeline.runUntil(Phase.transfer);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        mPipeline.close();
+    }
+
+    @Benchmark
+    public ADag transfer() {
+        mPipeline.run(Phase.transfer);
+        return mPipeline.getWorkflow();
+    }
+}
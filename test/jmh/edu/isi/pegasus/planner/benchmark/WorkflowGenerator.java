@@ -0,0 +1,365 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic workflows of a given shape and number of jobs, for the benchmarks. The
+ * workflows are written out either in the YAML format, or in the DAX 3 XML format.
+ *
+ * <p>Every job runs the same transformation, and the raw input files are registered in the replica
+ * catalog of the workflow, so that the generated workflows plan without any other catalog. The
+ * transformation has a cluster size set, for the workflows to be clustered horizontally. All files
+ * other than the raw inputs are generated by the jobs of the workflow.
+ */
+public class WorkflowGenerator {
+
+    /** The name of the raw input file of the workflows. */
+    public static final String RAW_INPUT = "f.raw";
+
+    /** The transformation that all the jobs run. */
+    public static final String TRANSFORMATION = "keg";
+
+    /** The number of jobs of the transformation that are clustered into a single job. */
+    public static final int CLUSTER_SIZE = 10;
+
+    /** The shapes of the workflows that can be generated. */
+    public enum Shape {
+        /**
+         * A chain of diamonds, where each diamond has a top job fanning out to two jobs, that fan
+         * in to a bottom job. The top job of a diamond consumes the output of the bottom job of the
+         * previous diamond.
+         */
+        diamond,
+        /** A single job fanning out to all the other jobs, that fan in to a single job. */
+        fan,
+        /**
+         * Shaped like a Montage workflow. Images are reprojected in parallel, the overlaps of
+         * neighbouring images are fitted, the fits are concatenated into a background model that
+         * is applied to every image, and the images are then added into a mosaic.
+         */
+        montage,
+        /** Levels of 10 jobs, where each job consumes the output of a job in the level before. */
+        layered,
+        /**
+         * Levels of 1000 jobs, where each job consumes the output of a job in the level before and
+         * raw inputs of its own, so that the workflow has ten files for every job.
+         */
+        wide
+    }
+
+    /** A job in the generated workflow. */
+    private static class Job {
+
+        private final String mID;
+
+        private final List<String> mInputs;
+
+        private final List<String> mOutputs;
+
+        private final List<String> mParents;
+
+        public Job(int index) {
+            mID = String.format("ID%07d", index);
+            mInputs = new ArrayList<String>();
+            mOutputs = new ArrayList<String>();
+            mParents = new ArrayList<String>();
+            mOutputs.add("f." + index);
+        }
+
+        /** Adds a job as a parent, consuming its output. */
+        public Job after(Job parent) {
+            mParents.add(parent.mID);
+            mInputs.add(parent.mOutputs.get(0));
+            return this;
+        }
+    }
+
+    /** The number of raw inputs of each job in the wide workflows. */
+    public static final int WIDE_RAW_INPUTS = 9;
+
+    /** The jobs in the workflow in the order that they were generated. */
+    private final List<Job> mJobs;
+
+    /** The raw inputs of the workflow, that are registered in the replica catalog. */
+    private final List<String> mRawInputs;
+
+    /** The shape of the workflow. */
+    private final Shape mShape;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param shape the shape of the workflow
+     * @param size the number of jobs in the workflow. Rounded down to fit the shape.
+     */
+    public WorkflowGenerator(Shape shape, int size) {
+        mShape = shape;
+        mJobs = new ArrayList<Job>(size);
+        mRawInputs = new ArrayList<String>();
+        mRawInputs.add(RAW_INPUT);
+        switch (shape) {
+            case diamond:
+                generateDiamonds(size);
+                break;
+
+            case fan:
+                generateFan(size);
+                break;
+
+            case montage:
+                generateMontage(size);
+                break;
+
+            case layered:
+                generateLayers(size, 10, 0);
+                break;
+
+            case wide:
+                generateLayers(size, 1000, WIDE_RAW_INPUTS);
+                break;
+        }
+    }
+
+    /**
+     * Returns the number of jobs in the workflow.
+     *
+     * @return the number of jobs
+     */
+    public int size() {
+        return mJobs.size();
+    }
+
+    /**
+     * Writes out the workflow in the YAML format.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing out file.
+     */
+    public void writeYAML(File file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("name: " + mShape);
+            pw.println("replicaCatalog:");
+            pw.println("  replicas:");
+            for (String lfn : mRawInputs) {
+                pw.println(
+                        "    - {lfn: "
+                                + lfn
+                                + ", pfns: [{site: local, pfn: /benchmark/inputs/"
+                                + lfn
+                                + "}]}");
+            }
+            pw.println("transformationCatalog:");
+            pw.println("  transformations:");
+            pw.println("    - name: " + TRANSFORMATION);
+            pw.println("      profiles:");
+            pw.println("        pegasus:");
+            pw.println("          clusters.size: " + CLUSTER_SIZE);
+            pw.println("      sites:");
+            pw.println("        - name: local");
+            pw.println("          pfn: /usr/bin/pegasus-keg");
+            pw.println("          type: stageable");
+            pw.println("          arch: x86_64");
+            pw.println("          os.type: linux");
+            pw.println("jobs:");
+            for (Job job : mJobs) {
+                pw.println("  - type: job");
+                pw.println("    name: " + TRANSFORMATION);
+                pw.println("    id: " + job.mID);
+                pw.println("    arguments: [-o, " + job.mOutputs.get(0) + "]");
+                pw.println("    uses:");
+                for (String lfn : job.mInputs) {
+                    pw.println("      - lfn: " + lfn);
+                    pw.println("        type: input");
+                }
+                for (String lfn : job.mOutputs) {
+                    pw.println("      - lfn: " + lfn);
+                    pw.println("        type: output");
+                    pw.println("        stageOut: true");
+                    pw.println("        registerReplica: false");
+                }
+            }
+            pw.println("jobDependencies:");
+            for (Job job : mJobs) {
+                for (String parent : job.mParents) {
+                    pw.println("  - id: " + parent);
+                    pw.println("    children: [" + job.mID + "]");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out the workflow in the DAX 3 XML format.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing out file.
+     */
+    public void writeXML(File file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            pw.println(
+                    "<adag xmlns=\"http://pegasus.isi.edu/schema/DAX\""
+                            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                            + " xsi:schemaLocation=\"http://pegasus.isi.edu/schema/DAX"
+                            + " http://pegasus.isi.edu/schema/dax-3.6.xsd\""
+                            + " version=\"3.6\" name=\""
+                            + mShape
+                            + "\">");
+            for (String lfn : mRawInputs) {
+                pw.println("  <file name=\"" + lfn + "\">");
+                pw.println(
+                        "    <pfn url=\"file:///benchmark/inputs/" + lfn + "\" site=\"local\"/>");
+                pw.println("  </file>");
+            }
+            pw.println(
+                    "  <executable name=\""
+                            + TRANSFORMATION
+                            + "\" arch=\"x86_64\" os=\"linux\" installed=\"false\">");
+            pw.println(
+                    "    <profile namespace=\"pegasus\" key=\"clusters.size\">"
+                            + CLUSTER_SIZE
+                            + "</profile>");
+            pw.println("    <pfn url=\"file:///usr/bin/pegasus-keg\" site=\"local\"/>");
+            pw.println("  </executable>");
+            for (Job job : mJobs) {
+                pw.println("  <job id=\"" + job.mID + "\" name=\"" + TRANSFORMATION + "\">");
+                pw.println("    <argument>-o " + job.mOutputs.get(0) + "</argument>");
+                for (String lfn : job.mInputs) {
+                    pw.println("    <uses name=\"" + lfn + "\" link=\"input\"/>");
+                }
+                for (String lfn : job.mOutputs) {
+                    pw.println(
+                            "    <uses name=\""
+                                    + lfn
+                                    + "\" link=\"output\" transfer=\"true\" register=\"false\"/>");
+                }
+                pw.println("  </job>");
+            }
+            for (Job job : mJobs) {
+                if (job.mParents.isEmpty()) {
+                    continue;
+                }
+                pw.println("  <child ref=\"" + job.mID + "\">");
+                for (String parent : job.mParents) {
+                    pw.println("    <parent ref=\"" + parent + "\"/>");
+                }
+                pw.println("  </child>");
+            }
+            pw.println("</adag>");
+        }
+    }
+
+    /** Generates a chain of diamonds of 4 jobs each. */
+    private void generateDiamonds(int size) {
+        Job previous = null;
+        for (int d = 0; d < Math.max(1, size / 4); d++) {
+            Job top = root();
+            if (previous != null) {
+                top.after(previous);
+            }
+            Job left = job().after(top);
+            Job right = job().after(top);
+            previous = job().after(left).after(right);
+        }
+    }
+
+    /** Generates a fan out to size - 2 jobs, followed by a fan in. */
+    private void generateFan(int size) {
+        Job split = root();
+        List<Job> middle = new ArrayList<Job>();
+        for (int i = 0; i < Math.max(1, size - 2); i++) {
+            middle.add(job().after(split));
+        }
+        Job merge = job();
+        for (Job j : middle) {
+            merge.after(j);
+        }
+    }
+
+    /**
+     * Generates a montage shaped workflow. For n images there are n projections, n - 1 fits of
+     * the overlaps of neighbouring images, n background corrections and 4 jobs to concatenate the
+     * fits, model the background, tabulate and add the images, totalling to 3n + 3 jobs.
+     */
+    private void generateMontage(int size) {
+        int images = Math.max(2, (size - 3) / 3);
+        List<Job> projections = new ArrayList<Job>(images);
+        for (int i = 0; i < images; i++) {
+            projections.add(root());
+        }
+        List<Job> fits = new ArrayList<Job>(images);
+        for (int i = 0; i + 1 < images; i++) {
+            fits.add(job().after(projections.get(i)).after(projections.get(i + 1)));
+        }
+        Job concatFit = job();
+        for (Job fit : fits) {
+            concatFit.after(fit);
+        }
+        Job bgModel = job().after(concatFit);
+        List<Job> corrected = new ArrayList<Job>(images);
+        for (Job projection : projections) {
+            corrected.add(job().after(projection).after(bgModel));
+        }
+        Job imgtbl = job();
+        for (Job c : corrected) {
+            imgtbl.after(c);
+        }
+        Job add = job().after(imgtbl);
+        for (Job c : corrected) {
+            add.after(c);
+        }
+    }
+
+    /**
+     * Generates levels of jobs, each job consuming the output of one in the level before, and raw
+     * inputs of its own.
+     *
+     * @param size the number of jobs
+     * @param width the number of jobs in a level
+     * @param rawInputs the number of raw inputs of each job
+     */
+    private void generateLayers(int size, int width, int rawInputs) {
+        for (int i = 0; i < size; i++) {
+            Job job = (i < width) ? root() : job().after(mJobs.get(i - width));
+            for (int r = 0; r < rawInputs; r++) {
+                String lfn = "r." + i + "." + r;
+                job.mInputs.add(lfn);
+                mRawInputs.add(lfn);
+            }
+        }
+    }
+
+    /** Adds a job that consumes the raw input. */
+    private Job root() {
+        Job job = job();
+        job.mInputs.add(RAW_INPUT);
+        return job;
+    }
+
+    /** Adds a job without any inputs. */
+    private Job job() {
+        Job job = new Job(mJobs.size());
+        mJobs.add(job);
+        return job;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import software.amazon.awssdk.services.batch.BatchClient;
+import software.amazon.awssdk.services.batch.model.DescribeJobsRequest;
+import software.amazon.awssdk.services.batch.model.DescribeJobsResponse;
+import software.amazon.awssdk.services.batch.model.JobDetail;
+import software.amazon.awssdk.services.batch.model.JobStatus;
+import software.amazon.awssdk.services.batch.model.SubmitJobRequest;
+import software.amazon.awssdk.services.batch.model.SubmitJobResponse;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An in process stand-in for AWS Batch, that allows running Synch end to end without AWS. A
+ * submitted job moves to the next state of the AWS Batch job lifecycle every time it is described,
+ * and ends up succeeded, or failed if its name was registered as failing. Every call sleeps for a
+ * configurable latency to mimic the round trip to AWS.
+ */
+public class LocalBatchClient implements BatchClient {
+
+    /** The states a job goes through */
+    private static final JobStatus[] LIFECYCLE = {
+        JobStatus.SUBMITTED,
+        JobStatus.PENDING,
+        JobStatus.RUNNABLE,
+        JobStatus.STARTING,
+        JobStatus.RUNNING,
+        JobStatus.SUCCEEDED
+    };
+
+    /** The simulated round trip latency in milliseconds */
+    private final long mLatency;
+
+    /** Maps the job id to the job name */
+    private final Map<String, String> mJobNames;
+
+    /** Maps the job id to the position of the job in the lifecycle */
+    private final Map<String, Integer> mProgress;
+
+    /** The names of the jobs that fail */
+    private final Set<String> mFailures;
+
+    private int mSubmitCalls;
+
+    private int mDescribeCalls;
+
+    private int mConcurrentDescribeCalls;
+
+    private int mMaxConcurrentDescribeCalls;
+
+    private int mMaxDescribeRequestSize;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param latency the simulated round trip latency in milliseconds
+     */
+    public LocalBatchClient(long latency) {
+        mLatency = latency;
+        mJobNames = new HashMap<String, String>();
+        mProgress = new HashMap<String, Integer>();
+        mFailures = new HashSet<String>();
+    }
+
+    /**
+     * Registers a job that is to fail.
+     *
+     * @param jobName the name of the job
+     */
+    public synchronized void fail(String jobName) {
+        mFailures.add(jobName);
+    }
+
+    @Override
+    public SubmitJobResponse submitJob(SubmitJobRequest request) {
+        this.sleep();
+        String id = UUID.randomUUID().toString();
+        synchronized (this) {
+            mSubmitCalls++;
+            mJobNames.put(id, request.jobName());
+            mProgress.put(id, 0);
+        }
+        return SubmitJobResponse.builder().jobId(id).jobName(request.jobName()).build();
+    }
+
+    @Override
+    public DescribeJobsResponse describeJobs(DescribeJobsRequest request) {
+        synchronized (this) {
+            mDescribeCalls++;
+            mConcurrentDescribeCalls++;
+            mMaxConcurrentDescribeCalls =
+                    Math.max(mMaxConcurrentDescribeCalls, mConcurrentDescribeCalls);
+            mMaxDescribeRequestSize = Math.max(mMaxDescribeRequestSize, request.jobs().size());
+        }
+        this.sleep();
+
+        List<JobDetail> jobs = new LinkedList<JobDetail>();
+        synchronized (this) {
+            for (String id : request.jobs()) {
+                Integer position = mProgress.get(id);
+                if (position == null) {
+                    continue;
+                }
+                String name = mJobNames.get(id);
+                JobStatus status = LIFECYCLE[position];
+                if (status == JobStatus.SUCCEEDED && mFailures.contains(name)) {
+                    status = JobStatus.FAILED;
+                }
+                jobs.add(
+                        JobDetail.builder()
+                                .jobId(id)
+                                .jobName(name)
+                                .status(status)
+                                .statusReason("local")
+                                .build());
+                mProgress.put(id, Math.min(position + 1, LIFECYCLE.length - 1));
+            }
+            mConcurrentDescribeCalls--;
+        }
+        return DescribeJobsResponse.builder().jobs(jobs).build();
+    }
+
+    @Override
+    public void close() {}
+
+    public synchronized int getSubmitCalls() {
+        return mSubmitCalls;
+    }
+
+    public synchronized int getDescribeCalls() {
+        return mDescribeCalls;
+    }
+
+    public synchronized int getMaxConcurrentDescribeCalls() {
+        return mMaxConcurrentDescribeCalls;
+    }
+
+    public synchronized int getMaxDescribeRequestSize() {
+        return mMaxDescribeRequestSize;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(mLatency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -17,6 +17,10 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import edu.isi.pegasus.aws.batch.classes.AWSJob;
+import edu.isi.pegasus.aws.batch.classes.Tuple;
+import edu.isi.pegasus.aws.batch.common.CloudWatchLog;
+
 import org.apache.logging.log4j.Level;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,9 +29,11 @@ import org.springframework.test.util.ReflectionTestUtils;
 import software.amazon.awssdk.services.batch.model.JobStatus;
 import software.amazon.awssdk.services.batch.model.ListJobsRequest;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -175,6 +181,57 @@ public class SynchTest {
         assertThat(synch.receivedSignalToExitAfterJobsComplete(), is(true));
     }
 
+    @Test
+    public void testMonitorAgainstLocalBatchClient() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("aws.account", "123456789012");
+        properties.setProperty("aws.region", Synch.US_EAST_1_REGION);
+        properties.setProperty("aws.batch.prefix", "synch-test");
+        properties.setProperty("aws.batch.submit.threads", "8");
+        properties.setProperty("aws.batch.monitor.threads", "4");
+
+        LocalBatchClient client = new LocalBatchClient(50);
+        client.fail("job-7");
+        List<String> retrieved = new java.util.LinkedList<String>();
+        CloudWatchLog cwl =
+                new CloudWatchLog() {
+                    @Override
+                    public Tuple<File, File> retrieve(AWSJob j) {
+                        synchronized (retrieved) {
+                            retrieved.add(j.getID());
+                        }
+                        return null;
+                    }
+                };
+        synch.initialize(
+                properties,
+                Level.INFO,
+                new EnumMap<Synch.BATCH_ENTITY_TYPE, String>(Synch.BATCH_ENTITY_TYPE.class),
+                client,
+                cwl);
+
+        synch.monitor();
+        int total = 250;
+        for (int i = 0; i < total; i++) {
+            AWSJob j = new AWSJob();
+            j.setID("job-" + i);
+            j.setCommand("/bin/true", "");
+            synch.submit(j);
+        }
+        synch.signalToExitAfterJobsComplete();
+
+        assertThat(synch.awaitTermination(), is(Synch.TASK_FAILURE_EXITCODE));
+        Map<String, Integer> metrics = synch.getRunMetrics();
+        assertThat(metrics.get("total"), is(total));
+        assertThat(metrics.get("succeeded"), is(total - 1));
+        assertThat(metrics.get("failed"), is(1));
+        assertThat(retrieved.size(), is(total));
+        assertThat(client.getSubmitCalls(), is(total));
+        assertThat(
+                client.getMaxDescribeRequestSize() <= Synch.AWS_BATCH_MAX_JOBS_SUPPORTED_IN_API,
+                is(true));
+    }
+
     @Test
     public void testSelectedMethodSignatures() throws Exception {
         Method initialize =
@@ -412,4 +412,147 @@ public class DefaultTest {
         mLogger.logAlreadyFormattedMessage("preformatted-message", LogManager.INFO_MESSAGE_LEVEL);
         assertThat(mOutCapture.toString(), containsString("preformatted-message"));
     }
+
+    // -----------------------------------------------------------------------
+    // Level guards, supplier and parameterized logging
+    // -----------------------------------------------------------------------
+
+    @Test
+    public void testIsLoggableFollowsLevel() {
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        assertThat(mLogger.isLoggable(LogManager.INFO_MESSAGE_LEVEL), is(true));
+        assertThat(mLogger.isLoggable(LogManager.CONSOLE_MESSAGE_LEVEL), is(true));
+        assertThat(mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL), is(false));
+        assertThat(mLogger.isLoggable(-1), is(false));
+    }
+
+    @Test
+    public void testSupplierNotInvokedForDisabledLevel() {
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        mLogger.log(
+                () -> {
+                    throw new AssertionError("supplier invoked for a disabled level");
+                },
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        assertThat(mOutCapture.toString(), is(""));
+    }
+
+    @Test
+    public void testSupplierMessageLogged() {
+        mLogger.setLevel(LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log(() -> "supplied-" + 42, LogManager.DEBUG_MESSAGE_LEVEL);
+        assertThat(mOutCapture.toString(), containsString("supplied-42"));
+    }
+
+    @Test
+    public void testParameterizedMessageLogged() {
+        mLogger.setLevel(LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("job {} mapped to {}", "j1", "condorpool", LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("{} files, {}", 3, LogManager.DEBUG_MESSAGE_LEVEL);
+        assertThat(mOutCapture.toString(), containsString("job j1 mapped to condorpool"));
+        assertThat(mOutCapture.toString(), containsString("3 files, {}"));
+    }
+
+    @Test
+    public void testParameterizedArgumentNotFormattedForDisabledLevel() {
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        Object arg =
+                new Object() {
+                    public String toString() {
+                        throw new AssertionError("argument formatted for a disabled level");
+                    }
+                };
+        mLogger.log("value {}", arg, LogManager.DEBUG_MESSAGE_LEVEL);
+        assertThat(mOutCapture.toString(), is(""));
+    }
+
+    @Test
+    public void testBufferResetWhenLevelDisabled() {
+        mLogger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        mLogger.add("stale-value");
+        mLogger.log(LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.add("fresh-value");
+        mLogger.log(LogManager.WARNING_MESSAGE_LEVEL);
+        assertThat(mErrCapture.toString(), containsString("fresh-value"));
+        assertThat(mErrCapture.toString(), not(containsString("stale-value")));
+    }
+
+    // -----------------------------------------------------------------------
+    // Asynchronous writer
+    // -----------------------------------------------------------------------
+
+    @Test
+    public void testAsyncWriterKeepsOrderAcrossStreams() {
+        Properties properties = new Properties();
+        properties.setProperty(Default.ASYNC_PROPERTY_KEY, "true");
+        Default logger = new Default();
+        logger.initialize(new Simple(), properties);
+        logger.configure(false);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(bos, true);
+        logger.setWriter(LogManager.STREAM_TYPE.stdout, ps);
+        logger.setWriter(LogManager.STREAM_TYPE.stderr, ps);
+        logger.setLevel(LogManager.DEBUG_MESSAGE_LEVEL);
+        logger.logEventStart("test.default.logger", "logger", "async");
+
+        for (int i = 0; i < 500; i++) {
+            logger.log("line {}", i, LogManager.DEBUG_MESSAGE_LEVEL);
+        }
+        logger.log("last line", LogManager.WARNING_MESSAGE_LEVEL);
+        logger.flush();
+
+        String[] lines = bos.toString().split(System.lineSeparator());
+        assertThat(lines.length, is(502));
+        for (int i = 0; i < 500; i++) {
+            assertThat(lines[i + 1], startsWith("[DEBUG]"));
+            assertThat(lines[i + 1], containsString(" line " + i + " "));
+        }
+        assertThat(lines[501], startsWith("[WARNING]"));
+        assertThat(lines[501], containsString("last line"));
+    }
+
+    @Test
+    public void testAsyncWriterWritesErrorsBeforeReturning() {
+        Properties properties = new Properties();
+        properties.setProperty(Default.ASYNC_PROPERTY_KEY, "true");
+        Default logger = new Default();
+        logger.initialize(new Simple(), properties);
+        logger.configure(false);
+        logger.setWriter(LogManager.STREAM_TYPE.stderr, new PrintStream(mErrCapture, true));
+        logger.logEventStart("test.default.logger", "logger", "async");
+
+        logger.log("async-error", LogManager.ERROR_MESSAGE_LEVEL);
+        assertThat(mErrCapture.toString(), containsString("async-error"));
+    }
+
+    @Test
+    public void testAsyncWriterSharedByLoggers() {
+        Properties properties = new Properties();
+        properties.setProperty(Default.ASYNC_PROPERTY_KEY, "true");
+        for (int i = 0; i < 5; i++) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            PrintStream ps = new PrintStream(bos, true);
+            LogManager logger = new Default();
+            logger.initialize(new Simple(), properties);
+            logger.configure(false);
+            logger.setWriter(LogManager.STREAM_TYPE.stdout, ps);
+            logger.setLevel(LogManager.DEBUG_MESSAGE_LEVEL);
+            logger.logEventStart("test.default.logger", "logger", Integer.toString(i));
+            for (int j = 0; j < 100; j++) {
+                logger.log("line " + j, LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+            // all the lines are written before the stream is closed
+            logger.flush();
+            ps.close();
+            assertThat(bos.toString().split(System.lineSeparator()).length, is(101));
+        }
+
+        int writers = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("pegasus-log-writer")) {
+                writers++;
+            }
+        }
+        assertThat(writers, is(1));
+    }
 }
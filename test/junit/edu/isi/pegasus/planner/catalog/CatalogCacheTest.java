@@ -0,0 +1,118 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for the CatalogCache. */
+public class CatalogCacheTest {
+
+    @TempDir Path mDir;
+
+    private int mLoads = 0;
+
+    @AfterEach
+    public void tearDown() {
+        CatalogCache.disable();
+    }
+
+    @Test
+    public void testDisabledAlwaysLoads() throws IOException {
+        File file = this.write("a");
+        this.lookup(file, "key");
+        this.lookup(file, "key");
+        assertThat(mLoads, is(2));
+    }
+
+    @Test
+    public void testEnabledLoadsOnce() throws IOException {
+        CatalogCache.enable();
+        File file = this.write("a");
+        List<String> first = this.lookup(file, "key");
+        List<String> second = this.lookup(file, "key");
+        assertThat(mLoads, is(1));
+        assertThat(second, is(first));
+        assertThat(second, not(sameInstance(first)));
+    }
+
+    @Test
+    public void testCopiesAreIndependent() throws IOException {
+        CatalogCache.enable();
+        File file = this.write("a");
+        this.lookup(file, "key").add("modified");
+        assertThat(this.lookup(file, "key").size(), is(1));
+    }
+
+    @Test
+    public void testKeysAreCachedSeparately() throws IOException {
+        CatalogCache.enable();
+        File file = this.write("a");
+        this.lookup(file, "one");
+        this.lookup(file, "two");
+        this.lookup(file, "one");
+        assertThat(mLoads, is(2));
+    }
+
+    @Test
+    public void testReloadsOnChange() throws IOException {
+        CatalogCache.enable();
+        File file = this.write("a");
+        this.lookup(file, "key");
+        file = this.write("bb");
+        assertThat(this.lookup(file, "key").get(0), is("bb"));
+        assertThat(mLoads, is(2));
+    }
+
+    @Test
+    public void testDisableClears() throws IOException {
+        CatalogCache.enable();
+        File file = this.write("a");
+        this.lookup(file, "key");
+        CatalogCache.disable();
+        CatalogCache.enable();
+        this.lookup(file, "key");
+        assertThat(mLoads, is(2));
+    }
+
+    private File write(String contents) throws IOException {
+        Path path = mDir.resolve("catalog.yml");
+        Files.write(path, contents.getBytes());
+        return path.toFile();
+    }
+
+    private List<String> lookup(File file, String key) throws IOException {
+        return CatalogCache.lookup(
+                file,
+                key,
+                () -> {
+                    mLoads++;
+                    return new ArrayList<String>(Files.readAllLines(file.toPath()));
+                },
+                list -> new ArrayList<String>(list));
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for the DirectoryScanner. */
+public class DirectoryScannerTest {
+
+    @TempDir File tempDir;
+
+    @Test
+    public void testParallelScanMatchesSequentialScan() throws IOException {
+        File root = createTree();
+
+        List<String> sequential = relativePaths(new DirectoryScanner(1).scan(root));
+        assertThat(
+                sequential,
+                containsInAnyOrder(
+                        "f.a",
+                        "D1" + File.separator + "f.b",
+                        "D1" + File.separator + "D2" + File.separator + "f.c",
+                        "D3" + File.separator + "f.d"));
+        assertThat(relativePaths(new DirectoryScanner(4).scan(root)), is(sequential));
+
+        DirectoryScanner.Entry entry = new DirectoryScanner(1).scan(new File(root, "D3")).get(0);
+        assertThat(entry.getName(), is("f.d"));
+        assertThat(entry.getRelativePath(), is("f.d"));
+        assertThat(entry.getPath(), is(new File(root, "D3/f.d").getAbsolutePath()));
+    }
+
+    @Test
+    public void testCheckExecutable() throws IOException {
+        File root = createTree();
+        File executable = new File(root, "D1/f.b");
+        assertThat(executable.setExecutable(true), is(true));
+
+        DirectoryScanner scanner = new DirectoryScanner(1);
+        scanner.setCheckExecutable(true);
+        for (DirectoryScanner.Entry entry : scanner.scan(root)) {
+            assertThat(entry.getName(), entry.isExecutable(), is(entry.getName().equals("f.b")));
+        }
+        for (DirectoryScanner.Entry entry : new DirectoryScanner(1).scan(root)) {
+            assertThat(entry.isExecutable(), is(false));
+        }
+    }
+
+    @Test
+    public void testUnchangedDirectoriesReusedFromIndex() throws IOException {
+        File root = createTree();
+        File index = new File(tempDir, "index.json");
+
+        DirectoryScanner scanner = new DirectoryScanner(2);
+        List<String> expected = relativePaths(scanner.scan(root));
+        assertThat(scanner.getReusedDirectories(), is(0));
+        scanner.writeIndex(index);
+
+        scanner = new DirectoryScanner(2);
+        assertThat(scanner.loadIndex(index), is(4));
+        assertThat(relativePaths(scanner.scan(root)), is(expected));
+        assertThat(scanner.getReusedDirectories(), is(4));
+
+        // only the modified directory is read again
+        Path d2 = new File(root, "D1/D2").toPath();
+        Files.write(d2.resolve("f.e"), "e".getBytes());
+        age(d2.toFile(), 2);
+        scanner = new DirectoryScanner(2);
+        scanner.loadIndex(index);
+        assertThat(
+                relativePaths(scanner.scan(root)),
+                hasItem("D1" + File.separator + "D2" + File.separator + "f.e"));
+        assertThat(scanner.getReusedDirectories(), is(3));
+    }
+
+    @Test
+    public void testRecentlyModifiedDirectoriesNotIndexed() throws IOException {
+        File root = createTree();
+        Files.write(new File(root, "D3/f.f").toPath(), "f".getBytes());
+        File index = new File(tempDir, "index.json");
+
+        DirectoryScanner scanner = new DirectoryScanner(1);
+        scanner.scan(root);
+        scanner.writeIndex(index);
+
+        scanner = new DirectoryScanner(1);
+        assertThat(scanner.loadIndex(index), is(3));
+    }
+
+    @Test
+    public void testIndexRetainsOtherDirectories() throws IOException {
+        File root = createTree();
+        File index = new File(tempDir, "index.json");
+
+        DirectoryScanner scanner = new DirectoryScanner(1);
+        scanner.scan(new File(root, "D1"));
+        scanner.writeIndex(index);
+
+        scanner = new DirectoryScanner(1);
+        scanner.loadIndex(index);
+        scanner.scan(new File(root, "D3"));
+        scanner.writeIndex(index);
+
+        scanner = new DirectoryScanner(1);
+        assertThat(scanner.loadIndex(index), is(3));
+    }
+
+    /**
+     * Creates a directory hierarchy, with the modification times of the directories in the past.
+     */
+    private File createTree() throws IOException {
+        File root = new File(tempDir, "input");
+        Path d2 = Files.createDirectories(root.toPath().resolve("D1").resolve("D2"));
+        Path d3 = Files.createDirectories(root.toPath().resolve("D3"));
+        Files.write(root.toPath().resolve("f.a"), "a".getBytes());
+        Files.write(root.toPath().resolve("D1").resolve("f.b"), "b".getBytes());
+        Files.write(d2.resolve("f.c"), "c".getBytes());
+        Files.write(d3.resolve("f.d"), "d".getBytes());
+        for (String dir : new String[] {"", "D1", "D1/D2", "D3"}) {
+            age(new File(root, dir), 1);
+        }
+        return root;
+    }
+
+    private void age(File directory, int hours) throws IOException {
+        Files.setLastModifiedTime(
+                directory.toPath(),
+                FileTime.fromMillis(System.currentTimeMillis() - hours * 3600 * 1000L));
+    }
+
+    private List<String> relativePaths(List<DirectoryScanner.Entry> entries) {
+        List<String> paths = new ArrayList<String>();
+        for (DirectoryScanner.Entry entry : entries) {
+            paths.add(entry.getRelativePath());
+        }
+        return paths;
+    }
+}
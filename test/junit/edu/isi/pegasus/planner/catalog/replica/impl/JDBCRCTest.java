@@ -321,6 +321,64 @@ public class JDBCRCTest {
         assertThat(map.size(), is(1));
     }
 
+    @Test
+    public void bulkLookup() {
+        HashMap attr = new HashMap();
+        attr.put(ReplicaCatalogEntry.RESOURCE_HANDLE, "x");
+        attr.put("k", "v");
+        jdbcrc.insert("a", new ReplicaCatalogEntry("b", attr));
+        jdbcrc.insert("a", new ReplicaCatalogEntry("c", "y"));
+
+        // more lfns than fit into a single IN clause
+        Set<String> lfns = new HashSet<String>();
+        for (int i = 0; i < 1200; i++) {
+            jdbcrc.insert("f" + i, new ReplicaCatalogEntry("p" + i, "x"));
+            lfns.add("f" + i);
+        }
+        lfns.add("a");
+        lfns.add("missing");
+
+        Map<String, Collection<ReplicaCatalogEntry>> result = jdbcrc.lookup(lfns);
+        assertThat(result.size(), is(1202));
+        assertThat(result.get("missing").isEmpty(), is(true));
+        assertThat(result.get("a").size(), is(2));
+        assertThat(result.get("a").contains(new ReplicaCatalogEntry("b", attr)), is(true));
+        // the attributes are associated with the lfn
+        HashMap attr2 = new HashMap(attr);
+        attr2.put(ReplicaCatalogEntry.RESOURCE_HANDLE, "y");
+        assertThat(result.get("a").contains(new ReplicaCatalogEntry("c", attr2)), is(true));
+        assertThat(result.get("f1199").contains(new ReplicaCatalogEntry("p1199", "x")), is(true));
+
+        result = jdbcrc.lookup(lfns, "y");
+        assertThat(result.get("a").size(), is(1));
+        assertThat(result.get("f0").isEmpty(), is(true));
+
+        Map<String, Set<String>> pfns = jdbcrc.lookupNoAttributes(lfns, "x");
+        assertThat(pfns.get("a"), is((Set<String>) new TreeSet<String>(Arrays.asList("b"))));
+        assertThat(pfns.get("f7").contains("p7"), is(true));
+    }
+
+    @Test
+    public void bulkInsert() {
+        jdbcrc.insert("a", new ReplicaCatalogEntry("b", "x"));
+
+        Map<String, List<ReplicaCatalogEntry>> entries =
+                new HashMap<String, List<ReplicaCatalogEntry>>();
+        HashMap attr = new HashMap();
+        attr.put(ReplicaCatalogEntry.RESOURCE_HANDLE, "x");
+        attr.put("k", "v");
+        entries.put("a", Arrays.asList(new ReplicaCatalogEntry("b", attr)));
+        for (int i = 0; i < 1200; i++) {
+            entries.put("f" + i, Arrays.asList(new ReplicaCatalogEntry("p" + i, "x")));
+        }
+        assertThat(jdbcrc.insert(entries), is(1201));
+
+        Collection<ReplicaCatalogEntry> c = jdbcrc.lookup("a");
+        assertThat(c.size(), is(1));
+        assertThat(c.contains(new ReplicaCatalogEntry("b", attr)), is(true));
+        assertThat(jdbcrc.lookup("f1100", "x"), is("p1100"));
+    }
+
     @AfterEach
     public void tearDown() {
         if (jdbcrc != null) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2007-2014 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Test class for the index over the regex LFNs in the Regex RC
+ */
+public class RegexIndexTest {
+
+    @Test
+    public void testLiteralPrefixAndSuffix() {
+        assertThat(literals("f\\.a"), is(Arrays.asList("f.a", "f.a")));
+        assertThat(literals("run(\\d+)\\.dat"), is(Arrays.asList("run", ".dat")));
+        assertThat(literals("data/[a-z]+/out.txt"), is(Arrays.asList("data/", "txt")));
+        assertThat(literals(".*\\.fits"), is(Arrays.asList("", ".fits")));
+    }
+
+    @Test
+    public void testQuantifiedLiteralsAreNotPartOfPrefix() {
+        assertThat(literals("ab*c"), is(Arrays.asList("a", "c")));
+        assertThat(literals("ab?"), is(Arrays.asList("a", "")));
+        assertThat(literals("ab{2,3}cd"), is(Arrays.asList("a", "cd")));
+        assertThat(literals("a(bc)*"), is(Arrays.asList("a", "")));
+    }
+
+    @Test
+    public void testUnsupportedConstructsAreNotIndexed() {
+        assertThat(literals("a|b"), is(nullValue()));
+        assertThat(literals("(?i)abc"), is(nullValue()));
+        assertThat(literals("\\Qa.b\\E"), is(nullValue()));
+        assertThat(literals("\\x41bc"), is(nullValue()));
+        assertThat(literals("abc[d"), is(nullValue()));
+    }
+
+    @Test
+    public void testCandidatesInCatalogOrder() {
+        Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>();
+        for (String regex : new String[] {"a.*", ".*", "ab.*", ".*b", "x.*"}) {
+            patterns.put(regex, Pattern.compile(regex));
+        }
+        RegexIndex index = new RegexIndex(patterns);
+        index.update(patterns);
+
+        assertThat(toList(index.candidates("ab")), is(Arrays.asList(0, 1, 2, 3)));
+        assertThat(toList(index.candidates("xb")), is(Arrays.asList(1, 3, 4)));
+        assertThat(toList(index.candidates("")), is(Arrays.asList(1)));
+    }
+
+    @Test
+    public void testLookupMatchesLinearScan() {
+        Random random = new Random(7);
+        String[] templates = {
+            "f%d\\.a", "run%d_(\\d+)\\.dat", ".*\\.f%d", "d%d/.*", "[a-c]%d.*", "(x|y)%d", "f%d.*",
+            "(?i)F%d\\.B"
+        };
+        Regex regex = new Regex();
+        regex.connect("regex-index-test.txt");
+        Map<String, Pattern> expected = new LinkedHashMap<String, Pattern>();
+        for (int i = 0; i < 400; i++) {
+            String lfn = String.format(templates[random.nextInt(templates.length)], i % 50);
+            Map<String, Object> attr = new HashMap<String, Object>();
+            attr.put(Regex.REGEX_KEY, "true");
+            attr.put(ReplicaCatalogEntry.RESOURCE_HANDLE, (i % 2 == 0) ? "local" : "remote");
+            regex.insert(lfn, new ReplicaCatalogEntry("file:///p" + i + "/[0]", attr));
+            if (!expected.containsKey(lfn)) {
+                expected.put(lfn, Pattern.compile(lfn));
+            }
+        }
+
+        Set<String> lfns = new HashSet<String>();
+        for (int i = 0; i < 2000; i++) {
+            int n = random.nextInt(60);
+            String[] candidates = {
+                "f" + n + ".a", "run" + n + "_12.dat", "x.f" + n, "d" + n + "/z", "b" + n + "q",
+                "y" + n, "F" + n + ".b", "f" + n + "zz", "nomatch" + n
+            };
+            String lfn = candidates[random.nextInt(candidates.length)];
+            lfns.add(lfn);
+
+            // first match semantics
+            Collection<ReplicaCatalogEntry> actual = regex.lookup(lfn);
+            String first = null;
+            for (Map.Entry<String, Pattern> e : expected.entrySet()) {
+                if (e.getValue().matcher(lfn).matches()) {
+                    first = e.getKey();
+                    break;
+                }
+            }
+            if (first == null) {
+                assertThat(lfn, actual.isEmpty(), is(true));
+            } else {
+                assertThat(lfn, actual.size(), is(regex.m_lfn_regex.get(first).size()));
+            }
+
+            // all matches with a handle
+            int all = 0;
+            for (Map.Entry<String, Pattern> e : expected.entrySet()) {
+                if (e.getValue().matcher(lfn).matches()) {
+                    for (ReplicaCatalogEntry rce : regex.m_lfn_regex.get(e.getKey())) {
+                        all += "local".equals(rce.getResourceHandle()) ? 1 : 0;
+                    }
+                }
+            }
+            assertThat(lfn, regex.lookupWithHandle(lfn, "local").size(), is(all));
+        }
+
+        // the bulk lookup agrees with the single lookups
+        Map<String, Collection<ReplicaCatalogEntry>> bulk = regex.lookup(lfns, "remote");
+        for (String lfn : lfns) {
+            List<String> pfns = new ArrayList<String>();
+            for (ReplicaCatalogEntry rce : regex.lookup(lfn)) {
+                if ("remote".equals(rce.getResourceHandle())) {
+                    pfns.add(rce.getPFN());
+                }
+            }
+            List<String> actual = new ArrayList<String>();
+            for (ReplicaCatalogEntry rce : bulk.get(lfn)) {
+                actual.add(rce.getPFN());
+            }
+            assertThat(lfn, actual, is(pfns));
+        }
+    }
+
+    private List<String> literals(String regex) {
+        String[] result = RegexIndex.literals(regex);
+        return (result == null) ? null : Arrays.asList(result);
+    }
+
+    private List<Integer> toList(int[] values) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int v : values) {
+            result.add(v);
+        }
+        return result;
+    }
+}
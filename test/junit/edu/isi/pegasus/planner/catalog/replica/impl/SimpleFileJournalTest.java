@@ -0,0 +1,214 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/** Tests for the journaled mode of the SimpleFile replica catalog. */
+public class SimpleFileJournalTest {
+
+    @TempDir File tempDir;
+
+    @Test
+    public void testInsertsAppendedToJournal() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        Files.write(rc.toPath(), "f.a file:///input/f.a site=\"local\"\n".getBytes());
+
+        SimpleFile catalog = connect(rc, 100);
+        catalog.insert("f.b", new ReplicaCatalogEntry("file:///output/f.b", "local"));
+        catalog.insert("f b", new ReplicaCatalogEntry("file:///output/f%20b", "local"));
+        catalog.close();
+
+        // the catalog file is not rewritten
+        assertThat(
+                new String(Files.readAllBytes(rc.toPath())),
+                is("f.a file:///input/f.a site=\"local\"\n"));
+        List<String> journal = readJournal(rc);
+        assertThat(
+                journal,
+                contains(
+                        "+ f.b file:///output/f.b site=\"local\"",
+                        "+ \"f b\" file:///output/f%20b site=\"local\""));
+
+        catalog = connect(rc, 100);
+        assertThat(list(catalog), containsInAnyOrder("f.a", "f.b", "f b"));
+        assertThat(catalog.lookup("f b", "local"), is("file:///output/f%20b"));
+        catalog.close();
+    }
+
+    @Test
+    public void testInsertsDoNotReadCatalog() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        // the variable cannot be expanded, if the catalog is read
+        Files.write(rc.toPath(), "f.a file:///${UNDEFINED_VARIABLE}/f.a\n".getBytes());
+
+        SimpleFile catalog = connect(rc, 100);
+        assertThat(catalog.insert("f.b", "file:///output/f.b", "local"), is(1));
+        catalog.close();
+        assertThat(readJournal(rc), contains("+ f.b file:///output/f.b site=\"local\""));
+    }
+
+    @Test
+    public void testConcurrentConnectionsDoNotClobber() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        SimpleFile first = connect(rc, 100);
+        SimpleFile second = connect(rc, 100);
+        first.insert("f.a", new ReplicaCatalogEntry("file:///output/f.a", "local"));
+        second.insert("f.b", new ReplicaCatalogEntry("file:///output/f.b", "local"));
+        first.close();
+        second.close();
+
+        SimpleFile catalog = connect(rc, 100);
+        assertThat(list(catalog), containsInAnyOrder("f.a", "f.b"));
+        catalog.close();
+    }
+
+    @Test
+    public void testDeletesReplayed() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        SimpleFile catalog = connect(rc, 100);
+        catalog.insert("f.a", new ReplicaCatalogEntry("file:///output/f.a", "local"));
+        catalog.insert("f.a", new ReplicaCatalogEntry("gsiftp://remote/f.a", "remote"));
+        catalog.insert("f.b", new ReplicaCatalogEntry("file:///output/f.b", "local"));
+        catalog.insert("f.c", new ReplicaCatalogEntry("file:///output/f.c", "local"));
+        catalog.close();
+
+        catalog = connect(rc, 100);
+        assertThat(catalog.delete("f.a", "file:///output/f.a"), is(1));
+        assertThat(catalog.remove("f.b"), is(1));
+        catalog.close();
+
+        catalog = connect(rc, 100);
+        assertThat(list(catalog), containsInAnyOrder("f.a", "f.c"));
+        Collection<ReplicaCatalogEntry> c = catalog.lookup("f.a");
+        assertThat(c, contains(new ReplicaCatalogEntry("gsiftp://remote/f.a", "remote")));
+        catalog.clear();
+        catalog.close();
+
+        catalog = connect(rc, 100);
+        assertThat(list(catalog), is(empty()));
+        catalog.close();
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        SimpleFile catalog = connect(rc, 2);
+        catalog.insert("f.a", new ReplicaCatalogEntry("file:///output/f.a", "local"));
+        catalog.insert("f.b", new ReplicaCatalogEntry("file:///output/f.b", "local"));
+        catalog.close();
+        assertThat(readJournal(rc).size(), is(2));
+
+        // crossing the threshold compacts the journal into the catalog file
+        catalog = connect(rc, 2);
+        catalog.remove("f.a");
+        catalog.close();
+        assertThat(readJournal(rc), is(empty()));
+        List<String> lines = Files.readAllLines(rc.toPath());
+        assertThat(lines.size(), is(2));
+        assertThat(lines.get(1), is("f.b file:///output/f.b site=\"local\""));
+
+        catalog = connect(rc, 2);
+        assertThat(list(catalog), contains("f.b"));
+        catalog.close();
+    }
+
+    @Test
+    public void testDeleteRetainsConcurrentInserts() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        SimpleFile catalog = connect(rc, 100);
+        catalog.insert("f.a", new ReplicaCatalogEntry("file:///output/f.a", "local"));
+        catalog.insert("f.a", new ReplicaCatalogEntry("gsiftp://remote/f.a", "remote"));
+        catalog.close();
+
+        SimpleFile deleting = connect(rc, 100);
+        assertThat(deleting.delete("f.a", "file:///output/f.a"), is(1));
+        SimpleFile inserting = connect(rc, 100);
+        inserting.insert("f.a", new ReplicaCatalogEntry("file:///scratch/f.a", "scratch"));
+        inserting.close();
+        deleting.close();
+        assertThat(readJournal(rc), hasItem("~ f.a file:///output/f.a site=\"local\""));
+
+        catalog = connect(rc, 100);
+        Collection<ReplicaCatalogEntry> c = catalog.lookup("f.a");
+        assertThat(
+                c,
+                containsInAnyOrder(
+                        new ReplicaCatalogEntry("gsiftp://remote/f.a", "remote"),
+                        new ReplicaCatalogEntry("file:///scratch/f.a", "scratch")));
+        assertThat(catalog.delete("f.a", "gsiftp://remote/f.a"), is(1));
+        assertThat(catalog.delete("f.a", "file:///scratch/f.a"), is(1));
+        catalog.close();
+
+        catalog = connect(rc, 100);
+        assertThat(list(catalog), is(empty()));
+        catalog.close();
+    }
+
+    @Test
+    public void testInsertOnlyConnectionsCompact() throws IOException {
+        File rc = new File(tempDir, "replicas.txt");
+        for (String lfn : new String[] {"f.a", "f.b"}) {
+            SimpleFile catalog = connect(rc, 2);
+            catalog.insert(lfn, new ReplicaCatalogEntry("file:///output/" + lfn, "local"));
+            catalog.close();
+        }
+        assertThat(readJournal(rc).size(), is(2));
+
+        // the journal appended to by the other connections counts towards the threshold
+        SimpleFile catalog = connect(rc, 2);
+        catalog.insert("f.c", new ReplicaCatalogEntry("file:///output/f.c", "local"));
+        catalog.close();
+        assertThat(readJournal(rc), is(empty()));
+        assertThat(Files.readAllLines(rc.toPath()).size(), is(4));
+
+        catalog = connect(rc, 2);
+        assertThat(list(catalog), contains("f.a", "f.b", "f.c"));
+        catalog.close();
+    }
+
+    private SimpleFile connect(File rc, int threshold) {
+        Properties props = new Properties();
+        props.setProperty("file", rc.getAbsolutePath());
+        props.setProperty(SimpleFile.JOURNAL_KEY, "true");
+        props.setProperty(SimpleFile.JOURNAL_COMPACTION_THRESHOLD_KEY, String.valueOf(threshold));
+        SimpleFile catalog = new SimpleFile();
+        catalog.connect(props);
+        return catalog;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> list(SimpleFile catalog) {
+        return catalog.list();
+    }
+
+    private List<String> readJournal(File rc) throws IOException {
+        return Files.readAllLines(
+                new File(rc.getPath() + SimpleFileJournal.JOURNAL_FILE_SUFFIX).toPath());
+    }
+}
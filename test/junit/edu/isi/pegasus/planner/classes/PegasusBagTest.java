@@ -26,6 +26,7 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.Mapper;
+import edu.isi.pegasus.planner.common.LocalFileSystem;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.mapper.MapperException;
 import edu.isi.pegasus.planner.mapper.StagingMapper;
@@ -314,6 +315,20 @@ public class PegasusBagTest {
         assertThat(bag.getPlannerDirectory(), is(dir));
     }
 
+    @Test
+    public void testDefaultLocalFileSystem() {
+        PegasusBag bag = new PegasusBag();
+        assertThat(bag.getLocalFileSystem(), is(notNullValue()));
+    }
+
+    @Test
+    public void testAddLocalFileSystem() {
+        PegasusBag bag = new PegasusBag();
+        LocalFileSystem fs = new LocalFileSystem();
+        bag.add(PegasusBag.LOCAL_FILE_SYSTEM, fs);
+        assertThat(bag.getLocalFileSystem(), is(sameInstance(fs)));
+    }
+
     @Test
     public void testAddInvalidTypeForKeyThrowsRuntimeException() {
         PegasusBag bag = new PegasusBag();
@@ -396,7 +411,7 @@ public class PegasusBagTest {
 
     @Test
     public void testPegasusInfoArrayHasCorrectSize() {
-        assertThat(PegasusBag.PEGASUS_INFO.length, is(15));
+        assertThat(PegasusBag.PEGASUS_INFO.length, is(16));
     }
 
     @Test
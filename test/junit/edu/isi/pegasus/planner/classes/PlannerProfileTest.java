@@ -0,0 +1,143 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.classes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Tests for the PlannerProfile */
+public class PlannerProfileTest {
+
+    @TempDir Path mTempDir;
+
+    @Test
+    public void testPhaseCountsNodesAndEdgesAdded() {
+        PlannerProfile profile = new PlannerProfile();
+        ADag dag = new ADag();
+        dag.add(createJob("a"));
+
+        profile.start("phase", dag);
+        dag.add(createJob("b"));
+        dag.add(createJob("c"));
+        dag.addNewRelation("a", "b");
+        dag.addNewRelation("a", "c");
+        PlannerProfile.Phase phase = profile.complete(dag);
+
+        assertThat(phase.getName(), is("phase"));
+        assertThat(phase.getNodes(), is(3));
+        assertThat(phase.getEdges(), is(2));
+        assertThat(phase.getNodesAdded(), is(2));
+        assertThat(phase.getEdgesAdded(), is(2));
+        assertThat(phase.getWallTime(), greaterThanOrEqualTo(0.0));
+        assertThat(profile.getPhases(), contains(phase));
+    }
+
+    @Test
+    public void testPhaseMeasuresAllocatedBytes() {
+        PlannerProfile profile = new PlannerProfile();
+        profile.start("allocate", null);
+        long[] allocated = new long[1 << 20];
+        PlannerProfile.Phase phase = profile.complete(null);
+
+        assertThat(allocated.length, is(1 << 20));
+        if (phase.getAllocatedBytes() != -1) {
+            assertThat(phase.getAllocatedBytes(), greaterThanOrEqualTo(8L << 20));
+        }
+        assertThat(phase.getNodes(), is(0));
+        assertThat(phase.getEdges(), is(0));
+    }
+
+    @Test
+    public void testNestedPhasesCompleteInnermostFirst() {
+        PlannerProfile profile = new PlannerProfile();
+        profile.start("outer", null);
+        profile.start("inner", null);
+        profile.complete(null);
+        profile.complete(null);
+
+        assertThat(profile.getPhases().size(), is(2));
+        assertThat(profile.getPhases().get(0).getName(), is("inner"));
+        assertThat(profile.getPhases().get(1).getName(), is("outer"));
+        assertThat(
+                profile.getPhase("outer").getWallTime(),
+                greaterThanOrEqualTo(profile.getPhase("inner").getWallTime()));
+        assertThat(profile.getPhase("none"), nullValue());
+    }
+
+    @Test
+    public void testCompleteWithoutStartThrows() {
+        PlannerProfile profile = new PlannerProfile();
+        assertThrows(IllegalStateException.class, () -> profile.complete(null));
+    }
+
+    @Test
+    public void testCountersAreIncremented() {
+        PlannerProfile profile = new PlannerProfile();
+        assertThat(profile.getCounter(PlannerProfile.RC_LOOKUPS_COUNTER), is(0L));
+        profile.increment(PlannerProfile.RC_LOOKUPS_COUNTER, 3);
+        profile.increment(PlannerProfile.RC_LOOKUPS_COUNTER, 4);
+        assertThat(profile.getCounter(PlannerProfile.RC_LOOKUPS_COUNTER), is(7L));
+    }
+
+    @Test
+    public void testWriteOutAsJson() throws Exception {
+        PlannerProfile profile = new PlannerProfile();
+        profile.start("event.pegasus.siteselection", null);
+        profile.complete(null);
+        profile.increment(PlannerProfile.DELETED_JOBS_COUNTER, 5);
+
+        File f = mTempDir.resolve("wf-0" + PlannerProfile.PROFILE_FILE_SUFFIX).toFile();
+        profile.writeOut(f);
+        String json = new String(Files.readAllBytes(f.toPath()), "UTF-8");
+
+        assertThat(json, containsString("\"name\": \"event.pegasus.siteselection\""));
+        assertThat(json, containsString("\"wall_time\""));
+        assertThat(json, containsString("\"cpu_time\""));
+        assertThat(json, containsString("\"allocated_bytes\""));
+        assertThat(json, containsString("\"edges_added\""));
+        assertThat(json, containsString("\"deleted_jobs\": 5"));
+        // the start values are internal to the profiler
+        assertThat(json, not(containsString("Start")));
+    }
+
+    @Test
+    public void testProfileIsPartOfPlannerMetricsJson() {
+        PlannerProfile profile = new PlannerProfile();
+        profile.start("event.pegasus.cluster", null);
+        profile.complete(null);
+
+        PlannerMetrics pm = new PlannerMetrics();
+        assertThat(pm.toJson(), not(containsString("planner_profile")));
+        pm.setPlannerProfile(profile);
+        assertThat(pm.getPlannerProfile(), sameInstance(profile));
+        assertThat(pm.toJson(), containsString("\"planner_profile\":{\"phases\":"));
+        assertThat(pm.toJson(), containsString("event.pegasus.cluster"));
+    }
+
+    private Job createJob(String name) {
+        Job job = new Job();
+        job.jobName = name;
+        job.logicalName = name;
+        job.jobClass = Job.COMPUTE_JOB;
+        return job;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.classes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import edu.isi.pegasus.planner.namespace.Pegasus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/** Tests for the WorkflowFingerprint */
+public class WorkflowFingerprintTest {
+
+    @TempDir Path mTempDir;
+
+    @Test
+    public void testUnchangedWorkflowHasNoChangedJobs() throws Exception {
+        ADag dag = createDiamond();
+        WorkflowFingerprint previous = compute(dag, new Properties());
+        WorkflowFingerprint current = compute(createDiamond(), new Properties());
+
+        assertThat(current.getEnvironmentDigest(), is(previous.getEnvironmentDigest()));
+        assertThat(current.getJobIDs(), containsInAnyOrder("a", "b", "c", "d"));
+        assertThat(current.getChangedJobs(dag, previous), empty());
+    }
+
+    @Test
+    public void testChangeCascadesToDescendants() throws Exception {
+        WorkflowFingerprint previous = compute(createDiamond(), new Properties());
+
+        ADag dag = createDiamond();
+        ((Job) dag.getNode("b").getContent()).setArguments("-o f.b -v");
+        WorkflowFingerprint current = compute(dag, new Properties());
+
+        assertThat(current.getJobDigest("a"), is(previous.getJobDigest("a")));
+        assertThat(current.getJobDigest("b"), not(previous.getJobDigest("b")));
+        assertThat(current.getChangedJobs(dag, previous), containsInAnyOrder("b", "d"));
+    }
+
+    @Test
+    public void testProfileAndFileChangesAreDetected() throws Exception {
+        WorkflowFingerprint previous = compute(createDiamond(), new Properties());
+
+        ADag dag = createDiamond();
+        ((Job) dag.getNode("c").getContent()).vdsNS.construct(Pegasus.RUNTIME_KEY, "100");
+        ((Job) dag.getNode("d").getContent()).addInputFile(new PegasusFile("f.extra"));
+        WorkflowFingerprint current = compute(dag, new Properties());
+
+        assertThat(current.getChangedJobs(dag, previous), containsInAnyOrder("c", "d"));
+    }
+
+    @Test
+    public void testNewJobIsChanged() throws Exception {
+        WorkflowFingerprint previous = compute(createDiamond(), new Properties());
+
+        ADag dag = createDiamond();
+        dag.add(createJob("e", Collections.singletonList("f.d"), "f.e"));
+        dag.addNewRelation("d", "e");
+        WorkflowFingerprint current = compute(dag, new Properties());
+
+        assertThat(current.getChangedJobs(dag, previous), containsInAnyOrder("e"));
+    }
+
+    @Test
+    public void testEnvironmentChangeChangesAllJobs() throws Exception {
+        ADag dag = createDiamond();
+        WorkflowFingerprint previous = compute(dag, new Properties());
+
+        Properties props = new Properties();
+        props.setProperty("pegasus.data.configuration", "condorio");
+        WorkflowFingerprint current = compute(dag, props);
+
+        assertThat(current.getEnvironmentDigest(), not(previous.getEnvironmentDigest()));
+        assertThat(current.getJobDigest("a"), is(previous.getJobDigest("a")));
+        assertThat(
+                current.getChangedJobs(dag, previous), containsInAnyOrder("a", "b", "c", "d"));
+    }
+
+    @Test
+    public void testCatalogFileChangeChangesEnvironment() throws Exception {
+        File catalog = mTempDir.resolve("sites.yml").toFile();
+        Files.write(catalog.toPath(), "pegasus: \"5.0\"\n".getBytes("UTF-8"));
+        ADag dag = createDiamond();
+        WorkflowFingerprint previous =
+                WorkflowFingerprint.compute(
+                        dag,
+                        new Properties(),
+                        new PlannerOptions(),
+                        Collections.singletonList(catalog));
+
+        Files.write(catalog.toPath(), "pegasus: \"5.0\"\nsites: []\n".getBytes("UTF-8"));
+        WorkflowFingerprint current =
+                WorkflowFingerprint.compute(
+                        dag,
+                        new Properties(),
+                        new PlannerOptions(),
+                        Collections.singletonList(catalog));
+
+        assertThat(current.getEnvironmentDigest(), not(previous.getEnvironmentDigest()));
+    }
+
+    @Test
+    public void testWriteOutAndLoad() throws Exception {
+        ADag dag = createDiamond();
+        WorkflowFingerprint fingerprint = compute(dag, new Properties());
+
+        File f = mTempDir.resolve("wf-0" + WorkflowFingerprint.FINGERPRINT_FILE_SUFFIX).toFile();
+        fingerprint.writeOut(f);
+        WorkflowFingerprint loaded = WorkflowFingerprint.loadFrom(f);
+
+        assertThat(loaded.getEnvironmentDigest(), is(fingerprint.getEnvironmentDigest()));
+        assertThat(loaded.getJobIDs(), is(fingerprint.getJobIDs()));
+        for (String id : fingerprint.getJobIDs()) {
+            assertThat(loaded.getJobDigest(id), is(fingerprint.getJobDigest(id)));
+        }
+        assertThat(fingerprint.getChangedJobs(dag, loaded), empty());
+    }
+
+    private WorkflowFingerprint compute(ADag dag, Properties props) throws Exception {
+        return WorkflowFingerprint.compute(
+                dag, props, new PlannerOptions(), Collections.<File>emptyList());
+    }
+
+    /** Creates a diamond a -> b,c -> d */
+    private ADag createDiamond() {
+        ADag dag = new ADag();
+        dag.add(createJob("a", Collections.<String>emptyList(), "f.a"));
+        dag.add(createJob("b", Collections.singletonList("f.a"), "f.b"));
+        dag.add(createJob("c", Collections.singletonList("f.a"), "f.c"));
+        dag.add(createJob("d", Arrays.asList("f.b", "f.c"), "f.d"));
+        dag.addNewRelation("a", "b");
+        dag.addNewRelation("a", "c");
+        dag.addNewRelation("b", "d");
+        dag.addNewRelation("c", "d");
+        return dag;
+    }
+
+    private Job createJob(String name, List<String> inputs, String output) {
+        Job job = new Job();
+        job.jobName = name;
+        job.logicalName = "keg";
+        job.jobClass = Job.COMPUTE_JOB;
+        job.setArguments("-o " + output);
+        for (String lfn : inputs) {
+            job.addInputFile(new PegasusFile(lfn));
+        }
+        PegasusFile out = new PegasusFile(output);
+        out.setLinkage(PegasusFile.LINKAGE.output);
+        job.addOutputFile(out);
+        return job;
+    }
+}
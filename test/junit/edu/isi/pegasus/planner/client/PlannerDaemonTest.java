@@ -0,0 +1,225 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.CatalogCache;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for the PlannerDaemon, that do not plan a workflow. */
+public class PlannerDaemonTest {
+
+    @TempDir Path mDir;
+
+    private PlannerDaemon mDaemon;
+
+    private File mStateFile;
+
+    private LogManager mLogger;
+
+    private PegasusProperties mProps;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        mStateFile = mDir.resolve("planner-daemon").toFile();
+        mProps = PegasusProperties.nonSingletonInstance();
+        mLogger = LogManagerFactory.loadSingletonInstance(mProps);
+        mLogger.logEventStart("test.planner.daemon", "daemon", "0");
+        this.start(new PlannerDaemon(mLogger, mProps));
+    }
+
+    /**
+     * Starts a daemon serving requests on a separate thread.
+     *
+     * @param daemon the daemon to start
+     */
+    private void start(final PlannerDaemon daemon) throws IOException {
+        mDaemon = daemon;
+        daemon.parseCommandLineArguments(
+                new String[] {"--state-file", mStateFile.getAbsolutePath(), "--threads", "2"});
+        daemon.start();
+        Thread t =
+                new Thread() {
+                    public void run() {
+                        daemon.serve();
+                    }
+                };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mDaemon.stop();
+        CatalogCache.disable();
+    }
+
+    @Test
+    public void testStateFile() throws IOException {
+        List<String> lines = Files.readAllLines(mStateFile.toPath());
+        assertThat(lines, hasItem("port=" + mDaemon.getPort()));
+        assertThat(lines, hasItem("token=" + mDaemon.getToken()));
+        assertThat(CatalogCache.isEnabled(), is(true));
+    }
+
+    @Test
+    public void testStateFileRemovedOnStop() {
+        mDaemon.stop();
+        assertThat(mStateFile.exists(), is(false));
+    }
+
+    @Test
+    public void testInvalidToken() throws IOException {
+        List<String> response = this.request("invalid", "--version");
+        assertThat(response.get(response.size() - 1), is(PlannerDaemon.EXITCODE_PREFIX + 1));
+        assertThat(response.get(0), containsString("Invalid token"));
+    }
+
+    @Test
+    public void testVersion() throws IOException {
+        List<String> response =
+                this.request(
+                        mDaemon.getToken(), "-Dpegasus.foo=bar", "-D", "pegasus.bar=baz", "-V");
+        assertThat(response.size(), is(2));
+        assertThat(response.get(1), is(PlannerDaemon.EXITCODE_PREFIX + 0));
+    }
+
+    @Test
+    public void testUnreadableProperties() throws IOException {
+        List<String> response =
+                this.request(mDaemon.getToken(), "--conf", "missing.properties", "--dir", "dags");
+        assertThat(response.get(response.size() - 1), is(PlannerDaemon.EXITCODE_PREFIX + 1));
+        assertThat(response.get(0), containsString("missing.properties"));
+    }
+
+    @Test
+    public void testIdleClientDisconnected() throws IOException {
+        mDaemon.setRequestTimeout(200);
+        List<String> response = new LinkedList<String>();
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), mDaemon.getPort());
+                BufferedReader in =
+                        new BufferedReader(
+                                new InputStreamReader(
+                                        s.getInputStream(), StandardCharsets.UTF_8))) {
+            // the client never sends the request
+            s.setSoTimeout(10000);
+            String line;
+            while ((line = in.readLine()) != null) {
+                response.add(line);
+            }
+        }
+        assertThat(response.get(response.size() - 1), is(PlannerDaemon.EXITCODE_PREFIX + 1));
+        assertThat(response.get(0), containsString("timed out"));
+    }
+
+    @Test
+    public void testSubWorkflowsPlannedOneAtATime() throws Exception {
+        final AtomicInteger planning = new AtomicInteger();
+        final AtomicInteger maxPlanning = new AtomicInteger();
+        mDaemon.stop();
+        this.start(
+                new PlannerDaemon(mLogger, mProps) {
+                    protected int runPlanner(
+                            String cwd,
+                            PegasusProperties props,
+                            String[] plannerOpts,
+                            PrintStream out) {
+                        int current = planning.incrementAndGet();
+                        maxPlanning.accumulateAndGet(current, Math::max);
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        planning.decrementAndGet();
+                        return 0;
+                    }
+                });
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<String>>> responses = new LinkedList<Future<List<String>>>();
+            for (int i = 0; i < 2; i++) {
+                responses.add(
+                        clients.submit(() -> this.request(mDaemon.getToken(), "--dir", "dags")));
+            }
+            for (Future<List<String>> response : responses) {
+                List<String> lines = response.get(10, TimeUnit.SECONDS);
+                assertThat(lines.get(lines.size() - 1), is(PlannerDaemon.EXITCODE_PREFIX + 0));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertThat(maxPlanning.get(), is(1));
+    }
+
+    private List<String> request(String token, String... args) throws IOException {
+        StringBuilder request = new StringBuilder();
+        request.append("{\"token\": \"").append(token).append("\", \"cwd\": \"");
+        request.append(mDir.toAbsolutePath()).append("\", \"args\": [");
+        for (int i = 0; i < args.length; i++) {
+            request.append((i == 0) ? "\"" : ", \"").append(args[i]).append("\"");
+        }
+        request.append("]}");
+
+        List<String> response = new LinkedList<String>();
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), mDaemon.getPort());
+                PrintWriter out =
+                        new PrintWriter(
+                                new java.io.OutputStreamWriter(
+                                        s.getOutputStream(), StandardCharsets.UTF_8),
+                                true);
+                BufferedReader in =
+                        new BufferedReader(
+                                new InputStreamReader(
+                                        s.getInputStream(), StandardCharsets.UTF_8))) {
+            out.println(request);
+            String line;
+            while ((line = in.readLine()) != null) {
+                response.add(line);
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.cluster;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Tests for the BinPacker class. */
+public class BinPackerTest {
+
+    @Test
+    public void testFirstFitDecreasing() {
+        BinPacker packer = new BinPacker(new double[] {2, 5, 4, 7, 1, 3, 8}, 10);
+        int[][] bins = packer.firstFitDecreasing();
+
+        // 8 7 5 4 3 2 1 -> [8,2] [7,3] [5,4,1]
+        assertThat(bins.length, is(3));
+        assertArrayEquals(new int[] {6, 0}, bins[0]);
+        assertArrayEquals(new int[] {3, 5}, bins[1]);
+        assertArrayEquals(new int[] {1, 2, 4}, bins[2]);
+        assertThat(packer.getUnpacked().length, is(0));
+    }
+
+    @Test
+    public void testEqualRuntimesKeepTheirOrder() {
+        BinPacker packer = new BinPacker(new double[] {5, 5, 5, 5}, 10);
+        int[][] bins = packer.firstFitDecreasing();
+
+        assertThat(bins.length, is(2));
+        assertArrayEquals(new int[] {0, 1}, bins[0]);
+        assertArrayEquals(new int[] {2, 3}, bins[1]);
+    }
+
+    @Test
+    public void testItemsLargerThanCapacityAreNotPacked() {
+        BinPacker packer = new BinPacker(new double[] {12, 3, 15, 4}, 10);
+        int[][] bins = packer.firstFitDecreasing();
+
+        assertThat(bins.length, is(1));
+        assertArrayEquals(new int[] {3, 1}, bins[0]);
+        assertArrayEquals(new int[] {0, 2}, packer.getUnpacked());
+    }
+
+    @Test
+    public void testFractionalRuntimes() {
+        BinPacker packer = new BinPacker(new double[] {0.75, 0.5, 0.25}, 1);
+        int[][] bins = packer.firstFitDecreasing();
+
+        assertThat(bins.length, is(2));
+        assertArrayEquals(new int[] {0, 2}, bins[0]);
+        assertArrayEquals(new int[] {1}, bins[1]);
+    }
+
+    @Test
+    public void testAdditiveDimensionLimitsBins() {
+        BinPacker packer = new BinPacker(new double[] {4, 3, 2, 1}, 10);
+        packer.addDimension(new double[] {2, 2, 2, 2}, BinPacker.AGGREGATION.sum, 4);
+        int[][] bins = packer.firstFitDecreasing();
+
+        assertThat(bins.length, is(2));
+        assertArrayEquals(new int[] {0, 1}, bins[0]);
+        assertArrayEquals(new int[] {2, 3}, bins[1]);
+    }
+
+    @Test
+    public void testPeakDimensionOnlyFiltersItems() {
+        BinPacker packer = new BinPacker(new double[] {4, 3, 2, 1}, 10);
+        packer.addDimension(new double[] {512, 2048, 1024, 1024}, BinPacker.AGGREGATION.max, 1024);
+        int[][] bins = packer.firstFitDecreasing();
+
+        assertThat(bins.length, is(1));
+        assertArrayEquals(new int[] {0, 2, 3}, bins[0]);
+        assertArrayEquals(new int[] {1}, packer.getUnpacked());
+    }
+
+    @Test
+    public void testLongestProcessingTimeFirst() {
+        BinPacker packer = new BinPacker(new double[] {7, 5, 4, 3, 3, 2}, Double.POSITIVE_INFINITY);
+        int[][] bins = packer.longestProcessingTimeFirst(2);
+
+        // 7 -> b0, 5 -> b1, 4 -> b1, 3 -> b0, 3 -> b1, 2 -> b0
+        assertThat(bins.length, is(2));
+        assertArrayEquals(new int[] {0, 3, 5}, bins[0]);
+        assertArrayEquals(new int[] {1, 2, 4}, bins[1]);
+    }
+
+    @Test
+    public void testLongestProcessingTimeFirstWithFewerItemsThanBins() {
+        BinPacker packer = new BinPacker(new double[] {1, 2}, Double.POSITIVE_INFINITY);
+        int[][] bins = packer.longestProcessingTimeFirst(5);
+
+        assertThat(bins.length, is(2));
+        assertThat(new BinPacker(new double[0], 1).longestProcessingTimeFirst(5).length, is(0));
+    }
+
+    @Test
+    public void testLongestProcessingTimeFirstOpensBinsWhenFull() {
+        BinPacker packer = new BinPacker(new double[] {1, 1, 1, 1, 1}, Double.POSITIVE_INFINITY);
+        packer.addDimension(new double[] {1, 1, 1, 1, 1}, BinPacker.AGGREGATION.sum, 2);
+        int[][] bins = packer.longestProcessingTimeFirst(2);
+
+        assertThat(bins.length, is(3));
+        for (int[] bin : bins) {
+            assertThat(bin.length, lessThanOrEqualTo(2));
+        }
+    }
+
+    @Test
+    public void testFirstFitDecreasingMatchesLinearScan() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int n = 1 + random.nextInt(500);
+            double[] runtimes = new double[n];
+            double[] memory = new double[n];
+            for (int i = 0; i < n; i++) {
+                runtimes[i] = random.nextInt(100);
+                memory[i] = random.nextInt(8);
+            }
+            BinPacker packer = new BinPacker(runtimes, 150);
+            packer.addDimension(memory, BinPacker.AGGREGATION.sum, 16);
+            int[][] bins = packer.firstFitDecreasing();
+
+            // replay the placement with a linear scan for the first bin with room
+            double[] time = new double[n];
+            double[] mem = new double[n];
+            int[] binOf = new int[n];
+            int open = 0;
+            for (int b = 0; b < bins.length; b++) {
+                for (int item : bins[b]) {
+                    binOf[item] = b;
+                }
+            }
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(runtimes[b], runtimes[a]));
+            for (int item : order) {
+                int b = 0;
+                while (b < open
+                        && (time[b] + runtimes[item] > 150 || mem[b] + memory[item] > 16)) {
+                    b++;
+                }
+                open = Math.max(open, b + 1);
+                time[b] += runtimes[item];
+                mem[b] += memory[item];
+                assertThat(binOf[item], is(b));
+            }
+            assertThat(bins.length, is(open));
+        }
+    }
+}
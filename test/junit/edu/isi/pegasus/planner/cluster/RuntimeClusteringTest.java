@@ -153,6 +153,31 @@ public class RuntimeClusteringTest {
         assertThat(bins.stream().mapToInt(List::size).sum(), is(jobCount));
     }
 
+    @Test
+    public void testMaxRunTimeRespectsMaxMemory() throws Exception {
+        List<Job> jobs = new LinkedList<Job>();
+        for (int i = 1; i <= 6; i++) {
+            Job j = runtimeJob("job" + i, i * 10);
+            j.vdsNS.construct(Pegasus.MEMORY_KEY, (i == 6) ? "4096" : "1024");
+            j.vdsNS.construct(Pegasus.CLUSTERS_MAX_MEMORY_KEY, "2048");
+            jobs.add(j);
+        }
+        setLogger(new NoOpLogManager());
+
+        Method method =
+                mCluster.getClass()
+                        .getDeclaredMethod("bestFitBinPack", List.class, double.class);
+        method.setAccessible(true);
+        List<List<Job>> bins = (List<List<Job>>) method.invoke(mCluster, jobs, 60d);
+
+        // job6 needs more memory than a clustered job has, and is not clustered
+        // 50 40 30 20 10 -> [50,10] [40,20] [30]
+        assertThat(bins.size(), is(3));
+        assertThat(bins.get(0).get(0).getID(), is("job5"));
+        assertThat(bins.get(0).get(1).getID(), is("job1"));
+        assertThat(bins.stream().mapToInt(List::size).sum(), is(5));
+    }
+
     @Test
     public void testGetRunTimeUsesPrimaryRuntimeKey() throws Exception {
         Job job = runtimeJob("j1", 42);
@@ -19,16 +19,54 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import edu.isi.pegasus.common.logging.LogFormatter;
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.util.Version;
+import edu.isi.pegasus.planner.catalog.site.SiteFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
+import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerCache;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.code.CodeGenerator;
 import edu.isi.pegasus.planner.code.CodeGeneratorException;
+import edu.isi.pegasus.planner.common.PegasusConfiguration;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.namespace.Condor;
+import edu.isi.pegasus.planner.namespace.Dagman;
+import edu.isi.pegasus.planner.parser.DAXParserFactory;
+import edu.isi.pegasus.planner.parser.dax.Callback;
+import edu.isi.pegasus.planner.parser.dax.DAXParser;
+import edu.isi.pegasus.planner.refiner.CreateDirectory;
+import edu.isi.pegasus.planner.refiner.DataReuseEngine;
+import edu.isi.pegasus.planner.refiner.DeployWorkerPackage;
+import edu.isi.pegasus.planner.refiner.InterPoolEngine;
+import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
+import edu.isi.pegasus.planner.refiner.TransferEngine;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /** Tests for CondorGenerator class. */
 public class CondorGeneratorTest {
@@ -100,8 +138,26 @@ public class CondorGeneratorTest {
         String concurrencyLimit(Job job) throws CodeGeneratorException {
             return getConcurrencyLimit(job);
         }
+
+        void setDagWriter(PrintWriter writer) {
+            mDagWriter = writer;
+        }
+    }
+
+    /**
+     * A generator that does not run condor_submit_dag on the generated .dag file, as condor may
+     * not be installed.
+     */
+    private static final class NoSubmitDAGCondorGenerator extends CondorGenerator {
+        @Override
+        protected void writeOutDAGManSubmitFile(ADag dag, File dagFile) {}
+
+        @Override
+        protected void condorDagCheck(ADag dag, File dagFile) {}
     }
 
+    @TempDir File mTempDir;
+
     @Test
     public void testCondorGeneratorImplementsCodeGenerator() {
         assertThat(CodeGenerator.class.isAssignableFrom(CondorGenerator.class), is(true));
@@ -212,4 +268,365 @@ public class CondorGeneratorTest {
         assertThat(knobs, containsString("MAXJOBS stagein 10"));
         assertThat(knobs, containsString("MAXJOBS stageout 10"));
     }
+
+    @Test
+    public void testWriteDAGEntriesPreservesOrderWhenSubmitFilesCompleteOutOfOrder()
+            throws Exception {
+        TestCondorGenerator gen = new TestCondorGenerator();
+        gen.setLogger(new NoOpLogManager());
+        StringWriter dag = new StringWriter();
+        gen.setDagWriter(new PrintWriter(dag));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            LinkedList<CondorGenerator.DAGEntry> pending =
+                    new LinkedList<CondorGenerator.DAGEntry>();
+            for (int i = 0; i < 8; i++) {
+                final Job job = new Job();
+                job.setName("job" + i);
+                final long delay = (8 - i) * 5;
+                // the dagman profiles are only set when the submit file is written
+                Future<String> rendered =
+                        pool.submit(
+                                () -> {
+                                    Thread.sleep(delay);
+                                    job.dagmanVariables.construct("retry", "3");
+                                    return null;
+                                });
+                pending.add(new CondorGenerator.DAGEntry(job, "My.", null, rendered));
+            }
+            gen.writeDAGEntries(pending, 0);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        LinkedList<String> retries = new LinkedList<String>();
+        for (String line : dag.toString().split("\\R")) {
+            if (line.startsWith("RETRY")) {
+                retries.add(line);
+            }
+        }
+        assertThat(retries.size(), is(8));
+        for (int i = 0; i < 8; i++) {
+            assertThat(retries.get(i), is("RETRY job" + i + " 3"));
+        }
+    }
+
+    @Test
+    public void testWriteDAGEntriesRethrowsSubmitFileException() {
+        TestCondorGenerator gen = new TestCondorGenerator();
+        gen.setLogger(new NoOpLogManager());
+        gen.setDagWriter(new PrintWriter(new StringWriter()));
+        Job job = new Job();
+        job.setName("failed");
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            LinkedList<CondorGenerator.DAGEntry> pending =
+                    new LinkedList<CondorGenerator.DAGEntry>();
+            Future<String> rendered =
+                    pool.submit(
+                            () -> {
+                                throw new CodeGeneratorException("unable to write");
+                            });
+            pending.add(new CondorGenerator.DAGEntry(job, "My.", null, rendered));
+
+            CodeGeneratorException exception =
+                    assertThrows(
+                            CodeGeneratorException.class, () -> gen.writeDAGEntries(pending, 0));
+            assertThat(exception.getMessage(), is("unable to write"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWriteDAGEntriesWritesInlineSubmitDescription() throws Exception {
+        TestCondorGenerator gen = new TestCondorGenerator();
+        gen.setLogger(new NoOpLogManager());
+        StringWriter dag = new StringWriter();
+        gen.setDagWriter(new PrintWriter(dag));
+        Job job = new Job();
+        job.setName("jobA");
+        job.dagmanVariables.construct(Dagman.JOB_KEY, "jobA.sub");
+
+        LinkedList<CondorGenerator.DAGEntry> pending = new LinkedList<CondorGenerator.DAGEntry>();
+        pending.add(
+                new CondorGenerator.DAGEntry(
+                        job,
+                        "My.",
+                        null,
+                        CompletableFuture.completedFuture("executable = /bin/true\nqueue\n")));
+        gen.writeDAGEntries(pending, 0);
+
+        assertThat(
+                dag.toString(),
+                startsWith(
+                        "SUBMIT-DESCRIPTION jobA.sub {\n"
+                                + "executable = /bin/true\n"
+                                + "queue\n"
+                                + "}"
+                                + System.lineSeparator()
+                                + "JOB jobA jobA.sub\n"));
+    }
+
+    @Test
+    public void testConcurrentCodeGenerationWritesSameFiles() throws Exception {
+        File dir = createBaseDirectory();
+        // the sub workflow jobs refer to pegasus-plan in the bin directory
+        String bindir = System.getProperty("pegasus.home.bindir");
+        System.setProperty("pegasus.home.bindir", new File("bin").getAbsolutePath());
+        try {
+            Map<String, String> sequential = generate(dir, 1);
+            assertThat(sequential.keySet(), hasItem("generator-0.dag"));
+            assertThat(sequential.keySet(), hasItem("00/00/pegasus-plan_sub.sub"));
+            assertThat(sequential.keySet(), hasItem("00/00/preprocess_ID1.sh"));
+            assertThat(sequential.get("00/00/preprocess_ID1.sub"), containsString(".sh"));
+            assertThat(generate(dir, 4), is(sequential));
+        } finally {
+            if (bindir == null) {
+                System.clearProperty("pegasus.home.bindir");
+            } else {
+                System.setProperty("pegasus.home.bindir", bindir);
+            }
+        }
+    }
+
+    /**
+     * Plans the workflow in a directory and generates the code for it, in the same sequence as the
+     * planner. Returns the contents of the .dag file, the submit files and the PegasusLite
+     * wrappers, indexed by their path relative to the submit directory. Each plan is generated
+     * into the same submit directory, with the same workflow id, so that the files can be
+     * compared byte for byte.
+     */
+    private Map<String, String> generate(File dir, int threads) throws Exception {
+        File submitDir = new File(new File(dir, "submit"), "run");
+        delete(submitDir);
+        submitDir.mkdirs();
+        PegasusProperties props =
+                PegasusProperties.getInstance(
+                        new File(dir, "pegasus.properties").getAbsolutePath());
+        props.setProperty("pegasus.code.generator.threads", Integer.toString(threads));
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        logger.logEventStart("test.code.generator", "generate", Integer.toString(threads));
+
+        File workflow = new File(dir, "workflow.yml");
+        PlannerOptions options = new PlannerOptions();
+        options.setLaunchDirectory(dir.getAbsolutePath());
+        options.setDAX(workflow.getAbsolutePath());
+        options.setExecutionSites("condorpool");
+        options.setOutputSites("local");
+        options.setSubmitDirectory(submitDir.getParent(), submitDir.getName());
+        options.setRandomDir(submitDir.getName());
+        PegasusConfiguration configurator = new PegasusConfiguration(logger);
+        configurator.loadConfigurationPropertiesAndOptions(props, options);
+        props.setPropertiesFileBackend(options.getSubmitDirectory());
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.PLANNER_DIRECTORY, dir);
+
+        DAXParser parser =
+                DAXParserFactory.loadDAXParser(
+                        bag, DAXParserFactory.DEFAULT_CALLBACK_CLASS, workflow.getAbsolutePath());
+        Callback callback = parser.getDAXCallback();
+        parser.parse(workflow.getAbsolutePath());
+        ADag dag = (ADag) callback.getConstructedObject();
+        dag.generateFlowName();
+        dag.setFlowTimestamp("20260101T000000+0000");
+        dag.setWorkflowUUID("8a7f7e2e-0000-4000-8000-000000000000");
+        dag.setRootWorkflowUUID("8a7f7e2e-0000-4000-8000-000000000000");
+        dag.getWorkflowMetrics().lockTaskMetrics(true);
+        dag.setWorkflowRefinementStarted(true);
+
+        Set<String> sites = new HashSet<String>();
+        sites.add("*");
+        SiteStore store = SiteFactory.loadSiteStore(sites, bag);
+        store.setForPlannerUse(props, options);
+        bag.add(PegasusBag.SITE_STORE, store);
+        bag.add(
+                PegasusBag.TRANSFORMATION_CATALOG,
+                TransformationFactory.loadInstanceWithStores(bag, dag));
+
+        ReplicaCatalogBridge rcb = new ReplicaCatalogBridge(dag, bag);
+        DataReuseEngine reuse = new DataReuseEngine(dag, bag);
+        dag = reuse.reduceWorkflow(dag, rcb);
+        InterPoolEngine ipEngine = new InterPoolEngine(dag, bag);
+        ipEngine.determineSites();
+        bag = ipEngine.getPegasusBag();
+        DeployWorkerPackage deploy = DeployWorkerPackage.loadDeployWorkerPackage(bag);
+        deploy.initialize(dag);
+
+        PlannerCache plannerCache = new PlannerCache();
+        plannerCache.initialize(bag, dag);
+        new TransferEngine(dag, bag, reuse.getDeletedJobs(), reuse.getDeletedLeafJobs())
+                .addTransferNodes(rcb, plannerCache);
+        bag.add(PegasusBag.PLANNER_CACHE, plannerCache);
+        rcb.closeConnection();
+        dag = deploy.addSetupNodes(dag);
+        dag = CreateDirectory.loadCreateDirectoryStraegyInstance(bag).addCreateDirectoryNodes(dag);
+
+        CondorGenerator generator = new NoSubmitDAGCondorGenerator();
+        try {
+            generator.initialize(bag);
+            generator.generateCode(dag);
+        } finally {
+            plannerCache.close();
+        }
+        logger.logEventCompletion();
+
+        // the properties are written out to a file with a random name
+        String properties = new File(props.getPropertiesInSubmitDirectory()).getName();
+        Map<String, String> result = new TreeMap<String, String>();
+        try (Stream<Path> paths = Files.walk(submitDir.toPath())) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = submitDir.toPath().relativize(path).toString();
+                if (name.endsWith(".dag") || name.endsWith(".sub") || name.endsWith(".sh")) {
+                    String contents = new String(Files.readAllBytes(path));
+                    result.put(name, contents.replace(properties, "pegasus.properties"));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes out a site catalog, the properties and a workflow of compute jobs run with
+     * PegasusLite in the condorio data configuration, and a sub workflow job.
+     */
+    private File createBaseDirectory() throws IOException {
+        File dir = new File(mTempDir, "generator");
+        dir.mkdirs();
+        // the worker package deployed for condorio is only copied to the submit directory
+        File share = new File(dir, "share");
+        File packages = new File(share, "worker-packages");
+        packages.mkdirs();
+        Version v = new Version();
+        new File(packages, "pegasus-worker-" + v.getVersion() + "-" + v.getPlatform() + ".tar.gz")
+                .createNewFile();
+        new File(share, "sh").mkdirs();
+        Files.copy(
+                new File("share/pegasus/sh/pegasus-lite-common.sh").toPath(),
+                new File(share, "sh/pegasus-lite-common.sh").toPath());
+
+        File sites = new File(dir, "sites.yml");
+        try (PrintWriter pw = new PrintWriter(sites)) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("sites:");
+            site(pw, dir, "condorpool");
+            pw.println("     condor:");
+            pw.println("       universe: vanilla");
+            pw.println("     pegasus:");
+            pw.println("       style: condor");
+            site(pw, dir, "local", "sharedScratch", "sharedStorage");
+        }
+        try (PrintWriter pw = new PrintWriter(new File(dir, "pegasus.properties"))) {
+            pw.println(
+                    "pegasus.home.schemadir = "
+                            + new File("share/pegasus/schema").getAbsolutePath());
+            pw.println("pegasus.home.sharedstatedir = " + share.getAbsolutePath());
+            pw.println("pegasus.catalog.site.file = " + sites.getAbsolutePath());
+            pw.println("pegasus.data.configuration = condorio");
+            pw.println("pegasus.transfer.worker.package = false");
+            pw.println("pegasus.dir.useTimestamp = false");
+            pw.println("pegasus.condor.logs.symlink = false");
+            pw.println("pegasus.metrics.app = test");
+        }
+        try (PrintWriter pw = new PrintWriter(new File(dir, "sub.yml"))) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("name: sub");
+            pw.println("jobs: []");
+            pw.println("jobDependencies: []");
+        }
+
+        int width = 10;
+        try (PrintWriter pw = new PrintWriter(new File(dir, "workflow.yml"))) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("name: generator");
+            pw.println("replicaCatalog:");
+            pw.println("  replicas:");
+            pw.println("    - lfn: f.a");
+            pw.println("      pfns:");
+            pw.println("        - {site: local, pfn: /inputs/f.a}");
+            pw.println("    - lfn: sub.yml");
+            pw.println("      pfns:");
+            pw.println("        - {site: local, pfn: " + new File(dir, "sub.yml") + "}");
+            // the executable is installed, as a staged executable is not listed in the same
+            // order amongst the inputs of a job from run to run
+            pw.println("transformationCatalog:");
+            pw.println("  transformations:");
+            pw.println("    - name: preprocess");
+            pw.println("      sites:");
+            pw.println("        - name: condorpool");
+            pw.println("          pfn: /usr/bin/pegasus-keg");
+            pw.println("          type: installed");
+            pw.println("          arch: x86_64");
+            pw.println("          os.type: linux");
+            pw.println("    - namespace: condor");
+            pw.println("      name: dagman");
+            pw.println("      sites:");
+            pw.println("        - name: local");
+            pw.println("          pfn: /usr/bin/condor_dagman");
+            pw.println("          type: installed");
+            pw.println("jobs:");
+            for (int i = 0; i < width; i++) {
+                pw.println("  - type: job");
+                pw.println("    name: preprocess");
+                pw.println("    id: ID" + i);
+                pw.println("    arguments: [-i, f.a, -o, f.b" + i + "]");
+                pw.println("    uses:");
+                pw.println("      - {lfn: f.a, type: input}");
+                pw.println("      - lfn: f.b" + i);
+                pw.println("        type: output");
+                pw.println("        stageOut: true");
+                pw.println("        registerReplica: false");
+            }
+            pw.println("  - type: pegasusWorkflow");
+            pw.println("    file: sub.yml");
+            pw.println("    id: sub");
+            pw.println("    arguments: []");
+            pw.println("    uses:");
+            pw.println("      - {lfn: sub.yml, type: input}");
+            pw.println("jobDependencies:");
+            pw.println("  - id: ID0");
+            pw.println("    children: [sub]");
+        }
+        return dir;
+    }
+
+    /**
+     * Writes out a site with a directory of each type passed, ending with the profiles of the
+     * site, so that more profiles can be written out after it.
+     */
+    private void site(PrintWriter pw, File dir, String name, String... types) {
+        pw.println(" - name: " + name);
+        pw.println("   arch: x86_64");
+        pw.println("   os.type: linux");
+        if (types.length > 0) {
+            pw.println("   directories:");
+        }
+        for (String type : types) {
+            File d = new File(new File(dir, name), type);
+            pw.println("    - type: " + type);
+            pw.println("      path: " + d.getAbsolutePath());
+            pw.println("      fileServers:");
+            pw.println("       - operation: all");
+            pw.println("         url: file://" + d.getAbsolutePath());
+        }
+        pw.println("   profiles:");
+        pw.println("     env:");
+        pw.println("       PEGASUS_HOME: /usr");
+    }
+
+    private void delete(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
 }
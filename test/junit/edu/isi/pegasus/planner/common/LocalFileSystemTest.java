@@ -0,0 +1,116 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/** Unit tests for LocalFileSystem. */
+public class LocalFileSystemTest {
+
+    @TempDir File tempDir;
+
+    private LocalFileSystem mFileSystem;
+
+    @BeforeEach
+    public void setUp() {
+        mFileSystem = new LocalFileSystem();
+    }
+
+    @Test
+    public void testSetExecutable() throws IOException {
+        File f = new File(tempDir, "job.sh");
+        Files.write(f.toPath(), "#!/bin/bash\n".getBytes());
+        Files.setPosixFilePermissions(f.toPath(), PosixFilePermissions.fromString("rw-r-----"));
+
+        mFileSystem.setExecutable(f);
+        assertThat(
+                PosixFilePermissions.toString(Files.getPosixFilePermissions(f.toPath())),
+                is("rwxr-x---"));
+        assertThat(mFileSystem.getForksAvoided(), is(1L));
+    }
+
+    @Test
+    public void testSetExecutableOnMissingFile() {
+        assertThrows(
+                IOException.class, () -> mFileSystem.setExecutable(new File(tempDir, "missing")));
+        assertThat(mFileSystem.getForksAvoided(), is(0L));
+    }
+
+    @Test
+    public void testCreateSymbolicLink() throws IOException {
+        File link = new File(tempDir, "workflow.log");
+        mFileSystem.createSymbolicLink("/tmp/workflow-0.log", link, false);
+        assertThat(Files.readSymbolicLink(link.toPath()).toString(), is("/tmp/workflow-0.log"));
+
+        // without overwrite an existing link is not replaced
+        assertThrows(
+                IOException.class,
+                () -> mFileSystem.createSymbolicLink("/tmp/workflow-1.log", link, false));
+        assertThat(mFileSystem.getForksAvoided(), is(1L));
+    }
+
+    @Test
+    public void testOverwriteSymbolicLink() throws IOException {
+        File link = new File(tempDir, "run");
+        mFileSystem.createSymbolicLink("run.000", link, true);
+        mFileSystem.createSymbolicLink("run.001", link, true);
+
+        // the relative target is stored as is
+        assertThat(Files.readSymbolicLink(link.toPath()).toString(), is("run.001"));
+        assertThat(tempDir.list().length, is(1));
+        assertThat(mFileSystem.getForksAvoided(), is(2L));
+    }
+
+    @Test
+    public void testMkdirs() throws IOException {
+        File dir = new File(tempDir, "00/01");
+        assertThat(mFileSystem.mkdirs(dir), is(true));
+        assertThat(dir.isDirectory(), is(true));
+
+        // known directories are not created again
+        assertThat(mFileSystem.mkdirs(dir), is(false));
+        assertThat(mFileSystem.mkdirs(tempDir), is(false));
+        assertThat(mFileSystem.getCreatedDirectories(), is(1L));
+    }
+
+    @Test
+    public void testMkdirsOverFile() throws IOException {
+        File f = new File(tempDir, "file");
+        Files.write(f.toPath(), new byte[0]);
+        assertThrows(IOException.class, () -> mFileSystem.mkdirs(f));
+    }
+
+    @Test
+    public void testRename() throws IOException {
+        File source = new File(tempDir, "blackdiamond-0.dag.tmp");
+        File destination = new File(tempDir, "blackdiamond-0.dag");
+        Files.write(source.toPath(), "JOB a a.sub\n".getBytes());
+        Files.write(destination.toPath(), "old\n".getBytes());
+
+        mFileSystem.rename(source, destination);
+        assertThat(source.exists(), is(false));
+        assertThat(new String(Files.readAllBytes(destination.toPath())), is("JOB a a.sub\n"));
+    }
+}
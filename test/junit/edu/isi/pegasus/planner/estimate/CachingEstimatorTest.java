@@ -0,0 +1,173 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.estimate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for the CachingEstimator. */
+public class CachingEstimatorTest {
+
+    /** An estimator that estimates the runtime from the size metadata, and counts the calls. */
+    private static final class CountingEstimator implements Estimator {
+        private final AtomicInteger mCalls = new AtomicInteger(0);
+
+        @Override
+        public void initialize(ADag dag, PegasusBag bag) {}
+
+        @Override
+        public Map<String, String> getAllEstimates(Job job) {
+            mCalls.incrementAndGet();
+            Map<String, String> estimates = new HashMap<String, String>();
+            estimates.put("runtime", String.valueOf(job.getMetadata().get("size")));
+            return estimates;
+        }
+
+        @Override
+        public String getRuntime(Job job) {
+            return getAllEstimates(job).get("runtime");
+        }
+
+        @Override
+        public String getMemory(Job job) {
+            return null;
+        }
+    }
+
+    @TempDir File tempDir;
+
+    private PegasusBag mBag;
+
+    private CountingEstimator mEstimator;
+
+    @BeforeEach
+    public void setUp() {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.logEventStart("test.caching-estimator", "estimate", "cache");
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        mEstimator = new CountingEstimator();
+    }
+
+    @Test
+    public void testJobsWithSameSignatureEstimatedOnce() {
+        CachingEstimator cache = newCache();
+        Job a = createJob("ID1", "-i  f.a\t-n 10", "100");
+        Job b = createJob("ID2", "-i f.a -n 10", "100");
+        assertThat(cache.getRuntime(a), is("100"));
+        assertThat(cache.getRuntime(b), is("100"));
+        assertThat(mEstimator.mCalls.get(), is(1));
+        assertThat(cache.getCacheHits(), is(1L));
+        assertThat(cache.getReusedEstimates(), is(0L));
+
+        // a different site, arguments or metadata is estimated again
+        Job c = createJob("ID3", "-i f.a -n 10", "100");
+        c.setSiteHandle("condorpool");
+        cache.getAllEstimates(c);
+        cache.getAllEstimates(createJob("ID4", "-i f.a -n 20", "100"));
+        assertThat(cache.getRuntime(createJob("ID5", "-i f.a -n 10", "200")), is("200"));
+        assertThat(mEstimator.mCalls.get(), is(4));
+        assertThat(cache.size(), is(4));
+    }
+
+    @Test
+    public void testEstimateBatch() {
+        CachingEstimator cache = newCache();
+        List<Job> level = new ArrayList<Job>();
+        for (int i = 0; i < 100; i++) {
+            level.add(createJob("ID" + i, "-n " + (i % 3), String.valueOf(i % 2)));
+        }
+        assertThat(cache.estimate(level, 4), is(6));
+        assertThat(mEstimator.mCalls.get(), is(6));
+
+        // the estimates are now retrieved from the cache
+        for (Job job : level) {
+            cache.getAllEstimates(job);
+        }
+        assertThat(mEstimator.mCalls.get(), is(6));
+        assertThat(cache.getCacheHits(), is(100L));
+        assertThat(cache.getReusedEstimates(), is(0L));
+        assertThat(cache.estimate(level, 4), is(0));
+    }
+
+    @Test
+    public void testPersistAcrossRuns() throws IOException {
+        File f = new File(tempDir, "diamond-0.estimates");
+        CachingEstimator cache = newCache();
+        cache.estimate(Arrays.asList(createJob("ID1", "-n 1", "10")), 1);
+        cache.writeOut(f);
+
+        // a later run does not estimate again
+        CachingEstimator later = newCache();
+        assertThat(later.loadFrom(f), is(1));
+        assertThat(later.getRuntime(createJob("ID9", "-n 1", "10")), is("10"));
+        assertThat(mEstimator.mCalls.get(), is(1));
+        assertThat(later.getReusedEstimates(), is(1L));
+
+        // only the estimates loaded from the earlier run are counted as reused
+        later.getAllEstimates(createJob("ID10", "-n 2", "10"));
+        later.getAllEstimates(createJob("ID11", "-n 2", "10"));
+        assertThat(later.getCacheHits(), is(2L));
+        assertThat(later.getReusedEstimates(), is(1L));
+
+        // the planner properties with the estimator prefix do not invalidate the estimates
+        mBag.getPegasusProperties().setProperty("pegasus.estimator.threads", "4");
+        assertThat(newCache().loadFrom(f), is(1));
+
+        // estimates computed with other estimator properties are ignored
+        mBag.getPegasusProperties().setProperty("pegasus.estimator.aspen.models", "/models");
+        CachingEstimator reconfigured = newCache();
+        assertThat(reconfigured.loadFrom(f), is(0));
+        assertThat(reconfigured.size(), is(0));
+    }
+
+    private CachingEstimator newCache() {
+        CachingEstimator cache = new CachingEstimator(mEstimator);
+        cache.initialize(null, mBag);
+        return cache;
+    }
+
+    private Job createJob(String id, String arguments, String size) {
+        Job job = new Job();
+        job.setTransformation("pegasus", "preprocess", "4.0");
+        job.setLogicalID(id);
+        job.setName("preprocess_" + id);
+        job.setSiteHandle("local");
+        job.setArguments(arguments);
+        job.addMetadata("size", size);
+        return job;
+    }
+}
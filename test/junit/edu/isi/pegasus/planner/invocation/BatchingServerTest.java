@@ -0,0 +1,266 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.invocation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import org.griphyn.vdl.dbschema.PTC;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for the BatchingServer, that talk to it over the socket. */
+public class BatchingServerTest {
+
+    private static final String KICKSTART =
+            "test/junit/edu/isi/pegasus/planner/invocation/input/kickstart.xml";
+
+    private static final String SCHEMA = "share/pegasus/schema/iv-2.1.xsd";
+
+    @TempDir Path mTempDir;
+
+    private BatchingServer mServer;
+
+    private Thread mServing;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (mServer != null) {
+            mServer.shutdown();
+            mServing.join(10000);
+        }
+    }
+
+    @Test
+    public void testParseOnly() throws Exception {
+        start(null, 1);
+        try (Client client = new Client()) {
+            assertThat(client.request("PARSE " + KICKSTART + " ECP/1.0"), is("300 Result code 0"));
+            assertThat(
+                    client.request("PARSE /no/such/kickstart.xml ECP/1.0"),
+                    is("300 Result code 5"));
+            assertThat(client.request("PARSE " + KICKSTART), is("400 Illegal request format"));
+            assertThat(
+                    client.request("PARSE " + KICKSTART + " ECP/2.0"),
+                    is("501 Unrecognized version"));
+            assertThat(client.request("QUIT"), is("200 Good-bye"));
+        }
+    }
+
+    @Test
+    public void testNonZeroExitCode() throws Exception {
+        String xml = new String(Files.readAllBytes(new File(KICKSTART).toPath()), "ISO-8859-1");
+        Path failed = mTempDir.resolve("failed.xml");
+        Files.write(
+                failed,
+                xml.replace("exitcode=\"0\"", "exitcode=\"3\"").getBytes("ISO-8859-1"));
+
+        start(null, 1);
+        try (Client client = new Client()) {
+            assertThat(client.request("PARSE " + failed + " ECP/1.0"), is("300 Result code 1"));
+        }
+    }
+
+    @Test
+    public void testIllegalRequestClosesConnection() throws Exception {
+        start(null, 1);
+        try (Client client = new Client()) {
+            assertThat(client.request("HELLO"), is("500 Illegal request"));
+            assertThat(client.mIn.readLine() == null, is(true));
+        }
+    }
+
+    @Test
+    public void testRecordsAreStoredInBatches() throws Exception {
+        int records = 40;
+        int clients = 8;
+        List<Path> files = copies(records);
+        RecordingPTC ptc = new RecordingPTC();
+        start(ptc, 64);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<List<String>>> replies = new ArrayList<Future<List<String>>>();
+        for (int c = 0; c < clients; c++) {
+            int first = c;
+            replies.add(
+                    executor.submit(
+                            () -> {
+                                List<String> result = new ArrayList<String>();
+                                try (Client client = new Client()) {
+                                    for (int i = first; i < records; i += clients) {
+                                        result.add(
+                                                client.request(
+                                                        "PARSE " + files.get(i) + " ECP/1.0"));
+                                    }
+                                }
+                                return result;
+                            }));
+        }
+        for (Future<List<String>> f : replies) {
+            for (String reply : f.get(30, TimeUnit.SECONDS)) {
+                assertThat(reply, is("300 Result code 0"));
+            }
+        }
+        executor.shutdown();
+
+        assertThat(ptc.mPIDs.size(), is(records));
+        assertThat(mServer.getRecordCount(), is((long) records));
+        assertThat((int) mServer.getBatchCount(), lessThan(records));
+    }
+
+    @Test
+    public void testFailedRecordDoesNotFailOthers() throws Exception {
+        List<Path> files = copies(2);
+        RecordingPTC ptc = new RecordingPTC();
+        ptc.mFailPID = 1001;
+        start(ptc, 64);
+
+        try (Client client = new Client()) {
+            // both requests are sent before reading the replies, and the
+            // replies come back in order
+            client.mOut.println("PARSE " + files.get(1) + " ECP/1.0");
+            client.mOut.println("PARSE " + files.get(0) + " ECP/1.0");
+            assertThat(client.mIn.readLine(), is("300 Result code 5"));
+            assertThat(client.mIn.readLine(), is("300 Result code 0"));
+        }
+        assertThat(ptc.mPIDs.size(), is(1));
+    }
+
+    @Test
+    public void testShutdownRequestStopsServer() throws Exception {
+        start(null, 1);
+        try (Client client = new Client()) {
+            assertThat(client.request("SHUTDOWN"), is("200 Shutting down server, good-bye"));
+        }
+        mServing.join(10000);
+        assertThat(mServing.isAlive(), is(false));
+    }
+
+    /** Starts a server on a free port. */
+    private void start(PTC ptc, int batchSize) throws IOException {
+        mServer = new BatchingServer(0, ptc, SCHEMA, 4, 16, batchSize);
+        mServing =
+                new Thread(
+                        () -> {
+                            try {
+                                mServer.serve();
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+        mServing.start();
+    }
+
+    /** Writes copies of the kickstart record, each with its own pid starting from 1000. */
+    private List<Path> copies(int count) throws IOException {
+        String xml = new String(Files.readAllBytes(new File(KICKSTART).toPath()), "ISO-8859-1");
+        List<Path> result = new ArrayList<Path>();
+        for (int i = 0; i < count; i++) {
+            Path copy = mTempDir.resolve("kickstart-" + i + ".xml");
+            Files.write(
+                    copy,
+                    xml.replaceFirst("pid=\"23370\"", "pid=\"" + (1000 + i) + "\"")
+                            .getBytes("ISO-8859-1"));
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /** A client of the server. */
+    private class Client implements AutoCloseable {
+
+        private final Socket mSocket;
+
+        private final PrintWriter mOut;
+
+        private final BufferedReader mIn;
+
+        public Client() throws IOException {
+            mSocket = new Socket(InetAddress.getLoopbackAddress(), mServer.getPort());
+            mOut = new PrintWriter(mSocket.getOutputStream(), true);
+            mIn =
+                    new BufferedReader(
+                            new InputStreamReader(
+                                    mSocket.getInputStream(), StandardCharsets.US_ASCII));
+        }
+
+        public String request(String line) throws IOException {
+            mOut.println(line);
+            return mIn.readLine();
+        }
+
+        public void close() throws IOException {
+            mSocket.close();
+        }
+    }
+
+    /** A PTC that remembers the pids of the records stored, and can fail on a pid. */
+    private static class RecordingPTC implements PTC {
+
+        private final Set<Integer> mPIDs = new HashSet<Integer>();
+
+        private int mFailPID = -1;
+
+        public long getInvocationID(Date start, InetAddress host, int pid) {
+            return mPIDs.contains(pid) ? pid : -1;
+        }
+
+        public boolean saveInvocation(InvocationRecord ivr) throws SQLException {
+            return saveInvocations(java.util.Collections.singletonList(ivr)) == 1;
+        }
+
+        public synchronized int saveInvocations(List<InvocationRecord> records)
+                throws SQLException {
+            Set<Integer> pids = new HashSet<Integer>();
+            for (InvocationRecord ivr : records) {
+                if (ivr.getPID() == mFailPID) {
+                    throw new SQLException("cannot store " + mFailPID);
+                }
+                pids.add(ivr.getPID());
+            }
+            // a transaction takes a while, and records queue up meanwhile
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            pids.removeAll(mPIDs);
+            mPIDs.addAll(pids);
+            return pids.size();
+        }
+    }
+}
@@ -187,4 +187,73 @@ public class NamespaceTest {
     public void testMergeKeyUnsupportedByDefault() {
         assertThrows(UnsupportedOperationException.class, () -> ns.mergeKey("A", "1"));
     }
+
+    @Test
+    public void testCloneSharesProfilesUntilModified() {
+        ns.construct("HOME", "/home/user");
+        ENV clone = (ENV) ns.clone();
+        assertThat(clone.mProfileMap == ns.mProfileMap, is(true));
+
+        clone.construct("PATH", "/usr/bin");
+        assertThat(clone.mProfileMap == ns.mProfileMap, is(false));
+        assertThat(ns.containsKey("PATH"), is(false));
+        assertThat((String) clone.get("HOME"), is("/home/user"));
+
+        ns.construct("HOME", "/tmp");
+        assertThat((String) clone.get("HOME"), is("/home/user"));
+    }
+
+    @Test
+    public void testRemoveKeyAndResetOnCloneDoNotAffectOriginal() {
+        ns.construct("A", "1");
+        ns.construct("B", "2");
+        ENV clone = (ENV) ns.clone();
+
+        clone.removeKey("A");
+        assertThat(ns.containsKey("A"), is(true));
+
+        ENV other = (ENV) ns.clone();
+        other.reset();
+        assertThat(ns.size(), is(2));
+    }
+
+    @Test
+    public void testInternSharesEqualProfiles() {
+        ns.construct("A", "1");
+        ns.construct("B", "2");
+        ENV other = new ENV();
+        other.construct("A", "1");
+        other.construct("B", "2");
+
+        ns.intern();
+        other.intern();
+        assertThat(other.mProfileMap == ns.mProfileMap, is(true));
+
+        other.construct("A", "3");
+        assertThat((String) ns.get("A"), is("1"));
+        assertThat((String) other.get("A"), is("3"));
+    }
+
+    @Test
+    public void testInternPreservesOrderOfProfiles() {
+        ns.construct("X1", "1");
+        ns.construct("X2", "2");
+        ENV other = new ENV();
+        other.construct("X2", "2");
+        other.construct("X1", "1");
+
+        ns.intern();
+        other.intern();
+        assertThat(other.mProfileMap == ns.mProfileMap, is(false));
+        assertThat((String) other.getProfileKeyIterator().next(), is("X2"));
+    }
+
+    @Test
+    public void testKeySetIsReadOnly() {
+        ns.construct("A", "1");
+        assertThrows(UnsupportedOperationException.class, () -> ns.keySet().remove("A"));
+        Iterator it = ns.getProfileKeyIterator();
+        it.next();
+        assertThrows(UnsupportedOperationException.class, () -> it.remove());
+    }
 }
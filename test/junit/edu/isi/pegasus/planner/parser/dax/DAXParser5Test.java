@@ -7,13 +7,23 @@ package edu.isi.pegasus.planner.parser.dax;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStore;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStore;
 import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.CompoundTransformation;
 import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PCRelation;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
 import edu.isi.pegasus.planner.classes.WorkflowMetrics;
 import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.dax.Invoke;
 import edu.isi.pegasus.planner.parser.DAXParserFactory;
 import edu.isi.pegasus.planner.test.DefaultTestSetup;
 import edu.isi.pegasus.planner.test.TestSetup;
@@ -21,9 +31,15 @@ import edu.isi.pegasus.planner.test.TestSetup;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author vahi
@@ -44,6 +60,8 @@ public class DAXParser5Test {
     /** The parsed DAX file */
     private ADag mParsedDAX;
 
+    @TempDir File mTempDir;
+
     /** Setup the logger and properties that all test functions require */
     @BeforeEach
     public final void setUp() {
@@ -91,6 +109,73 @@ public class DAXParser5Test {
         assertThat(metrics.getNumDAXFiles(WorkflowMetrics.FILE_TYPE.total), is(6));
     }
 
+    @Test
+    public void testCallbacksInDocumentOrder() throws IOException {
+        File workflow = new File(mTempDir, "workflow.yml");
+        Files.write(
+                workflow.toPath(),
+                ("pegasus: \"5.0\"\n"
+                                + "name: streaming\n"
+                                + "x-extension:\n"
+                                + "  jobs:\n"
+                                + "    - id: IGNORED\n"
+                                + "  nested: {a: [1, 2], b: {c: d}}\n"
+                                + "metadata:\n"
+                                + "  creator: test\n"
+                                + "replicaCatalog:\n"
+                                + "  replicas:\n"
+                                + "    - lfn: f.a\n"
+                                + "      pfns:\n"
+                                + "        - pfn: /tmp/f.a\n"
+                                + "          site: local\n"
+                                + "hooks:\n"
+                                + "jobs:\n"
+                                + "  - id: ID1\n"
+                                + "    name: preprocess\n"
+                                + "    arguments: [\"-i\", \"f.a\"]\n"
+                                + "    uses:\n"
+                                + "      - lfn: f.a\n"
+                                + "        type: input\n"
+                                + "  - id: ID2\n"
+                                + "    name: findrange\n"
+                                + "  - id: ID3\n"
+                                + "    name: findrange\n"
+                                + "jobDependencies:\n"
+                                + "  - id: ID1\n"
+                                + "    children: [ID2, ID3]\n")
+                        .getBytes());
+
+        RecordingCallback callback = new RecordingCallback();
+        DAXParser5 parser = new DAXParser5(mBag, "5.0");
+        parser.setDAXCallback(callback);
+        parser.parse(workflow.getAbsolutePath());
+
+        assertThat(
+                callback.mEvents,
+                contains(
+                        "document streaming",
+                        "metadata creator",
+                        "replicas 1",
+                        "job ID1 preprocess",
+                        "job ID2 findrange",
+                        "job ID3 findrange",
+                        "children ID1 [ID2, ID3]",
+                        "done"));
+    }
+
+    @Test
+    public void testWorkflowNotAnObject() throws IOException {
+        File workflow = new File(mTempDir, "workflow.yml");
+        Files.write(workflow.toPath(), "- pegasus: \"5.0\"\n".getBytes());
+
+        DAXParser5 parser = new DAXParser5(mBag, "5.0");
+        parser.setDAXCallback(new RecordingCallback());
+        RuntimeException e =
+                assertThrows(
+                        RuntimeException.class, () -> parser.parse(workflow.getAbsolutePath()));
+        assertThat(e.getMessage(), containsString("value should be of type object"));
+    }
+
     @AfterEach
     public void tearDown() {
         mLogger = null;
@@ -98,4 +183,60 @@ public class DAXParser5Test {
         mBag = null;
         mTestSetup = null;
     }
+
+    /** A callback that records the callbacks made by the parser, in the order they are made. */
+    private static class RecordingCallback implements Callback {
+
+        private final List<String> mEvents = new ArrayList<String>();
+
+        public void initialize(PegasusBag bag, String dax) {}
+
+        public Object getConstructedObject() {
+            return null;
+        }
+
+        public void cbDocument(Map attributes) {
+            mEvents.add("document " + attributes.get("name"));
+        }
+
+        public void cbWfInvoke(Invoke invoke) {
+            mEvents.add("invoke " + invoke.getWhen());
+        }
+
+        public void cbFile(ReplicaLocation rl) {}
+
+        public void cbReplicaStore(ReplicaStore store) {
+            mEvents.add("replicas " + store.getLFNCount());
+        }
+
+        public void cbExecutable(TransformationCatalogEntry tce) {}
+
+        public void cbCompoundTransformation(CompoundTransformation compoundTransformation) {}
+
+        public void cbTransformationStore(TransformationStore store) {
+            mEvents.add("transformations");
+        }
+
+        public void cbSiteStore(SiteStore store) {
+            mEvents.add("sites");
+        }
+
+        public void cbMetadata(Profile p) {
+            mEvents.add("metadata " + p.getProfileKey());
+        }
+
+        public void cbJob(Job job) {
+            mEvents.add("job " + job.getLogicalID() + " " + job.getTXName());
+        }
+
+        public void cbParents(String child, List<PCRelation> parents) {}
+
+        public void cbChildren(String parent, List<String> children) {
+            mEvents.add("children " + parent + " " + children);
+        }
+
+        public void cbDone() {
+            mEvents.add("done");
+        }
+    }
 }
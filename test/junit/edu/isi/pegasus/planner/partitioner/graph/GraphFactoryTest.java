@@ -0,0 +1,48 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the GraphFactory class. */
+public class GraphFactoryTest {
+
+    @Test
+    public void testDefaultIsMapGraph() {
+        Graph g = GraphFactory.loadInstance(null);
+        assertThat(g.getClass().getName(), is(MapGraph.class.getName()));
+    }
+
+    @Test
+    public void testLoadIndexedIsCaseInsensitive() {
+        assertThat(GraphFactory.loadInstance("indexed") instanceof IndexedGraph, is(true));
+        assertThat(GraphFactory.loadInstance("Indexed") instanceof IndexedGraph, is(true));
+    }
+
+    @Test
+    public void testLoadUnknownThrows() {
+        assertThrows(RuntimeException.class, () -> GraphFactory.loadInstance("Matrix"));
+    }
+
+    @Test
+    public void testNewInstanceMatchesImplementation() {
+        assertThat(
+                GraphFactory.newInstance(new IndexedGraph()) instanceof IndexedGraph, is(true));
+        assertThat(GraphFactory.newInstance(new MapGraph()) instanceof IndexedGraph, is(false));
+    }
+}
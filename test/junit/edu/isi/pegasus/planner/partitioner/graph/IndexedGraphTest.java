@@ -0,0 +1,240 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/** Unit tests for the IndexedGraph class. */
+public class IndexedGraphTest {
+
+    private IndexedGraph mGraph;
+
+    @BeforeEach
+    public void setUp() {
+        mGraph = new IndexedGraph();
+    }
+
+    private void addNodes(String... ids) {
+        for (String id : ids) {
+            mGraph.addNode(new GraphNode(id, "job" + id));
+        }
+    }
+
+    @Test
+    public void testIsAMapGraph() {
+        assertThat(mGraph instanceof MapGraph, is(true));
+    }
+
+    @Test
+    public void testAddEdgeIsVisibleFromBothEnds() {
+        addNodes("A", "B");
+        mGraph.addEdge("A", "B");
+        assertThat(mGraph.getNode("A").getChildren(), contains(mGraph.getNode("B")));
+        assertThat(mGraph.getNode("B").getParents(), contains(mGraph.getNode("A")));
+        assertThat(mGraph.getEdgeCount(), is(1));
+    }
+
+    @Test
+    public void testAddChildOnNodeAddsEdge() {
+        addNodes("A", "B");
+        GraphNode a = mGraph.getNode("A");
+        GraphNode b = mGraph.getNode("B");
+        a.addChild(b);
+        b.addParent(a);
+        assertThat(b.getParents().contains(a), is(true));
+        assertThat(mGraph.getEdgeCount(), is(1));
+    }
+
+    @Test
+    public void testRemoveChildRemovesEdgeFromBothEnds() {
+        addNodes("A", "B");
+        mGraph.addEdge("A", "B");
+        mGraph.getNode("A").removeChild(mGraph.getNode("B"));
+        assertThat(mGraph.getNode("B").getParents().isEmpty(), is(true));
+        assertThat(mGraph.getEdgeCount(), is(0));
+    }
+
+    @Test
+    public void testExistingEdgesMovedOnAddNode() {
+        GraphNode a = new GraphNode("A", "jobA");
+        GraphNode b = new GraphNode("B", "jobB");
+        a.addChild(b);
+        b.addParent(a);
+        mGraph.addNode(a);
+        mGraph.addNode(b);
+        assertThat(b.getParents(), contains(a));
+        assertThat(mGraph.getEdgeCount(), is(1));
+    }
+
+    @Test
+    public void testRemoveNodeConnectsParentsToChildren() {
+        addNodes("A", "B", "C");
+        mGraph.addEdge("A", "B");
+        mGraph.addEdge("B", "C");
+        assertThat(mGraph.remove("B"), is(true));
+        assertThat(mGraph.getNode("B"), is(nullValue()));
+        assertThat(mGraph.getNode("A").getChildren(), contains(mGraph.getNode("C")));
+        assertThat(mGraph.getNode("C").getParents(), contains(mGraph.getNode("A")));
+    }
+
+    @Test
+    public void testRootsAndLeaves() {
+        addNodes("A", "B", "C");
+        mGraph.addEdge("A", "B");
+        mGraph.addEdge("A", "C");
+        assertThat(mGraph.getRoots(), contains(mGraph.getNode("A")));
+        assertThat(mGraph.getLeaves().size(), is(2));
+    }
+
+    @Test
+    public void testAddEdgesReplacesParents() {
+        addNodes("A", "B", "C");
+        mGraph.addEdges("C", Arrays.asList("A", "B"));
+        assertThat(mGraph.getNode("C").getParents().size(), is(2));
+        assertThat(mGraph.getNode("A").getChildren(), contains(mGraph.getNode("C")));
+    }
+
+    @Test
+    public void testResetEdges() {
+        addNodes("A", "B", "C");
+        mGraph.addEdge("A", "B");
+        mGraph.addEdge("B", "C");
+        mGraph.resetEdges();
+        assertThat(mGraph.getEdgeCount(), is(0));
+        assertThat(mGraph.getRoots().size(), is(3));
+    }
+
+    @Test
+    public void testIteratorRemoveAndModificationDuringIteration() {
+        addNodes("A", "B", "C");
+        mGraph.addEdge("A", "B");
+        mGraph.addEdge("A", "C");
+        GraphNode a = mGraph.getNode("A");
+        for (GraphNode child : a.getChildren()) {
+            // modifying the edges while iterating does not throw
+            child.removeParent(a);
+        }
+        assertThat(a.getChildren().isEmpty(), is(true));
+
+        mGraph.addEdge("A", "B");
+        for (Iterator<GraphNode> it = a.getChildren().iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+        assertThat(mGraph.getNode("B").getParents().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIteratorSeesEdgesAtCreation() {
+        addNodes("A", "B", "C", "D");
+        mGraph.addEdge("A", "B");
+        mGraph.addEdge("A", "C");
+        GraphNode a = mGraph.getNode("A");
+        Iterator<GraphNode> first = a.getChildren().iterator();
+        Iterator<GraphNode> second = a.getChildren().iterator();
+        assertThat(first.next().getID(), is("B"));
+
+        // removals and additions after the iterators are created are not seen by them
+        a.removeChild(mGraph.getNode("B"));
+        mGraph.addEdge("A", "D");
+        assertThat(first.next().getID(), is("C"));
+        assertThat(first.hasNext(), is(false));
+        assertThat(second.next().getID(), is("B"));
+        assertThat(second.next().getID(), is("C"));
+        assertThat(second.hasNext(), is(false));
+        assertThat(a.getChildren(), containsInAnyOrder(mGraph.getNode("C"), mGraph.getNode("D")));
+    }
+
+    @Test
+    public void testRemovedNodeIndexReused() {
+        addNodes("A", "B", "C");
+        mGraph.addEdge("A", "B");
+        mGraph.addEdge("B", "C");
+        GraphNode b = mGraph.getNode("B");
+        int index = mGraph.indexOf(b);
+        mGraph.remove("B");
+
+        // the removed node is detached from the graph
+        assertThat(mGraph.indexOf(b), is(-1));
+        b.addChild(mGraph.getNode("A"));
+        assertThat(mGraph.getNode("A").getParents().isEmpty(), is(true));
+
+        mGraph.addNode(new GraphNode("D", "jobD"));
+        GraphNode d = mGraph.getNode("D");
+        assertThat(mGraph.indexOf(d), is(index));
+        assertThat(d.getParents().isEmpty(), is(true));
+        assertThat(d.getChildren().isEmpty(), is(true));
+        assertThat(mGraph.getNode("A").getChildren(), contains(mGraph.getNode("C")));
+        assertThat(mGraph.getEdgeCount(), is(1));
+    }
+
+    @Test
+    public void testNodeOfAnotherGraphRejected() {
+        addNodes("A", "B");
+        mGraph.addEdge("A", "B");
+        GraphNode a = mGraph.getNode("A");
+
+        IndexedGraph other = new IndexedGraph();
+        assertThrows(IllegalArgumentException.class, () -> other.addNode(a));
+        // the edges in the first graph are untouched
+        assertThat(a.getChildren(), contains(mGraph.getNode("B")));
+
+        // a node removed from the first graph can be added to another
+        mGraph.remove("A");
+        other.addNode(a);
+        assertThat(other.getNode("A"), is(a));
+    }
+
+    @Test
+    public void testLargeFanInUsesConsistentIndex() {
+        mGraph.addNode(new GraphNode("sink", "sink"));
+        GraphNode sink = mGraph.getNode("sink");
+        for (int i = 0; i < 1000; i++) {
+            mGraph.addNode(new GraphNode("n" + i, "n" + i));
+            mGraph.addEdge("n" + i, "sink");
+        }
+        // adding an existing edge again is a noop
+        mGraph.addEdge("n5", "sink");
+        assertThat(sink.getParents().size(), is(1000));
+
+        for (int i = 0; i < 1000; i += 2) {
+            sink.removeParent(mGraph.getNode("n" + i));
+        }
+        assertThat(sink.getParents().size(), is(500));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(
+                    sink.getParents().contains(mGraph.getNode("n" + i)), is(i % 2 == 1));
+        }
+    }
+
+    @Test
+    public void testTopologicalSortIterator() {
+        addNodes("A", "B", "C");
+        mGraph.addEdge("B", "C");
+        mGraph.addEdge("A", "B");
+        Iterator<GraphNode> it = mGraph.topologicalSortIterator();
+        assertThat(it.next().getID(), is("A"));
+        assertThat(it.next().getID(), is("B"));
+        assertThat(it.next().getID(), is("C"));
+        assertThat(mGraph.hasCycles(), is(false));
+    }
+}
@@ -307,6 +307,47 @@ public class DataReuseEngineTest {
         mProps.removeProperty("pegasus.data.reuse.scope");
     }
 
+    /**
+     * Test for incremental planning, where the jobs that changed since the previous run are not
+     * deleted even though their output files exist in the Replica Catalog.
+     */
+    @Test
+    public void testChangedJobsAreNotDeleted() {
+
+        mLogger.logEventStart("test.refiner.datareuse", "set", Integer.toString(mTestNumber++));
+        ADag dax = ((DataReuseEngineTestSetup) mTestSetup).loadDAX(mBag, "blackdiamond.dax");
+        MyReplicaCatalogBridge rcb = new MyReplicaCatalogBridge(dax, mBag);
+
+        // all output files are in the replica catalog from the previous run
+        Set<String> filesInRC = new HashSet();
+        filesInRC.add("f.b1");
+        filesInRC.add("f.b2");
+        filesInRC.add("f.c1");
+        filesInRC.add("f.c2");
+        filesInRC.add("f.d");
+        rcb.addFilesInReplica(filesInRC);
+
+        // findrange_ID0000003 changed, and hence also its child analyze_ID0000004
+        Set<String> changed = new HashSet();
+        changed.add("findrange_ID0000003");
+        changed.add("analyze_ID0000004");
+
+        DataReuseEngine engine = new DataReuseEngine(dax, mBag);
+        engine.setChangedJobs(changed);
+        engine.reduceWorkflow(dax, rcb);
+        Job[] actualDeletedJobs = (Job[]) engine.getDeletedJobs().toArray(new Job[0]);
+
+        String[] expectedDeletedJobs = {
+            "findrange_ID0000002", "preprocess_ID0000001",
+        };
+        assertArrayEquals(
+                expectedDeletedJobs,
+                toSortedStringArray(actualDeletedJobs),
+                "Deleted Jobs don't match ");
+        mLogger.logEventCompletion();
+        System.out.println("\n");
+    }
+
     @AfterEach
     public void tearDown() {
         mLogger = null;
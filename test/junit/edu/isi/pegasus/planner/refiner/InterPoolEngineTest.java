@@ -18,11 +18,15 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.Profile;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.namespace.Hints;
 import edu.isi.pegasus.planner.namespace.Selector;
@@ -31,9 +35,17 @@ import edu.isi.pegasus.planner.test.TestSetup;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A JUnit Test to test the Interpool Engine
@@ -55,6 +67,40 @@ public class InterPoolEngineTest {
 
     private static int mTestNumber = 1;
 
+    /** The transformation catalog used for the tests that map jobs. */
+    private static final String TRANSFORMATION_CATALOG =
+            "tr pegasus::keg:1.0 {\n"
+                    + "  site local {\n"
+                    + "    profile env \"TC_KEY\" \"tc\"\n"
+                    + "    pfn \"/usr/bin/keg\"\n"
+                    + "    arch \"x86_64\"\n"
+                    + "    os \"linux\"\n"
+                    + "    type \"INSTALLED\"\n"
+                    + "  }\n"
+                    + "  site condorpool {\n"
+                    + "    pfn \"/opt/bin/keg\"\n"
+                    + "    arch \"x86_64\"\n"
+                    + "    os \"linux\"\n"
+                    + "    type \"INSTALLED\"\n"
+                    + "  }\n"
+                    + "}\n"
+                    + "tr pegasus::findrange:1.0 {\n"
+                    + "  site local {\n"
+                    + "    pfn \"/usr/bin/findrange-1\"\n"
+                    + "    arch \"x86_64\"\n"
+                    + "    os \"linux\"\n"
+                    + "    type \"INSTALLED\"\n"
+                    + "  }\n"
+                    + "  site local {\n"
+                    + "    pfn \"/usr/bin/findrange-2\"\n"
+                    + "    arch \"x86_64\"\n"
+                    + "    os \"linux\"\n"
+                    + "    type \"INSTALLED\"\n"
+                    + "  }\n"
+                    + "}\n";
+
+    @TempDir File mTempDir;
+
     public InterPoolEngineTest() {}
 
     /** Setup the logger and properties that all test functions require */
@@ -210,4 +256,135 @@ public class InterPoolEngineTest {
         engine.validateStageablePFN(entry);
         mLogger.logEventCompletion();
     }
+
+    @Test
+    public void mapJobsSharingTransformation() throws IOException {
+        mLogger.logEventStart(
+                "test.refiner.interpoolengine", "set", Integer.toString(mTestNumber++));
+        List<Job> jobs = new ArrayList<Job>();
+        for (int i = 0; i < 100; i++) {
+            jobs.add(createJob("keg", i, (i % 2 == 0) ? "local" : "condorpool"));
+            jobs.add(createJob("findrange", i, "local"));
+        }
+        InterPoolEngine engine = createEngine(1);
+        for (Job job : jobs) {
+            engine.incorporateSiteMapping(job, Arrays.asList("local", "condorpool"));
+        }
+
+        Set<String> findrange = new HashSet<String>();
+        for (Job job : jobs) {
+            if (job.getTXName().equals("keg")) {
+                // the entry resolved for the transformation is per site
+                assertThat(
+                        job.getID(),
+                        job.getRemoteExecutable(),
+                        is(job.getSiteHandle().equals("local") ? "/usr/bin/keg" : "/opt/bin/keg"));
+            } else {
+                findrange.add(job.getRemoteExecutable());
+            }
+        }
+        // with multiple candidates the selection is made per job, and not reused
+        assertThat(
+                findrange,
+                is(
+                        new HashSet<String>(
+                                Arrays.asList("/usr/bin/findrange-1", "/usr/bin/findrange-2"))));
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void incorporateProfilesInParallel() throws IOException {
+        mLogger.logEventStart(
+                "test.refiner.interpoolengine", "set", Integer.toString(mTestNumber++));
+        List<String> sites = Arrays.asList("local", "condorpool");
+        List<Job> sequential = new ArrayList<Job>();
+        List<Job> parallel = new ArrayList<Job>();
+        for (int i = 0; i < 300; i++) {
+            String site = (i % 3 == 0) ? "condorpool" : "local";
+            sequential.add(createJob("keg", i, site));
+            parallel.add(createJob("keg", i, site));
+        }
+
+        InterPoolEngine engine = createEngine(1);
+        for (Job job : sequential) {
+            engine.incorporateSiteMapping(job, sites);
+        }
+        createEngine(4).incorporateSiteMapping(parallel, sites);
+
+        for (int i = 0; i < sequential.size(); i++) {
+            Job expected = sequential.get(i);
+            Job actual = parallel.get(i);
+            assertThat(actual.getStagingSiteHandle(), is(expected.getStagingSiteHandle()));
+            assertThat(actual.getRemoteExecutable(), is(expected.getRemoteExecutable()));
+            assertThat(actual.vdsNS.toString(), is(expected.vdsNS.toString()));
+            assertThat(actual.envVariables.toString(), is(expected.envVariables.toString()));
+            assertThat(
+                    actual.condorVariables.toString(), is(expected.condorVariables.toString()));
+        }
+        // the profiles from the job, site, transformation catalog and properties are merged
+        Job job = parallel.get(1);
+        assertThat(job.envVariables.get("JOB_KEY"), is("1"));
+        assertThat(job.envVariables.get("SITE_KEY"), is("local"));
+        assertThat(job.envVariables.get("TC_KEY"), is("tc"));
+        assertThat(job.envVariables.get("PROPERTY_KEY"), is("property"));
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Creates an engine to map jobs on the local and condorpool sites, against the transformation
+     * catalog of the tests.
+     *
+     * @param threads the number of threads to incorporate the profiles with
+     * @return the engine
+     */
+    private InterPoolEngine createEngine(int threads) throws IOException {
+        File tc = new File(mTempDir, "tc.text");
+        Files.write(tc.toPath(), TRANSFORMATION_CATALOG.getBytes());
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty(
+                PegasusProperties.PEGASUS_TRANSFORMATION_CATALOG_PROPERTY,
+                TransformationFactory.TEXT_CATALOG_IMPLEMENTOR);
+        props.setProperty(
+                PegasusProperties.PEGASUS_TRANSFORMATION_CATALOG_FILE_PROPERTY,
+                tc.getAbsolutePath());
+        props.setProperty("pegasus.planner.profiles.threads", Integer.toString(threads));
+        props.setProperty("env.PROPERTY_KEY", "property");
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+        SiteStore store = new SiteStore();
+        for (String site : new String[] {"local", "condorpool"}) {
+            SiteCatalogEntry entry = new SiteCatalogEntry(site);
+            entry.addProfile(new Profile(Profile.ENV, "SITE_KEY", site));
+            store.addEntry(entry);
+        }
+        bag.add(PegasusBag.SITE_STORE, store);
+        PlannerOptions options = new PlannerOptions();
+        options.setExecutionSites("local,condorpool");
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PLANNER_DIRECTORY, mTempDir);
+        bag.add(PegasusBag.TRANSFORMATION_CATALOG, TransformationFactory.loadInstance(bag));
+        return new InterPoolEngine(new ADag(), bag);
+    }
+
+    /**
+     * Creates a compute job for a transformation, already mapped to a site.
+     *
+     * @param transformation the name of the transformation
+     * @param index the index of the job
+     * @param site the site the job is mapped to
+     * @return the job
+     */
+    private Job createJob(String transformation, int index, String site) {
+        Job job = new Job();
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setTransformation("pegasus", transformation, "1.0");
+        job.setLogicalID("ID" + index);
+        job.setName(transformation + "_ID" + index);
+        job.setSiteHandle(site);
+        job.envVariables.construct("JOB_KEY", Integer.toString(index));
+        return job;
+    }
 }
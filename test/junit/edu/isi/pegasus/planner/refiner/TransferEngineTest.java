@@ -17,20 +17,44 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.SiteFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerCache;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusConfiguration;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.parser.DAXParserFactory;
+import edu.isi.pegasus.planner.parser.dax.Callback;
+import edu.isi.pegasus.planner.parser.dax.DAXParser;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
-/** Structural tests for TransferEngine. */
+/** Tests for TransferEngine. */
 public class TransferEngineTest {
 
+    @TempDir File mTempDir;
+
     @Test
     public void testExtendsEngine() {
         assertThat(Engine.class.isAssignableFrom(TransferEngine.class), is(true));
@@ -73,4 +97,242 @@ public class TransferEngineTest {
         Method method = TransferEngine.class.getMethod("getStagingSite", Job.class);
         assertThat((Object) method.getReturnType(), is((Object) String.class));
     }
+
+    @Test
+    public void testConcurrentStageInPlansSameWorkflow() throws IOException {
+        File dir = createBaseDirectory();
+        List<String> sequential = plan(dir, 1);
+        assertThat(sequential.isEmpty(), is(false));
+        assertThat(plan(dir, 4), is(sequential));
+    }
+
+    /**
+     * Plans the workflow in a directory up to and including the transfer refinement, and returns
+     * the jobs of the planned workflow with their parents and files, followed by the entries of
+     * the cache files written out to the submit directory. The plans for different numbers of
+     * threads are written out to different submit directories, with the same relative path.
+     */
+    private List<String> plan(File dir, int threads) throws IOException {
+        // the relative submit directory is part of the paths in the plan
+        File submitDir = new File(new File(dir, "submit" + threads), "run");
+        submitDir.mkdirs();
+        PegasusProperties props =
+                PegasusProperties.getInstance(
+                        new File(dir, "pegasus.properties").getAbsolutePath());
+        props.setProperty("pegasus.transfer.refiner.threads", Integer.toString(threads));
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        logger.logEventStart("test.refiner.transfer", "plan", Integer.toString(threads));
+
+        File workflow = new File(dir, "workflow.yml");
+        PlannerOptions options = new PlannerOptions();
+        options.setLaunchDirectory(dir.getAbsolutePath());
+        options.setDAX(workflow.getAbsolutePath());
+        options.setExecutionSites("condorpool");
+        options.setOutputSites("local");
+        options.setSubmitDirectory(submitDir.getParent(), submitDir.getName());
+        options.setRandomDir(submitDir.getName());
+        PegasusConfiguration configurator = new PegasusConfiguration(logger);
+        configurator.loadConfigurationPropertiesAndOptions(props, options);
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.PLANNER_DIRECTORY, dir);
+
+        DAXParser parser =
+                DAXParserFactory.loadDAXParser(
+                        bag, DAXParserFactory.DEFAULT_CALLBACK_CLASS, workflow.getAbsolutePath());
+        Callback callback = parser.getDAXCallback();
+        parser.parse(workflow.getAbsolutePath());
+        ADag dag = (ADag) callback.getConstructedObject();
+        dag.generateFlowName();
+        dag.setFlowTimestamp(options.getDateTime(props.useExtendedTimeStamp()));
+        dag.generateFlowID();
+        dag.getWorkflowMetrics().lockTaskMetrics(true);
+        dag.setWorkflowRefinementStarted(true);
+
+        Set<String> sites = new HashSet<String>();
+        sites.add("*");
+        SiteStore store = SiteFactory.loadSiteStore(sites, bag);
+        store.setForPlannerUse(props, options);
+        bag.add(PegasusBag.SITE_STORE, store);
+        bag.add(
+                PegasusBag.TRANSFORMATION_CATALOG,
+                TransformationFactory.loadInstanceWithStores(bag, dag));
+
+        ReplicaCatalogBridge rcb = new ReplicaCatalogBridge(dag, bag);
+        DataReuseEngine reuse = new DataReuseEngine(dag, bag);
+        dag = reuse.reduceWorkflow(dag, rcb);
+        InterPoolEngine ipEngine = new InterPoolEngine(dag, bag);
+        ipEngine.determineSites();
+        bag = ipEngine.getPegasusBag();
+
+        PlannerCache plannerCache = new PlannerCache();
+        plannerCache.initialize(bag, dag);
+        new TransferEngine(dag, bag, reuse.getDeletedJobs(), reuse.getDeletedLeafJobs())
+                .addTransferNodes(rcb, plannerCache);
+        plannerCache.close();
+        rcb.closeConnection();
+        logger.logEventCompletion();
+
+        List<String> result = new ArrayList<String>();
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Job job = (Job) node.getContent();
+            List<String> parents = new ArrayList<String>();
+            for (GraphNode parent : node.getParents()) {
+                parents.add(parent.getID());
+            }
+            Collections.sort(parents);
+            result.add(
+                    node.getID()
+                            + " "
+                            + job.getSiteHandle()
+                            + " parents "
+                            + parents
+                            + " inputs "
+                            + sorted(job.getInputFiles())
+                            + " outputs "
+                            + sorted(job.getOutputFiles()));
+        }
+        Collections.sort(result);
+
+        File[] caches = submitDir.listFiles((d, name) -> name.endsWith("cache"));
+        assertThat(caches.length > 0, is(true));
+        List<File> files = new ArrayList<File>();
+        Collections.addAll(files, caches);
+        Collections.sort(files);
+        for (File cache : files) {
+            // the entries for the files of a job are not written in a fixed order,
+            // even when the transfers are computed sequentially
+            List<String> entries = new ArrayList<String>();
+            for (String line : Files.readAllLines(cache.toPath())) {
+                if (!line.startsWith("#")) {
+                    entries.add(line);
+                }
+            }
+            Collections.sort(entries);
+            result.add(cache.getName());
+            result.addAll(entries);
+        }
+        return result;
+    }
+
+    private List<String> sorted(Set files) {
+        List<String> result = new ArrayList<String>();
+        for (Object file : files) {
+            result.add(file.toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Writes out a site catalog, the properties and a workflow of three levels of jobs, where all
+     * the jobs in a level share the raw inputs, that have replicas at several sites.
+     */
+    private File createBaseDirectory() throws IOException {
+        File dir = new File(mTempDir, "transfer");
+        dir.mkdirs();
+        File sites = new File(dir, "sites.yml");
+        try (PrintWriter pw = new PrintWriter(sites)) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("sites:");
+            site(pw, dir, "condorpool", "sharedScratch");
+            pw.println("     condor:");
+            pw.println("       universe: vanilla");
+            pw.println("     pegasus:");
+            pw.println("       style: condor");
+            pw.println("       auxillary.local: \"true\"");
+            site(pw, dir, "local", "sharedScratch", "sharedStorage");
+        }
+        try (PrintWriter pw = new PrintWriter(new File(dir, "pegasus.properties"))) {
+            pw.println(
+                    "pegasus.home.schemadir = "
+                            + new File("share/pegasus/schema").getAbsolutePath());
+            pw.println("pegasus.catalog.site.file = " + sites.getAbsolutePath());
+            pw.println("pegasus.data.configuration = sharedfs");
+            pw.println("pegasus.dir.useTimestamp = false");
+            pw.println("pegasus.metrics.app = test");
+        }
+
+        int raw = 3;
+        int width = 10;
+        try (PrintWriter pw = new PrintWriter(new File(dir, "workflow.yml"))) {
+            pw.println("pegasus: \"5.0\"");
+            pw.println("name: transfer");
+            pw.println("replicaCatalog:");
+            pw.println("  replicas:");
+            for (int i = 0; i < raw; i++) {
+                pw.println("    - lfn: f.raw" + i);
+                pw.println("      pfns:");
+                pw.println("        - {site: local, pfn: /inputs/f.raw" + i + "}");
+                pw.println(
+                        "        - {site: condorpool, pfn: \"http://condorpool/f.raw" + i + "\"}");
+                pw.println("        - {site: other, pfn: \"http://other/f.raw" + i + "\"}");
+            }
+            pw.println("transformationCatalog:");
+            pw.println("  transformations:");
+            pw.println("    - name: keg");
+            pw.println("      sites:");
+            pw.println("        - name: local");
+            pw.println("          pfn: /usr/bin/pegasus-keg");
+            pw.println("          type: stageable");
+            pw.println("          arch: x86_64");
+            pw.println("          os.type: linux");
+            pw.println("jobs:");
+            for (int level = 0; level < 3; level++) {
+                for (int i = 0; i < width; i++) {
+                    String id = "j" + level + "_" + i;
+                    pw.println("  - type: job");
+                    pw.println("    name: keg");
+                    pw.println("    id: " + id);
+                    pw.println("    arguments: [-o, f." + id + "]");
+                    pw.println("    uses:");
+                    for (int r = 0; r < raw; r++) {
+                        pw.println("      - {lfn: f.raw" + r + ", type: input}");
+                    }
+                    if (level > 0) {
+                        pw.println("      - {lfn: f.j" + (level - 1) + "_" + i + ", type: input}");
+                    }
+                    pw.println("      - lfn: f." + id);
+                    pw.println("        type: output");
+                    pw.println("        stageOut: " + (level == 2));
+                    pw.println("        registerReplica: false");
+                }
+            }
+            pw.println("jobDependencies:");
+            for (int level = 1; level < 3; level++) {
+                for (int i = 0; i < width; i++) {
+                    pw.println("  - id: j" + (level - 1) + "_" + i);
+                    pw.println("    children: [j" + level + "_" + i + "]");
+                }
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Writes out a site with a directory of each type passed, ending with the profiles of the
+     * site, so that more profiles can be written out after it.
+     */
+    private void site(PrintWriter pw, File dir, String name, String... types) {
+        pw.println(" - name: " + name);
+        pw.println("   arch: x86_64");
+        pw.println("   os.type: linux");
+        pw.println("   directories:");
+        for (String type : types) {
+            File d = new File(new File(dir, name), type);
+            pw.println("    - type: " + type);
+            pw.println("      path: " + d.getAbsolutePath());
+            pw.println("      fileServers:");
+            pw.println("       - operation: all");
+            pw.println("         url: file://" + d.getAbsolutePath());
+        }
+        pw.println("   profiles:");
+        pw.println("     env:");
+        pw.println("       PEGASUS_HOME: /usr");
+    }
 }
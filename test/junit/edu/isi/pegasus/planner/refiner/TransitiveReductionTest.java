@@ -0,0 +1,167 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.Set;
+
+/** Tests for the bitset based TransitiveReduction. */
+public class TransitiveReductionTest {
+
+    private ADag createWorkflow(int size) {
+        ADag dag = new ADag();
+        for (int i = 0; i < size; i++) {
+            Job j = new Job();
+            j.setName("j" + i);
+            j.setJobType(Job.COMPUTE_JOB);
+            dag.add(j);
+        }
+        return dag;
+    }
+
+    private Set<String> edges(ADag dag) {
+        Set<String> result = new HashSet<String>();
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            for (GraphNode child : node.getChildren()) {
+                result.add(node.getID() + "->" + child.getID());
+            }
+        }
+        return result;
+    }
+
+    /** Computes the reachable pairs in the workflow by a DFS from every node. */
+    private Set<String> closure(ADag dag) {
+        Set<String> result = new HashSet<String>();
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Set<GraphNode> visited = new HashSet<GraphNode>();
+            LinkedList<GraphNode> stack = new LinkedList<GraphNode>();
+            stack.addAll(node.getChildren());
+            while (!stack.isEmpty()) {
+                GraphNode n = stack.pop();
+                if (visited.add(n)) {
+                    result.add(node.getID() + "->" + n.getID());
+                    stack.addAll(n.getChildren());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testReduceEmptyWorkflow() {
+        TransitiveReduction tr = new TransitiveReduction();
+        ADag dag = new ADag();
+        assertThat(tr.reduce(dag), is(dag));
+        assertThat(tr.getRemovedEdges(), is(0));
+    }
+
+    @Test
+    public void testShortcutEdgeRemoved() {
+        ADag dag = this.createWorkflow(3);
+        dag.addNewRelation("j0", "j1");
+        dag.addNewRelation("j1", "j2");
+        dag.addNewRelation("j0", "j2");
+
+        TransitiveReduction tr = new TransitiveReduction();
+        tr.reduce(dag);
+        assertThat(tr.getRemovedEdges(), is(1));
+        assertThat(edges(dag).contains("j0->j2"), is(false));
+        assertThat(dag.getNode("j2").getParents().size(), is(1));
+    }
+
+    @Test
+    public void testDiamondRetainsAllEdges() {
+        ADag dag = this.createWorkflow(4);
+        dag.addNewRelation("j0", "j1");
+        dag.addNewRelation("j0", "j2");
+        dag.addNewRelation("j1", "j3");
+        dag.addNewRelation("j2", "j3");
+
+        TransitiveReduction tr = new TransitiveReduction();
+        tr.reduce(dag);
+        assertThat(tr.getRemovedEdges(), is(0));
+        assertThat(edges(dag).size(), is(4));
+    }
+
+    @Test
+    public void testDataDependencyEdgeRetained() {
+        ADag dag = this.createWorkflow(3);
+        dag.addNewRelation("j0", "j1");
+        dag.addNewRelation("j1", "j2");
+        dag.addNewRelation("j0", "j2");
+        PegasusFile f = new PegasusFile("f.a");
+        ((Job) dag.getNode("j0").getContent()).addOutputFile(f);
+        ((Job) dag.getNode("j2").getContent()).addInputFile(f);
+
+        TransitiveReduction tr = new TransitiveReduction();
+        tr.reduce(dag);
+        assertThat(tr.getRemovedEdges(), is(0));
+        assertThat(edges(dag).contains("j0->j2"), is(true));
+    }
+
+    @Test
+    public void testCyclicWorkflowThrows() {
+        ADag dag = this.createWorkflow(3);
+        dag.addNewRelation("j0", "j1");
+        dag.addNewRelation("j1", "j2");
+        dag.addNewRelation("j2", "j0");
+
+        assertThrows(RuntimeException.class, () -> new TransitiveReduction().reduce(dag));
+    }
+
+    @Test
+    public void testRandomWorkflowPreservesReachabilityAcrossWindows() {
+        int size = 300;
+        Random random = new Random(42);
+        ADag dag = this.createWorkflow(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                if (random.nextInt(20) == 0) {
+                    dag.addNewRelation("j" + i, "j" + j);
+                }
+            }
+        }
+        Set<String> before = closure(dag);
+        int edgesBefore = edges(dag).size();
+
+        // small budget forces the reachability to be computed in multiple windows
+        TransitiveReduction tr = new TransitiveReduction(size * 8);
+        tr.reduce(dag);
+
+        assertThat(closure(dag), is(before));
+        assertThat(edges(dag).size(), is(edgesBefore - tr.getRemovedEdges()));
+        assertThat(tr.getRemovedEdges() > 0, is(true));
+
+        // no remaining edge should be redundant
+        TransitiveReduction again = new TransitiveReduction();
+        again.reduce(dag);
+        assertThat(again.getRemovedEdges(), is(0));
+    }
+}
@@ -13,13 +13,32 @@
  */
 package edu.isi.pegasus.planner.refiner.cleanup;
 
-import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
 import org.junit.jupiter.api.Test;
 
-/** Structural tests for InPlace cleanup strategy. */
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/** Tests for InPlace cleanup strategy. */
 public class InPlaceTest {
 
     @Test
@@ -107,4 +126,272 @@ public class InPlaceTest {
                 InPlace.class.getDeclaredMethod("getClusterSize", Integer.TYPE, Integer.TYPE),
                 notNullValue());
     }
+
+    @Test
+    public void testDiamondWorkflow() {
+        ADag dag = new ADag();
+        addJob(dag, "a", new String[] {"f.a"}, new String[] {"f.b1", "f.b2"});
+        addJob(dag, "b1", new String[] {"f.b1"}, new String[] {"f.c1"});
+        addJob(dag, "b2", new String[] {"f.b2"}, new String[] {"f.c2"});
+        addJob(dag, "c", new String[] {"f.c1", "f.c2"}, new String[] {"f.d"});
+        dag.addNewRelation("a", "b1");
+        dag.addNewRelation("a", "b2");
+        dag.addNewRelation("b1", "c");
+        dag.addNewRelation("b2", "c");
+
+        dag.getWorkflowMetrics().lockTaskMetrics(true);
+        Graph workflow = createInPlace().addCleanupJobs(dag);
+
+        // the counts the strategy produced before it placed the cleanup jobs in a
+        // single bottom up pass
+        assertThat(cleanupJobs(workflow).size(), is(3));
+        assertThat(edges(workflow), is(8));
+        assertCleanedOnce(workflow, "f.a", "f.b1", "f.b2", "f.c1", "f.c2");
+        assertCleanedAfterUses(workflow);
+    }
+
+    @Test
+    public void testWideWorkflow() {
+        int width = 20;
+        ADag dag = new ADag();
+        String[] merged = new String[width];
+        for (int i = 0; i < width; i++) {
+            merged[i] = "f.p" + i;
+        }
+        addJob(dag, "split", new String[] {"f.in"}, new String[] {"f.shared"});
+        addJob(dag, "merge", merged, new String[] {"f.out"});
+        for (int i = 0; i < width; i++) {
+            addJob(dag, "p" + i, new String[] {"f.shared", "f.in"}, new String[] {merged[i]});
+            dag.addNewRelation("split", "p" + i);
+            dag.addNewRelation("p" + i, "merge");
+        }
+
+        dag.getWorkflowMetrics().lockTaskMetrics(true);
+        Graph workflow = createInPlace().addCleanupJobs(dag);
+
+        // the counts the strategy produced before it placed the cleanup jobs in a
+        // single bottom up pass
+        assertThat(cleanupJobs(workflow).size(), lessThanOrEqualTo(2));
+        assertThat(edges(workflow), lessThanOrEqualTo(61));
+        Set<String> files = new HashSet<String>();
+        files.add("f.in");
+        files.add("f.shared");
+        for (String lfn : merged) {
+            files.add(lfn);
+        }
+        assertCleanedOnce(workflow, files.toArray(new String[0]));
+        assertCleanedAfterUses(workflow);
+    }
+
+    @Test
+    public void testClusterCleanupGraphNodes() throws Exception {
+        InPlace inPlace = createInPlace();
+        List<GraphNode> cleanupNodes = new LinkedList<GraphNode>();
+        List<GraphNode> computeNodes = new ArrayList<GraphNode>();
+        for (int i = 0; i < 12; i++) {
+            GraphNode compute = new GraphNode("j" + i, new Job());
+            computeNodes.add(compute);
+            List<PegasusFile> files = new LinkedList<PegasusFile>();
+            files.add(new PegasusFile("f.j" + i));
+            files.add(new PegasusFile("f.shared"));
+            GraphNode stub = new GraphNode("clean_up_j" + i);
+            stub.setContent(new CleanupJobContent(compute, files));
+            cleanupNodes.add(stub);
+        }
+
+        Method m =
+                InPlace.class.getDeclaredMethod(
+                        "clusterCleanupGraphNodes",
+                        List.class,
+                        HashMap.class,
+                        String.class,
+                        Integer.TYPE);
+        m.setAccessible(true);
+        HashMap<String, GraphNode> cleanedBy = new HashMap<String, GraphNode>();
+        List<GraphNode> clustered =
+                (List<GraphNode>) m.invoke(inPlace, cleanupNodes, cleanedBy, "local", 2);
+
+        // a cleanup job for every five jobs on the level, with four jobs in each
+        assertThat(clustered.size(), is(3));
+        assertThat(clustered.get(0).getID(), is("clean_up_local_level_2_0"));
+        assertThat(clustered.get(2).getID(), is("clean_up_local_level_2_2"));
+        assertThat(cleanedBy.size(), is(13));
+        assertThat(cleanedBy.get("f.shared"), is(clustered.get(0)));
+        for (int i = 0; i < 12; i++) {
+            GraphNode cluster = clustered.get(i / 4);
+            assertThat(cleanedBy.get("f.j" + i), is(cluster));
+            assertThat(cluster.getParents().contains(computeNodes.get(i)), is(true));
+        }
+        // the first cluster deletes the shared file, so every job using it is its parent
+        assertThat(clustered.get(0).getParents().size(), is(12));
+        assertThat(
+                ((CleanupJobContent) clustered.get(0).getContent())
+                        .getListOfFilesToDelete()
+                        .size(),
+                is(5));
+        assertThat(
+                ((CleanupJobContent) clustered.get(1).getContent())
+                        .getListOfFilesToDelete()
+                        .size(),
+                is(4));
+
+        // nothing is left to delete for jobs whose files are already cleaned up
+        List<GraphNode> again = new LinkedList<GraphNode>();
+        for (int i = 0; i < 3; i++) {
+            List<PegasusFile> files = new LinkedList<PegasusFile>();
+            files.add(new PegasusFile("f.j" + i));
+            GraphNode stub = new GraphNode("clean_up_k" + i);
+            stub.setContent(new CleanupJobContent(new GraphNode("k" + i, new Job()), files));
+            again.add(stub);
+        }
+        clustered = (List<GraphNode>) m.invoke(inPlace, again, cleanedBy, "local", 1);
+        assertThat(clustered.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testReduceDependency() {
+        // a -> b -> c and d, with a cleanup job x that has all of them as parents
+        GraphNode a = new GraphNode("a");
+        GraphNode b = new GraphNode("b");
+        GraphNode c = new GraphNode("c");
+        GraphNode d = new GraphNode("d");
+        link(a, b);
+        link(b, c);
+        GraphNode x = new GraphNode("x");
+        for (GraphNode parent : new GraphNode[] {a, b, c, d}) {
+            link(parent, x);
+        }
+
+        createInPlace().reduceDependency(x);
+
+        assertThat(x.getParents(), containsInAnyOrder(c, d));
+        assertThat(a.getChildren(), containsInAnyOrder(b));
+        assertThat(b.getChildren(), containsInAnyOrder(c));
+        assertThat(c.getChildren(), containsInAnyOrder(x));
+        assertThat(d.getChildren(), containsInAnyOrder(x));
+    }
+
+    private InPlace createInPlace() {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        InPlace inPlace = new InPlace();
+        inPlace.initialize(bag, new TestCleanupImplementation());
+        return inPlace;
+    }
+
+    /** Adds a compute job, whose outputs other than the final ones are not transferred. */
+    private void addJob(ADag dag, String name, String[] inputs, String[] outputs) {
+        Job job = new Job();
+        job.setName(name);
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setSiteHandle("compute");
+        job.setStagingSiteHandle("compute");
+        for (String lfn : inputs) {
+            job.addInputFile(new PegasusFile(lfn));
+        }
+        for (String lfn : outputs) {
+            PegasusFile pf = new PegasusFile(lfn);
+            if (!lfn.equals("f.d") && !lfn.equals("f.out")) {
+                pf.setTransferFlag(PegasusFile.TRANSFER_NOT);
+            }
+            job.addOutputFile(pf);
+        }
+        dag.add(job);
+    }
+
+    private void link(GraphNode parent, GraphNode child) {
+        parent.addChild(child);
+        child.addParent(parent);
+    }
+
+    private List<GraphNode> cleanupJobs(Graph workflow) {
+        List<GraphNode> result = new ArrayList<GraphNode>();
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            if (((Job) node.getContent()).getJobType() == Job.CLEANUP_JOB) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    private int edges(Graph workflow) {
+        int count = 0;
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            count += it.next().getChildren().size();
+        }
+        return count;
+    }
+
+    /** Asserts that each file is deleted by exactly one cleanup job. */
+    private void assertCleanedOnce(Graph workflow, String... lfns) {
+        List<String> deleted = new ArrayList<String>();
+        for (GraphNode node : cleanupJobs(workflow)) {
+            for (Object pf : ((Job) node.getContent()).getInputFiles()) {
+                deleted.add(((PegasusFile) pf).getLFN());
+            }
+        }
+        assertThat(deleted, containsInAnyOrder(lfns));
+    }
+
+    /** Asserts that a file is deleted only after every job using it has run. */
+    private void assertCleanedAfterUses(Graph workflow) {
+        for (GraphNode cleanup : cleanupJobs(workflow)) {
+            for (Object o : ((Job) cleanup.getContent()).getInputFiles()) {
+                String lfn = ((PegasusFile) o).getLFN();
+                for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+                    GraphNode node = it.next();
+                    Job job = (Job) node.getContent();
+                    if (job.getJobType() == Job.COMPUTE_JOB
+                            && (job.getInputFiles().contains(new PegasusFile(lfn))
+                                    || job.getOutputFiles().contains(new PegasusFile(lfn)))) {
+                        assertThat(
+                                node.getID() + " uses " + lfn + " deleted by " + cleanup.getID(),
+                                isAncestor(node, cleanup),
+                                is(true));
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isAncestor(GraphNode ancestor, GraphNode node) {
+        LinkedList<GraphNode> queue = new LinkedList<GraphNode>(node.getParents());
+        Set<GraphNode> visited = new HashSet<GraphNode>();
+        while (!queue.isEmpty()) {
+            GraphNode n = queue.removeFirst();
+            if (n == ancestor) {
+                return true;
+            }
+            if (visited.add(n)) {
+                queue.addAll(n.getParents());
+            }
+        }
+        return false;
+    }
+
+    /** Creates cleanup jobs that list the files they delete as their inputs. */
+    private static class TestCleanupImplementation implements CleanupImplementation {
+
+        public void initialize(PegasusBag bag) {}
+
+        public Job createCleanupJob(String id, List files, Job job) {
+            return createCleanupJob(id, files, job, job.getStagingSiteHandle());
+        }
+
+        public Job createCleanupJob(String id, List files, Job job, String stagingSiteHandle) {
+            Job cleanup = new Job();
+            cleanup.setName(id);
+            cleanup.setJobType(Job.CLEANUP_JOB);
+            cleanup.setSiteHandle(stagingSiteHandle);
+            for (Object file : files) {
+                cleanup.addInputFile((PegasusFile) file);
+            }
+            return cleanup;
+        }
+    }
 }
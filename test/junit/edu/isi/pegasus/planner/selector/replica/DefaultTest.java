@@ -147,10 +147,29 @@ public class DefaultTest {
 
         ReplicaLocation result = mSelector.selectAndOrderReplicas(rl, "site1", true);
 
-        assertThat(localFile.getAttribute(ReplicaSelector.PRIORITY_KEY), is("100"));
-        assertThat(preferred.getAttribute(ReplicaSelector.PRIORITY_KEY), is("50"));
-        assertThat(other.getAttribute(ReplicaSelector.PRIORITY_KEY), is("10"));
+        List<ReplicaCatalogEntry> pfns = result.getPFNList();
         assertThat(result.getPFNCount(), is(3));
+        assertThat(pfns.get(0).getPFN(), is(localFile.getPFN()));
+        assertThat(pfns.get(0).getAttribute(ReplicaSelector.PRIORITY_KEY), is("100"));
+        assertThat(pfns.get(1).getPFN(), is(preferred.getPFN()));
+        assertThat(pfns.get(1).getAttribute(ReplicaSelector.PRIORITY_KEY), is("50"));
+        assertThat(pfns.get(2).getPFN(), is(other.getPFN()));
+        assertThat(pfns.get(2).getAttribute(ReplicaSelector.PRIORITY_KEY), is("10"));
+    }
+
+    @Test
+    public void testSelectAndOrderReplicasDoesNotModifyCandidates() {
+        // the candidates are shared by jobs whose replicas may be selected concurrently
+        ReplicaCatalogEntry rce = new ReplicaCatalogEntry("gsiftp://site1/test.txt", "site1");
+        ReplicaLocation rl = new ReplicaLocation();
+        rl.setLFN("test.txt");
+        rl.addPFN(rce);
+
+        ReplicaLocation result = mSelector.selectAndOrderReplicas(rl, "site1", false);
+
+        assertThat(result.getPFNList().get(0), not(sameInstance(rce)));
+        assertThat(rce.getAttribute(ReplicaSelector.PRIORITY_KEY), nullValue());
+        assertThat(rl.getPFNList().get(0), sameInstance(rce));
     }
 
     @Test
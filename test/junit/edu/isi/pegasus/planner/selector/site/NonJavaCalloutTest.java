@@ -17,15 +17,53 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.selector.SiteSelector;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
 /** Tests for the NonJavaCallout site selector. */
 public class NonJavaCalloutTest {
 
+    /**
+     * A site selector that answers the jobs in a batch in the reverse order, mapping each job to
+     * the site named after its id. The job with id ID3 is never answered.
+     */
+    private static final String STREAMING_SELECTOR =
+            "#!/bin/bash\n"
+                    + "echo \"$1\" >> \"$0.log\"\n"
+                    + "ids=()\n"
+                    + "while IFS= read -r line; do\n"
+                    + "  if [ -z \"$line\" ]; then\n"
+                    + "    for ((i=${#ids[@]}-1; i>=0; i--)); do\n"
+                    + "      [ \"${ids[$i]}\" = ID3 ] ||\n"
+                    + "        echo \"${ids[$i]} SOLUTION:site-${ids[$i]}\"\n"
+                    + "    done\n"
+                    + "    ids=()\n"
+                    + "  else\n"
+                    + "    id=$(echo \"$line\" | tr '\\t' '\\n' | grep '^job.id=' | cut -d= -f2)\n"
+                    + "    ids+=(\"$id\")\n"
+                    + "  fi\n"
+                    + "done\n";
+
+    @TempDir File tempDir;
+
     private NonJavaCallout mSelector;
 
     @BeforeEach
@@ -102,4 +140,54 @@ public class NonJavaCalloutTest {
                         .getReturnType(),
                 is(Integer.TYPE));
     }
+
+    @Test
+    public void testStreamToSiteSelector() throws IOException {
+        File script = new File(tempDir, "selector.sh");
+        Files.write(script.toPath(), STREAMING_SELECTOR.getBytes());
+        script.setExecutable(true);
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.selector.site.path", script.getAbsolutePath());
+        props.setProperty("pegasus.selector.site.stream", "true");
+        props.setProperty("pegasus.selector.site.timeout", "1");
+        SiteStore store = new SiteStore();
+        store.addEntry(new SiteCatalogEntry("site-ID1"));
+        store.addEntry(new SiteCatalogEntry("site-ID2"));
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.logEventStart("test.non-java-callout", "site-selector", "stream");
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.SITE_STORE, store);
+        mSelector.initialize(bag);
+
+        // two levels, the second with two jobs
+        ADag dag = new ADag();
+        Job[] jobs = new Job[4];
+        for (int i = 1; i < jobs.length; i++) {
+            Job job = new Job();
+            job.setName("job" + i);
+            job.setLogicalID("ID" + i);
+            job.setTXName("preprocess");
+            job.setJobType(Job.COMPUTE_JOB);
+            dag.add(job);
+            jobs[i] = job;
+        }
+        dag.addEdge("job1", "job2");
+        dag.addEdge("job1", "job3");
+
+        List<String> sites = Arrays.asList("site-ID1", "site-ID2");
+        mSelector.mapWorkflow(dag, sites);
+
+        assertThat(jobs[1].getSiteHandle(), is("site-ID1"));
+        assertThat(jobs[2].getSiteHandle(), is("site-ID2"));
+        // the selector never answered for the third job
+        assertThat(jobs[3].getSiteHandle(), is(nullValue()));
+
+        // the selector was started only once, till it timed out on the second level
+        List<String> starts = Files.readAllLines(new File(tempDir, "selector.sh.log").toPath());
+        assertThat(starts, contains(NonJavaCallout.STREAM_ARGUMENT));
+        logger.logEventCompletion();
+    }
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.transfer.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.FileServerType.OPERATION;
+import edu.isi.pegasus.planner.classes.PlannerCache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.LinkedList;
+import java.util.List;
+
+/** Tests for the CacheTracker */
+public class CacheTrackerTest {
+
+    /** The inserts made into the caches, in order. */
+    private List<String> mInserts;
+
+    private PlannerCache mPlannerCache;
+
+    private ReplicaCatalog mWorkflowCache;
+
+    @BeforeEach
+    public void setUp() {
+        mInserts = new LinkedList<String>();
+        mPlannerCache =
+                new PlannerCache() {
+                    @Override
+                    public int insert(String lfn, String pfn, String handle, OPERATION type) {
+                        mInserts.add("planner " + type + " " + lfn + " " + pfn + " " + handle);
+                        return 1;
+                    }
+
+                    @Override
+                    public int insert(String lfn, ReplicaCatalogEntry rce, OPERATION type) {
+                        mInserts.add("planner " + type + " " + lfn + " " + rce.getPFN());
+                        return 1;
+                    }
+                };
+        mWorkflowCache =
+                (ReplicaCatalog)
+                        Proxy.newProxyInstance(
+                                ReplicaCatalog.class.getClassLoader(),
+                                new Class[] {ReplicaCatalog.class},
+                                (proxy, method, args) -> record(method.getName(), args));
+    }
+
+    /** Records an insert into the workflow cache, the only call the tracker makes on it. */
+    private Object record(String method, Object[] args) {
+        if (method.equals("insert") && args.length == 3) {
+            mInserts.add("workflow " + args[0] + " " + args[1] + " " + args[2]);
+            return 1;
+        }
+        throw new UnsupportedOperationException(method);
+    }
+
+    @Test
+    public void testInsertsRightAway() {
+        CacheTracker tracker = new CacheTracker(mPlannerCache, mWorkflowCache, false);
+        tracker.trackInPlannerCache("f.a", "file:///scratch/f.a", "local", OPERATION.put);
+        assertThat(mInserts, contains("planner put f.a file:///scratch/f.a local"));
+
+        tracker.trackInWorkflowCache("f.a", "file:///scratch/f.a", "local");
+        assertThat(mInserts.size(), is(2));
+    }
+
+    @Test
+    public void testDefersInsertsTillApplied() {
+        CacheTracker tracker = new CacheTracker(mPlannerCache, mWorkflowCache, true);
+        tracker.trackInPlannerCache("f.a", "file:///scratch/f.a", "local", OPERATION.put);
+        tracker.trackInPlannerCache(
+                "f.b", new ReplicaCatalogEntry("file:///input/f.b", "local"), OPERATION.get);
+        tracker.trackInWorkflowCache("f.a", "file:///scratch/f.a", "local");
+        assertThat(mInserts, is(empty()));
+
+        tracker.apply();
+        assertThat(
+                mInserts,
+                contains(
+                        "planner put f.a file:///scratch/f.a local",
+                        "planner get f.b file:///input/f.b",
+                        "workflow f.a file:///scratch/f.a local"));
+
+        // applying again does not insert the entries twice
+        tracker.apply();
+        assertThat(mInserts.size(), is(3));
+
+        // once applied, the entries are inserted right away
+        tracker.trackInWorkflowCache("f.c", "file:///scratch/f.c", "local");
+        assertThat(mInserts.size(), is(4));
+    }
+}